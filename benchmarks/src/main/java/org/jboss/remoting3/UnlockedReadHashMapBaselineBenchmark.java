@@ -0,0 +1,37 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3;
+
+import org.openjdk.jmh.annotations.Fork;
+
+/**
+ * The benchmarks of {@link UnlockedReadHashMapBenchmark} against the Java 8 version of {@link UnlockedReadHashMap}.
+ * With multi-release JAR support switched off, the JVM loads the base classes instead of the `META-INF/versions/11`
+ * ones, so on Java 11 or later the scores of this class and of {@link UnlockedReadHashMapBenchmark} compare the two
+ * versions of the map on the same JVM.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@Fork(value = 2, jvmArgsAppend = "-Djdk.util.jar.enableMultiRelease=false")
+public class UnlockedReadHashMapBaselineBenchmark extends UnlockedReadHashMapBenchmark {
+}
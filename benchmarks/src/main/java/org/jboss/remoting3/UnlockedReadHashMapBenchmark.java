@@ -0,0 +1,114 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Operations on {@link UnlockedReadHashMap}, which holds the service registrations and connection providers of an
+ * endpoint.  This benchmark lives in the map's own package because the map is not public.  The map is filled to
+ * {@link #size} entries; the mutating benchmarks add and remove one further entry at a time so that the size stays put.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@State(Scope.Group)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UnlockedReadHashMapBenchmark {
+
+    @Param({ "16", "1024", "65536" })
+    public int size;
+
+    private UnlockedReadHashMap<String, Object> map;
+    private String[] keys;
+    private String extra;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        map = new UnlockedReadHashMap<String, Object>();
+        keys = new String[size];
+        for (int i = 0; i < size; i ++) {
+            keys[i] = "org.jboss.benchmark.service." + i;
+            map.put(keys[i], Integer.valueOf(i));
+        }
+        extra = "org.jboss.benchmark.service.extra";
+    }
+
+    @Benchmark
+    public Object get(final Cursor cursor) {
+        return map.get(keys[cursor.next(size)]);
+    }
+
+    @Benchmark
+    public Object putAndRemove() {
+        map.putIfAbsent(extra, extra);
+        return map.remove(extra);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public Object contendedGet(final Cursor cursor) {
+        return map.get(keys[cursor.next(size)]);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public Object contendedPutAndRemove() {
+        map.putIfAbsent(extra, extra);
+        return map.remove(extra);
+    }
+
+    /**
+     * Steps each thread through the keys in turn, so that every bucket is visited.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int key;
+
+        int next(final int size) {
+            final int key = this.key;
+            this.key = key + 1 == size ? 0 : key + 1;
+            return key;
+        }
+    }
+}
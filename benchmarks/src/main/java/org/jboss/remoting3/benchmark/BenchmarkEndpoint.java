@@ -0,0 +1,193 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.benchmark;
+
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.Security;
+import java.util.Collections;
+
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.Endpoint;
+import org.jboss.remoting3.EndpointBuilder;
+import org.jboss.remoting3.Registration;
+import org.jboss.remoting3.remote.RemoteConnectionProviderFactory;
+import org.jboss.remoting3.spi.NetworkServerProvider;
+import org.wildfly.security.WildFlyElytronProvider;
+import org.wildfly.security.auth.AuthenticationConfiguration;
+import org.wildfly.security.auth.AuthenticationContext;
+import org.wildfly.security.auth.MatchRule;
+import org.wildfly.security.auth.principal.NamePrincipal;
+import org.wildfly.security.auth.provider.SecurityDomain;
+import org.wildfly.security.auth.provider.SimpleMapBackedSecurityRealm;
+import org.wildfly.security.password.PasswordFactory;
+import org.wildfly.security.password.spec.ClearPasswordSpec;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.channels.AcceptingChannel;
+import org.xnio.channels.ConnectedStreamChannel;
+
+/**
+ * An endpoint which connects to itself, for the benchmarks.  The server side listens on the loopback address and
+ * authenticates with the same fixed user as the test suite.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class BenchmarkEndpoint implements AutoCloseable {
+
+    static final int PORT = 30123;
+
+    private static final String KEY_STORE_PASSWORD = "jboss-remoting-test";
+
+    private final Endpoint endpoint;
+    private final Registration registration;
+    private final AcceptingChannel<? extends ConnectedStreamChannel> streamServer;
+    private final String providerName;
+    private final AuthenticationContext authenticationContext;
+    private final Transport transport;
+
+    /**
+     * The transports which a benchmark can run over.
+     */
+    enum Transport {
+        /**
+         * The in-VM {@code local:} transport, which involves no protocol at all.
+         */
+        LOCAL("local"),
+        /**
+         * The {@code remote:} protocol over plain TCP.
+         */
+        REMOTE("remote"),
+        /**
+         * The {@code remote:} protocol over TLS.
+         */
+        REMOTE_TLS("remote"),
+        ;
+
+        private final String scheme;
+
+        Transport(final String scheme) {
+            this.scheme = scheme;
+        }
+
+        boolean isTls() {
+            return this == REMOTE_TLS;
+        }
+
+        static Transport forName(final String name) {
+            return valueOf(name.toUpperCase().replace('-', '_'));
+        }
+    }
+
+    BenchmarkEndpoint(final String transportName, final OptionMap serverOptions) throws IOException, GeneralSecurityException {
+        this(transportName, Endpoint.builder().setEndpointName("benchmark"), serverOptions);
+    }
+
+    BenchmarkEndpoint(final String transportName, final EndpointBuilder endpointBuilder, final OptionMap serverOptions) throws IOException, GeneralSecurityException {
+        transport = Transport.forName(transportName);
+        if (transport.isTls()) {
+            setKeyStoreAndTrustStore();
+        }
+        final WildFlyElytronProvider provider = new WildFlyElytronProvider();
+        Security.addProvider(provider);
+        providerName = provider.getName();
+        endpoint = endpointBuilder.build();
+        boolean ok = false;
+        try {
+            registration = endpoint.addConnectionProvider("remote", new RemoteConnectionProviderFactory(), OptionMap.create(Options.SSL_ENABLED, Boolean.valueOf(transport.isTls())));
+            final NetworkServerProvider networkServerProvider = endpoint.getConnectionProviderInterface("remote", NetworkServerProvider.class);
+            final SecurityDomain.Builder domainBuilder = SecurityDomain.builder();
+            final SimpleMapBackedSecurityRealm mainRealm = new SimpleMapBackedSecurityRealm();
+            domainBuilder.addRealm("mainRealm", mainRealm);
+            domainBuilder.setDefaultRealmName("mainRealm");
+            final PasswordFactory passwordFactory = PasswordFactory.getInstance("clear");
+            mainRealm.setPasswordMap(Collections.singletonMap(new NamePrincipal("bob"), passwordFactory.generatePassword(new ClearPasswordSpec("pass".toCharArray()))));
+            final OptionMap options = OptionMap.builder().addAll(serverOptions).set(Options.SSL_ENABLED, transport.isTls()).getMap();
+            streamServer = networkServerProvider.createServer(new InetSocketAddress("127.0.0.1", PORT), options, domainBuilder.build());
+            authenticationContext = AuthenticationContext.empty().with(MatchRule.ALL, AuthenticationConfiguration.EMPTY.useName("bob").usePassword("pass").allowSaslMechanisms("SCRAM-SHA-256"));
+            ok = true;
+        } finally {
+            if (! ok) {
+                safeClose(endpoint);
+                Security.removeProvider(providerName);
+            }
+        }
+    }
+
+    Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Open a new connection from the endpoint to itself over the benchmark's transport.
+     *
+     * @param connectOptions the connection options
+     * @return the connection
+     * @throws IOException if the connection failed
+     */
+    Connection connect(final OptionMap connectOptions) throws IOException {
+        final URI uri;
+        try {
+            uri = new URI(transport.scheme + "://127.0.0.1:" + PORT);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+        final OptionMap options = OptionMap.builder().addAll(connectOptions).set(Options.SSL_ENABLED, transport.isTls()).getMap();
+        return endpoint.connect(uri, options, authenticationContext).get();
+    }
+
+    public void close() {
+        safeClose(streamServer);
+        safeClose(endpoint);
+        safeClose(registration);
+        Security.removeProvider(providerName);
+    }
+
+    private static void setKeyStoreAndTrustStore() throws IOException {
+        if (System.getProperty("javax.net.ssl.keyStore") != null) {
+            return;
+        }
+        // the key store may be inside the benchmark jar, so copy it out to where JSSE can read it
+        final Path storePath = Files.createTempFile("benchmark", ".jks");
+        storePath.toFile().deleteOnExit();
+        try (InputStream stream = BenchmarkEndpoint.class.getResourceAsStream("/keystore.jks")) {
+            if (stream == null) {
+                throw new IllegalStateException("No key store on the class path");
+            }
+            Files.copy(stream, storePath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        System.setProperty("javax.net.ssl.keyStore", storePath.toString());
+        System.setProperty("javax.net.ssl.keyStorePassword", KEY_STORE_PASSWORD);
+        System.setProperty("javax.net.ssl.trustStore", storePath.toString());
+        System.setProperty("javax.net.ssl.trustStorePassword", KEY_STORE_PASSWORD);
+    }
+}
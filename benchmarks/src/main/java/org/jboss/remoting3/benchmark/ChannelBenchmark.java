@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.benchmark;
+
+import static org.xnio.IoUtils.safeClose;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.remoting3.Channel;
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.OpenListener;
+import org.jboss.remoting3.Registration;
+import org.jboss.remoting3.RemotingOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xnio.OptionMap;
+
+/**
+ * The rate at which channels can be opened and closed on an established connection.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@State(Scope.Benchmark)
+@Fork(2)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ChannelBenchmark {
+
+    private static final String SERVICE_NAME = "org.jboss.benchmark.channel";
+
+    @Param({ "local", "remote" })
+    public String transport;
+
+    private BenchmarkEndpoint endpoint;
+    private Registration serviceRegistration;
+    private Connection connection;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        endpoint = new BenchmarkEndpoint(transport, OptionMap.EMPTY);
+        serviceRegistration = endpoint.getEndpoint().registerService(SERVICE_NAME, new OpenListener() {
+            public void channelOpened(final Channel channel) {
+            }
+
+            public void registrationTerminated() {
+            }
+        }, OptionMap.EMPTY);
+        // a closed channel is released once the peer acknowledges the close, so leave room for a few in flight
+        connection = endpoint.connect(OptionMap.create(RemotingOptions.MAX_OUTBOUND_CHANNELS, Integer.valueOf(1024)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        safeClose(connection);
+        if (serviceRegistration != null) serviceRegistration.close();
+        safeClose(endpoint);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Channel openAndClose() throws Exception {
+        final Channel channel = connection.openChannel(SERVICE_NAME, OptionMap.EMPTY).get();
+        channel.close();
+        return channel;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.benchmark;
+
+import static org.xnio.IoUtils.safeClose;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.remoting3.Connection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xnio.OptionMap;
+
+/**
+ * The rate of complete connection setups (TCP or TLS, capabilities negotiation and authentication) and teardowns
+ * over loopback.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@State(Scope.Benchmark)
+@Fork(2)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ConnectBenchmark {
+
+    @Param({ "remote", "remote-tls" })
+    public String transport;
+
+    private BenchmarkEndpoint endpoint;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        endpoint = new BenchmarkEndpoint(transport, OptionMap.EMPTY);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        safeClose(endpoint);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Connection connectAndClose() throws Exception {
+        final Connection connection = endpoint.connect(OptionMap.EMPTY);
+        connection.close();
+        return connection;
+    }
+}
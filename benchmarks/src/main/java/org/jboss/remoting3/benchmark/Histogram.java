@@ -0,0 +1,135 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.remoting3.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of latencies for the load generator, recorded in nanoseconds and reported in microseconds.
+ * <p>
+ * Each power of two is split into {@link #SUB_BUCKET_COUNT} equal buckets, which bounds the error of a reported
+ * percentile to about three percent.  Values beyond {@link #MAX_VALUE} are counted in the last bucket.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_SHIFT = 35;
+    private static final long MAX_VALUE = (2L * SUB_BUCKET_COUNT << MAX_SHIFT) - 1;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_SHIFT + 1) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    void record(final long nanos) {
+        final long value = Math.max(0L, Math.min(nanos, MAX_VALUE));
+        counts.incrementAndGet(bucketIndex(value));
+        count.increment();
+        total.add(value);
+        long oldMax;
+        do {
+            oldMax = max.get();
+        } while (value > oldMax && ! max.compareAndSet(oldMax, value));
+    }
+
+    /**
+     * Forget every recorded latency.  Latencies recorded during the reset may or may not be forgotten.
+     */
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i ++) {
+            counts.set(i, 0L);
+        }
+        count.reset();
+        total.reset();
+        max.set(0L);
+    }
+
+    long getMean() {
+        final long count = this.count.sum();
+        return count == 0L ? 0L : toMicros(total.sum() / count);
+    }
+
+    long getMax() {
+        return toMicros(max.get());
+    }
+
+    /**
+     * Get the latency which the given percentage of recorded latencies do not exceed.
+     *
+     * @param percentile the percentage, from 0 to 100
+     * @return the latency in microseconds
+     */
+    long getPercentile(final double percentile) {
+        final long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i ++) {
+            total += snapshot[i] = counts.get(i);
+        }
+        if (total == 0L) {
+            return 0L;
+        }
+        final long target = Math.max(1L, (long) Math.ceil(total * Math.max(0.0, Math.min(100.0, percentile)) / 100.0));
+        long seen = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i ++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return toMicros(Math.min(bucketUpperBound(i), max.get()));
+            }
+        }
+        return getMax();
+    }
+
+    private static int bucketIndex(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    private static long bucketUpperBound(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        final int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        return ((long) (SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+    }
+
+    private static long toMicros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.remoting3._private.IntIndexHashMap;
+import org.jboss.remoting3._private.IntIndexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Operations on {@link IntIndexHashMap}, which holds the channels of a connection and the messages of a channel.
+ * The map is filled to {@link #size} entries; the mutating benchmarks add and remove one further entry at a time so
+ * that the size stays put.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@State(Scope.Group)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IntIndexHashMapBenchmark {
+
+    @Param({ "16", "1024", "65536" })
+    public int size;
+
+    private IntIndexHashMap<Entry> map;
+    private Entry extra;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        map = new IntIndexHashMap<Entry>(Entry.INDEXER);
+        for (int i = 0; i < size; i ++) {
+            map.put(new Entry(i));
+        }
+        extra = new Entry(size);
+    }
+
+    @Benchmark
+    public Entry get(final Cursor cursor) {
+        return map.get(cursor.next(size));
+    }
+
+    @Benchmark
+    public Entry putAndRemove() {
+        map.putIfAbsent(extra);
+        return map.removeKey(extra.key);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public Entry contendedGet(final Cursor cursor) {
+        return map.get(cursor.next(size));
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public Entry contendedPutAndRemove() {
+        map.putIfAbsent(extra);
+        return map.removeKey(extra.key);
+    }
+
+    /**
+     * Steps each thread through the keys in turn, so that every bucket is visited.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int key;
+
+        int next(final int size) {
+            final int key = this.key;
+            this.key = key + 1 == size ? 0 : key + 1;
+            return key;
+        }
+    }
+
+    static final class Entry {
+        static final IntIndexer<Entry> INDEXER = new IntIndexer<Entry>() {
+            public int getKey(final Entry argument) {
+                return argument.key;
+            }
+        };
+
+        final int key;
+
+        Entry(final int key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,428 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.benchmark;
+
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.jboss.remoting3.Channel;
+import org.jboss.remoting3.ChannelBusyException;
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.Endpoint;
+import org.jboss.remoting3.MessageInputStream;
+import org.jboss.remoting3.MessageOutputStream;
+import org.jboss.remoting3.OpenListener;
+import org.jboss.remoting3.Registration;
+import org.jboss.remoting3.RemotingOptions;
+import org.xnio.Option;
+import org.xnio.OptionMap;
+
+/**
+ * A load generator which runs a server and a set of clients in one process, over loopback, and reports the throughput,
+ * latency and CPU cost of the traffic between them.  It is meant for comparing option settings (window sizes, buffer
+ * sizes, message limits and so on) before they are used for real.
+ * <p>
+ * Each of the {@code --connections} connections opens {@code --channels} channels, and every channel has a sender
+ * thread of its own.  The server answers each message with a short acknowledgement which carries the send time
+ * back, and the latency of a message is the time from its send to the arrival of its acknowledgement.  In the closed
+ * loop mode, each channel keeps {@code --outstanding} messages in flight.  In the open loop mode, each channel sends
+ * {@code --rate} messages a second whether or not the earlier ones have been answered; a message which cannot be
+ * sent on time is timed from when it should have been sent, so a slow server shows up as latency rather than as
+ * a lower send rate.
+ * <p>
+ * Run it from the benchmark jar:
+ * <pre>
+ *     java -cp target/benchmarks.jar org.jboss.remoting3.benchmark.LoadGenerator --connections 4 --channels 8 \
+ *         --size 16384 --mode open --rate 2000 --option RECEIVE_WINDOW_SIZE=1048576
+ * </pre>
+ * Each {@code --option} is a {@link RemotingOptions} name (or the full name of any other option) and value, and is
+ * applied to the server, the connections and the channels alike.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class LoadGenerator {
+
+    private static final String SERVICE_NAME = "org.jboss.benchmark.load";
+    private static final int CHUNK_SIZE = 8192;
+
+    private final int connections;
+    private final int channels;
+    private final int size;
+    private final boolean openLoop;
+    private final int rate;
+    private final int outstanding;
+    private final int warmup;
+    private final int duration;
+    private final String transport;
+    private final OptionMap options;
+
+    private final Histogram latency = new Histogram();
+    private final LongAdder messagesSent = new LongAdder();
+    private final LongAdder messagesAcknowledged = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private volatile boolean running = true;
+    private volatile boolean measuring;
+
+    private LoadGenerator(final int connections, final int channels, final int size, final boolean openLoop, final int rate, final int outstanding, final int warmup, final int duration, final String transport, final OptionMap options) {
+        this.connections = connections;
+        this.channels = channels;
+        this.size = size;
+        this.openLoop = openLoop;
+        this.rate = rate;
+        this.outstanding = outstanding;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.transport = transport;
+        this.options = options;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        int connections = 1;
+        int channels = 1;
+        int size = 1024;
+        boolean openLoop = false;
+        int rate = 1000;
+        int outstanding = 1;
+        int warmup = 5;
+        int duration = 30;
+        String transport = "remote";
+        final OptionMap.Builder options = OptionMap.builder();
+        try {
+            for (int i = 0; i < args.length; i ++) {
+                final String arg = args[i];
+                if ("--help".equals(arg) || "-h".equals(arg)) {
+                    usage(System.out);
+                    return;
+                }
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value for " + arg);
+                }
+                final String value = args[++ i];
+                switch (arg) {
+                    case "--connections": connections = positive(arg, value); break;
+                    case "--channels": channels = positive(arg, value); break;
+                    case "--size": size = Math.max(8, positive(arg, value)); break;
+                    case "--mode": {
+                        if ("open".equals(value)) {
+                            openLoop = true;
+                        } else if ("closed".equals(value)) {
+                            openLoop = false;
+                        } else {
+                            throw new IllegalArgumentException("Unknown mode " + value);
+                        }
+                        break;
+                    }
+                    case "--rate": rate = positive(arg, value); break;
+                    case "--outstanding": outstanding = positive(arg, value); break;
+                    case "--warmup": warmup = Integer.parseInt(value); break;
+                    case "--duration": duration = positive(arg, value); break;
+                    case "--transport": BenchmarkEndpoint.Transport.forName(value); transport = value; break;
+                    case "--option": parseOption(options, value); break;
+                    default: throw new IllegalArgumentException("Unknown argument " + arg);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage(System.err);
+            System.exit(1);
+            return;
+        }
+        new LoadGenerator(connections, channels, size, openLoop, rate, outstanding, warmup, duration, transport, options.getMap()).run();
+        // the endpoint is closed by now, but the executors of the remote provider may linger for a while
+        System.exit(0);
+    }
+
+    private static int positive(final String arg, final String value) {
+        final int result = Integer.parseInt(value);
+        if (result < 1) {
+            throw new IllegalArgumentException(arg + " must be at least 1");
+        }
+        return result;
+    }
+
+    private static void parseOption(final OptionMap.Builder builder, final String value) {
+        final int idx = value.indexOf('=');
+        if (idx == -1) {
+            throw new IllegalArgumentException("Option " + value + " has no value");
+        }
+        final String name = value.substring(0, idx);
+        final ClassLoader classLoader = LoadGenerator.class.getClassLoader();
+        final Option<?> option = Option.fromString(name.indexOf('.') == -1 ? RemotingOptions.class.getName() + "." + name : name, classLoader);
+        builder.parse(option, value.substring(idx + 1), classLoader);
+    }
+
+    private static void usage(final PrintStream out) {
+        out.println("Usage: LoadGenerator [options]");
+        out.println("    --connections N     number of connections (1)");
+        out.println("    --channels N        number of channels on each connection (1)");
+        out.println("    --size BYTES        message size, at least 8 (1024)");
+        out.println("    --mode open|closed  send at a fixed rate, or keep a fixed number of messages in flight (closed)");
+        out.println("    --rate N            messages a second on each channel, open loop only (1000)");
+        out.println("    --outstanding N     messages in flight on each channel, closed loop only (1)");
+        out.println("    --warmup SECONDS    time to run before measuring (5)");
+        out.println("    --duration SECONDS  time to measure (30)");
+        out.println("    --transport NAME    remote, remote-tls or local (remote)");
+        out.println("    --option NAME=VALUE a connection and channel option; may be repeated");
+    }
+
+    private void run() throws Exception {
+        try (BenchmarkEndpoint endpoint = new BenchmarkEndpoint(transport, Endpoint.builder().setEndpointName("load-generator"), options)) {
+            final Registration registration = endpoint.getEndpoint().registerService(SERVICE_NAME, new OpenListener() {
+                public void channelOpened(final Channel channel) {
+                    channel.receiveMessage(new Responder());
+                }
+
+                public void registrationTerminated() {
+                }
+            }, options);
+            final List<Connection> connectionList = new ArrayList<Connection>(connections);
+            final List<Thread> senders = new ArrayList<Thread>(connections * channels);
+            try {
+                for (int i = 0; i < connections; i ++) {
+                    final Connection connection = endpoint.connect(options);
+                    connectionList.add(connection);
+                    for (int j = 0; j < channels; j ++) {
+                        final Channel channel = connection.openChannel(SERVICE_NAME, options).get();
+                        final Sender sender = new Sender(channel);
+                        channel.receiveMessage(sender);
+                        final Thread thread = new Thread(sender, "Load generator sender " + i + "-" + j);
+                        thread.setDaemon(true);
+                        senders.add(thread);
+                    }
+                }
+                for (Thread thread : senders) {
+                    thread.start();
+                }
+                TimeUnit.SECONDS.sleep(warmup);
+                latency.reset();
+                messagesSent.reset();
+                messagesAcknowledged.reset();
+                bytesSent.reset();
+                errors.reset();
+                final long cpuStart = getProcessCpuTime();
+                final long start = System.nanoTime();
+                measuring = true;
+                TimeUnit.SECONDS.sleep(duration);
+                measuring = false;
+                final long elapsed = System.nanoTime() - start;
+                final long cpu = getProcessCpuTime() - cpuStart;
+                running = false;
+                report(System.out, elapsed, cpuStart == -1L ? -1L : cpu);
+                for (Thread thread : senders) {
+                    thread.interrupt();
+                    thread.join(TimeUnit.SECONDS.toMillis(5L));
+                }
+            } finally {
+                for (Connection connection : connectionList) {
+                    safeClose(connection);
+                }
+                registration.close();
+            }
+        }
+    }
+
+    private static long getProcessCpuTime() {
+        final OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+        if (bean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) bean).getProcessCpuTime();
+        }
+        return -1L;
+    }
+
+    private void report(final PrintStream out, final long elapsedNanos, final long cpuNanos) {
+        final double seconds = elapsedNanos / 1_000_000_000.0;
+        final long sent = messagesSent.sum();
+        final long bytes = bytesSent.sum();
+        out.printf(Locale.ROOT, "%d connection(s) x %d channel(s) over %s, %d byte messages, %s%n", Integer.valueOf(connections), Integer.valueOf(channels), transport, Integer.valueOf(size),
+            openLoop ? "open loop at " + rate + " messages/s per channel" : "closed loop with " + outstanding + " message(s) in flight per channel");
+        out.printf(Locale.ROOT, "Options:      %s%n", options);
+        out.printf(Locale.ROOT, "Duration:     %.1f s%n", Double.valueOf(seconds));
+        out.printf(Locale.ROOT, "Messages:     %d sent, %d acknowledged, %d failed%n", Long.valueOf(sent), Long.valueOf(messagesAcknowledged.sum()), Long.valueOf(errors.sum()));
+        out.printf(Locale.ROOT, "Throughput:   %.1f messages/s, %.2f MB/s%n", Double.valueOf(sent / seconds), Double.valueOf(bytes / seconds / 1_000_000.0));
+        out.printf(Locale.ROOT, "Latency (us): mean %d, p50 %d, p99 %d, p99.9 %d, max %d%n", Long.valueOf(latency.getMean()), Long.valueOf(latency.getPercentile(50.0)),
+            Long.valueOf(latency.getPercentile(99.0)), Long.valueOf(latency.getPercentile(99.9)), Long.valueOf(latency.getMax()));
+        if (cpuNanos < 0L) {
+            out.println("CPU:          not available on this VM");
+        } else {
+            // both ends run in this process, so this is the cost of sending and of receiving the data
+            final double cpuSeconds = cpuNanos / 1_000_000_000.0;
+            out.printf(Locale.ROOT, "CPU:          %.2f s, %.2f s per GB%n", Double.valueOf(cpuSeconds), Double.valueOf(bytes == 0L ? 0.0 : cpuSeconds / (bytes / 1_000_000_000.0)));
+        }
+    }
+
+    /**
+     * The client end of a channel, which sends messages and receives their acknowledgements.
+     */
+    final class Sender implements Runnable, Channel.Receiver {
+        private final Channel channel;
+        private final Semaphore inFlight = new Semaphore(outstanding);
+        private final byte[] payload = new byte[size];
+
+        Sender(final Channel channel) {
+            this.channel = channel;
+        }
+
+        public void run() {
+            final long interval = TimeUnit.SECONDS.toNanos(1L) / rate;
+            long next = System.nanoTime();
+            try {
+                while (running) {
+                    final long sendTime;
+                    if (openLoop) {
+                        final long delay = next - System.nanoTime();
+                        if (delay > 0L) {
+                            LockSupport.parkNanos(delay);
+                            continue;
+                        }
+                        // time the message from when it was due, even if we are behind
+                        sendTime = next;
+                        next += interval;
+                    } else {
+                        inFlight.acquire();
+                        sendTime = System.nanoTime();
+                    }
+                    send(sendTime);
+                }
+            } catch (InterruptedException ignored) {
+            } catch (IOException e) {
+                if (running) {
+                    errors.increment();
+                    System.err.println("Sender failed: " + e);
+                }
+            }
+        }
+
+        private void send(final long sendTime) throws IOException, InterruptedException {
+            MessageOutputStream stream;
+            for (;;) try {
+                stream = channel.writeMessage();
+                break;
+            } catch (ChannelBusyException e) {
+                // every outbound message slot is in flight; wait for the peer to catch up
+                if (! running) return;
+                Thread.sleep(0L, 100_000);
+            }
+            try {
+                stream.writeLong(sendTime);
+                for (int remaining = size - 8; remaining > 0; remaining -= CHUNK_SIZE) {
+                    stream.write(payload, 0, Math.min(remaining, CHUNK_SIZE));
+                }
+                stream.close();
+            } finally {
+                safeClose(stream);
+            }
+            if (measuring) {
+                messagesSent.increment();
+                bytesSent.add(size);
+            }
+        }
+
+        public void handleError(final Channel channel, final IOException error) {
+            if (running) {
+                errors.increment();
+            }
+        }
+
+        public void handleEnd(final Channel channel) {
+        }
+
+        public void handleMessage(final Channel channel, final MessageInputStream message) {
+            channel.receiveMessage(this);
+            try {
+                final long sendTime;
+                try {
+                    sendTime = message.readLong();
+                } finally {
+                    safeClose(message);
+                }
+                if (measuring) {
+                    latency.record(System.nanoTime() - sendTime);
+                    messagesAcknowledged.increment();
+                }
+            } catch (IOException e) {
+                if (running) {
+                    errors.increment();
+                }
+            } finally {
+                if (! openLoop) {
+                    // only the closed loop acquires a permit for each message
+                    inFlight.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * The server end of a channel, which acknowledges every message with its send time.
+     */
+    static final class Responder implements Channel.Receiver {
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+
+        public void handleError(final Channel channel, final IOException error) {
+        }
+
+        public void handleEnd(final Channel channel) {
+        }
+
+        public void handleMessage(final Channel channel, final MessageInputStream message) {
+            channel.receiveMessage(this);
+            try {
+                final long sendTime;
+                try {
+                    sendTime = message.readLong();
+                    // messages may be handled concurrently, but the content is thrown away so sharing the buffer is harmless
+                    while (message.read(buffer) != -1);
+                } finally {
+                    safeClose(message);
+                }
+                MessageOutputStream stream;
+                for (;;) try {
+                    stream = channel.writeMessage();
+                    break;
+                } catch (ChannelBusyException e) {
+                    Thread.yield();
+                }
+                try {
+                    stream.writeLong(sendTime);
+                    stream.close();
+                } finally {
+                    safeClose(stream);
+                }
+            } catch (IOException e) {
+                safeClose(channel);
+            }
+        }
+    }
+}
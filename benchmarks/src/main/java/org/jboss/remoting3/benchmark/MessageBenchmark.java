@@ -0,0 +1,243 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.benchmark;
+
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.remoting3.Channel;
+import org.jboss.remoting3.ChannelBusyException;
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.MessageInputStream;
+import org.jboss.remoting3.MessageOutputStream;
+import org.jboss.remoting3.OpenListener;
+import org.jboss.remoting3.Registration;
+import org.jboss.remoting3.RemotingOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xnio.OptionMap;
+
+/**
+ * Message latency and throughput between the two ends of a single channel.
+ * <p>
+ * {@link #roundTrip()} sends a message and waits for an equally large reply, so its average time is the round-trip
+ * latency.  {@link #oneWay()} sends messages back to back without waiting for the peer, so its throughput multiplied by
+ * the payload size is the data rate of the channel.
+ * <p>
+ * Both ends are limited to {@link #protocolVersion}, so that the compact frame headers of version 2 can be compared
+ * with the fixed headers of version 1.  The local transport has no protocol, so the version makes no difference to it.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@State(Scope.Benchmark)
+@Fork(2)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MessageBenchmark {
+
+    private static final String SERVICE_NAME = "org.jboss.benchmark.message";
+    private static final int CHUNK_SIZE = 8192;
+
+    @Param({ "local", "remote", "remote-tls" })
+    public String transport;
+
+    @Param({ "16", "1024", "65536", "1048576", "16777216" })
+    public int payloadSize;
+
+    @Param({ "false", "true" })
+    public boolean compression;
+
+    @Param({ "1", "2" })
+    public int protocolVersion;
+
+    private BenchmarkEndpoint endpoint;
+    private Registration serviceRegistration;
+    private Connection connection;
+    private Channel channel;
+    private byte[] payload;
+    private final BlockingQueue<Object> replies = new ArrayBlockingQueue<Object>(1);
+    private final AtomicLong received = new AtomicLong();
+    private long sent;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final OptionMap protocolOptions = OptionMap.create(RemotingOptions.MAX_PROTOCOL_VERSION, Integer.valueOf(protocolVersion));
+        endpoint = new BenchmarkEndpoint(transport, protocolOptions);
+        final OptionMap channelOptions = OptionMap.create(RemotingOptions.MESSAGE_COMPRESSION, Boolean.valueOf(compression));
+        serviceRegistration = endpoint.getEndpoint().registerService(SERVICE_NAME, new OpenListener() {
+            public void channelOpened(final Channel channel) {
+                channel.receiveMessage(new Responder());
+            }
+
+            public void registrationTerminated() {
+            }
+        }, channelOptions);
+        connection = endpoint.connect(protocolOptions);
+        channel = connection.openChannel(SERVICE_NAME, channelOptions).get();
+        payload = new byte[payloadSize];
+        // the content is compressible, like most real payloads
+        for (int i = 0; i < payloadSize; i ++) {
+            payload[i] = (byte) (i % 61);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        safeClose(channel);
+        safeClose(connection);
+        if (serviceRegistration != null) serviceRegistration.close();
+        safeClose(endpoint);
+    }
+
+    @TearDown(Level.Iteration)
+    public void drain() throws InterruptedException {
+        // let one-way messages which are still in flight finish, so they do not slow down the next iteration
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30L);
+        while (received.get() < sent && System.nanoTime() < deadline) {
+            Thread.sleep(1L);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long roundTrip() throws Exception {
+        sendMessage(true);
+        final Object reply = replies.poll(30L, TimeUnit.SECONDS);
+        if (reply instanceof IOException) {
+            throw (IOException) reply;
+        } else if (reply == null) {
+            throw new IOException("No reply received");
+        }
+        final MessageInputStream stream = (MessageInputStream) reply;
+        try {
+            return consume(stream);
+        } finally {
+            safeClose(stream);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void oneWay() throws Exception {
+        sendMessage(false);
+    }
+
+    private void sendMessage(final boolean reply) throws IOException {
+        MessageOutputStream stream;
+        for (;;) try {
+            stream = channel.writeMessage();
+            break;
+        } catch (ChannelBusyException e) {
+            // every outbound message slot is in flight; wait for the peer to catch up
+            Thread.yield();
+        }
+        try {
+            stream.writeBoolean(reply);
+            stream.write(payload);
+            stream.close();
+            sent ++;
+        } finally {
+            safeClose(stream);
+        }
+        if (reply) {
+            channel.receiveMessage(new Channel.Receiver() {
+                public void handleError(final Channel channel, final IOException error) {
+                    replies.add(error);
+                }
+
+                public void handleEnd(final Channel channel) {
+                    replies.add(new IOException("Channel closed"));
+                }
+
+                public void handleMessage(final Channel channel, final MessageInputStream message) {
+                    replies.add(message);
+                }
+            });
+        }
+    }
+
+    private static long consume(final MessageInputStream stream) throws IOException {
+        final byte[] buffer = new byte[CHUNK_SIZE];
+        long total = 0;
+        int res;
+        while ((res = stream.read(buffer)) != -1) {
+            total += res;
+        }
+        return total;
+    }
+
+    final class Responder implements Channel.Receiver {
+
+        public void handleError(final Channel channel, final IOException error) {
+        }
+
+        public void handleEnd(final Channel channel) {
+        }
+
+        public void handleMessage(final Channel channel, final MessageInputStream message) {
+            channel.receiveMessage(this);
+            try {
+                final boolean reply;
+                final long size;
+                try {
+                    reply = message.readBoolean();
+                    size = consume(message);
+                } finally {
+                    safeClose(message);
+                }
+                received.incrementAndGet();
+                if (reply) {
+                    final MessageOutputStream stream = channel.writeMessage();
+                    try {
+                        for (long remaining = size; remaining > 0; remaining -= CHUNK_SIZE) {
+                            stream.write(payload, 0, (int) Math.min(remaining, CHUNK_SIZE));
+                        }
+                        stream.close();
+                    } finally {
+                        safeClose(stream);
+                    }
+                }
+            } catch (IOException e) {
+                safeClose(channel);
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.benchmark;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.remoting3.MessageInputStream;
+import org.jboss.remoting3.MessageOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The cost of the primitive encodings of {@link MessageOutputStream} and {@link MessageInputStream}, over streams
+ * backed by a plain array so that no transport cost is included.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@State(Scope.Thread)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageStreamCodecBenchmark {
+
+    private static final int COUNT = 256;
+    private static final String TEXT = "org.jboss.remoting3.benchmark.MessageStreamCodecBenchmark \u00e9\u4e2d";
+
+    private final ArrayOutputStream output = new ArrayOutputStream(COUNT * 128);
+    private ArrayInputStream ints;
+    private ArrayInputStream longs;
+    private ArrayInputStream strings;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        for (int i = 0; i < COUNT; i ++) {
+            output.writeInt(i);
+        }
+        ints = new ArrayInputStream(output.toByteArray());
+        output.position = 0;
+        for (int i = 0; i < COUNT; i ++) {
+            output.writeLong(i);
+        }
+        longs = new ArrayInputStream(output.toByteArray());
+        output.position = 0;
+        for (int i = 0; i < COUNT; i ++) {
+            output.writeUTF(TEXT);
+        }
+        strings = new ArrayInputStream(output.toByteArray());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void writeInt() throws IOException {
+        final ArrayOutputStream output = this.output;
+        output.position = 0;
+        for (int i = 0; i < COUNT; i ++) {
+            output.writeInt(i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void writeLong() throws IOException {
+        final ArrayOutputStream output = this.output;
+        output.position = 0;
+        for (int i = 0; i < COUNT; i ++) {
+            output.writeLong(i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void writeUTF() throws IOException {
+        final ArrayOutputStream output = this.output;
+        output.position = 0;
+        for (int i = 0; i < COUNT; i ++) {
+            output.writeUTF(TEXT);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void readInt(final Blackhole blackhole) throws IOException {
+        final ArrayInputStream input = ints;
+        input.position = 0;
+        for (int i = 0; i < COUNT; i ++) {
+            blackhole.consume(input.readInt());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void readLong(final Blackhole blackhole) throws IOException {
+        final ArrayInputStream input = longs;
+        input.position = 0;
+        for (int i = 0; i < COUNT; i ++) {
+            blackhole.consume(input.readLong());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void readUTF(final Blackhole blackhole) throws IOException {
+        final ArrayInputStream input = strings;
+        input.position = 0;
+        for (int i = 0; i < COUNT; i ++) {
+            blackhole.consume(input.readUTF());
+        }
+    }
+
+    static final class ArrayOutputStream extends MessageOutputStream {
+        final byte[] bytes;
+        int position;
+
+        ArrayOutputStream(final int size) {
+            bytes = new byte[size];
+        }
+
+        public void write(final int b) {
+            bytes[position ++] = (byte) b;
+        }
+
+        public void write(final byte[] b, final int off, final int len) {
+            System.arraycopy(b, off, bytes, position, len);
+            position += len;
+        }
+
+        public void flush() {
+        }
+
+        public void close() {
+        }
+
+        public MessageOutputStream cancel() {
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, position);
+        }
+    }
+
+    static final class ArrayInputStream extends MessageInputStream {
+        final byte[] bytes;
+        int position;
+
+        ArrayInputStream(final byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        public int read() {
+            return position == bytes.length ? -1 : bytes[position ++] & 0xff;
+        }
+
+        public int read(final byte[] b, final int off, final int len) {
+            if (position == bytes.length) {
+                return -1;
+            }
+            final int cnt = Math.min(len, bytes.length - position);
+            System.arraycopy(bytes, position, b, off, cnt);
+            position += cnt;
+            return cnt;
+        }
+    }
+}
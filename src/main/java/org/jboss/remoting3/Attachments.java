@@ -22,44 +22,194 @@
 
 package org.jboss.remoting3;
 
-import java.util.concurrent.ConcurrentMap;
+import java.util.Arrays;
 
 /**
  * A set of attachments for an entity.
  */
 public final class Attachments {
-    private final ConcurrentMap<Key<?>, Object> map = new UnlockedReadHashMap<Key<?>, Object>();
+
+    /**
+     * The number of attachments which are stored inline before the store is upgraded to a hash table.
+     */
+    private static final int INLINE_ENTRIES = 4;
+    private static final int TABLE_INITIAL_CAPACITY = 16;
+
+    /**
+     * The attachment store.  This is {@code null} until the first attachment is made, then an array of alternating keys
+     * and values for up to {@link #INLINE_ENTRIES} attachments, and finally an {@link UnlockedReadHashMap}.  Inline arrays
+     * are never modified once published.  Changes are made while holding this object's lock; reads never lock.
+     */
+    private volatile Object store;
+
+    /**
+     * Construct a new instance.
+     */
+    public Attachments() {
+    }
 
     /** {@inheritDoc} */
     public <T> T attach(final Key<T> key, final T value) {
         final Class<T> type = key.getType();
-        return type.cast(map.put(key, type.cast(value)));
+        return type.cast(doPut(key, type.cast(value), false));
     }
 
     /** {@inheritDoc} */
     public <T> T attachIfAbsent(final Key<T> key, final T value) {
         final Class<T> type = key.getType();
-        return type.cast(map.putIfAbsent(key, type.cast(value)));
+        return type.cast(doPut(key, type.cast(value), true));
     }
 
     /** {@inheritDoc} */
     public <T> boolean replaceAttachment(final Key<T> key, final T expect, final T replacement) {
-        return map.replace(key, expect, key.getType().cast(replacement));
+        final T castReplacement = key.getType().cast(replacement);
+        synchronized (this) {
+            final Object store = this.store;
+            if (store instanceof Object[]) {
+                final Object[] entries = (Object[]) store;
+                final int idx = indexOf(entries, key);
+                if (idx == -1 || ! equals(expect, entries[idx + 1])) {
+                    return false;
+                }
+                final Object[] newEntries = entries.clone();
+                newEntries[idx + 1] = castReplacement;
+                this.store = newEntries;
+                return true;
+            } else if (store != null) {
+                return asMap(store).replace(key, expect, castReplacement);
+            } else {
+                return false;
+            }
+        }
     }
 
     /** {@inheritDoc} */
     public <T> T removeAttachment(final Key<T> key) {
-        return key.getType().cast(map.remove(key));
+        return key.getType().cast(doRemove(key, null, false));
     }
 
     /** {@inheritDoc} */
     public <T> boolean removeAttachment(final Key<T> key, final T value) {
-        return map.remove(key, value);
+        return doRemove(key, value, true) != null;
     }
 
     /** {@inheritDoc} */
     public <T> T getAttachment(final Key<T> key) {
-        return key.getType().cast(map.get(key));
+        final Object store = this.store;
+        if (store instanceof Object[]) {
+            final Object[] entries = (Object[]) store;
+            final int idx = indexOf(entries, key);
+            return idx == -1 ? null : key.getType().cast(entries[idx + 1]);
+        } else if (store != null) {
+            return key.getType().cast(asMap(store).get(key));
+        } else {
+            return null;
+        }
+    }
+
+    private Object doPut(final Key<?> key, final Object value, final boolean ifAbsent) {
+        synchronized (this) {
+            final Object store = this.store;
+            if (store == null) {
+                this.store = new Object[] { key, value };
+                return null;
+            } else if (store instanceof Object[]) {
+                final Object[] entries = (Object[]) store;
+                final int idx = indexOf(entries, key);
+                if (idx != -1) {
+                    final Object old = entries[idx + 1];
+                    if (! ifAbsent) {
+                        final Object[] newEntries = entries.clone();
+                        newEntries[idx + 1] = value;
+                        this.store = newEntries;
+                    }
+                    return old;
+                }
+                final int length = entries.length;
+                if (length < INLINE_ENTRIES << 1) {
+                    final Object[] newEntries = Arrays.copyOf(entries, length + 2);
+                    newEntries[length] = key;
+                    newEntries[length + 1] = value;
+                    this.store = newEntries;
+                } else {
+                    // upgrade to a table; it is fully populated before it is published
+                    final UnlockedReadHashMap<Key<?>, Object> map = new UnlockedReadHashMap<Key<?>, Object>(TABLE_INITIAL_CAPACITY);
+                    for (int i = 0; i < length; i += 2) {
+                        map.put((Key<?>) entries[i], entries[i + 1]);
+                    }
+                    map.put(key, value);
+                    this.store = map;
+                }
+                return null;
+            } else {
+                final UnlockedReadHashMap<Key<?>, Object> map = asMap(store);
+                return ifAbsent ? map.putIfAbsent(key, value) : map.put(key, value);
+            }
+        }
+    }
+
+    /**
+     * Remove an attachment.  If {@code conditional} is {@code true} the attachment is only removed if it equals the
+     * given value, and any non-{@code null} return value indicates success.
+     */
+    private Object doRemove(final Key<?> key, final Object value, final boolean conditional) {
+        synchronized (this) {
+            final Object store = this.store;
+            if (store instanceof Object[]) {
+                final Object[] entries = (Object[]) store;
+                final int idx = indexOf(entries, key);
+                if (idx == -1) {
+                    return null;
+                }
+                final Object old = entries[idx + 1];
+                if (conditional && ! equals(value, old)) {
+                    return null;
+                }
+                final int length = entries.length;
+                if (length == 2) {
+                    this.store = null;
+                } else {
+                    final Object[] newEntries = new Object[length - 2];
+                    System.arraycopy(entries, 0, newEntries, 0, idx);
+                    System.arraycopy(entries, idx + 2, newEntries, idx, length - idx - 2);
+                    this.store = newEntries;
+                }
+                return conditional ? Boolean.TRUE : old;
+            } else if (store != null) {
+                final UnlockedReadHashMap<Key<?>, Object> map = asMap(store);
+                final Object result;
+                if (conditional) {
+                    result = map.remove(key, value) ? Boolean.TRUE : null;
+                } else {
+                    result = map.remove(key);
+                }
+                if (map.isEmpty()) {
+                    this.store = null;
+                }
+                return result;
+            } else {
+                return null;
+            }
+        }
+    }
+
+    private static int indexOf(final Object[] entries, final Key<?> key) {
+        final int length = entries.length;
+        for (int i = 0; i < length; i += 2) {
+            if (entries[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean equals(final Object expect, final Object actual) {
+        return expect == null ? actual == null : expect.equals(actual);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static UnlockedReadHashMap<Key<?>, Object> asMap(final Object store) {
+        return (UnlockedReadHashMap<Key<?>, Object>) store;
     }
 
     /**
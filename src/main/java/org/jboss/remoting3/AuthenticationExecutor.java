@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The bounded executor on which an endpoint runs authentication work, kept apart from the worker pool so that a burst
+ * of connection attempts, each evaluating a possibly expensive SASL mechanism, cannot delay the message handling of
+ * established connections.  Threads are started on demand and stop again when idle; work which finds every thread busy
+ * and the queue full is rejected.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class AuthenticationExecutor implements Executor, AuthenticationExecutorMXBean {
+
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    private final ThreadPoolExecutor executor;
+    private final int queueLimit;
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    AuthenticationExecutor(final String endpointName, final int threads, final int queueLimit) {
+        this.queueLimit = queueLimit;
+        final String prefix = endpointName == null ? "Remoting (anonymous) auth-" : "Remoting \"" + endpointName + "\" auth-";
+        final BlockingQueue<Runnable> queue = queueLimit == 0 ? new SynchronousQueue<Runnable>() : new LinkedBlockingQueue<Runnable>(queueLimit);
+        executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue, new ThreadFactory() {
+            private final AtomicInteger sequence = new AtomicInteger();
+
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, prefix + sequence.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public void execute(final Runnable command) {
+        try {
+            executor.execute(command);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Stop accepting work.  Work which was already accepted is still run.
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    public int getMaximumThreadCount() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public int getActiveThreadCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getQueueLimit() {
+        return queueLimit;
+    }
+
+    public long getCompletedTaskCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    public long getRejectedTaskCount() {
+        return rejectedCount.get();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3;
+
+/**
+ * The management view of the executor on which an endpoint runs authentication work.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public interface AuthenticationExecutorMXBean {
+
+    /**
+     * Get the most threads which may run authentication work at once.
+     *
+     * @return the maximum number of threads
+     */
+    int getMaximumThreadCount();
+
+    /**
+     * Get the number of threads which are currently running authentication work.
+     *
+     * @return the number of active threads
+     */
+    int getActiveThreadCount();
+
+    /**
+     * Get the number of authentication tasks which are waiting for a thread.
+     *
+     * @return the number of queued tasks
+     */
+    int getQueueSize();
+
+    /**
+     * Get the most authentication tasks which may wait for a thread.  Tasks beyond this limit are rejected, which fails
+     * the connection which submitted them.
+     *
+     * @return the queue limit
+     */
+    int getQueueLimit();
+
+    /**
+     * Get the total number of authentication tasks which have been completed.
+     *
+     * @return the number of completed tasks
+     */
+    long getCompletedTaskCount();
+
+    /**
+     * Get the total number of authentication tasks which were rejected because the queue was full.
+     *
+     * @return the number of rejected tasks
+     */
+    long getRejectedTaskCount();
+}
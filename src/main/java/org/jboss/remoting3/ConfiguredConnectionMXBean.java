@@ -0,0 +1,67 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3;
+
+/**
+ * The management view of a connection which is configured to be established immediately and kept open.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public interface ConfiguredConnectionMXBean {
+
+    /**
+     * Get the destination URI of the connection.
+     *
+     * @return the destination URI
+     */
+    String getUri();
+
+    /**
+     * Determine whether the connection is currently established.
+     *
+     * @return {@code true} if the connection is established, {@code false} otherwise
+     */
+    boolean isConnected();
+
+    /**
+     * Get the number of consecutive attempts to reestablish the connection which have been made since it was last
+     * established.
+     *
+     * @return the number of attempts
+     */
+    int getReconnectAttempts();
+
+    /**
+     * Get the time remaining until the next attempt to reestablish the connection.
+     *
+     * @return the time in milliseconds, or -1 if no attempt is scheduled
+     */
+    long getNextReconnectDelay();
+
+    /**
+     * Get a description of the most recent failure to establish the connection.
+     *
+     * @return the failure description, or {@code null} if there was none since the connection was last established
+     */
+    String getLastFailure();
+}
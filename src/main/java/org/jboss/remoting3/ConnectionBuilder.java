@@ -24,13 +24,27 @@ package org.jboss.remoting3;
 
 import java.net.URI;
 
+import org.wildfly.common.Assert;
+
 /**
 * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
 */
 public final class ConnectionBuilder {
 
+    /**
+     * The default delay before the first attempt to reconnect, in milliseconds.
+     */
+    public static final long DEFAULT_RECONNECT_INITIAL_DELAY = 100L;
+
+    /**
+     * The default longest delay between attempts to reconnect, in milliseconds.
+     */
+    public static final long DEFAULT_RECONNECT_MAXIMUM_DELAY = 30000L;
+
     private final URI uri;
     private boolean immediate;
+    private long reconnectInitialDelay = DEFAULT_RECONNECT_INITIAL_DELAY;
+    private long reconnectMaximumDelay = DEFAULT_RECONNECT_MAXIMUM_DELAY;
 
     ConnectionBuilder(final URI uri) {
         this.uri = uri;
@@ -41,6 +55,32 @@ public final class ConnectionBuilder {
         return this;
     }
 
+    /**
+     * Set the delay before the first attempt to reestablish an immediate connection which was lost or could not be
+     * established.  Each further consecutive attempt waits twice as long as the one before, up to the maximum delay,
+     * and every delay is randomly shortened by up to half so that many clients do not retry in step.
+     *
+     * @param reconnectInitialDelay the initial delay, in milliseconds
+     * @return this builder
+     */
+    public ConnectionBuilder setReconnectInitialDelay(final long reconnectInitialDelay) {
+        Assert.checkMinimumParameter("reconnectInitialDelay", 0L, reconnectInitialDelay);
+        this.reconnectInitialDelay = reconnectInitialDelay;
+        return this;
+    }
+
+    /**
+     * Set the longest delay between attempts to reestablish an immediate connection.
+     *
+     * @param reconnectMaximumDelay the maximum delay, in milliseconds
+     * @return this builder
+     */
+    public ConnectionBuilder setReconnectMaximumDelay(final long reconnectMaximumDelay) {
+        Assert.checkMinimumParameter("reconnectMaximumDelay", 0L, reconnectMaximumDelay);
+        this.reconnectMaximumDelay = reconnectMaximumDelay;
+        return this;
+    }
+
     URI getUri() {
         return uri;
     }
@@ -48,4 +88,12 @@ public final class ConnectionBuilder {
     boolean isImmediate() {
         return immediate;
     }
+
+    long getReconnectInitialDelay() {
+        return reconnectInitialDelay;
+    }
+
+    long getReconnectMaximumDelay() {
+        return reconnectMaximumDelay;
+    }
 }
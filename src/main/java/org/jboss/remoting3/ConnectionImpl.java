@@ -23,6 +23,7 @@
 package org.jboss.remoting3;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import javax.net.ssl.SSLSession;
 
@@ -41,6 +42,29 @@ class ConnectionImpl extends AbstractHandleableCloseable<Connection> implements
     private final ConnectionHandler connectionHandler;
     private final Endpoint endpoint;
 
+    @SuppressWarnings("unused")
+    private volatile int openChannels;
+
+    private static final AtomicIntegerFieldUpdater<ConnectionImpl> openChannelsUpdater = AtomicIntegerFieldUpdater.newUpdater(ConnectionImpl.class, "openChannels");
+
+    private static final IoFuture.Notifier<Channel, ConnectionImpl> CHANNEL_COUNTER = new IoFuture.HandlingNotifier<Channel, ConnectionImpl>() {
+        public void handleCancelled(final ConnectionImpl attachment) {
+            openChannelsUpdater.decrementAndGet(attachment);
+        }
+
+        public void handleFailed(final IOException exception, final ConnectionImpl attachment) {
+            openChannelsUpdater.decrementAndGet(attachment);
+        }
+
+        public void handleDone(final Channel channel, final ConnectionImpl attachment) {
+            channel.addCloseHandler(new CloseHandler<Channel>() {
+                public void handleClose(final Channel closed, final IOException exception) {
+                    openChannelsUpdater.decrementAndGet(attachment);
+                }
+            });
+        }
+    };
+
     ConnectionImpl(final EndpointImpl endpoint, final ConnectionHandlerFactory connectionHandlerFactory, final ConnectionProviderContext connectionProviderContext) {
         super(endpoint.getExecutor(), true);
         this.endpoint = endpoint;
@@ -67,10 +91,21 @@ class ConnectionImpl extends AbstractHandleableCloseable<Connection> implements
 
     public IoFuture<Channel> openChannel(final String serviceType, final OptionMap optionMap) {
         FutureResult<Channel> result = new FutureResult<Channel>(getExecutor());
+        openChannelsUpdater.incrementAndGet(this);
+        result.getIoFuture().addNotifier(CHANNEL_COUNTER, this);
         result.addCancelHandler(connectionHandler.open(serviceType, result, optionMap));
         return result.getIoFuture();
     }
 
+    /**
+     * Get the number of channels which were opened locally on this connection and are still open or opening.
+     *
+     * @return the channel count
+     */
+    int getOpenChannelCount() {
+        return openChannels;
+    }
+
     public String getRemoteEndpointName() {
         return connectionHandler.getRemoteEndpointName();
     }
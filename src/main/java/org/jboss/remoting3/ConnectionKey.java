@@ -22,20 +22,30 @@
 
 package org.jboss.remoting3;
 
+import org.wildfly.security.auth.AuthenticationContext;
+import org.xnio.OptionMap;
+
 /**
+ * The key of a connection pool.  Authentication contexts do not define equality, so they are compared by identity;
+ * callers which run under the same captured context share connections.
+ *
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
 final class ConnectionKey {
     private final String hostName;
     private final String protocol;
     private final int port;
+    private final OptionMap connectOptions;
+    private final AuthenticationContext authenticationContext;
     private final int hashCode;
 
-    ConnectionKey(final String hostName, final String protocol, final int port) {
+    ConnectionKey(final String hostName, final String protocol, final int port, final OptionMap connectOptions, final AuthenticationContext authenticationContext) {
         this.hostName = hostName;
         this.protocol = protocol;
         this.port = port;
-        hashCode = (hostName.hashCode() * 17 + protocol.hashCode()) * 17 + port;
+        this.connectOptions = connectOptions;
+        this.authenticationContext = authenticationContext;
+        hashCode = (((hostName.hashCode() * 17 + protocol.hashCode()) * 17 + port) * 17 + connectOptions.hashCode()) * 17 + System.identityHashCode(authenticationContext);
     }
 
     public String getHostName() {
@@ -50,6 +60,14 @@ final class ConnectionKey {
         return port;
     }
 
+    public OptionMap getConnectOptions() {
+        return connectOptions;
+    }
+
+    public AuthenticationContext getAuthenticationContext() {
+        return authenticationContext;
+    }
+
     public int hashCode() {
         return hashCode;
     }
@@ -59,7 +77,8 @@ final class ConnectionKey {
     }
 
     boolean equals(ConnectionKey other) {
-        return other != null && hashCode == other.hashCode && hostName.equals(other.hostName) && protocol.equals(other.protocol);
+        return other != null && hashCode == other.hashCode && port == other.port && hostName.equals(other.hostName) && protocol.equals(other.protocol)
+            && authenticationContext == other.authenticationContext && connectOptions.equals(other.connectOptions);
     }
 
     public String toString() {
@@ -0,0 +1,180 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.jboss.logging.Logger;
+import org.wildfly.security.auth.AuthenticationContext;
+import org.xnio.IoFuture;
+import org.xnio.OptionMap;
+
+/**
+ * The shared connections to one destination, for one set of connection options and one authentication context.
+ * Connections are opened on demand, up to the configured pool size, and each caller is handed the least busy one, so
+ * channels are spread over the pooled connections.
+ * <p>
+ * A pool which is not configured as immediate removes itself from its endpoint once all of its connections have
+ * closed, so that pools keyed by short-lived authentication contexts do not accumulate.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class ConnectionPool {
+
+    private static final Logger log = Logger.getLogger("org.jboss.remoting.endpoint");
+
+    /**
+     * The heartbeat interval for pooled connections which do not specify one, so that a peer which has gone away
+     * without closing the socket is noticed and its connection replaced.
+     */
+    static final int POOLED_HEARTBEAT_INTERVAL = 60 * 1000;
+
+    private final EndpointImpl endpoint;
+    private final ConnectionKey connectionKey;
+    private final boolean immediate;
+    private final FutureConnection[] slots;
+    private final ObjectName[] objectNames;
+    // protected by {@code this}
+    private boolean evicted;
+
+    ConnectionPool(final EndpointImpl endpoint, final ConnectionKey connectionKey, final URI uri, final OptionMap connectOptions, final AuthenticationContext authenticationContext, final boolean immediate, final ReconnectPolicy reconnectPolicy) {
+        this.endpoint = endpoint;
+        this.connectionKey = connectionKey;
+        this.immediate = immediate;
+        final int size = Math.max(1, connectOptions.get(RemotingOptions.CONNECTION_POOL_SIZE, RemotingOptions.DEFAULT_CONNECTION_POOL_SIZE));
+        final long idleTimeout = TimeUnit.MILLISECONDS.toNanos(Math.max(0, connectOptions.get(RemotingOptions.CONNECTION_POOL_IDLE_TIMEOUT, RemotingOptions.DEFAULT_CONNECTION_POOL_IDLE_TIMEOUT)));
+        final OptionMap pooledOptions;
+        if (connectOptions.contains(RemotingOptions.HEARTBEAT_INTERVAL)) {
+            pooledOptions = connectOptions;
+        } else {
+            pooledOptions = OptionMap.builder().addAll(connectOptions).set(RemotingOptions.HEARTBEAT_INTERVAL, POOLED_HEARTBEAT_INTERVAL).getMap();
+        }
+        final FutureConnection[] slots = new FutureConnection[size];
+        for (int i = 0; i < size; i ++) {
+            slots[i] = new FutureConnection(endpoint, this, uri, pooledOptions, authenticationContext, immediate, reconnectPolicy, idleTimeout);
+        }
+        this.slots = slots;
+        objectNames = immediate ? registerMBeans(endpoint.getName(), uri, slots) : null;
+    }
+
+    private static ObjectName[] registerMBeans(final String endpointName, final URI uri, final FutureConnection[] slots) {
+        final ObjectName[] objectNames = new ObjectName[slots.length];
+        final MBeanServer server;
+        try {
+            server = ManagementFactory.getPlatformMBeanServer();
+        } catch (Throwable t) {
+            log.warnf(t, "No platform MBean server for the configured connection to %s", uri);
+            return objectNames;
+        }
+        for (int i = 0; i < slots.length; i ++) {
+            final String name = endpointName + "-" + uri + (slots.length == 1 ? "" : "-" + i);
+            try {
+                final ObjectName objectName = new ObjectName("jboss.remoting.connection", "name", ObjectName.quote(name));
+                server.registerMBean(slots[i], objectName);
+                // only unregister what we registered, never a bean of the same name belonging to someone else
+                objectNames[i] = objectName;
+            } catch (Exception e) {
+                log.warnf(e, "Failed to register the management interface of configured connection \"%s\"", name);
+            }
+        }
+        return objectNames;
+    }
+
+    /**
+     * Open every connection of the pool now, rather than on demand.
+     */
+    void init() {
+        for (FutureConnection slot : slots) {
+            slot.init();
+        }
+    }
+
+    /**
+     * Get the least busy connection of the pool, opening a new one if every established connection is busy and the
+     * pool is not yet full.
+     *
+     * @return the future connection, or {@code null} if this pool has been evicted and must not be used
+     */
+    synchronized IoFuture<Connection> get() {
+        if (evicted) {
+            return null;
+        }
+        final FutureConnection[] slots = this.slots;
+        FutureConnection best = slots[0];
+        int bestLoad = best.getLoad();
+        for (int i = 1; i < slots.length && bestLoad > 0; i ++) {
+            final FutureConnection slot = slots[i];
+            final int load = slot.getLoad();
+            if (load < bestLoad) {
+                best = slot;
+                bestLoad = load;
+            }
+        }
+        return best.get();
+    }
+
+    /**
+     * Note that a slot has been emptied, and evict this pool from the endpoint if every slot now is.  Immediate pools
+     * are configured with the endpoint and are never evicted.
+     */
+    void slotEmptied() {
+        if (immediate) {
+            return;
+        }
+        synchronized (this) {
+            if (evicted) {
+                return;
+            }
+            for (FutureConnection slot : slots) {
+                if (! slot.isEmpty()) {
+                    return;
+                }
+            }
+            evicted = true;
+        }
+        endpoint.removeConnectionPool(connectionKey, this);
+    }
+
+    /**
+     * Stop replacing connections, because the endpoint is closing.
+     */
+    void shutdown() {
+        for (FutureConnection slot : slots) {
+            slot.shutdown();
+        }
+        if (objectNames != null) {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for (ObjectName objectName : objectNames) {
+                if (objectName != null) try {
+                    server.unregisterMBean(objectName);
+                } catch (Throwable ignored) {
+                }
+            }
+        }
+    }
+}
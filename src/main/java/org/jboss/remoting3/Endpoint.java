@@ -66,7 +66,8 @@ public interface Endpoint extends HandleableCloseable<Endpoint>, Attachable {
     Registration registerService(String serviceType, OpenListener openListener, OptionMap optionMap) throws ServiceRegistrationException;
 
     /**
-     * Get a possibly pre-existing connection to the destination.
+     * Get a possibly pre-existing connection to the destination.  The connection is shared in the same way as those
+     * returned by {@link #getConnection(URI, OptionMap)} with no options.
      *
      * @param destination the destination URI
      * @return the future (or existing) connection
@@ -74,6 +75,34 @@ public interface Endpoint extends HandleableCloseable<Endpoint>, Attachable {
      */
     IoFuture<Connection> getConnection(URI destination) throws IOException;
 
+    /**
+     * Get a possibly pre-existing connection to the destination.  Connections are pooled by destination, connection
+     * options, and the caller's current authentication context, so a connection is only shared among callers which
+     * would otherwise have opened an equivalent connection.  Each pool holds up to
+     * {@link RemotingOptions#CONNECTION_POOL_SIZE} connections, and each call returns the least busy of them.
+     * <p/>
+     * Each call returns a separate lease on the pooled connection.  Closing the lease releases it without closing the
+     * shared connection or the channels opened through it, so callers should close the channels they open and then the
+     * lease.  Cancelling the returned future likewise only abandons this caller's wait.  The lease closes by itself if
+     * the shared connection closes.
+     * <p/>
+     * The default implementation, for endpoints which do not pool connections by options, uses
+     * {@link #getConnection(URI)} if no options are given, and otherwise throws {@code UnsupportedOperationException}
+     * rather than handing out a connection with different ownership.
+     *
+     * @param destination the destination URI
+     * @param connectOptions options to configure the pooled connections
+     * @return the future (or existing) connection
+     * @throws IOException if an error occurs while starting a connect attempt
+     * @throws UnsupportedOperationException if options are given and this endpoint does not pool connections by options
+     */
+    default IoFuture<Connection> getConnection(URI destination, OptionMap connectOptions) throws IOException {
+        if (connectOptions.size() == 0) {
+            return getConnection(destination);
+        }
+        throw new UnsupportedOperationException("Connections are not pooled by options");
+    }
+
     /**
      * Open a connection with a peer.  Returns a future connection which may be used to cancel the connection attempt.
      * This method does not block; use the return value to wait for a result if you wish to block.
@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.jboss.remoting3.security.RemotingPermission;
+import org.wildfly.common.Assert;
 import org.xnio.OptionMap;
 import org.xnio.XnioWorker;
 
@@ -37,11 +38,24 @@ import org.xnio.XnioWorker;
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
 public final class EndpointBuilder {
+
+    /**
+     * The default number of authentication threads, which is the number of available processors.
+     */
+    public static final int DEFAULT_AUTHENTICATION_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The default authentication queue limit.
+     */
+    public static final int DEFAULT_AUTHENTICATION_QUEUE_LIMIT = 1024;
+
     private String endpointName;
     private XnioWorker xnioWorker;
     private OptionMap xnioWorkerOptions;
     private List<ConnectionBuilder> connectionBuilders;
     private List<ConnectionProviderFactoryBuilder> connectionProviderFactoryBuilders;
+    private int authenticationThreads = DEFAULT_AUTHENTICATION_THREADS;
+    private int authenticationQueueLimit = DEFAULT_AUTHENTICATION_QUEUE_LIMIT;
 
     EndpointBuilder() {
     }
@@ -61,12 +75,39 @@ public final class EndpointBuilder {
         return this;
     }
 
+    /**
+     * Set the most threads which may run authentication work, such as the evaluation of SASL challenges and responses,
+     * at once.  Authentication runs apart from the worker pool, so that a burst of connection attempts does not delay
+     * the message handling of established connections.
+     *
+     * @param authenticationThreads the maximum number of authentication threads
+     * @return this builder
+     */
+    public EndpointBuilder setAuthenticationThreads(final int authenticationThreads) {
+        Assert.checkMinimumParameter("authenticationThreads", 1, authenticationThreads);
+        this.authenticationThreads = authenticationThreads;
+        return this;
+    }
+
+    /**
+     * Set the most authentication tasks which may wait for an authentication thread.  A connection whose authentication
+     * work finds the queue full is failed.
+     *
+     * @param authenticationQueueLimit the authentication queue limit
+     * @return this builder
+     */
+    public EndpointBuilder setAuthenticationQueueLimit(final int authenticationQueueLimit) {
+        Assert.checkMinimumParameter("authenticationQueueLimit", 0, authenticationQueueLimit);
+        this.authenticationQueueLimit = authenticationQueueLimit;
+        return this;
+    }
+
     public ConnectionBuilder addConnection(final URI uri) {
         final ConnectionBuilder builder = new ConnectionBuilder(uri);
         if (connectionBuilders == null) {
             connectionBuilders = new ArrayList<>();
-            connectionBuilders.add(builder);
         }
+        connectionBuilders.add(builder);
         return builder;
     }
 
@@ -91,6 +132,14 @@ public final class EndpointBuilder {
         return xnioWorkerOptions;
     }
 
+    int getAuthenticationThreads() {
+        return authenticationThreads;
+    }
+
+    int getAuthenticationQueueLimit() {
+        return authenticationQueueLimit;
+    }
+
     List<ConnectionBuilder> getConnectionBuilders() {
         return connectionBuilders;
     }
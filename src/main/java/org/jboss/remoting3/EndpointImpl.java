@@ -23,6 +23,7 @@
 package org.jboss.remoting3;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.URI;
 import java.util.Collections;
 import java.util.IdentityHashMap;
@@ -36,6 +37,8 @@ import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.security.sasl.SaslClientFactory;
 
 import org.jboss.logging.Logger;
@@ -88,7 +91,7 @@ final class EndpointImpl extends AbstractHandleableCloseable<Endpoint> implement
 
     private final ConcurrentMap<String, ConnectionProvider> connectionProviders = new UnlockedReadHashMap<String, ConnectionProvider>();
     private final ConcurrentMap<String, RegisteredServiceImpl> registeredServices = new UnlockedReadHashMap<String, RegisteredServiceImpl>();
-    private final ConcurrentMap<ConnectionKey, FutureConnection> configuredConnections = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ConnectionKey, ConnectionPool> connectionPools = new ConcurrentHashMap<>();
 
     private final Xnio xnio;
     private final XnioWorker worker;
@@ -114,13 +117,28 @@ final class EndpointImpl extends AbstractHandleableCloseable<Endpoint> implement
     };
     private final EndpointImpl.ConnectionCloseHandler connectionCloseHandler = new EndpointImpl.ConnectionCloseHandler();
     private final boolean ourWorker;
+    private final AuthenticationExecutor authenticationExecutor;
+    private final MBeanServer server;
+    private final ObjectName objectName;
 
-    private EndpointImpl(final XnioWorker xnioWorker, final boolean ourWorker, final String name) throws NotOpenException {
+    private EndpointImpl(final XnioWorker xnioWorker, final boolean ourWorker, final String name, final int authenticationThreads, final int authenticationQueueLimit) throws NotOpenException {
         super(xnioWorker, true);
         worker = xnioWorker;
         this.ourWorker = ourWorker;
         this.xnio = xnioWorker.getXnio();
         this.name = name;
+        authenticationExecutor = new AuthenticationExecutor(name, authenticationThreads, authenticationQueueLimit);
+        MBeanServer server = null;
+        ObjectName objectName = null;
+        try {
+            server = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName("jboss.remoting.authentication", "name", ObjectName.quote(name + "-" + hashCode()));
+            server.registerMBean(authenticationExecutor, objectName);
+        } catch (Exception e) {
+            // ignore
+        }
+        this.server = server;
+        this.objectName = objectName;
         // initialize CPC
         connectionProviderContext = new ConnectionProviderContextImpl();
         // add default connection providers
@@ -130,13 +148,15 @@ final class EndpointImpl extends AbstractHandleableCloseable<Endpoint> implement
     }
 
     static EndpointImpl construct(final XnioWorker xnioWorker, final boolean ourWorker, final String name) throws IOException {
-        return new EndpointImpl(xnioWorker, ourWorker, name);
+        return new EndpointImpl(xnioWorker, ourWorker, name, EndpointBuilder.DEFAULT_AUTHENTICATION_THREADS, EndpointBuilder.DEFAULT_AUTHENTICATION_QUEUE_LIMIT);
     }
 
     static EndpointImpl construct(final EndpointBuilder endpointBuilder) throws IOException {
         final String endpointName = endpointBuilder.getEndpointName();
         final List<ConnectionBuilder> connectionBuilders = endpointBuilder.getConnectionBuilders();
         final List<ConnectionProviderFactoryBuilder> factoryBuilders = endpointBuilder.getConnectionProviderFactoryBuilders();
+        final int authenticationThreads = endpointBuilder.getAuthenticationThreads();
+        final int authenticationQueueLimit = endpointBuilder.getAuthenticationQueueLimit();
         final EndpointImpl endpoint;
         XnioWorker xnioWorker = endpointBuilder.getXnioWorker();
         if (xnioWorker == null) {
@@ -156,9 +176,9 @@ final class EndpointImpl extends AbstractHandleableCloseable<Endpoint> implement
                     }
                 }
             });
-            endpointRef.set(endpoint = new EndpointImpl(xnioWorker, true, endpointName));
+            endpointRef.set(endpoint = new EndpointImpl(xnioWorker, true, endpointName, authenticationThreads, authenticationQueueLimit));
         } else {
-            endpoint = new EndpointImpl(xnioWorker, false, endpointName);
+            endpoint = new EndpointImpl(xnioWorker, false, endpointName, authenticationThreads, authenticationQueueLimit);
         }
         boolean ok = false;
         try {
@@ -194,7 +214,11 @@ final class EndpointImpl extends AbstractHandleableCloseable<Endpoint> implement
                 }
             }
             if (connectionBuilders != null) for (ConnectionBuilder connectionBuilder : connectionBuilders) {
-                endpoint.connect(connectionBuilder.getUri());
+                final ReconnectPolicy reconnectPolicy = new ReconnectPolicy(connectionBuilder.getReconnectInitialDelay(), connectionBuilder.getReconnectMaximumDelay());
+                final ConnectionPool pool = endpoint.getConnectionPool(connectionBuilder.getUri(), OptionMap.EMPTY, AuthenticationContext.captureCurrent(), connectionBuilder.isImmediate(), reconnectPolicy);
+                if (connectionBuilder.isImmediate()) {
+                    pool.init();
+                }
             }
             ok = true;
             return endpoint;
@@ -239,6 +263,13 @@ final class EndpointImpl extends AbstractHandleableCloseable<Endpoint> implement
     private void finishPhase1() {
         // all our original resources were closed; now move on to stage two (thread pools)
         log.tracef("Finished phase 1 shutdown of %s", this);
+        authenticationExecutor.shutdown();
+        if (server != null && objectName != null) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (Throwable ignored) {
+            }
+        }
         if (ourWorker) {
             worker.shutdown();
         } else {
@@ -267,6 +298,10 @@ final class EndpointImpl extends AbstractHandleableCloseable<Endpoint> implement
             do {
                 res = resourceCount;
             } while (! resourceCountUpdater.compareAndSet(this, res, res | CLOSED_FLAG));
+            for (ConnectionPool pool : connectionPools.values()) {
+                pool.shutdown();
+            }
+            connectionPools.clear();
             if (res == 0) {
                 finishPhase1();
             } else {
@@ -312,7 +347,47 @@ final class EndpointImpl extends AbstractHandleableCloseable<Endpoint> implement
     }
 
     public IoFuture<Connection> getConnection(final URI destination) throws IOException {
+        return getConnection(destination, OptionMap.EMPTY);
+    }
+
+    public IoFuture<Connection> getConnection(final URI destination, final OptionMap connectOptions) throws IOException {
         Assert.checkNotNullParam("destination", destination);
+        Assert.checkNotNullParam("connectOptions", connectOptions);
+        final AuthenticationContext authenticationContext = AuthenticationContext.captureCurrent();
+        IoFuture<Connection> future;
+        do {
+            // a pool which was evicted just after we looked it up is replaced by a new one
+            future = getConnectionPool(destination, connectOptions, authenticationContext, false, ReconnectPolicy.DEFAULT).get();
+        } while (future == null);
+        // each caller gets its own lease, so that closing or cancelling it does not affect the other callers
+        final FutureResult<Connection> futureResult = new FutureResult<Connection>(getExecutor());
+        futureResult.addCancelHandler(new Cancellable() {
+            public Cancellable cancel() {
+                futureResult.setCancelled();
+                return this;
+            }
+        });
+        future.addNotifier(new HandlingNotifier<Connection, FutureResult<Connection>>() {
+            public void handleCancelled(final FutureResult<Connection> attachment) {
+                attachment.setCancelled();
+            }
+
+            public void handleFailed(final IOException exception, final FutureResult<Connection> attachment) {
+                attachment.setException(exception);
+            }
+
+            public void handleDone(final Connection connection, final FutureResult<Connection> attachment) {
+                final PooledConnection lease = new PooledConnection(EndpointImpl.this, connection);
+                if (! attachment.setResult(lease)) {
+                    // the caller cancelled in the meantime
+                    lease.closeAsync();
+                }
+            }
+        }, futureResult);
+        return futureResult.getIoFuture();
+    }
+
+    private ConnectionPool getConnectionPool(final URI destination, final OptionMap connectOptions, final AuthenticationContext authenticationContext, final boolean immediate, final ReconnectPolicy reconnectPolicy) {
         final String scheme = destination.getScheme();
         if (scheme == null) {
             throw new IllegalArgumentException("No scheme given in URI '" + destination + "'");
@@ -322,18 +397,23 @@ final class EndpointImpl extends AbstractHandleableCloseable<Endpoint> implement
             throw new IllegalArgumentException("No host given in URI '" + destination + "'");
         }
         final int port = destination.getPort();
-        final ConnectionKey connectionKey = new ConnectionKey(host, scheme, port);
+        final ConnectionKey connectionKey = new ConnectionKey(host, scheme, port, connectOptions, authenticationContext);
 
-        FutureConnection futureConnection = configuredConnections.get(connectionKey);
-        if (futureConnection != null) {
-            return futureConnection.get();
+        ConnectionPool pool = connectionPools.get(connectionKey);
+        if (pool != null) {
+            return pool;
         }
-        FutureConnection appearing;
-        futureConnection = new FutureConnection(this, destination, false);
-        if ((appearing = configuredConnections.putIfAbsent(connectionKey, futureConnection)) != null) {
-            return appearing.get();
+        ConnectionPool appearing;
+        pool = new ConnectionPool(this, connectionKey, destination, connectOptions, authenticationContext, immediate, reconnectPolicy);
+        if ((appearing = connectionPools.putIfAbsent(connectionKey, pool)) != null) {
+            pool.shutdown();
+            return appearing;
         }
-        return futureConnection.get();
+        return pool;
+    }
+
+    void removeConnectionPool(final ConnectionKey connectionKey, final ConnectionPool pool) {
+        connectionPools.remove(connectionKey, pool);
     }
 
     public IoFuture<Connection> connect(final URI destination, final OptionMap connectOptions) throws IOException {
@@ -593,6 +673,10 @@ final class EndpointImpl extends AbstractHandleableCloseable<Endpoint> implement
             return worker;
         }
 
+        public Executor getAuthenticationExecutor() {
+            return authenticationExecutor;
+        }
+
         public XnioWorker getXnioWorker() {
             return worker;
         }
@@ -27,55 +27,75 @@ import java.net.URI;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.wildfly.security.auth.AuthenticationContext;
 import org.xnio.FailedIoFuture;
 import org.xnio.FutureResult;
 import org.xnio.IoFuture;
 import org.xnio.IoUtils;
+import org.xnio.OptionMap;
 
 /**
+ * One slot of a {@link ConnectionPool}, which holds at most one (possibly still pending) connection at a time.
+ * <p>
+ * A connection which fails or closes is replaced in the background if the slot is configured as immediate, or if the
+ * connection was in use within the idle timeout; otherwise the slot is simply emptied and the next caller reconnects.
+ * An immediate slot keeps retrying according to its {@link ReconnectPolicy}.  A connection with no open channels which
+ * has not been handed out for the idle timeout is closed.
+ *
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
-class FutureConnection {
+class FutureConnection implements ConfiguredConnectionMXBean {
 
     private final EndpointImpl endpoint;
+    private final ConnectionPool pool;
     private final URI uri;
+    private final OptionMap connectOptions;
+    private final AuthenticationContext authenticationContext;
     private final AtomicReference<FutureResult<Connection>> futureConnectionRef = new AtomicReference<FutureResult<Connection>>();
     private final boolean immediate;
+    private final ReconnectPolicy reconnectPolicy;
+    /**
+     * The idle timeout in nanoseconds, or zero if idle connections are kept.
+     */
+    private final long idleTimeout;
 
-    static final IoFuture.Notifier<Connection, FutureConnection> HANDLER = new IoFuture.HandlingNotifier<Connection, FutureConnection>() {
-        public void handleCancelled(final FutureConnection attachment) {
-            attachment.futureConnectionRef.set(null);
-            if (attachment.immediate) {
-                attachment.reconnectAfterDelay();
-            }
-        }
-
-        public void handleFailed(final IOException exception, final FutureConnection attachment) {
-            attachment.futureConnectionRef.set(null);
-            if (attachment.immediate) {
-                attachment.reconnectAfterDelay();
-            }
-        }
-
-        public void handleDone(final Connection connection, final FutureConnection attachment) {
-            connection.addCloseHandler(new CloseHandler<Connection>() {
-                public void handleClose(final Connection closed, final IOException exception) {
-                    if (attachment.immediate) {
-                        attachment.connect(attachment.futureConnectionRef.get());
-                    }
-                }
-            });
-        }
-    };
+    private volatile long lastUsed = System.nanoTime();
+    private volatile boolean shutdown;
+    private volatile boolean connected;
+    // reconnect state; only updated by the single pending connect attempt of an immediate slot
+    private volatile int reconnectAttempts;
+    private volatile long nextReconnectTime;
+    private volatile boolean reconnectScheduled;
+    private volatile String lastFailure;
 
-    FutureConnection(final EndpointImpl endpoint, final URI uri, final boolean immediate) {
+    FutureConnection(final EndpointImpl endpoint, final ConnectionPool pool, final URI uri, final OptionMap connectOptions, final AuthenticationContext authenticationContext, final boolean immediate, final ReconnectPolicy reconnectPolicy, final long idleTimeout) {
         this.endpoint = endpoint;
+        this.pool = pool;
         this.uri = uri;
+        this.connectOptions = connectOptions;
+        this.authenticationContext = authenticationContext;
         this.immediate = immediate;
+        this.reconnectPolicy = reconnectPolicy;
+        this.idleTimeout = immediate ? 0L : idleTimeout;
     }
 
     void reconnectAfterDelay() {
-        endpoint.getXnioWorker().getIoThread().executeAfter(FutureConnection.this::init, 30L, TimeUnit.SECONDS);
+        if (shutdown) {
+            return;
+        }
+        final int attempt = reconnectAttempts;
+        final long delay = reconnectPolicy.getDelay(attempt);
+        reconnectAttempts = attempt + 1;
+        nextReconnectTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        reconnectScheduled = true;
+        endpoint.getXnioWorker().getIoThread().executeAfter(FutureConnection.this::reconnect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void reconnect() {
+        reconnectScheduled = false;
+        if (! shutdown) {
+            init();
+        }
     }
 
     IoFuture<Connection> init() {
@@ -88,34 +108,170 @@ class FutureConnection {
         realFuture.addNotifier(IoUtils.resultNotifier(), futureResult);
     }
 
-    IoFuture<Connection> connect(FutureResult<Connection> orig) {
-        AtomicReference<FutureResult<Connection>> futureConnectionRef = this.futureConnectionRef;
-        FutureResult<Connection> oldVal;
-        oldVal = futureConnectionRef.get();
-        if (oldVal != orig) {
-            return oldVal.getIoFuture();
-        }
+    /**
+     * Start a new connection in place of the given one.
+     *
+     * @param orig the connection being replaced, or {@code null} to fill an empty slot
+     * @return the slot's current future connection, or {@code null} if the given connection was already replaced or
+     *     evicted by someone else while the slot was empty
+     */
+    IoFuture<Connection> connect(final FutureResult<Connection> orig) {
+        final AtomicReference<FutureResult<Connection>> futureConnectionRef = this.futureConnectionRef;
         final FutureResult<Connection> futureResult = new FutureResult<>();
-        while (! futureConnectionRef.compareAndSet(null, futureResult)) {
+        FutureResult<Connection> oldVal;
+        while (! futureConnectionRef.compareAndSet(orig, futureResult)) {
             oldVal = futureConnectionRef.get();
             if (oldVal != orig) {
                 // discard our new one
-                return oldVal.getIoFuture();
+                return oldVal == null ? null : oldVal.getIoFuture();
             }
         }
         IoFuture<Connection> realFuture;
         try {
-            realFuture = endpoint.connect(uri);
+            realFuture = endpoint.connect(uri, connectOptions, authenticationContext);
         } catch (IOException e) {
             realFuture = new FailedIoFuture<>(e);
         }
         splice(futureResult, realFuture);
         final IoFuture<Connection> ioFuture = futureResult.getIoFuture();
-        ioFuture.addNotifier(HANDLER, this);
+        ioFuture.addNotifier(new IoFuture.HandlingNotifier<Connection, FutureConnection>() {
+            public void handleCancelled(final FutureConnection attachment) {
+                attachment.connectFailed(futureResult);
+            }
+
+            public void handleFailed(final IOException exception, final FutureConnection attachment) {
+                attachment.lastFailure = exception.toString();
+                attachment.connectFailed(futureResult);
+            }
+
+            public void handleDone(final Connection connection, final FutureConnection attachment) {
+                attachment.connected = true;
+                attachment.reconnectAttempts = 0;
+                attachment.lastFailure = null;
+                connection.addCloseHandler(new CloseHandler<Connection>() {
+                    public void handleClose(final Connection closed, final IOException exception) {
+                        attachment.connectionClosed(futureResult);
+                    }
+                });
+                if (attachment.idleTimeout != 0L) {
+                    attachment.scheduleIdleCheck(futureResult, (ConnectionImpl) connection, attachment.idleTimeout);
+                }
+            }
+        }, this);
         return ioFuture;
     }
 
+    private void connectFailed(final FutureResult<Connection> futureResult) {
+        if (futureConnectionRef.compareAndSet(futureResult, null)) {
+            if (immediate) {
+                reconnectAfterDelay();
+            } else {
+                pool.slotEmptied();
+            }
+        }
+    }
+
+    private void connectionClosed(final FutureResult<Connection> futureResult) {
+        connected = false;
+        if (shutdown) {
+            futureConnectionRef.compareAndSet(futureResult, null);
+        } else if (immediate) {
+            // wait a little, so that the clients of a restarting server do not all come back at once
+            if (futureConnectionRef.compareAndSet(futureResult, null)) {
+                reconnectAfterDelay();
+            }
+        } else if (System.nanoTime() - lastUsed < idleTimeout) {
+            connect(futureResult);
+        } else if (futureConnectionRef.compareAndSet(futureResult, null)) {
+            pool.slotEmptied();
+        }
+    }
+
+    private void scheduleIdleCheck(final FutureResult<Connection> futureResult, final ConnectionImpl connection, final long delay) {
+        endpoint.getXnioWorker().getIoThread().executeAfter(new Runnable() {
+            public void run() {
+                checkIdle(futureResult, connection);
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void checkIdle(final FutureResult<Connection> futureResult, final ConnectionImpl connection) {
+        if (shutdown || futureConnectionRef.get() != futureResult) {
+            // replaced or evicted
+            return;
+        }
+        final long idle = System.nanoTime() - lastUsed;
+        if (connection.getOpenChannelCount() != 0) {
+            scheduleIdleCheck(futureResult, connection, idleTimeout);
+        } else if (idle < idleTimeout) {
+            scheduleIdleCheck(futureResult, connection, idleTimeout - idle);
+        } else if (futureConnectionRef.compareAndSet(futureResult, null)) {
+            connection.closeAsync();
+            pool.slotEmptied();
+        }
+    }
+
+    /**
+     * Get the load of this slot, in order to choose among pooled connections.  An established connection counts two
+     * for each open channel, a pending connection counts zero, and an empty slot counts one; so idle connections are
+     * used first, and a new connection is only opened once every established connection is carrying channels.
+     *
+     * @return the load
+     */
+    int getLoad() {
+        final FutureResult<Connection> futureResult = futureConnectionRef.get();
+        if (futureResult == null) {
+            return 1;
+        }
+        final IoFuture<Connection> ioFuture = futureResult.getIoFuture();
+        switch (ioFuture.getStatus()) {
+            case WAITING: {
+                return 0;
+            }
+            case DONE: {
+                try {
+                    return ((ConnectionImpl) ioFuture.get()).getOpenChannelCount() << 1;
+                } catch (IOException e) {
+                    return 1;
+                }
+            }
+            default: {
+                return 1;
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return futureConnectionRef.get() == null;
+    }
+
+    void shutdown() {
+        shutdown = true;
+    }
+
+    public String getUri() {
+        return uri.toString();
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public int getReconnectAttempts() {
+        return reconnectAttempts;
+    }
+
+    public long getNextReconnectDelay() {
+        return reconnectScheduled ? Math.max(0L, TimeUnit.NANOSECONDS.toMillis(nextReconnectTime - System.nanoTime())) : -1L;
+    }
+
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
     public IoFuture<Connection> get() {
-        return null;
+        lastUsed = System.nanoTime();
+        final FutureResult<Connection> futureResult = futureConnectionRef.get();
+        return futureResult == null ? connect(null) : futureResult.getIoFuture();
     }
 }
@@ -23,85 +23,85 @@
 package org.jboss.remoting3;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InterruptedIOException;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.Executor;
 import org.jboss.remoting3.spi.AbstractHandleableCloseable;
 import org.jboss.remoting3.spi.ConnectionHandlerContext;
-import org.xnio.IoUtils;
 import org.xnio.Option;
-import org.xnio.streams.Pipe;
 
 /**
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
 final class LocalChannel extends AbstractHandleableCloseable<Channel> implements Channel {
+    /**
+     * The size of the chunks which message data is handed over in.
+     */
+    static final int CHUNK_SIZE = 8192;
+    /**
+     * The most read chunks which a channel keeps for reuse.
+     */
+    static final int CHUNK_POOL_SIZE = 4;
+
     private final Attachments attachments = new Attachments();
     private final LocalChannel otherSide;
     private final ConnectionHandlerContext connectionHandlerContext;
     private final Queue<In> messageQueue;
     private final Object lock = new Object();
-    private final int queueLength;
-    private final int bufferSize;
+    private final int outboundWindow;
+    private final int maxOutboundMessages;
+    private final long maxOutboundMessageSize;
+    final ArrayDeque<ByteBuffer> chunkPool = new ArrayDeque<ByteBuffer>(CHUNK_POOL_SIZE);
 
     private Receiver messageHandler;
 
     private boolean closed;
+    // messages from the other side which are not yet finished, counted against its maxOutboundMessages
+    private int inboundCount;
 
-    LocalChannel(final Executor executor, final LocalChannel otherSide, final ConnectionHandlerContext connectionHandlerContext) {
+    private LocalChannel(final Executor executor, final LocalChannel otherSide, final ConnectionHandlerContext connectionHandlerContext, final int outboundWindow, final int maxOutboundMessages, final long maxOutboundMessageSize) {
         super(executor, true);
         this.otherSide = otherSide;
         this.connectionHandlerContext = connectionHandlerContext;
-        queueLength = 8;
-        messageQueue = new ArrayDeque<In>(queueLength);
-        bufferSize = 8192;
+        this.outboundWindow = Math.max(1, outboundWindow);
+        this.maxOutboundMessages = maxOutboundMessages;
+        this.maxOutboundMessageSize = maxOutboundMessageSize;
+        messageQueue = new ArrayDeque<In>();
     }
 
-    LocalChannel(final Executor executor, final ConnectionHandlerContext connectionHandlerContext) {
+    LocalChannel(final Executor executor, final ConnectionHandlerContext connectionHandlerContext, final int outboundWindow, final int inboundWindow, final int maxOutboundMessages, final int maxInboundMessages, final long maxOutboundMessageSize, final long maxInboundMessageSize) {
         super(executor, true);
         this.connectionHandlerContext = connectionHandlerContext;
-        otherSide = new LocalChannel(executor, this, connectionHandlerContext);
-        queueLength = 8;
-        messageQueue = new ArrayDeque<In>(queueLength);
-        bufferSize = 8192;
+        this.outboundWindow = Math.max(1, outboundWindow);
+        this.maxOutboundMessages = maxOutboundMessages;
+        this.maxOutboundMessageSize = maxOutboundMessageSize;
+        messageQueue = new ArrayDeque<In>();
+        otherSide = new LocalChannel(executor, this, connectionHandlerContext, inboundWindow, maxInboundMessages, maxInboundMessageSize);
     }
 
     public MessageOutputStream writeMessage() throws IOException {
         final LocalChannel otherSide = this.otherSide;
         final Queue<In> otherSideQueue = otherSide.messageQueue;
         synchronized (otherSide.lock) {
-            for (;;) {
-                if (otherSide.closed) {
-                    throw new NotOpenException("Writes have been shut down");
-                }
-                final int size = otherSideQueue.size();
-                if (size == queueLength) {
-                    try {
-                        otherSide.lock.wait();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new InterruptedIOException();
-                    }
-                } else {
-                    final Pipe pipe = new Pipe(bufferSize);
-                    In in = new In(pipe.getIn());
-                    if (size == 0) {
-                        final Receiver handler = otherSide.messageHandler;
-                        if (handler != null) {
-                            otherSide.messageHandler = null;
-                            otherSide.lock.notify();
-                            executeMessageTask(handler, in);
-                            return new Out(pipe.getOut(), in);
-                        }
-                    }
-                    otherSideQueue.add(in);
-                    otherSide.lock.notify();
-                    return new Out(pipe.getOut(), in);
-                }
+            if (otherSide.closed) {
+                throw new NotOpenException("Writes have been shut down");
+            }
+            if (otherSide.inboundCount >= maxOutboundMessages) {
+                throw new ChannelBusyException("Too many open outbound writes");
+            }
+            otherSide.inboundCount++;
+            final In in = new In(otherSide, outboundWindow);
+            final Receiver handler = otherSide.messageHandler;
+            if (handler != null && otherSideQueue.isEmpty()) {
+                otherSide.messageHandler = null;
+                otherSide.executeMessageTask(handler, in);
+            } else {
+                otherSideQueue.add(in);
             }
+            return new Out(in, maxOutboundMessageSize);
         }
     }
 
@@ -140,12 +140,36 @@ final class LocalChannel extends AbstractHandleableCloseable<Channel> implements
         }
     }
 
+    private static final Set<Option<?>> SUPPORTED_OPTIONS = Option.setBuilder()
+            .add(RemotingOptions.MAX_INBOUND_MESSAGES)
+            .add(RemotingOptions.MAX_OUTBOUND_MESSAGES)
+            .add(RemotingOptions.TRANSMIT_WINDOW_SIZE)
+            .add(RemotingOptions.RECEIVE_WINDOW_SIZE)
+            .add(RemotingOptions.MAX_INBOUND_MESSAGE_SIZE)
+            .add(RemotingOptions.MAX_OUTBOUND_MESSAGE_SIZE)
+            .create();
+
     public boolean supportsOption(final Option<?> option) {
-        return false;
+        return SUPPORTED_OPTIONS.contains(option);
     }
 
     public <T> T getOption(final Option<T> option) {
-        return null;
+        // the inbound limits of this side are the outbound limits of the other side
+        if (option == RemotingOptions.MAX_INBOUND_MESSAGES) {
+            return option.cast(otherSide.maxOutboundMessages);
+        } else if (option == RemotingOptions.MAX_OUTBOUND_MESSAGES) {
+            return option.cast(maxOutboundMessages);
+        } else if (option == RemotingOptions.RECEIVE_WINDOW_SIZE) {
+            return option.cast(otherSide.outboundWindow);
+        } else if (option == RemotingOptions.TRANSMIT_WINDOW_SIZE) {
+            return option.cast(outboundWindow);
+        } else if (option == RemotingOptions.MAX_INBOUND_MESSAGE_SIZE) {
+            return option.cast(otherSide.maxOutboundMessageSize);
+        } else if (option == RemotingOptions.MAX_OUTBOUND_MESSAGE_SIZE) {
+            return option.cast(maxOutboundMessageSize);
+        } else {
+            return null;
+        }
     }
 
     public <T> T setOption(final Option<T> option, final T value) throws IllegalArgumentException {
@@ -189,109 +213,320 @@ final class LocalChannel extends AbstractHandleableCloseable<Channel> implements
         return otherSide;
     }
 
+    void inboundMessageFinished() {
+        synchronized (lock) {
+            inboundCount--;
+        }
+    }
+
+    /**
+     * The sending end of a local message.  Written bytes are collected into chunks which are handed over to the
+     * receiving end whole once they fill up or the stream is flushed, so the two ends never work on the same buffer.
+     * A message stream is used by one thread at a time.
+     */
     static final class Out extends MessageOutputStream {
-        private final OutputStream outputStream;
         private final In in;
+        private ByteBuffer current;
+        private boolean closed;
+        private long remaining;
 
-        Out(final OutputStream outputStream, final In in) {
-            this.outputStream = outputStream;
+        Out(final In in, final long maxMessageSize) {
             this.in = in;
+            remaining = maxMessageSize;
         }
 
         public void flush() throws IOException {
-            outputStream.flush();
+            checkClosed();
+            if (current != null && current.position() > 0) {
+                handOff();
+            }
         }
 
         public void close() throws IOException {
-            outputStream.close();
+            if (! closed) {
+                closed = true;
+                if (current != null) {
+                    if (current.position() > 0) {
+                        handOff();
+                    } else {
+                        in.recycle(current);
+                        current = null;
+                    }
+                }
+                in.pushEof();
+            }
         }
 
         public void write(final int b) throws IOException {
-            outputStream.write(b);
-        }
-
-        public void write(final byte[] b) throws IOException {
-            outputStream.write(b);
+            checkClosed();
+            if (remaining < 1) {
+                throw overrun();
+            }
+            remaining--;
+            ByteBuffer current = this.current;
+            if (current == null) {
+                current = this.current = in.allocate();
+            }
+            current.put((byte) b);
+            if (! current.hasRemaining()) {
+                handOff();
+            }
         }
 
         public void write(final byte[] b, final int off, final int len) throws IOException {
-            outputStream.write(b, off, len);
+            checkClosed();
+            if ((long) len > remaining) {
+                throw overrun();
+            }
+            remaining -= len;
+            int pos = off;
+            int remaining = len;
+            while (remaining > 0) {
+                ByteBuffer current = this.current;
+                if (current == null) {
+                    current = this.current = in.allocate();
+                }
+                final int cnt = Math.min(remaining, current.remaining());
+                current.put(b, pos, cnt);
+                pos += cnt;
+                remaining -= cnt;
+                if (! current.hasRemaining()) {
+                    handOff();
+                }
+            }
         }
 
         public Out cancel() {
+            closed = true;
+            if (current != null) {
+                in.recycle(current);
+                current = null;
+            }
             in.doCancel();
-            IoUtils.safeClose(outputStream);
             return this;
         }
+
+        private IOException overrun() {
+            try {
+                return new IOException("Maximum message size overrun");
+            } finally {
+                cancel();
+            }
+        }
+
+        private void handOff() throws IOException {
+            final ByteBuffer chunk = current;
+            current = null;
+            chunk.flip();
+            in.push(chunk);
+        }
+
+        private void checkClosed() throws NotOpenException {
+            if (closed) {
+                throw new NotOpenException("Message was closed");
+            }
+        }
     }
 
+    /**
+     * The receiving end of a local message.  It holds the chunks which have been handed over but not yet read; the
+     * sender waits once the unread bytes would exceed the window.  Chunks which have been read are returned to the
+     * chunk pool of the receiving channel, for reuse by later messages.  The message counts against the receiving
+     * channel's open messages until the reader has read to its end or closed it, or the sender has cancelled it.
+     */
     static final class In extends MessageInputStream {
-        private final InputStream inputStream;
-        private volatile boolean cancelled;
+        private final LocalChannel receiver;
+        private final ArrayDeque<ByteBuffer> chunkPool;
+        private final int window;
+        private final ArrayDeque<ByteBuffer> chunks = new ArrayDeque<ByteBuffer>();
+        private int buffered;
+        private boolean writerWaiting;
+        private boolean eof;
+        private boolean readerSawEof;
+        private boolean cancelled;
+        private boolean closed;
+        private boolean finished;
+
+        In(final LocalChannel receiver, final int window) {
+            this.receiver = receiver;
+            chunkPool = receiver.chunkPool;
+            this.window = window;
+        }
 
-        In(final InputStream inputStream) {
-            this.inputStream = inputStream;
+        ByteBuffer allocate() {
+            final ByteBuffer chunk;
+            synchronized (chunkPool) {
+                chunk = chunkPool.poll();
+            }
+            return chunk == null ? ByteBuffer.allocate(Math.min(CHUNK_SIZE, window)) : chunk;
         }
 
-        public InputStream getInputStream() throws IOException {
-            return inputStream;
+        void recycle(final ByteBuffer chunk) {
+            if (chunk.capacity() == Math.min(CHUNK_SIZE, window)) {
+                chunk.clear();
+                synchronized (chunkPool) {
+                    if (chunkPool.size() < CHUNK_POOL_SIZE) {
+                        chunkPool.add(chunk);
+                    }
+                }
+            }
         }
 
-        synchronized void doCancel() {
-            cancelled = true;
+        synchronized void push(final ByteBuffer chunk) throws IOException {
+            final int size = chunk.remaining();
+            // a chunk is never larger than the window, so one always fits once everything before it has been read
+            while (buffered > 0 && buffered + size > window && ! closed && ! cancelled) {
+                writerWaiting = true;
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            if (closed || cancelled) {
+                // nobody will read it
+                recycle(chunk);
+                return;
+            }
+            chunks.add(chunk);
+            buffered += size;
+            notifyAll();
         }
 
-        public synchronized boolean wasCancelled() {
-            return cancelled;
+        synchronized void pushEof() {
+            eof = true;
+            notifyAll();
         }
 
-        public int read() throws IOException {
-            checkCancel();
-            return inputStream.read();
+        synchronized void doCancel() {
+            cancelled = true;
+            discard();
+            checkFinished();
+            notifyAll();
         }
 
-        private synchronized void checkCancel() throws MessageCancelledException {
-            if (cancelled) {
-                throw new MessageCancelledException();
+        private void checkFinished() {
+            // an empty message is not finished just because the sender is done; the reader has to see its end
+            if (! finished && (cancelled || closed || readerSawEof)) {
+                finished = true;
+                receiver.inboundMessageFinished();
             }
         }
 
-        public int read(final byte[] b) throws IOException {
-            checkCancel();
-            return inputStream.read(b);
+        private void discard() {
+            ByteBuffer chunk;
+            while ((chunk = chunks.poll()) != null) {
+                recycle(chunk);
+            }
+            buffered = 0;
+        }
+
+        /**
+         * Wait for a chunk to read from.  Must be called under this object's lock.
+         *
+         * @return the chunk, or {@code null} at the end of the message
+         */
+        private ByteBuffer awaitChunk() throws IOException {
+            for (;;) {
+                checkReadable();
+                final ByteBuffer chunk = chunks.peek();
+                if (chunk != null) {
+                    return chunk;
+                }
+                if (eof) {
+                    readerSawEof = true;
+                    checkFinished();
+                    return null;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
         }
 
-        public int read(final byte[] b, final int off, final int len) throws IOException {
-            checkCancel();
-            return inputStream.read(b, off, len);
+        private void checkReadable() throws IOException {
+            if (cancelled) {
+                throw new MessageCancelledException();
+            }
+            if (closed) {
+                throw new NotOpenException("Message was closed");
+            }
         }
 
-        public long skip(final long n) throws IOException {
-            checkCancel();
-            return inputStream.skip(n);
+        private void consumed(final ByteBuffer chunk, final int count) {
+            buffered -= count;
+            if (! chunk.hasRemaining()) {
+                chunks.poll();
+                recycle(chunk);
+            }
+            if (writerWaiting) {
+                writerWaiting = false;
+                notifyAll();
+            }
         }
 
-        public int available() throws IOException {
-            checkCancel();
-            return inputStream.available();
+        public synchronized int read() throws IOException {
+            final ByteBuffer chunk = awaitChunk();
+            if (chunk == null) {
+                return -1;
+            }
+            final int b = chunk.get() & 0xff;
+            consumed(chunk, 1);
+            return b;
         }
 
-        public void close() throws IOException {
-            checkCancel();
-            inputStream.close();
+        public synchronized int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                checkReadable();
+                return 0;
+            }
+            ByteBuffer chunk = awaitChunk();
+            if (chunk == null) {
+                return -1;
+            }
+            int total = 0;
+            // take whatever has already arrived, but only block for the first chunk
+            do {
+                final int cnt = Math.min(len - total, chunk.remaining());
+                chunk.get(b, off + total, cnt);
+                total += cnt;
+                consumed(chunk, cnt);
+            } while (total < len && (chunk = chunks.peek()) != null);
+            return total;
         }
 
-        public void mark(final int readlimit) {
-            inputStream.mark(readlimit);
+        public synchronized long skip(final long n) throws IOException {
+            checkReadable();
+            long total = 0L;
+            ByteBuffer chunk;
+            while (total < n && (chunk = total == 0L ? awaitChunk() : chunks.peek()) != null) {
+                final int cnt = (int) Math.min(n - total, chunk.remaining());
+                chunk.position(chunk.position() + cnt);
+                total += cnt;
+                consumed(chunk, cnt);
+            }
+            return total;
         }
 
-        public void reset() throws IOException {
-            checkCancel();
-            inputStream.reset();
+        public synchronized int available() throws IOException {
+            checkReadable();
+            return buffered;
         }
 
-        public boolean markSupported() {
-            return inputStream.markSupported();
+        public synchronized void close() throws IOException {
+            if (cancelled) {
+                throw new MessageCancelledException();
+            }
+            if (! closed) {
+                closed = true;
+                discard();
+                checkFinished();
+                notifyAll();
+            }
         }
     }
 }
@@ -31,6 +31,7 @@ import org.jboss.remoting3.spi.ConnectionHandlerContext;
 import org.jboss.remoting3.spi.ConnectionHandlerFactory;
 import org.jboss.remoting3.spi.ConnectionProvider;
 import org.jboss.remoting3.spi.ConnectionProviderContext;
+import org.jboss.remoting3.spi.RegisteredService;
 import org.jboss.remoting3.spi.SpiUtils;
 import org.wildfly.security.auth.AuthenticationContext;
 import org.xnio.Cancellable;
@@ -54,7 +55,7 @@ final class LocalConnectionProvider extends AbstractHandleableCloseable<Connecti
     }
 
     public Cancellable connect(final URI destination, final OptionMap connectOptions, final Result<ConnectionHandlerFactory> result, final AuthenticationContext authenticationContext, final SaslClientFactory saslClientFactory) {
-        context.accept(LoopbackConnectionHandler::new);
+        context.accept(connectionHandlerContext -> new LoopbackConnectionHandler(connectionHandlerContext, connectOptions));
         return nullCancellable();
     }
 
@@ -65,24 +66,42 @@ final class LocalConnectionProvider extends AbstractHandleableCloseable<Connecti
     private class LoopbackConnectionHandler extends AbstractHandleableCloseable<ConnectionHandler> implements ConnectionHandler {
 
         private final ConnectionHandlerContext context;
+        private final OptionMap connectOptions;
 
-        LoopbackConnectionHandler(final ConnectionHandlerContext context) {
+        LoopbackConnectionHandler(final ConnectionHandlerContext context, final OptionMap connectOptions) {
             super(executor);
             this.context = context;
+            this.connectOptions = connectOptions;
         }
 
         public Cancellable open(final String serviceType, final Result<Channel> result, final OptionMap optionMap) {
-            LocalChannel channel = new LocalChannel(executor, context);
-            try {
-                final OpenListener openListener = context.getServiceOpenListener(serviceType);
-                if (openListener == null) {
-                    throw new ServiceNotFoundException("Unable to find service type '" + serviceType + "'");
-                }
-                context.getConnectionProviderContext().getExecutor().execute(SpiUtils.getServiceOpenTask(channel.getOtherSide(), openListener));
-            } catch (ServiceNotFoundException e) {
-                result.setException(e);
+            final RegisteredService registeredService = context.getRegisteredService(serviceType);
+            if (registeredService == null) {
+                result.setException(new ServiceNotFoundException("Unable to find service type '" + serviceType + "'"));
                 return nullCancellable();
             }
+            final OptionMap serviceOptionMap = registeredService.getOptionMap();
+            // each direction gets the lesser of what its sender and its receiver allow, as with a remote channel
+            final int outboundWindow = Math.min(
+                    optionMap.get(RemotingOptions.TRANSMIT_WINDOW_SIZE, connectOptions.get(RemotingOptions.TRANSMIT_WINDOW_SIZE, RemotingOptions.OUTGOING_CHANNEL_DEFAULT_TRANSMIT_WINDOW_SIZE)),
+                    serviceOptionMap.get(RemotingOptions.RECEIVE_WINDOW_SIZE, RemotingOptions.INCOMING_CHANNEL_DEFAULT_RECEIVE_WINDOW_SIZE));
+            final int inboundWindow = Math.min(
+                    optionMap.get(RemotingOptions.RECEIVE_WINDOW_SIZE, connectOptions.get(RemotingOptions.RECEIVE_WINDOW_SIZE, RemotingOptions.OUTGOING_CHANNEL_DEFAULT_RECEIVE_WINDOW_SIZE)),
+                    serviceOptionMap.get(RemotingOptions.TRANSMIT_WINDOW_SIZE, RemotingOptions.INCOMING_CHANNEL_DEFAULT_TRANSMIT_WINDOW_SIZE));
+            final int outboundMessages = Math.min(
+                    optionMap.get(RemotingOptions.MAX_OUTBOUND_MESSAGES, connectOptions.get(RemotingOptions.MAX_OUTBOUND_MESSAGES, RemotingOptions.OUTGOING_CHANNEL_DEFAULT_MAX_OUTBOUND_MESSAGES)),
+                    serviceOptionMap.get(RemotingOptions.MAX_INBOUND_MESSAGES, RemotingOptions.DEFAULT_MAX_INBOUND_MESSAGES));
+            final int inboundMessages = Math.min(
+                    optionMap.get(RemotingOptions.MAX_INBOUND_MESSAGES, connectOptions.get(RemotingOptions.MAX_INBOUND_MESSAGES, RemotingOptions.DEFAULT_MAX_INBOUND_MESSAGES)),
+                    serviceOptionMap.get(RemotingOptions.MAX_OUTBOUND_MESSAGES, RemotingOptions.INCOMING_CHANNEL_DEFAULT_MAX_OUTBOUND_MESSAGES));
+            final long outboundMessageSize = Math.min(
+                    optionMap.get(RemotingOptions.MAX_OUTBOUND_MESSAGE_SIZE, connectOptions.get(RemotingOptions.MAX_OUTBOUND_MESSAGE_SIZE, RemotingOptions.DEFAULT_MAX_OUTBOUND_MESSAGE_SIZE)),
+                    serviceOptionMap.get(RemotingOptions.MAX_INBOUND_MESSAGE_SIZE, RemotingOptions.DEFAULT_MAX_INBOUND_MESSAGE_SIZE));
+            final long inboundMessageSize = Math.min(
+                    optionMap.get(RemotingOptions.MAX_INBOUND_MESSAGE_SIZE, connectOptions.get(RemotingOptions.MAX_INBOUND_MESSAGE_SIZE, RemotingOptions.DEFAULT_MAX_INBOUND_MESSAGE_SIZE)),
+                    serviceOptionMap.get(RemotingOptions.MAX_OUTBOUND_MESSAGE_SIZE, RemotingOptions.DEFAULT_MAX_OUTBOUND_MESSAGE_SIZE));
+            final LocalChannel channel = new LocalChannel(executor, context, outboundWindow, inboundWindow, outboundMessages, inboundMessages, outboundMessageSize, inboundMessageSize);
+            context.getConnectionProviderContext().getExecutor().execute(SpiUtils.getServiceOpenTask(channel.getOtherSide(), registeredService.getOpenListener()));
             result.setResult(channel);
             return nullCancellable();
         }
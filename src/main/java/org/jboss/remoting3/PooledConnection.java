@@ -0,0 +1,94 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.remoting3;
+
+import java.io.IOException;
+
+import javax.net.ssl.SSLSession;
+
+import org.jboss.remoting3.spi.AbstractHandleableCloseable;
+import org.xnio.FailedIoFuture;
+import org.xnio.IoFuture;
+import org.xnio.OptionMap;
+
+/**
+ * A caller's lease on a pooled connection, as returned by {@link Endpoint#getConnection(java.net.URI, OptionMap)}.
+ * Closing the lease only releases it: channels can no longer be opened through it, but the shared connection and the
+ * channels already opened on it are left alone.  The lease closes by itself when the shared connection closes.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class PooledConnection extends AbstractHandleableCloseable<Connection> implements Connection {
+
+    private final Connection delegate;
+    // null while the constructor runs, which may close this lease if the connection is already closed
+    private volatile Key key;
+
+    PooledConnection(final EndpointImpl endpoint, final Connection delegate) {
+        super(endpoint.getExecutor(), false);
+        this.delegate = delegate;
+        key = delegate.addCloseHandler(new CloseHandler<Connection>() {
+            public void handleClose(final Connection closed, final IOException exception) {
+                closeAsync();
+            }
+        });
+    }
+
+    protected void closeAction() throws IOException {
+        final Key key = this.key;
+        if (key != null) {
+            key.remove();
+        }
+        closeComplete();
+    }
+
+    public SSLSession getSslSession() {
+        return delegate.getSslSession();
+    }
+
+    public IoFuture<Channel> openChannel(final String serviceType, final OptionMap optionMap) {
+        try {
+            checkOpen();
+        } catch (NotOpenException e) {
+            return new FailedIoFuture<Channel>(e);
+        }
+        return delegate.openChannel(serviceType, optionMap);
+    }
+
+    public String getRemoteEndpointName() {
+        return delegate.getRemoteEndpointName();
+    }
+
+    public Endpoint getEndpoint() {
+        return delegate.getEndpoint();
+    }
+
+    public Attachments getAttachments() {
+        return delegate.getAttachments();
+    }
+
+    public String toString() {
+        return String.format("Pooled lease <%x> on %s", Integer.valueOf(hashCode()), delegate);
+    }
+}
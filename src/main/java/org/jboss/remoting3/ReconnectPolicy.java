@@ -0,0 +1,74 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The schedule of attempts to reestablish a lost connection: exponential backoff from an initial delay up to a
+ * maximum delay, with each delay randomly shortened by up to half.  The randomness keeps the clients of a restarting
+ * server from all retrying at the same moment, while the short initial delay lets a connection recover quickly from a
+ * brief network outage.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class ReconnectPolicy {
+
+    static final ReconnectPolicy DEFAULT = new ReconnectPolicy(ConnectionBuilder.DEFAULT_RECONNECT_INITIAL_DELAY, ConnectionBuilder.DEFAULT_RECONNECT_MAXIMUM_DELAY);
+
+    private final long initialDelay;
+    private final long maximumDelay;
+
+    ReconnectPolicy(final long initialDelay, final long maximumDelay) {
+        this.initialDelay = initialDelay;
+        this.maximumDelay = Math.max(initialDelay, maximumDelay);
+    }
+
+    /**
+     * Get the delay before the given attempt.
+     *
+     * @param attempt the number of consecutive attempts which have already been made (0 for the first)
+     * @return the delay in milliseconds
+     */
+    long getDelay(final int attempt) {
+        final long maximumDelay = this.maximumDelay;
+        long backoff = initialDelay;
+        if (attempt > 0) {
+            // never retry back-to-back, even if the initial delay is zero
+            backoff = Math.max(1L, backoff);
+            for (int i = 0; i < attempt && backoff < maximumDelay; i ++) {
+                backoff = backoff > maximumDelay >> 1 ? maximumDelay : backoff << 1;
+            }
+        }
+        final long half = backoff >> 1;
+        return backoff - half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    long getInitialDelay() {
+        return initialDelay;
+    }
+
+    long getMaximumDelay() {
+        return maximumDelay;
+    }
+}
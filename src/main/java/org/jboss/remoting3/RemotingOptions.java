@@ -208,4 +208,178 @@ public final class RemotingOptions {
      * The default SASL protocol name.
      */
     public static final String DEFAULT_SASL_PROTOCOL = "remoting";
+
+    /**
+     * Specify whether message data should be compressed on a channel.  Compression is only used if both sides of the
+     * channel request it; on the requesting side the value is taken from the connection or channel options, and on the
+     * responding side from the service registration options.
+     */
+    public static final Option<Boolean> MESSAGE_COMPRESSION = Option.simple(RemotingOptions.class, "MESSAGE_COMPRESSION", Boolean.class);
+
+    /**
+     * The default message compression setting.
+     */
+    public static final boolean DEFAULT_MESSAGE_COMPRESSION = false;
+
+    /**
+     * The smallest amount of message content, in bytes, that is compressed before being sent on a channel which uses
+     * compression.  Smaller frames, which rarely compress well, are sent as they are.
+     */
+    public static final Option<Integer> MESSAGE_COMPRESSION_THRESHOLD = Option.simple(RemotingOptions.class, "MESSAGE_COMPRESSION_THRESHOLD", Integer.class);
+
+    /**
+     * The default message compression threshold.
+     */
+    public static final int DEFAULT_MESSAGE_COMPRESSION_THRESHOLD = 256;
+
+    /**
+     * The deflate compression level (0-9) to use for outbound message data on a channel which uses compression.
+     */
+    public static final Option<Integer> MESSAGE_COMPRESSION_LEVEL = Option.simple(RemotingOptions.class, "MESSAGE_COMPRESSION_LEVEL", Integer.class);
+
+    /**
+     * The default message compression level, which favors throughput over compression ratio.
+     */
+    public static final int DEFAULT_MESSAGE_COMPRESSION_LEVEL = 1;
+
+    /**
+     * The number of sockets (stripes) over which a single outbound connection is spread.  Each channel of the
+     * connection is bound to one stripe, so that all of its messages stay in order on one socket, while separate
+     * channels may proceed in parallel over separate sockets and I/O threads.
+     * <p>
+     * The stripes are only joined on the client side.  Each stripe is connected and authenticated as an independent
+     * connection with the same credentials, so the peer sees one connection per stripe: it pays the cost of
+     * authentication once per stripe, and any state it keeps per connection is split across the stripes.
+     */
+    public static final Option<Integer> CONNECTION_STRIPES = Option.simple(RemotingOptions.class, "CONNECTION_STRIPES", Integer.class);
+
+    /**
+     * The default number of connection stripes.
+     */
+    public static final int DEFAULT_CONNECTION_STRIPES = 1;
+
+    /**
+     * The largest number of connections to keep in the pool for each destination, for connections which are acquired
+     * with {@link Endpoint#getConnection(java.net.URI, org.xnio.OptionMap)}.  Further connections are only opened once every
+     * pooled connection is carrying channels.
+     */
+    public static final Option<Integer> CONNECTION_POOL_SIZE = Option.simple(RemotingOptions.class, "CONNECTION_POOL_SIZE", Integer.class);
+
+    /**
+     * The default connection pool size.
+     */
+    public static final int DEFAULT_CONNECTION_POOL_SIZE = 1;
+
+    /**
+     * The time, in milliseconds, after which a pooled connection with no open channels which has not been handed out
+     * is closed.
+     */
+    public static final Option<Integer> CONNECTION_POOL_IDLE_TIMEOUT = Option.simple(RemotingOptions.class, "CONNECTION_POOL_IDLE_TIMEOUT", Integer.class);
+
+    /**
+     * The default pooled connection idle timeout.
+     */
+    public static final int DEFAULT_CONNECTION_POOL_IDLE_TIMEOUT = 5 * 60 * 1000;
+
+    /**
+     * Specify whether an outbound connection should send its capabilities request without waiting for the server's
+     * greeting, and its authentication request without waiting for the server's capabilities.  Authentication is only
+     * sent early if STARTTLS is disabled and a preferred mechanism is given as the first of the
+     * {@link org.xnio.Options#SASL_MECHANISMS}; otherwise only the capabilities request is sent early.  This saves up to
+     * two round trips when connecting over a high-latency network.
+     */
+    public static final Option<Boolean> HANDSHAKE_PIPELINING = Option.simple(RemotingOptions.class, "HANDSHAKE_PIPELINING", Boolean.class);
+
+    /**
+     * The default handshake pipelining setting.
+     */
+    public static final boolean DEFAULT_HANDSHAKE_PIPELINING = false;
+
+    /**
+     * Specify whether session resumption is enabled.  On a server, a client which has successfully authenticated is
+     * issued a short-lived, single-use resumption ticket; on a client, a ticket so received is kept and presented on the
+     * next connection to the same destination in place of a full SASL exchange.  A ticket which the server does not
+     * accept is simply discarded and the client authenticates normally.  Resumption is only offered on connections
+     * secured by TLS, and tickets are not issued for connections which negotiated a SASL integrity or confidentiality
+     * layer, since that layer cannot be re-established without SASL.  A ticket is only honored while its identity still
+     * exists and may log in, and a chain of resumed connections expires one ticket lifetime after the original
+     * authentication.
+     */
+    public static final Option<Boolean> SESSION_RESUMPTION = Option.simple(RemotingOptions.class, "SESSION_RESUMPTION", Boolean.class);
+
+    /**
+     * The default session resumption setting.
+     */
+    public static final boolean DEFAULT_SESSION_RESUMPTION = false;
+
+    /**
+     * The time, in milliseconds, after a full authentication for which the server honors resumption tickets issued on
+     * its strength.
+     */
+    public static final Option<Integer> SESSION_RESUMPTION_TICKET_LIFETIME = Option.simple(RemotingOptions.class, "SESSION_RESUMPTION_TICKET_LIFETIME", Integer.class);
+
+    /**
+     * The default resumption ticket lifetime.
+     */
+    public static final int DEFAULT_SESSION_RESUMPTION_TICKET_LIFETIME = 60 * 1000;
+
+    /**
+     * The time, in milliseconds, to wait for a connection attempt to one of the addresses of a destination before also
+     * trying the next one.  When a destination host name resolves to several addresses, they are tried in parallel with
+     * this stagger, alternating between IPv6 and IPv4, and the first to connect is used.
+     */
+    public static final Option<Integer> CONNECTION_ATTEMPT_DELAY = Option.simple(RemotingOptions.class, "CONNECTION_ATTEMPT_DELAY", Integer.class);
+
+    /**
+     * The default connection attempt delay, as recommended by RFC 8305.
+     */
+    public static final int DEFAULT_CONNECTION_ATTEMPT_DELAY = 250;
+
+    /**
+     * The most inbound connections which a server lets be in their handshake (greeting, capabilities negotiation and
+     * authentication) at once.  Once this many are, the server stops accepting, and further connections wait in the socket
+     * backlog until a handshake finishes.  This keeps a connection storm from flooding the worker pool with authentication
+     * work at the expense of established connections.  Connections which do not finish their handshake within the
+     * {@link #INBOUND_HANDSHAKE_TIMEOUT} are closed.
+     */
+    public static final Option<Integer> MAX_INBOUND_HANDSHAKES = Option.simple(RemotingOptions.class, "MAX_INBOUND_HANDSHAKES", Integer.class);
+
+    /**
+     * The default maximum number of inbound handshakes, which is unlimited.
+     */
+    public static final int DEFAULT_MAX_INBOUND_HANDSHAKES = Integer.MAX_VALUE;
+
+    /**
+     * The longest time, in milliseconds, which a server gives an inbound connection to finish its handshake.  A
+     * connection which has not been accepted by the endpoint by then is closed, which also frees its place among the
+     * {@link #MAX_INBOUND_HANDSHAKES}, so that clients which connect and then go silent cannot hold every place.  A
+     * value of zero or less disables the timeout.
+     */
+    public static final Option<Integer> INBOUND_HANDSHAKE_TIMEOUT = Option.simple(RemotingOptions.class, "INBOUND_HANDSHAKE_TIMEOUT", Integer.class);
+
+    /**
+     * The default inbound handshake timeout.
+     */
+    public static final int DEFAULT_INBOUND_HANDSHAKE_TIMEOUT = 30 * 1000;
+
+    /**
+     * The number of recent frames to keep in the protocol event log of each connection.  The log records the type,
+     * channel and message ID, size and time of every frame sent or received, and may be dumped over JMX to diagnose a
+     * misbehaving connection without turning on trace logging.  The size is rounded up to a power of two; 0 disables
+     * the log.
+     */
+    public static final Option<Integer> PROTOCOL_EVENT_LOG_SIZE = Option.simple(RemotingOptions.class, "PROTOCOL_EVENT_LOG_SIZE", Integer.class);
+
+    /**
+     * The default protocol event log size.
+     */
+    public static final int DEFAULT_PROTOCOL_EVENT_LOG_SIZE = 256;
+
+    /**
+     * The highest protocol version which a connection will negotiate.  By default, the highest version supported by
+     * this implementation is offered, and the lower of the two sides' versions is used; a lower value makes the
+     * connection behave as an older peer would, which is mainly useful for testing interoperability.  Values outside
+     * of the supported range are clamped to it.
+     */
+    public static final Option<Integer> MAX_PROTOCOL_VERSION = Option.simple(RemotingOptions.class, "MAX_PROTOCOL_VERSION", Integer.class);
 }
@@ -39,12 +39,15 @@ final class RemotingXmlParser {
     private static final String NS_REMOTING_5_0 = "urn:jboss-remoting:5.0";
 
     static Endpoint parseEndpoint() throws ConfigXMLParseException, IOException {
-        final ClientConfiguration clientConfiguration = ClientConfiguration.getInstance();
         final EndpointBuilder builder = new EndpointBuilder();
+        parseConfiguration(ClientConfiguration.getInstance(), builder);
+        return builder.build();
+    }
+
+    static void parseConfiguration(final ClientConfiguration clientConfiguration, final EndpointBuilder builder) throws ConfigXMLParseException {
         if (clientConfiguration != null) try (final ConfigurationXMLStreamReader streamReader = clientConfiguration.readConfiguration(Collections.singleton(NS_REMOTING_5_0))) {
             parseDocument(streamReader, builder);
         }
-        return builder.build();
     }
 
     private static void parseDocument(final ConfigurationXMLStreamReader reader, final EndpointBuilder builder) throws ConfigXMLParseException {
@@ -61,13 +64,12 @@ final class RemotingXmlParser {
                     }
                     default: throw reader.unexpectedElement();
                 }
-                break;
+                return;
             }
             default: {
                 throw reader.unexpectedContent();
             }
         }
-        throw reader.unexpectedDocumentEnd();
     }
 
     private static void parseEndpointElement(final ConfigurationXMLStreamReader reader, final EndpointBuilder builder) throws ConfigXMLParseException {
@@ -75,7 +77,7 @@ final class RemotingXmlParser {
         if (attributeCount > 0) {
             throw reader.unexpectedAttribute(0);
         }
-        while (reader.hasNext()) {
+        for (;;) {
             switch (reader.nextTag()) {
                 case START_ELEMENT: {
                     switch (reader.getNamespaceURI()) {
@@ -163,6 +165,8 @@ final class RemotingXmlParser {
         final int attributeCount = reader.getAttributeCount();
         URI uri = null;
         boolean immediate = false;
+        long reconnectInitialDelay = ConnectionBuilder.DEFAULT_RECONNECT_INITIAL_DELAY;
+        long reconnectMaximumDelay = ConnectionBuilder.DEFAULT_RECONNECT_MAXIMUM_DELAY;
         for (int i = 0; i < attributeCount; i ++) {
             if (reader.getAttributeNamespace(i) != null) {
                 throw reader.unexpectedAttribute(i);
@@ -176,6 +180,14 @@ final class RemotingXmlParser {
                     immediate = reader.getBooleanAttributeValue(i);
                     break;
                 }
+                case "reconnect-initial-delay": {
+                    reconnectInitialDelay = getDelayAttributeValue(reader, i);
+                    break;
+                }
+                case "reconnect-maximum-delay": {
+                    reconnectMaximumDelay = getDelayAttributeValue(reader, i);
+                    break;
+                }
                 default: {
                     throw reader.unexpectedAttribute(i);
                 }
@@ -186,6 +198,8 @@ final class RemotingXmlParser {
         }
         final ConnectionBuilder connectionBuilder = builder.addConnection(uri);
         connectionBuilder.setImmediate(immediate);
+        connectionBuilder.setReconnectInitialDelay(reconnectInitialDelay);
+        connectionBuilder.setReconnectMaximumDelay(reconnectMaximumDelay);
         switch (reader.nextTag()) {
             case END_ELEMENT: {
                 return;
@@ -195,4 +209,12 @@ final class RemotingXmlParser {
             }
         }
     }
+
+    private static long getDelayAttributeValue(final ConfigurationXMLStreamReader reader, final int i) throws ConfigXMLParseException {
+        final long value = reader.getLongAttributeValue(i);
+        if (value < 0L) {
+            throw new ConfigXMLParseException("Attribute '" + reader.getAttributeLocalName(i) + "' must not be negative", reader);
+        }
+        return value;
+    }
 }
@@ -31,6 +31,13 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * A hash map whose reads are lock-free and whose writes are serialized by a lock.
+ * <p>
+ * A Java 11 version of this class is kept in {@code src/main/java11}.  A change to either copy must be made to the
+ * other; {@code UnlockedReadHashMapTestCase} runs against this copy from the class directory and against the Java 11
+ * copy from the multi-release JAR.
+ */
 final class UnlockedReadHashMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
 
     private static final int DEFAULT_INITIAL_CAPACITY = 512;
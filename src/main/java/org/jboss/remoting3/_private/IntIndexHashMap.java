@@ -34,6 +34,10 @@ import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Lock-free concurrent integer-indexed hash map.
+ * <p>
+ * A Java 11 version of this class is kept in {@code src/main/java11}.  A change to either copy must be made to the
+ * other; {@code IntIndexHashMapTestCase} runs against this copy from the class directory and against the Java 11 copy
+ * from the multi-release JAR.
  *
  * @param <V> the value type
  *
@@ -249,7 +253,7 @@ public final class IntIndexHashMap<V> extends AbstractCollection<V> implements I
                 if (ve.equals(tryItem, oldValue)) {
                     final V[] newRow = oldRow.clone();
                     newRow[i] = newValue;
-                    if (array.compareAndSet(i, oldRow, newRow)) {
+                    if (array.compareAndSet(idx, oldRow, newRow)) {
                         return true;
                     } else {
                         continue OUTER;
@@ -282,7 +286,7 @@ public final class IntIndexHashMap<V> extends AbstractCollection<V> implements I
                 if (key == indexer.getKey(tryItem)) {
                     final V[] newRow = oldRow.clone();
                     newRow[i] = value;
-                    if (array.compareAndSet(i, oldRow, newRow)) {
+                    if (array.compareAndSet(idx, oldRow, newRow)) {
                         return tryItem;
                     } else {
                         continue OUTER;
@@ -432,8 +436,9 @@ public final class IntIndexHashMap<V> extends AbstractCollection<V> implements I
         for (int i = 0; i < origCapacity; i ++) {
             // for each row, try to resize into two new rows
             V[] origRow, newRow0, newRow1;
-            int count0 = 0, count1 = 0;
+            int count0, count1;
             do {
+                count0 = count1 = 0;
                 origRow = origArray.get(i);
                 if (origRow != null) {
                     for (V item : origRow) {
@@ -452,6 +457,8 @@ public final class IntIndexHashMap<V> extends AbstractCollection<V> implements I
                             }
                         }
                         newArray.lazySet(i, newRow0);
+                    } else {
+                        newArray.lazySet(i, null);
                     }
                     if (count1 != 0) {
                         newRow1 = createRow(count1);
@@ -462,7 +469,12 @@ public final class IntIndexHashMap<V> extends AbstractCollection<V> implements I
                             }
                         }
                         newArray.lazySet(i + origCapacity, newRow1);
+                    } else {
+                        newArray.lazySet(i + origCapacity, null);
                     }
+                } else {
+                    newArray.lazySet(i, null);
+                    newArray.lazySet(i + origCapacity, null);
                 }
             } while (! origArray.compareAndSet(i, origRow, IntIndexHashMap.<V>resized()));
             sizeUpdater.getAndAdd(newTable, count0 + count1);
@@ -503,6 +515,9 @@ public final class IntIndexHashMap<V> extends AbstractCollection<V> implements I
     private V doGet(final Table<V> table, final int key) {
         final AtomicReferenceArray<V[]> array = table.array;
         final V[] row = array.get(key & (array.length() - 1));
+        if (row == RESIZED) {
+            return doGet(table.resizeView, key);
+        }
         if (row != null) for (V item : row) {
             if (key == indexer.getKey(item)) {
                 return item;
@@ -0,0 +1,53 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.remoting3.remote;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * A resolver of host names to addresses, used when a connection is attempted to every address of a destination.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+interface AddressResolver {
+
+    /**
+     * The resolver which uses the platform name service.
+     */
+    AddressResolver DEFAULT = new AddressResolver() {
+        public InetAddress[] resolve(final String hostName) throws UnknownHostException {
+            return InetAddress.getAllByName(hostName);
+        }
+    };
+
+    /**
+     * Get all of the addresses of a host.  This may block while the name service is queried.
+     *
+     * @param hostName the host name or literal address
+     * @return the addresses, in the order the name service gave them
+     * @throws UnknownHostException if the host name could not be resolved
+     */
+    InetAddress[] resolve(String hostName) throws UnknownHostException;
+}
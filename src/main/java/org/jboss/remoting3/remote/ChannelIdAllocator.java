@@ -0,0 +1,149 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.remote;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.IntPredicate;
+
+/**
+ * The channel ID space of a single connection.
+ * <p>
+ * A channel ID is 31 bits wide; the MSB records which side of the connection allocated it.  IDs are stored from the
+ * "write" perspective: locally allocated (outbound) channels carry a "1" MSB and remotely allocated (inbound) channels
+ * carry a "0" MSB, and every ID is inverted in the MSB on its way across the wire.  The two halves of the space are
+ * therefore disjoint, and only the local half is handed out by this allocator.
+ * <p>
+ * Local IDs are issued sequentially from a wrapping counter, so an ID is not handed out again until the whole 31-bit
+ * space has been cycled through; any stray messages for a recently closed channel thus can never be delivered to a new
+ * one.  Once the counter wraps, a candidate may still be in use by a long-lived channel, so the caller must check it
+ * against its live tables; since at most one candidate per open local channel can collide, a caller which has already
+ * reserved a slot against its channel limit needs no more than {@code limit + 1} candidates.  {@link #allocate} runs
+ * that bounded search.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class ChannelIdAllocator {
+
+    /**
+     * The MSB which marks a channel ID as locally allocated.
+     */
+    static final int LOCAL_FLAG = 0x80000000;
+    /**
+     * The mask of the sequence part of a channel ID.
+     */
+    static final int SEQUENCE_MASK = ~LOCAL_FLAG;
+    /**
+     * The value returned by {@link #allocate} when no ID is free.  It can never be a local channel ID, since its MSB
+     * is clear.
+     */
+    static final int NONE = 0;
+
+    private volatile int sequence;
+
+    private static final AtomicIntegerFieldUpdater<ChannelIdAllocator> sequenceUpdater = AtomicIntegerFieldUpdater.newUpdater(ChannelIdAllocator.class, "sequence");
+
+    ChannelIdAllocator() {
+    }
+
+    ChannelIdAllocator(final int sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Get the next candidate local channel ID.
+     *
+     * @return the candidate ID, with a "1" MSB
+     */
+    int next() {
+        return sequenceUpdater.getAndIncrement(this) | LOCAL_FLAG;
+    }
+
+    /**
+     * Find a local channel ID which is not in use.
+     *
+     * @param inUse the test of whether a candidate ID still belongs to a live channel
+     * @param limit the most local channels which can be live at once, not counting the one being allocated
+     * @return the ID, or {@link #NONE} if every one of {@code limit + 1} candidates is in use
+     */
+    int allocate(final IntPredicate inUse, final int limit) {
+        for (long attempts = limit + 1L; attempts > 0; attempts --) {
+            final int id = next();
+            if (! inUse.test(id)) {
+                return id;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Read a channel ID off of the wire, converting it to the local ("write") perspective.
+     *
+     * @param buffer the buffer to read from
+     * @return the channel ID
+     */
+    static int readChannelId(final ByteBuffer buffer) {
+        return buffer.getInt() ^ LOCAL_FLAG;
+    }
+
+    /**
+     * Read a compact (protocol version 2) channel ID off of the wire, converting it to the local ("write") perspective.
+     *
+     * @param buffer the buffer to read from
+     * @return the channel ID
+     */
+    static int readCompactChannelId(final ByteBuffer buffer) {
+        return Integer.rotateRight(ProtocolUtils.readVarInt(buffer), 1) ^ LOCAL_FLAG;
+    }
+
+    /**
+     * Write a compact (protocol version 2) channel ID.  The ID is rotated so that its MSB becomes the LSB, which keeps
+     * the varint encoding of the low channel IDs handed out by this allocator down to a byte or two.
+     *
+     * @param buffer the buffer to write to
+     * @param channelId the channel ID, in the local perspective
+     */
+    static void writeCompactChannelId(final ByteBuffer buffer, final int channelId) {
+        ProtocolUtils.writeVarInt(buffer, Integer.rotateLeft(channelId, 1));
+    }
+
+    /**
+     * Get the encoded length of a compact channel ID.
+     *
+     * @param channelId the channel ID, in the local perspective
+     * @return the encoded length in bytes
+     */
+    static int compactChannelIdLength(final int channelId) {
+        return ProtocolUtils.varIntLength(Integer.rotateLeft(channelId, 1));
+    }
+
+    /**
+     * Determine whether the given channel ID (in the local perspective) was allocated by this side of the connection.
+     *
+     * @param channelId the channel ID
+     * @return {@code true} if the ID is in the local half of the space, {@code false} if it is in the remote half
+     */
+    static boolean isLocal(final int channelId) {
+        return (channelId & LOCAL_FLAG) != 0;
+    }
+}
@@ -60,6 +60,7 @@ import javax.security.sasl.SaslClient;
 import javax.security.sasl.SaslClientFactory;
 import javax.security.sasl.SaslException;
 
+import static java.lang.Math.min;
 import static java.security.AccessController.doPrivileged;
 import static org.jboss.remoting3.remote.RemoteLogger.client;
 import static org.xnio.sasl.SaslUtils.EMPTY_BYTES;
@@ -76,6 +77,7 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
     private final Map<String, String> failedMechs = new LinkedHashMap<String, String>();
     private final Set<String> allowedMechs;
     private final Set<String> disallowedMechs;
+    private final int maxVersion;
     static final AuthenticationContextConfigurationClient AUTH_CONFIGURATION_CLIENT = doPrivileged(AuthenticationContextConfigurationClient.ACTION);
 
     ClientConnectionOpenListener(final URI uri, final RemoteConnection connection, final ConnectionProviderContext connectionProviderContext, final AuthenticationContext authenticationContext, final SaslClientFactory saslClientFactory, final OptionMap optionMap) {
@@ -89,10 +91,71 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
         final Sequence<String> disallowedMechs = optionMap.get(Options.SASL_DISALLOWED_MECHANISMS);
         this.allowedMechs = allowedMechs == null ? null : new HashSet<String>(allowedMechs);
         this.disallowedMechs = disallowedMechs == null ? Collections.<String>emptySet() : new HashSet<String>(disallowedMechs);
+        maxVersion = Math.max(1, min(Protocol.VERSION, optionMap.get(RemotingOptions.MAX_PROTOCOL_VERSION, Protocol.VERSION)));
     }
 
     public void handleEvent(final ConnectedMessageChannel channel) {
-        connection.setReadListener(new Greeting(), true);
+        if (optionMap.get(RemotingOptions.HANDSHAKE_PIPELINING, RemotingOptions.DEFAULT_HANDSHAKE_PIPELINING)) {
+            connection.executeAuthenticationTask(new Runnable() {
+                public void run() {
+                    // don't wait for the greeting; until it arrives, the server name is taken from the URI
+                    sendPipelinedRequests(uri.getHost());
+                }
+            });
+        } else {
+            connection.setReadListener(new Greeting(), true);
+        }
+    }
+
+    /**
+     * Send the capabilities request, and if possible the authentication request, without waiting for the greeting or
+     * for the capabilities response.  Authentication is only pipelined when STARTTLS is disabled, since credentials
+     * must never precede a TLS upgrade, and when a preferred mechanism is given as the first of the
+     * {@link Options#SASL_MECHANISMS}.  If the server turns out not to support that mechanism, it rejects the request
+     * and the client falls back to the regular exchange.
+     * <p>
+     * Neither the server's name nor its protocol version is known yet.  The authentication request is therefore
+     * written in the layout of version 1, which every later version shares, and the server name given here is only
+     * provisional: once the greeting and capabilities arrive, the rest of the handshake (including any fallback) uses
+     * the name and version which the server actually announced.
+     *
+     * @param remoteServerName the provisional server name
+     */
+    void sendPipelinedRequests(final String remoteServerName) {
+        final String mechanismName = getPipelinedMechanism();
+        SaslClient saslClient = null;
+        byte[] response = null;
+        if (mechanismName != null) {
+            try {
+                final AuthenticationContextConfigurationClient configurationClient = AUTH_CONFIGURATION_CLIENT;
+                final AuthenticationConfiguration configuration = configurationClient.getAuthenticationConfiguration(uri, authenticationContext);
+                saslClient = configurationClient.createSaslClient(uri, configuration, saslClientFactory, Collections.singleton(mechanismName));
+                if (saslClient != null && saslClient.hasInitialResponse()) {
+                    response = saslClient.evaluateChallenge(EMPTY_BYTES);
+                }
+            } catch (SaslException e) {
+                client.tracef("Client cannot pipeline authentication using mechanism %s: %s", mechanismName, e);
+                saslDispose(saslClient);
+                saslClient = null;
+            }
+        }
+        sendCapRequest(remoteServerName, true, saslClient);
+        if (saslClient != null) {
+            client.tracef("Client initiating pipelined authentication using mechanism %s", mechanismName);
+            sendAuthRequest(saslClient.getMechanismName(), response, 1);
+        }
+    }
+
+    private String getPipelinedMechanism() {
+        if (optionMap.get(Options.SSL_STARTTLS, true)) {
+            return null;
+        }
+        final Sequence<String> mechs = optionMap.get(Options.SASL_MECHANISMS);
+        if (mechs == null || mechs.isEmpty()) {
+            return null;
+        }
+        final String mechName = mechs.get(0);
+        return disallowedMechs.contains(mechName) ? null : mechName;
     }
 
     SaslException allMechanismsFailed() {
@@ -107,6 +170,10 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
     }
 
     void sendCapRequest(final String remoteServerName) {
+        sendCapRequest(remoteServerName, false, null);
+    }
+
+    void sendCapRequest(final String remoteServerName, final boolean pipelined, final SaslClient pipelinedSaslClient) {
         client.trace("Client sending capabilities request");
         // Prepare the request message body
         final Pooled<ByteBuffer> pooledSendBuffer = connection.allocate();
@@ -114,17 +181,21 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
         try {
             final ByteBuffer sendBuffer = pooledSendBuffer.getResource();
             sendBuffer.put(Protocol.CAPABILITIES);
-            ProtocolUtils.writeByte(sendBuffer, Protocol.CAP_VERSION, Protocol.VERSION);
+            ProtocolUtils.writeByte(sendBuffer, Protocol.CAP_VERSION, maxVersion);
             final String localEndpointName = connectionProviderContext.getEndpoint().getName();
             if (localEndpointName != null) {
                 ProtocolUtils.writeString(sendBuffer, Protocol.CAP_ENDPOINT_NAME, localEndpointName);
             }
             ProtocolUtils.writeEmpty(sendBuffer, Protocol.CAP_MESSAGE_CLOSE);
+            ProtocolUtils.writeEmpty(sendBuffer, Protocol.CAP_MESSAGE_COMPRESSION);
+            if (optionMap.get(RemotingOptions.SESSION_RESUMPTION, RemotingOptions.DEFAULT_SESSION_RESUMPTION)) {
+                ProtocolUtils.writeEmpty(sendBuffer, Protocol.CAP_RESUMPTION);
+            }
             ProtocolUtils.writeString(sendBuffer, Protocol.CAP_VERSION_STRING, Version.getVersionString());
             ProtocolUtils.writeInt(sendBuffer, Protocol.CAP_CHANNELS_IN, optionMap.get(RemotingOptions.MAX_INBOUND_CHANNELS, RemotingOptions.DEFAULT_MAX_INBOUND_CHANNELS));
             ProtocolUtils.writeInt(sendBuffer, Protocol.CAP_CHANNELS_OUT, optionMap.get(RemotingOptions.MAX_OUTBOUND_CHANNELS, RemotingOptions.DEFAULT_MAX_OUTBOUND_CHANNELS));
             sendBuffer.flip();
-            connection.setReadListener(new Capabilities(remoteServerName, uri), true);
+            connection.setReadListener(new Capabilities(remoteServerName, uri, pipelined, pipelinedSaslClient), true);
             connection.send(pooledSendBuffer);
             ok = true;
             // all set
@@ -136,6 +207,30 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
         }
     }
 
+    void sendAuthRequest(final String mechanismName, final byte[] response, final int version) {
+        // Prepare the request message body
+        final Pooled<ByteBuffer> pooledSendBuffer = connection.allocate();
+        boolean ok = false;
+        try {
+            final ByteBuffer sendBuffer = pooledSendBuffer.getResource();
+            sendBuffer.put(Protocol.AUTH_REQUEST);
+            if (version < 1) {
+                sendBuffer.put(mechanismName.getBytes(Protocol.UTF_8));
+            } else {
+                ProtocolUtils.writeString(sendBuffer, mechanismName);
+                if (response != null) {
+                    sendBuffer.put(response);
+                }
+            }
+
+            sendBuffer.flip();
+            connection.send(pooledSendBuffer);
+            ok = true;
+        } finally {
+            if (! ok) pooledSendBuffer.free();
+        }
+    }
+
     private void saslDispose(final SaslClient saslClient) {
         if (saslClient != null) {
             try {
@@ -146,6 +241,39 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
         }
     }
 
+    /**
+     * Read the body of a greeting.
+     *
+     * @param receiveBuffer the buffer holding the greeting, positioned after the message type
+     * @param channel the channel the greeting was received on
+     * @return the server name which the greeting gives, or if none, the peer's host name
+     */
+    String readGreeting(final ByteBuffer receiveBuffer, final ConnectedMessageChannel channel) {
+        String remoteServerName = null;
+        while (receiveBuffer.hasRemaining()) {
+            final byte type = receiveBuffer.get();
+            final int len = receiveBuffer.get() & 0xff;
+            final ByteBuffer data = Buffers.slice(receiveBuffer, len);
+            switch (type) {
+                case Protocol.GRT_SERVER_NAME: {
+                    remoteServerName = Buffers.getModifiedUtf8(data);
+                    client.tracef("Client received server name: %s", remoteServerName);
+                    break;
+                }
+                default: {
+                    client.tracef("Client received unknown greeting message %02x", Integer.valueOf(type & 0xff));
+                    // unknown, skip it for forward compatibility.
+                    break;
+                }
+            }
+        }
+        if (remoteServerName == null) {
+            // they didn't give their name; guess it from the IP
+            remoteServerName = channel.getPeerAddress(InetSocketAddress.class).getHostName();
+        }
+        return remoteServerName;
+    }
+
     final class Greeting implements ChannelListener<ConnectedMessageChannel> {
 
         public void handleEvent(final ConnectedMessageChannel channel) {
@@ -170,7 +298,7 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
                 }
                 client.tracef("Received %s", receiveBuffer);
                 receiveBuffer.flip();
-                String remoteServerName = null;
+                connection.getEventLog().record(false, receiveBuffer);
                 final byte msgType = receiveBuffer.get();
                 switch (msgType) {
                     case Protocol.CONNECTION_ALIVE: {
@@ -189,28 +317,8 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
                     }
                     case Protocol.GREETING: {
                         client.trace("Client received greeting");
-                        while (receiveBuffer.hasRemaining()) {
-                            final byte type = receiveBuffer.get();
-                            final int len = receiveBuffer.get() & 0xff;
-                            final ByteBuffer data = Buffers.slice(receiveBuffer, len);
-                            switch (type) {
-                                case Protocol.GRT_SERVER_NAME: {
-                                    remoteServerName = Buffers.getModifiedUtf8(data);
-                                    client.tracef("Client received server name: %s", remoteServerName);
-                                    break;
-                                }
-                                default: {
-                                    client.tracef("Client received unknown greeting message %02x", Integer.valueOf(type & 0xff));
-                                    // unknown, skip it for forward compatibility.
-                                    break;
-                                }
-                            }
-                        }
-                        if (remoteServerName == null) {
-                            // they didn't give their name; guess it from the IP
-                            remoteServerName = channel.getPeerAddress(InetSocketAddress.class).getHostName();
-                        }
-                        sendCapRequest(remoteServerName);
+                        connection.handshakePhase("greeting");
+                        sendCapRequest(readGreeting(receiveBuffer, channel));
                         return;
                     }
                     default: {
@@ -231,12 +339,17 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
 
     final class Capabilities implements ChannelListener<ConnectedMessageChannel> {
 
-        private final String remoteServerName;
+        private String remoteServerName;
         private final URI uri;
+        private final SaslClient pipelinedSaslClient;
+        private boolean greetingPending;
 
-        Capabilities(final String remoteServerName, final URI uri) {
+        Capabilities(final String remoteServerName, final URI uri, final boolean pipelined, final SaslClient pipelinedSaslClient) {
             this.remoteServerName = remoteServerName;
             this.uri = uri;
+            this.pipelinedSaslClient = pipelinedSaslClient;
+            // a pipelined capabilities request is sent before the greeting arrives
+            greetingPending = pipelined;
         }
 
         public void handleEvent(final ConnectedMessageChannel channel) {
@@ -260,10 +373,24 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
                     }
                 }
                 receiveBuffer.flip();
+                connection.getEventLog().record(false, receiveBuffer);
                 boolean starttls = false;
                 final Set<String> serverSaslMechs = new LinkedHashSet<String>();
                 final byte msgType = receiveBuffer.get();
                 switch (msgType) {
+                    case Protocol.GREETING: {
+                        if (greetingPending) {
+                            client.trace("Client received greeting (pipelined)");
+                            connection.handshakePhase("greeting");
+                            greetingPending = false;
+                            // replace the server name which was guessed from the URI
+                            remoteServerName = readGreeting(receiveBuffer, channel);
+                            return;
+                        }
+                        client.unknownProtocolId(msgType);
+                        connection.handleException(client.invalidMessage(connection));
+                        return;
+                    }
                     case Protocol.CONNECTION_ALIVE: {
                         client.trace("Client received connection alive");
                         connection.sendAliveResponse();
@@ -280,8 +407,10 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
                     }
                     case Protocol.CAPABILITIES: {
                         client.trace("Client received capabilities response");
+                        connection.handshakePhase("capabilities");
                         String remoteEndpointName = null;
-                        int version = Protocol.VERSION;
+                        // a server which does not send its version speaks version 1
+                        int version = 1;
                         int behavior = Protocol.BH_FAULTY_MSG_SIZE;
                         boolean useDefaultChannels = true;
                         int channelsIn = 40;
@@ -292,8 +421,9 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
                             final ByteBuffer data = Buffers.slice(receiveBuffer, len);
                             switch (type) {
                                 case Protocol.CAP_VERSION: {
-                                    version = data.get() & 0xff;
-                                    client.tracef("Client received capability: version %d", Integer.valueOf(version & 0xff));
+                                    final int remoteVersion = data.get() & 0xff;
+                                    client.tracef("Client received capability: version %d", Integer.valueOf(remoteVersion));
+                                    version = min(maxVersion, remoteVersion);
                                     break;
                                 }
                                 case Protocol.CAP_SASL_MECH: {
@@ -323,6 +453,16 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
                                     client.tracef("Client received capability: message close protocol supported");
                                     break;
                                 }
+                                case Protocol.CAP_MESSAGE_COMPRESSION: {
+                                    behavior |= Protocol.BH_MESSAGE_COMPRESSION;
+                                    client.tracef("Client received capability: message compression supported");
+                                    break;
+                                }
+                                case Protocol.CAP_RESUMPTION: {
+                                    behavior |= Protocol.BH_RESUMPTION;
+                                    client.tracef("Client received capability: session resumption supported");
+                                    break;
+                                }
                                 case Protocol.CAP_VERSION_STRING: {
                                     // remote side must be >= 3.2.16.GA
                                     behavior &= ~Protocol.BH_FAULTY_MSG_SIZE;
@@ -355,6 +495,14 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
                             channelsIn = 40;
                             channelsOut = 40;
                         }
+                        if (version >= 2) {
+                            behavior |= Protocol.BH_COMPACT_HEADERS;
+                        }
+                        if (pipelinedSaslClient != null) {
+                            // the authentication request is already on its way, in a layout which every version reads
+                            connection.setReadListener(new Authentication(pipelinedSaslClient, remoteServerName, remoteEndpointName, behavior, channelsIn, channelsOut), true);
+                            return;
+                        }
                         if (starttls) {
                             // only initiate starttls if not forbidden by config
                             if (optionMap.get(Options.SSL_STARTTLS, true)) {
@@ -376,6 +524,24 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
                             }
                         }
 
+                        if ((behavior & Protocol.BH_RESUMPTION) != 0 && optionMap.get(RemotingOptions.SESSION_RESUMPTION, RemotingOptions.DEFAULT_SESSION_RESUMPTION) && ! failedMechs.containsKey(Protocol.RESUMPTION_MECH)) {
+                            final byte[] ticket = connection.getRemoteConnectionProvider().takeResumptionTicket(uri, authenticationContext);
+                            if (ticket != null) {
+                                client.trace("Client presenting resumption ticket");
+                                final SaslClient saslClient = new ResumptionSaslClient(ticket);
+                                final byte[] response;
+                                try {
+                                    response = saslClient.evaluateChallenge(EMPTY_BYTES);
+                                } catch (SaslException e) {
+                                    // not possible for an initial response
+                                    throw new IllegalStateException(e);
+                                }
+                                connection.setReadListener(new Authentication(saslClient, remoteServerName, remoteEndpointName, behavior, channelsIn, channelsOut), true);
+                                sendAuthRequest(Protocol.RESUMPTION_MECH, response, version);
+                                return;
+                            }
+                        }
+
                         if (serverSaslMechs.isEmpty()) {
                             if (failedMechs.isEmpty()) {
                                 connection.handleException(new SaslException("Authentication failed: the server presented no authentication mechanisms"));
@@ -408,7 +574,7 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
                         final int negotiatedVersion = version;
                         final SaslClient usedSaslClient = saslClient;
                         final Authentication authentication = new Authentication(usedSaslClient, remoteServerName, remoteEndpointName, behavior, channelsIn, channelsOut);
-                        connection.getExecutor().execute(new Runnable() {
+                        connection.executeAuthenticationTask(new Runnable() {
                             public void run() {
                                 final byte[] response;
                                 try {
@@ -420,29 +586,8 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
                                     sendCapRequest(remoteServerName);
                                     return;
                                 }
-                                // Prepare the request message body
-                                final Pooled<ByteBuffer> pooledSendBuffer = connection.allocate();
-                                boolean ok = false;
-                                try {
-                                    final ByteBuffer sendBuffer = pooledSendBuffer.getResource();
-                                    sendBuffer.put(Protocol.AUTH_REQUEST);
-                                    if (negotiatedVersion < 1) {
-                                        sendBuffer.put(mechanismName.getBytes(Protocol.UTF_8));
-                                    } else {
-                                        ProtocolUtils.writeString(sendBuffer, mechanismName);
-                                        if (response != null) {
-                                            sendBuffer.put(response);
-                                        }
-                                    }
-
-                                    sendBuffer.flip();
-                                    connection.send(pooledSendBuffer);
-                                    ok = true;
-                                    connection.setReadListener(authentication, true);
-                                    return;
-                                } finally {
-                                    if (! ok) pooledSendBuffer.free();
-                                }
+                                sendAuthRequest(mechanismName, response, negotiatedVersion);
+                                connection.setReadListener(authentication, true);
                             }
                         });
                         return;
@@ -492,6 +637,7 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
                 }
                 client.tracef("Received %s", receiveBuffer);
                 receiveBuffer.flip();
+                connection.getEventLog().record(false, receiveBuffer);
                 final byte msgType = receiveBuffer.get();
                 switch (msgType) {
                     case Protocol.CONNECTION_ALIVE: {
@@ -510,6 +656,7 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
                     }
                     case Protocol.STARTTLS: {
                         client.trace("Client received STARTTLS response");
+                        connection.handshakePhase("starttls");
                         Channel c = channel;
                         for (;;) {
                             if (c instanceof SslChannel) {
@@ -553,6 +700,7 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
         private final int behavior;
         private final int maxInboundChannels;
         private final int maxOutboundChannels;
+        private byte[] resumptionTicket;
 
         Authentication(final SaslClient saslClient, final String serverName, final String endpointName, final int behavior, final int maxInboundChannels, final int maxOutboundChannels) {
             this.saslClient = saslClient;
@@ -587,6 +735,7 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
                     }
                 }
                 buffer.flip();
+                connection.getEventLog().record(false, buffer);
                 final byte msgType = buffer.get();
                 switch (msgType) {
                     case Protocol.CONNECTION_ALIVE: {
@@ -607,7 +756,7 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
                     case Protocol.AUTH_CHALLENGE: {
                         client.trace("Client received authentication challenge");
                         channel.suspendReads();
-                        connection.getExecutor().execute(new Runnable() {
+                        free = ! connection.executeAuthenticationTask(new Runnable() {
                             public void run() {
                                 try {
                                     final boolean clientComplete = saslClient.isComplete();
@@ -647,13 +796,13 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
                                 }
                             }
                         });
-                        free = false;
                         return;
                     }
                     case Protocol.AUTH_COMPLETE: {
                         client.trace("Client received authentication complete");
+                        connection.handshakePhase("authentication");
                         channel.suspendReads();
-                        connection.getExecutor().execute(new Runnable() {
+                        free = ! connection.executeAuthenticationTask(new Runnable() {
                             public void run() {
                                 try {
                                     final boolean clientComplete = saslClient.isComplete();
@@ -682,6 +831,9 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
                                     if ("auth-int".equals(qop) || "auth-conf".equals(qop)) {
                                         connection.setSaslWrapper(SaslWrapper.create(saslClient));
                                     }
+                                    if (resumptionTicket != null) {
+                                        connection.getRemoteConnectionProvider().putResumptionTicket(uri, authenticationContext, resumptionTicket);
+                                    }
                                     // auth complete.
                                     final ConnectionHandlerFactory connectionHandlerFactory = new ConnectionHandlerFactory() {
                                         public ConnectionHandler createInstance(final ConnectionHandlerContext connectionContext) {
@@ -690,6 +842,7 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
                                             final RemoteConnectionHandler connectionHandler = new RemoteConnectionHandler(connectionContext, connection, maxInboundChannels, maxOutboundChannels, remoteEndpointName, behavior);
                                             connection.setReadListener(new RemoteReadListener(connectionHandler, connection), false);
                                             connection.getRemoteConnectionProvider().addConnectionHandler(connectionHandler);
+                                            connection.handshakePhase("complete");
                                             return connectionHandler;
                                         }
                                     };
@@ -701,7 +854,12 @@ final class ClientConnectionOpenListener implements ChannelListener<ConnectedMes
                                 }
                             }
                         });
-                        free = false;
+                        return;
+                    }
+                    case Protocol.RESUMPTION_TICKET: {
+                        client.trace("Client received resumption ticket");
+                        // only kept once the server has proven itself by completing authentication
+                        resumptionTicket = Buffers.take(buffer, buffer.remaining());
                         return;
                     }
                     case Protocol.AUTH_REJECTED: {
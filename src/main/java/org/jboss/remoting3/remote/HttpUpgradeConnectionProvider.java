@@ -37,11 +37,11 @@ import java.security.SecureRandom;
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.net.ssl.SSLContext;
 import javax.security.sasl.SaslServerFactory;
 
 import org.jboss.remoting3.spi.ConnectionProviderContext;
 import org.jboss.remoting3.spi.ExternalConnectionProvider;
-import org.wildfly.security.auth.AuthenticationContext;
 import org.wildfly.security.auth.provider.SecurityDomain;
 import org.wildfly.security.sasl.util.PrivilegedSaslServerFactory;
 import org.wildfly.security.sasl.util.SaslFactories;
@@ -135,7 +135,7 @@ final class HttpUpgradeConnectionProvider extends RemoteConnectionProvider {
         return future.getIoFuture();
     }
 
-    protected IoFuture<ConnectedSslStreamChannel> createSslConnection(final InetSocketAddress destination, final OptionMap options, final AuthenticationContext authenticationContext, final ChannelListener<ConnectedStreamChannel> openListener) {
+    protected IoFuture<ConnectedSslStreamChannel> createSslConnection(final InetSocketAddress destination, final OptionMap options, final SSLContext sslContext, final ChannelListener<ConnectedStreamChannel> openListener) {
         final URI uri;
         try {
             uri = new URI("https", "", destination.getHostString(), destination.getPort(), "/", "", "");
@@ -39,8 +39,17 @@ import static org.xnio.IoUtils.safeClose;
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
 final class InboundMessage {
-    final short messageId;
+    final int messageId;
     final RemoteConnectionChannel channel;
+    final int headerLength;
+    /**
+     * The time at which the first frame of this message arrived, from {@link System#nanoTime()}.
+     */
+    final long receiveTime = System.nanoTime();
+    /**
+     * The number of content bytes delivered so far.
+     */
+    long size;
     int inboundWindow;
     boolean streamClosed;
     boolean closeSent;
@@ -50,17 +59,18 @@ final class InboundMessage {
 
     static final IntIndexer<InboundMessage> INDEXER = new IntIndexer<InboundMessage>() {
         public int getKey(final InboundMessage argument) {
-            return argument.messageId & 0xffff;
+            return argument.messageId;
         }
 
         public boolean equals(final InboundMessage argument, final int index) {
-            return (argument.messageId & 0xffff) == index;
+            return argument.messageId == index;
         }
     };
 
-    InboundMessage(final short messageId, final RemoteConnectionChannel channel, int inboundWindow, final long maxInboundMessageSize) {
+    InboundMessage(final int messageId, final RemoteConnectionChannel channel, int inboundWindow, final long maxInboundMessageSize) {
         this.messageId = messageId;
         this.channel = channel;
+        headerLength = channel.getMessageDataHeaderLength(messageId, true);
         this.inboundWindow = inboundWindow;
         remaining = maxInboundMessageSize;
     }
@@ -123,7 +133,7 @@ final class InboundMessage {
         }
         final boolean badMsgSize = channel.getConnectionHandler().isFaultyMessageSize();
         int consumed = acked.getResource().position();
-        if (! badMsgSize) consumed -= 8; // position minus header length (not including framing size)
+        if (! badMsgSize) consumed -= headerLength; // position minus header length (not including framing size)
         inboundWindow += consumed;
         Pooled<ByteBuffer> pooled = allocate(Protocol.MESSAGE_WINDOW_OPEN);
         boolean ok = false;
@@ -188,13 +198,10 @@ final class InboundMessage {
     };
 
     Pooled<ByteBuffer> allocate(byte protoId) {
-        Pooled<ByteBuffer> pooled = channel.allocate(protoId);
-        ByteBuffer buffer = pooled.getResource();
-        buffer.putShort(messageId);
-        return pooled;
+        return channel.allocate(protoId, messageId);
     }
 
-    void handleIncoming(Pooled<ByteBuffer> pooledBuffer) {
+    void handleIncoming(Pooled<ByteBuffer> pooledBuffer, final int flags) {
         boolean eof;
         boolean free = true;
         try {
@@ -206,11 +213,8 @@ final class InboundMessage {
                     return;
                 }
                 if (log.isTraceEnabled()) {
-                    log.tracef("Received message (chan %08x msg %04x) (%d-%d=%d remaining)", Integer.valueOf(channel.getChannelId()), Short.valueOf(messageId), Integer.valueOf(inboundWindow + bufRemaining), Integer.valueOf(bufRemaining), Integer.valueOf(inboundWindow));
+                    log.tracef("Received message (chan %08x msg %04x) (%d-%d=%d remaining)", Integer.valueOf(channel.getChannelId()), Integer.valueOf(messageId), Integer.valueOf(inboundWindow + bufRemaining), Integer.valueOf(bufRemaining), Integer.valueOf(inboundWindow));
                 }
-                buffer.position(buffer.position() - 1);
-                byte flags = buffer.get();
-
                 eof = (flags & Protocol.MSG_FLAG_EOF) != 0;
                 boolean cancelled = (flags & Protocol.MSG_FLAG_CANCELLED) != 0;
                 if (bufRemaining > remaining) {
@@ -231,11 +235,18 @@ final class InboundMessage {
                     }
                 } else if (! cancelled) {
                     remaining -= bufRemaining;
+                    size += bufRemaining;
                     free = false;
                     inputStream.push(pooledBuffer);
                 }
                 if (eof) {
                     eofReceived = true;
+                    if (this.cancelled) {
+                        channel.recordMessageCancelled();
+                    } else {
+                        channel.recordMessageCompleted();
+                    }
+                    ProtocolEvents.messageEnded(channel.getChannelId(), messageId, false, size, System.nanoTime() - receiveTime, this.cancelled);
                     if (!streamClosed) {
                         inputStream.pushEof();
                     }
@@ -256,6 +267,8 @@ final class InboundMessage {
         RemoteLogger.conn.duplicateMessageId(messageId, channel.getRemoteConnection().getChannel().getPeerAddress());
         synchronized (inputStream) {
             if (! streamClosed) {
+                channel.recordMessageCancelled();
+                ProtocolEvents.messageEnded(channel.getChannelId(), messageId, false, size, System.nanoTime() - receiveTime, true);
                 eofReceived = true; // it wasn't really, but we should act like it was
                 closeSent = true; // we didn't really, but we should act like we did
                 cancelled = true; // just not the usual way...
@@ -265,7 +278,7 @@ final class InboundMessage {
     }
 
     void dumpState(final StringBuilder b) {
-        b.append("            ").append(String.format("Inbound message ID %04x, window %d\n", messageId & 0xFFFF, inboundWindow));
+        b.append("            ").append(String.format("Inbound message ID %04x, window %d\n", Integer.valueOf(messageId), Integer.valueOf(inboundWindow)));
         b.append("            ").append("* flags: ");
         if (cancelled) b.append("cancelled ");
         if (closeSent) b.append("close-sent ");
@@ -0,0 +1,175 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.remote;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of latencies, recorded in nanoseconds.
+ * <p>
+ * Buckets are laid out in the manner of an HDR histogram: values below {@link #SUB_BUCKET_COUNT} each have a bucket of
+ * their own, and every power of two above that is split into {@link #SUB_BUCKET_COUNT} equal sub-buckets, which bounds
+ * the error of any reported value to about three percent.  Values beyond {@link #MAX_VALUE} (about 18 minutes) are
+ * counted in the last bucket.  Recording a value is a few shifts and an atomic increment, and never allocates.
+ * <p>
+ * A reset does not stop concurrent recorders, so a value recorded during a reset may be counted in either interval,
+ * or partly in both.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class LatencyHistogram implements LatencyHistogramMXBean {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_SHIFT = 35;
+    static final long MAX_VALUE = (2L * SUB_BUCKET_COUNT << MAX_SHIFT) - 1;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_SHIFT + 1) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+    private volatile long intervalStartTime = System.currentTimeMillis();
+
+    LatencyHistogram() {
+    }
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    void record(final long nanos) {
+        final long value = Math.max(0L, Math.min(nanos, MAX_VALUE));
+        counts.incrementAndGet(bucketIndex(value));
+        count.increment();
+        total.add(value);
+        final AtomicLong max = this.max;
+        long oldMax;
+        do {
+            oldMax = max.get();
+            if (value <= oldMax) {
+                return;
+            }
+        } while (! max.compareAndSet(oldMax, value));
+    }
+
+    static int bucketIndex(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    /**
+     * Get the largest value which falls into the given bucket.
+     *
+     * @param index the bucket index
+     * @return the largest value of the bucket
+     */
+    static long bucketUpperBound(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        final int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        return ((long) (SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+    }
+
+    long nanosAtPercentile(final double percentile) {
+        final AtomicLongArray counts = this.counts;
+        final long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i ++) {
+            total += snapshot[i] = counts.get(i);
+        }
+        if (total == 0L) {
+            return 0L;
+        }
+        final long target = Math.max(1L, (long) Math.ceil(total * Math.max(0.0, Math.min(100.0, percentile)) / 100.0));
+        long seen = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i ++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(bucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    private static long toMicros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    public long getIntervalStartTime() {
+        return intervalStartTime;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMean() {
+        final long count = this.count.sum();
+        return count == 0L ? 0L : toMicros(total.sum() / count);
+    }
+
+    public long getMax() {
+        return toMicros(max.get());
+    }
+
+    public long getPercentile50() {
+        return valueAtPercentile(50.0);
+    }
+
+    public long getPercentile90() {
+        return valueAtPercentile(90.0);
+    }
+
+    public long getPercentile99() {
+        return valueAtPercentile(99.0);
+    }
+
+    public long getPercentile999() {
+        return valueAtPercentile(99.9);
+    }
+
+    public long valueAtPercentile(final double percentile) {
+        return toMicros(nanosAtPercentile(percentile));
+    }
+
+    public void reset() {
+        intervalStartTime = System.currentTimeMillis();
+        final AtomicLongArray counts = this.counts;
+        for (int i = 0; i < BUCKET_COUNT; i ++) {
+            counts.set(i, 0L);
+        }
+        count.reset();
+        total.reset();
+        max.set(0L);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.remote;
+
+/**
+ * The management view of a latency histogram.  The histogram covers the interval since it was created or last reset;
+ * all times are in microseconds, and are accurate to within about three percent.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public interface LatencyHistogramMXBean {
+
+    /**
+     * Get the time at which the current interval started.
+     *
+     * @return the start time, in milliseconds since the epoch
+     */
+    long getIntervalStartTime();
+
+    /**
+     * Get the number of values recorded in the current interval.
+     *
+     * @return the number of values
+     */
+    long getCount();
+
+    /**
+     * Get the mean of the values recorded in the current interval.
+     *
+     * @return the mean, in microseconds
+     */
+    long getMean();
+
+    /**
+     * Get the largest value recorded in the current interval.
+     *
+     * @return the largest value, in microseconds
+     */
+    long getMax();
+
+    /**
+     * Get the median of the values recorded in the current interval.
+     *
+     * @return the median, in microseconds
+     */
+    long getPercentile50();
+
+    /**
+     * Get the 90th percentile of the values recorded in the current interval.
+     *
+     * @return the 90th percentile, in microseconds
+     */
+    long getPercentile90();
+
+    /**
+     * Get the 99th percentile of the values recorded in the current interval.
+     *
+     * @return the 99th percentile, in microseconds
+     */
+    long getPercentile99();
+
+    /**
+     * Get the 99.9th percentile of the values recorded in the current interval.
+     *
+     * @return the 99.9th percentile, in microseconds
+     */
+    long getPercentile999();
+
+    /**
+     * Get the value at the given percentile of the values recorded in the current interval.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the value, in microseconds
+     */
+    long valueAtPercentile(double percentile);
+
+    /**
+     * Discard the recorded values and start a new interval.
+     */
+    void reset();
+}
@@ -0,0 +1,151 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.remote;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A deflater and inflater pair, along with the scratch space needed to use them with pooled (possibly direct) buffers.
+ * Each frame of message data is compressed as a separate raw deflate stream, so no state is carried between frames and
+ * a compressor can be shared by every channel.  Compressors are pooled, since each one holds a sizable amount of native
+ * memory; a compressor which does not fit back into the pool is disposed of right away.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class MessageCompressor {
+
+    private static final BlockingQueue<MessageCompressor> pool = new ArrayBlockingQueue<MessageCompressor>(Math.max(2, Runtime.getRuntime().availableProcessors() << 1));
+
+    private Deflater deflater;
+    private Inflater inflater;
+    private byte[] input = new byte[0];
+    private byte[] output = new byte[0];
+
+    private MessageCompressor() {
+    }
+
+    /**
+     * Get a compressor from the pool.  The caller must {@linkplain #release() release} it afterwards.
+     *
+     * @return the compressor
+     */
+    static MessageCompressor get() {
+        final MessageCompressor compressor = pool.poll();
+        return compressor == null ? new MessageCompressor() : compressor;
+    }
+
+    /**
+     * Return this compressor to the pool.
+     */
+    void release() {
+        if (! pool.offer(this)) {
+            if (deflater != null) deflater.end();
+            if (inflater != null) inflater.end();
+        }
+    }
+
+    /**
+     * Compress the content of the given buffer in place, from {@code offset} up to its limit.  If compression would
+     * not make the content smaller, the buffer is left unchanged.
+     *
+     * @param buffer the flipped buffer
+     * @param offset the absolute offset of the content
+     * @param level the deflate compression level
+     * @return {@code true} if the content was compressed, {@code false} if it was left as is
+     */
+    boolean deflate(final ByteBuffer buffer, final int offset, final int level) {
+        final int length = buffer.limit() - offset;
+        final byte[] input = getInput(buffer, offset, length);
+        final byte[] output = this.output.length >= length ? this.output : (this.output = new byte[length]);
+        Deflater deflater = this.deflater;
+        if (deflater == null) {
+            deflater = this.deflater = new Deflater(level, true);
+        } else {
+            deflater.reset();
+            deflater.setLevel(level);
+        }
+        deflater.setInput(input, 0, length);
+        deflater.finish();
+        // anything which does not fit into the original length is not worth sending
+        final int compressed = deflater.deflate(output, 0, length);
+        if (! deflater.finished() || compressed >= length) {
+            return false;
+        }
+        final int position = buffer.position();
+        buffer.position(offset);
+        buffer.put(output, 0, compressed);
+        buffer.limit(offset + compressed);
+        buffer.position(position);
+        return true;
+    }
+
+    /**
+     * Decompress the content of the given buffer in place, from {@code offset} up to its limit.  The decompressed
+     * content may extend up to the capacity of the buffer.
+     *
+     * @param buffer the flipped buffer
+     * @param offset the absolute offset of the content
+     * @throws IOException if the content is not a valid deflate stream or does not fit into the buffer
+     */
+    void inflate(final ByteBuffer buffer, final int offset) throws IOException {
+        final int length = buffer.limit() - offset;
+        final int maxLength = buffer.capacity() - offset;
+        final byte[] input = getInput(buffer, offset, length);
+        final byte[] output = this.output.length >= maxLength ? this.output : (this.output = new byte[maxLength]);
+        Inflater inflater = this.inflater;
+        if (inflater == null) {
+            inflater = this.inflater = new Inflater(true);
+        } else {
+            inflater.reset();
+        }
+        inflater.setInput(input, 0, length);
+        final int inflated;
+        try {
+            inflated = inflater.inflate(output, 0, maxLength);
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid compressed message data", e);
+        }
+        if (! inflater.finished()) {
+            throw new IOException(inflater.needsInput() ? "Truncated compressed message data" : "Decompressed message data overruns the receive buffer");
+        }
+        final int position = buffer.position();
+        buffer.limit(offset + inflated);
+        buffer.position(offset);
+        buffer.put(output, 0, inflated);
+        buffer.position(position);
+    }
+
+    private byte[] getInput(final ByteBuffer buffer, final int offset, final int length) {
+        final byte[] input = this.input.length >= length ? this.input : (this.input = new byte[length]);
+        final ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.get(input, 0, length);
+        return input;
+    }
+}
@@ -43,10 +43,23 @@ import static org.jboss.remoting3.remote.RemoteLogger.log;
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
 final class OutboundMessage extends MessageOutputStream {
-    final short messageId;
+    final int messageId;
     final RemoteConnectionChannel channel;
+    /**
+     * The length of the message data frame header, and the offset of the flags within it.
+     */
+    final int headerLength;
+    final int flagsIndex;
     final BufferPipeOutputStream pipeOutputStream;
     final int maximumWindow;
+    /**
+     * The time at which this message was started, from {@link System#nanoTime()}.
+     */
+    final long startTime = System.nanoTime();
+    /**
+     * The number of content bytes sent so far.
+     */
+    long size;
     int window;
     boolean closeCalled;
     boolean closeReceived;
@@ -57,7 +70,7 @@ final class OutboundMessage extends MessageOutputStream {
     long remaining;
     final BufferPipeOutputStream.BufferWriter bufferWriter = new BufferPipeOutputStream.BufferWriter() {
         public Pooled<ByteBuffer> getBuffer(boolean firstBuffer) throws IOException {
-            Pooled<ByteBuffer> pooled = allocate(Protocol.MESSAGE_DATA);
+            Pooled<ByteBuffer> pooled = allocateMessageData(firstBuffer ? Protocol.MSG_FLAG_NEW : 0);
             boolean ok = false;
             try {
                 ByteBuffer buffer = pooled.getResource();
@@ -65,9 +78,8 @@ final class OutboundMessage extends MessageOutputStream {
                 //Reserve room for the transmit data which is 4 bytes
                 buffer.limit(buffer.limit() - 4);
 
-                buffer.put(firstBuffer ? Protocol.MSG_FLAG_NEW : 0); // flags
                 // header size plus window size
-                int windowPlusHeader = maximumWindow + 8;
+                int windowPlusHeader = maximumWindow + headerLength;
                 if (buffer.remaining() > windowPlusHeader) {
                     // never try to write more than the maximum window size
                     buffer.limit(windowPlusHeader);
@@ -100,11 +112,13 @@ final class OutboundMessage extends MessageOutputStream {
                 final ByteBuffer buffer = pooledBuffer.getResource();
                 final ConnectedMessageChannel messageChannel = channel.getRemoteConnection().getChannel();
                 final boolean badMsgSize = channel.getConnectionHandler().isFaultyMessageSize();
-                final int msgSize = badMsgSize ? buffer.remaining() : buffer.remaining() - 8;
+                final int msgSize = badMsgSize ? buffer.remaining() : buffer.remaining() - headerLength;
                 boolean sendCancel = cancelled && ! cancelSent;
                 boolean intr = false;
                 if (msgSize > 0 && ! sendCancel) {
                     // empty messages and cancellation both bypass the transmit window check
+                    long stallStart = 0L;
+                    boolean stalled = false;
                     for (;;) {
                         if (window >= msgSize) {
                             window -= msgSize;
@@ -113,6 +127,10 @@ final class OutboundMessage extends MessageOutputStream {
                             }
                             break;
                         }
+                        if (! stalled) {
+                            stalled = true;
+                            stallStart = System.nanoTime();
+                        }
                         try {
                             log.trace("Message window is closed, waiting");
                             pipeOutputStream.wait();
@@ -131,11 +149,17 @@ final class OutboundMessage extends MessageOutputStream {
                             throw new MessageCancelledException("Message was cancelled");
                         }
                     }
+                    if (stalled) {
+                        final long stallTime = System.nanoTime() - stallStart;
+                        channel.recordWindowStall(stallTime);
+                        ProtocolEvents.windowStalled(channel.getChannelId(), messageId, stallTime);
+                    }
+                    size += msgSize;
                 }
                 if (eof || sendCancel || intr) {
                     // EOF flag (sync close)
                     eofSent = true;
-                    buffer.put(7, (byte) (buffer.get(7) | Protocol.MSG_FLAG_EOF));
+                    buffer.put(flagsIndex, (byte) (buffer.get(flagsIndex) | Protocol.MSG_FLAG_EOF));
                     log.tracef("Sending message (with EOF) (%s) to %s", buffer, messageChannel);
                     if (! channel.getConnectionHandler().isMessageClose()) {
                         // free now, because we may never receive a close message
@@ -145,15 +169,27 @@ final class OutboundMessage extends MessageOutputStream {
                         released = true;
                         channel.closeOutboundMessage();
                     }
+                    if (sendCancel || intr) {
+                        channel.recordMessageCancelled();
+                    } else {
+                        channel.recordMessageCompleted();
+                    }
+                    ProtocolEvents.messageEnded(channel.getChannelId(), messageId, true, size, System.nanoTime() - startTime, sendCancel || intr);
                 }
                 if (sendCancel || intr) {
                     cancelSent = true;
-                    buffer.put(7, (byte) (buffer.get(7) | Protocol.MSG_FLAG_CANCELLED));
-                    buffer.limit(8); // discard everything in the buffer so we can send even if there is no window
+                    buffer.put(flagsIndex, (byte) (buffer.get(flagsIndex) | Protocol.MSG_FLAG_CANCELLED));
+                    buffer.limit(headerLength); // discard everything in the buffer so we can send even if there is no window
                     log.trace("Message includes cancel flag");
+                } else {
+                    // the window is accounted for in uncompressed bytes on both sides
+                    channel.compressMessageData(buffer, headerLength, flagsIndex);
                 }
                 channel.getRemoteConnection().send(pooledBuffer);
                 ok = true;
+                if (eof && ! sendCancel && ! intr) {
+                    channel.recordMessageSent(System.nanoTime() - startTime);
+                }
                 if (intr) {
                     Thread.currentThread().interrupt();
                     throw new InterruptedIOException("Interrupted on write (message cancelled)");
@@ -171,17 +207,20 @@ final class OutboundMessage extends MessageOutputStream {
 
     static final IntIndexer<OutboundMessage> INDEXER = new IntIndexer<OutboundMessage>() {
         public int getKey(final OutboundMessage argument) {
-            return argument.messageId & 0xffff;
+            return argument.messageId;
         }
 
         public boolean equals(final OutboundMessage argument, final int index) {
-            return (argument.messageId & 0xffff) == index;
+            return argument.messageId == index;
         }
     };
 
-    OutboundMessage(final short messageId, final RemoteConnectionChannel channel, final int window, final long maxOutboundMessageSize) {
+    OutboundMessage(final int messageId, final RemoteConnectionChannel channel, final int window, final long maxOutboundMessageSize) {
         this.messageId = messageId;
         this.channel = channel;
+        headerLength = channel.getMessageDataHeaderLength(messageId, false);
+        // compact headers carry the flags in the low bits of the frame type
+        flagsIndex = channel.isCompactHeaders() ? 0 : 7;
         this.window = maximumWindow = window;
         this.remaining = maxOutboundMessageSize;
         try {
@@ -192,10 +231,14 @@ final class OutboundMessage extends MessageOutputStream {
         }
     }
 
-    Pooled<ByteBuffer> allocate(byte protoId) {
-        Pooled<ByteBuffer> pooled = channel.allocate(protoId);
+    Pooled<ByteBuffer> allocateMessageData(int flags) {
+        Pooled<ByteBuffer> pooled = channel.allocate(Protocol.MESSAGE_DATA, messageId);
         ByteBuffer buffer = pooled.getResource();
-        buffer.putShort(messageId);
+        if (channel.isCompactHeaders()) {
+            buffer.put(flagsIndex, (byte) (buffer.get(flagsIndex) | flags));
+        } else {
+            buffer.put((byte) flags);
+        }
         return pooled;
     }
 
@@ -213,17 +256,21 @@ final class OutboundMessage extends MessageOutputStream {
     void remoteClosed() {
         synchronized (pipeOutputStream) {
             closeReceived = true;
+            if (! eofSent) {
+                // the peer gave up on the message before we finished it
+                channel.recordMessageCancelled();
+                ProtocolEvents.messageEnded(channel.getChannelId(), messageId, true, size, System.nanoTime() - startTime, true);
+            }
             Pooled<ByteBuffer> pooled = pipeOutputStream.breakPipe();
             if (pooled != null) {
                 pooled.free();
             }
             if (! eofSent && channel.getConnectionHandler().isMessageClose()) {
                 eofSent = true;
-                pooled = allocate(Protocol.MESSAGE_DATA);
+                pooled = allocateMessageData(Protocol.MSG_FLAG_EOF);
                 boolean ok = false;
                 try {
                     final ByteBuffer buffer = pooled.getResource();
-                    buffer.put(Protocol.MSG_FLAG_EOF); // flags
                     buffer.flip();
                     channel.getRemoteConnection().send(pooled);
                     ok = true;
@@ -295,11 +342,11 @@ final class OutboundMessage extends MessageOutputStream {
     }
 
     public String toString() {
-        return String.format("Outbound message ID %04x on %s", Short.valueOf(messageId), channel);
+        return String.format("Outbound message ID %04x on %s", Integer.valueOf(messageId), channel);
     }
 
     void dumpState(final StringBuilder b) {
-        b.append("            ").append(String.format("Outbound message ID %04x, window %d of %d\n", Integer.valueOf(messageId & 0xFFFF), Integer.valueOf(window), Integer.valueOf(maximumWindow)));
+        b.append("            ").append(String.format("Outbound message ID %04x, window %d of %d\n", Integer.valueOf(messageId), Integer.valueOf(window), Integer.valueOf(maximumWindow)));
         b.append("            ").append("* flags: ");
         if (cancelled) b.append("cancelled ");
         if (cancelSent) b.append("cancel-sent ");
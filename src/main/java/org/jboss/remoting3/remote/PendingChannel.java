@@ -37,9 +37,16 @@ final class PendingChannel {
     private final int inboundMessageCount;
     private final long outboundMessageSize;
     private final long inboundMessageSize;
+    private final int compressionThreshold;
+    private final int compressionLevel;
+    private final RemoteMetrics serviceMetrics;
     private final Result<Channel> result;
+    /**
+     * The time at which the open request was made, from {@link System#nanoTime()}.
+     */
+    private final long startTime = System.nanoTime();
 
-    PendingChannel(final int id, final int outboundWindowSize, final int inboundWindowSize, final int outboundMessageCount, final int inboundMessageCount, final long outboundMessageSize, final long inboundMessageSize, final Result<Channel> result) {
+    PendingChannel(final int id, final int outboundWindowSize, final int inboundWindowSize, final int outboundMessageCount, final int inboundMessageCount, final long outboundMessageSize, final long inboundMessageSize, final int compressionThreshold, final int compressionLevel, final RemoteMetrics serviceMetrics, final Result<Channel> result) {
         this.id = id;
         this.outboundWindowSize = outboundWindowSize;
         this.inboundWindowSize = inboundWindowSize;
@@ -47,6 +54,9 @@ final class PendingChannel {
         this.inboundMessageCount = inboundMessageCount;
         this.outboundMessageSize = outboundMessageSize;
         this.inboundMessageSize = inboundMessageSize;
+        this.compressionThreshold = compressionThreshold;
+        this.compressionLevel = compressionLevel;
+        this.serviceMetrics = serviceMetrics;
         this.result = result;
     }
 
@@ -78,6 +88,27 @@ final class PendingChannel {
         return inboundMessageSize;
     }
 
+    /**
+     * Get the requested compression threshold.
+     *
+     * @return the threshold, or -1 if compression was not requested
+     */
+    int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    RemoteMetrics getServiceMetrics() {
+        return serviceMetrics;
+    }
+
+    long getStartTime() {
+        return startTime;
+    }
+
     Result<Channel> getResult() {
         return result;
     }
@@ -53,10 +53,30 @@ final class Protocol {
      */
     static final int BH_FAULTY_MSG_SIZE = 1 << 1;
 
+    /**
+     * Message compression flag.  If {@code true}, the remote side can negotiate compressed message data on individual
+     * channels using {@link #O_COMPRESSION}.
+     */
+    static final int BH_MESSAGE_COMPRESSION = 1 << 2;
+
+    /**
+     * Compact message header flag, set if protocol version 2 or later was negotiated.  If {@code true}, message frames
+     * carry variable-length channel and message IDs (see {@link #MESSAGE_DATA_COMPACT}), message IDs are not limited to
+     * 16 bits, and the message count channel open parameters may carry uint31 content.
+     */
+    static final int BH_COMPACT_HEADERS = 1 << 3;
+
+    /**
+     * Session resumption flag, set if the peer supports session resumption.  If {@code true}, the server follows a
+     * successful authentication with a {@link #RESUMPTION_TICKET} (if it has resumption enabled), which the client
+     * may present on a later connection in place of a SASL exchange, using the {@link #RESUMPTION_MECH} mechanism name.
+     */
+    static final int BH_RESUMPTION = 1 << 4;
+
     /**
      * The highest-supported version of the remote protocol supported by this implementation.
      */
-    static final byte VERSION = 1;
+    static final byte VERSION = 2;
 
     // Message types
 
@@ -111,6 +131,17 @@ final class Protocol {
      * byte 0: NAK
      */
     static final byte NAK = 8;
+    /**
+     * Sent by server immediately before AUTH_COMPLETE, if the client supports session resumption
+     * byte 0: RESUMPTION_TICKET
+     * byte 1..n: opaque ticket body
+     */
+    static final byte RESUMPTION_TICKET = 9;
+    /**
+     * The mechanism name sent in an AUTH_REQUEST to present a resumption ticket; the initial response is the ticket
+     * body.  An invalid or expired ticket is answered with AUTH_REJECTED, after which the client authenticates normally.
+     */
+    static final String RESUMPTION_MECH = "JBOSS-REMOTING-RESUME";
 
     // Messages for opening channels
 
@@ -172,10 +203,12 @@ final class Protocol {
      * byte 0: MESSAGE_DATA
      * byte 1..4: channel ID
      * byte 5..6: message ID
-     * byte 7: flags: - - - - - C N E  C = Cancelled N = New E = EOF
+     * byte 7: flags: - - - - Z C N E  Z = Compressed C = Cancelled N = New E = EOF
      * byte 8..n: message content
      *
-     * Always flows from message sender to message recipient.
+     * Always flows from message sender to message recipient.  If the Z flag is set, the content is a single raw deflate
+     * stream which inflates to the actual message content of the frame; it may only be set on channels which have
+     * negotiated {@link #O_COMPRESSION}.
      */
     static final byte MESSAGE_DATA = 0x30;
     /**
@@ -184,7 +217,8 @@ final class Protocol {
      * byte 5..6: message ID
      * byte 7..10: window open amount
      *
-     * Always flows from message recipient to message sender.
+     * Always flows from message recipient to message sender.  With compact headers, the channel and message IDs are
+     * encoded as they are in {@link #MESSAGE_DATA_COMPACT}.
      */
     static final byte MESSAGE_WINDOW_OPEN = 0x31;
     /**
@@ -192,9 +226,24 @@ final class Protocol {
      * byte 1..4: channel ID
      * byte 5..6: message ID
      *
-     * Always flows from message recipient to message sender.
+     * Always flows from message recipient to message sender.  With compact headers, the channel and message IDs are
+     * encoded as they are in {@link #MESSAGE_DATA_COMPACT}.
      */
     static final byte MESSAGE_CLOSE = 0x32;
+    /**
+     * byte 0: MESSAGE_DATA_COMPACT | flags: - - - - Z C N E (as for {@link #MESSAGE_DATA})
+     * byte 1..n: channel ID as a varint, rotated left by one bit so that the MSb is sent as the LSb
+     * byte n+1..m: message ID as a varint
+     * byte m+1..: message content
+     *
+     * Replaces {@link #MESSAGE_DATA} when compact headers are in use (protocol version 2).  Varints are unsigned,
+     * seven bits per byte, least significant group first, with the MSb set on every byte but the last.
+     */
+    static final byte MESSAGE_DATA_COMPACT = 0x40;
+    /**
+     * The mask of the frame type bits of {@link #MESSAGE_DATA_COMPACT}; the remaining bits hold the message flags.
+     */
+    static final int MESSAGE_DATA_COMPACT_MASK = 0xf0;
 
     // Messages for handling connection status
 
@@ -232,7 +281,7 @@ final class Protocol {
      */
     static final int O_MAX_INBOUND_MSG_WINDOW_SIZE = 0x80;
     /**
-     * Max requester-bound message count; mandatory uint16 content.
+     * Max requester-bound message count; mandatory uint16 content (uint31 with compact headers).
      */
     static final int O_MAX_INBOUND_MSG_COUNT = 0x81;
     /**
@@ -240,9 +289,14 @@ final class Protocol {
      */
     static final int O_MAX_OUTBOUND_MSG_WINDOW_SIZE = 0x82;
     /**
-     * Max responder-bound message count; mandatory uint16 content.
+     * Max responder-bound message count; mandatory uint16 content (uint31 with compact headers).
      */
     static final int O_MAX_OUTBOUND_MSG_COUNT = 0x83;
+    /**
+     * The largest message count which can be negotiated without compact headers, limited by the uint16 count options
+     * and the 16-bit message ID.
+     */
+    static final int MAX_MSG_COUNT = 0xffff;
     /**
      * Max requester-bound message size; mandatory uint63 content.
      */
@@ -251,6 +305,12 @@ final class Protocol {
      * Max responder-bound message size; mandatory uint63 content.
      */
     static final int O_MAX_OUTBOUND_MSG_SIZE = 0x85;
+    /**
+     * Message compression; no content.  Sent on a channel open request if the requester wishes to compress message data,
+     * and echoed on the reply if the responder agrees, in which case either side may compress message data on the channel.
+     * Only sent if the peer advertised {@link #CAP_MESSAGE_COMPRESSION}.
+     */
+    static final int O_COMPRESSION = 0x86;
 
     // Capabilities
 
@@ -262,6 +322,8 @@ final class Protocol {
     static final byte CAP_VERSION_STRING = 5; // sent by client & server
     static final byte CAP_CHANNELS_IN = 6; // sent by client & server, if missing peer does not support it
     static final byte CAP_CHANNELS_OUT = 7; // sent by client & server, if missing peer does not support it
+    static final byte CAP_MESSAGE_COMPRESSION = 8; // sent by client & server - if present, channels may negotiate compression
+    static final byte CAP_RESUMPTION = 9; // sent by client & server - if present, session resumption is supported/enabled
 
     // Greeting messages
 
@@ -276,6 +338,7 @@ final class Protocol {
     static final byte MSG_FLAG_EOF = 0x01;
     static final byte MSG_FLAG_NEW = 0x02;
     static final byte MSG_FLAG_CANCELLED = 0x04;
+    static final byte MSG_FLAG_COMPRESSED = 0x08;
 
     private Protocol() {
     }
@@ -0,0 +1,195 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.remote;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A fixed-size ring of the most recent frames sent and received on a connection.
+ * <p>
+ * Each frame is recorded as a handful of primitive words (time, direction, frame type, channel and message ID and size)
+ * so that recording costs no allocation and can be left on in production, unlike trace logging.  The log is only
+ * decoded into text when it is dumped.  Recording does not lock; a frame which is recorded while the log is being
+ * dumped may show up in the dump half-written.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class ProtocolEventLog {
+
+    private static final int WORDS = 3;
+    private static final int NO_ID = -1;
+    private static final long OUTBOUND = 1L << 8;
+
+    private final long[] entries;
+    private final int mask;
+    private final long startTime = System.nanoTime();
+    private volatile boolean compactHeaders;
+    @SuppressWarnings("unused")
+    private volatile long sequence;
+
+    private static final AtomicLongFieldUpdater<ProtocolEventLog> sequenceUpdater = AtomicLongFieldUpdater.newUpdater(ProtocolEventLog.class, "sequence");
+
+    /**
+     * Construct a new instance.
+     *
+     * @param size the number of frames to retain, which is rounded up to a power of two; 0 disables the log
+     */
+    ProtocolEventLog(final int size) {
+        final int capacity = size <= 0 ? 0 : Integer.highestOneBit(Math.min(size, 1 << 24) * 2 - 1);
+        entries = new long[capacity * WORDS];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Set whether the connection has negotiated compact headers, which changes how message frame IDs are encoded.
+     *
+     * @param compactHeaders {@code true} if compact headers are in use
+     */
+    void setCompactHeaders(final boolean compactHeaders) {
+        this.compactHeaders = compactHeaders;
+    }
+
+    /**
+     * Record a frame.  The buffer's position must be at the frame type byte; the buffer itself is not modified.
+     *
+     * @param outbound {@code true} if the frame is being sent, {@code false} if it was received
+     * @param buffer the frame
+     */
+    void record(final boolean outbound, final ByteBuffer buffer) {
+        final long[] entries = this.entries;
+        if (entries.length == 0) {
+            return;
+        }
+        final int pos = buffer.position();
+        final int size = buffer.remaining();
+        int type = size == 0 ? 0 : buffer.get(pos) & 0xff;
+        int channelId = NO_ID;
+        int messageId = NO_ID;
+        try {
+            if ((type & Protocol.MESSAGE_DATA_COMPACT_MASK) == Protocol.MESSAGE_DATA_COMPACT) {
+                // keep the type, drop the flags
+                type = Protocol.MESSAGE_DATA_COMPACT;
+                final long c = readVarInt(buffer, pos + 1);
+                channelId = Integer.rotateRight((int) c, 1);
+                messageId = (int) readVarInt(buffer, pos + 1 + (int) (c >>> 32));
+            } else if (type >= Protocol.MESSAGE_DATA && type <= Protocol.MESSAGE_CLOSE) {
+                if (compactHeaders && type != Protocol.MESSAGE_DATA) {
+                    final long c = readVarInt(buffer, pos + 1);
+                    channelId = Integer.rotateRight((int) c, 1);
+                    messageId = (int) readVarInt(buffer, pos + 1 + (int) (c >>> 32));
+                } else {
+                    channelId = buffer.getInt(pos + 1);
+                    messageId = buffer.getShort(pos + 5) & 0xffff;
+                }
+            } else if (type >= Protocol.CHANNEL_OPEN_REQUEST && type <= Protocol.CHANNEL_CLOSED) {
+                channelId = buffer.getInt(pos + 1);
+            }
+        } catch (IndexOutOfBoundsException ignored) {
+            // truncated frame; record what we have
+        }
+        if (channelId != NO_ID && ! outbound) {
+            // the wire has the sender's perspective
+            channelId ^= ChannelIdAllocator.LOCAL_FLAG;
+        }
+        final int idx = (int) (sequenceUpdater.getAndIncrement(this) & mask) * WORDS;
+        entries[idx] = System.nanoTime() - startTime;
+        entries[idx + 1] = (long) channelId << 32 | size & 0xffffffffL;
+        entries[idx + 2] = (long) messageId << 32 | (outbound ? OUTBOUND : 0) | type;
+    }
+
+    /**
+     * Read a varint at an absolute index.
+     *
+     * @return the value in the low 32 bits and the encoded length in the high 32 bits
+     */
+    private static long readVarInt(final ByteBuffer buffer, final int index) {
+        int value = 0;
+        int b;
+        int i = 0;
+        do {
+            b = buffer.get(index + i);
+            value |= (b & 0x7f) << i * 7;
+            i ++;
+        } while (b < 0 && i < 5);
+        return (long) i << 32 | value & 0xffffffffL;
+    }
+
+    /**
+     * Append the recorded frames to the given string builder, oldest first.
+     *
+     * @param b the string builder
+     */
+    void dump(final StringBuilder b) {
+        final long[] entries = this.entries;
+        final long end = sequence;
+        final long count = Math.min(end, mask + 1L);
+        b.append("    ").append("Protocol event log (last ").append(count).append(" of ").append(end).append(" frames):\n");
+        for (long seq = end - count; seq < end; seq ++) {
+            final int idx = (int) (seq & mask) * WORDS;
+            final long time = entries[idx];
+            final int channelId = (int) (entries[idx + 1] >>> 32);
+            final int size = (int) entries[idx + 1];
+            final int messageId = (int) (entries[idx + 2] >>> 32);
+            final boolean outbound = (entries[idx + 2] & OUTBOUND) != 0;
+            final int type = (int) entries[idx + 2] & 0xff;
+            b.append("        ").append(String.format("%+12.3fms %s %-20s", Double.valueOf(time / 1_000_000.0), outbound ? "out" : "in ", typeName(type)));
+            if (channelId != NO_ID) {
+                b.append(String.format(" chan %08x", Integer.valueOf(channelId)));
+            }
+            if (messageId != NO_ID) {
+                b.append(String.format(" msg %04x", Integer.valueOf(messageId)));
+            }
+            b.append(" size ").append(size).append('\n');
+        }
+    }
+
+    private static String typeName(final int type) {
+        switch ((byte) type) {
+            case Protocol.GREETING: return "GREETING";
+            case Protocol.CAPABILITIES: return "CAPABILITIES";
+            case Protocol.AUTH_REQUEST: return "AUTH_REQUEST";
+            case Protocol.AUTH_CHALLENGE: return "AUTH_CHALLENGE";
+            case Protocol.AUTH_RESPONSE: return "AUTH_RESPONSE";
+            case Protocol.AUTH_COMPLETE: return "AUTH_COMPLETE";
+            case Protocol.AUTH_REJECTED: return "AUTH_REJECTED";
+            case Protocol.STARTTLS: return "STARTTLS";
+            case Protocol.NAK: return "NAK";
+            case Protocol.RESUMPTION_TICKET: return "RESUMPTION_TICKET";
+            case Protocol.CHANNEL_OPEN_REQUEST: return "CHANNEL_OPEN_REQUEST";
+            case Protocol.CHANNEL_OPEN_ACK: return "CHANNEL_OPEN_ACK";
+            case Protocol.SERVICE_NOT_FOUND: return "SERVICE_NOT_FOUND";
+            case Protocol.SERVICE_ERROR: return "SERVICE_ERROR";
+            case Protocol.CHANNEL_SHUTDOWN_WRITE: return "CHANNEL_SHUTDOWN_WRITE";
+            case Protocol.CHANNEL_CLOSED: return "CHANNEL_CLOSED";
+            case Protocol.MESSAGE_DATA: return "MESSAGE_DATA";
+            case Protocol.MESSAGE_WINDOW_OPEN: return "MESSAGE_WINDOW_OPEN";
+            case Protocol.MESSAGE_CLOSE: return "MESSAGE_CLOSE";
+            case Protocol.MESSAGE_DATA_COMPACT: return "MESSAGE_DATA_COMPACT";
+            case Protocol.CONNECTION_ALIVE: return "CONNECTION_ALIVE";
+            case Protocol.CONNECTION_ALIVE_ACK: return "CONNECTION_ALIVE_ACK";
+            case Protocol.CONNECTION_CLOSE: return "CONNECTION_CLOSE";
+            default: return String.format("unknown(%02x)", Integer.valueOf(type));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.remote;
+
+/**
+ * Flight recorder events for protocol activity.
+ * <p>
+ * This is the Java 8 version of this class, on which there is no flight recorder API, so every method does nothing
+ * and is inlined away.  The Java 11 version, which is selected from the multi-release JAR, records each call as a
+ * {@code jdk.jfr} event.  The events are disabled by default; enable the {@code org.jboss.remoting.*} events in a
+ * recording configuration to collect them.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class ProtocolEvents {
+
+    private ProtocolEvents() {
+    }
+
+    /**
+     * A connection handshake reached a new phase.
+     *
+     * @param connection the connection
+     * @param phase the name of the phase
+     * @param elapsedNanos the time since the connection was set up
+     */
+    static void handshakePhase(final RemoteConnection connection, final String phase, final long elapsedNanos) {
+    }
+
+    /**
+     * A channel was opened.
+     *
+     * @param connection the connection of the channel
+     * @param channelId the channel ID
+     */
+    static void channelOpened(final RemoteConnection connection, final int channelId) {
+    }
+
+    /**
+     * A channel was closed.
+     *
+     * @param connection the connection of the channel
+     * @param channelId the channel ID
+     */
+    static void channelClosed(final RemoteConnection connection, final int channelId) {
+    }
+
+    /**
+     * A message was started.
+     *
+     * @param channelId the channel ID
+     * @param messageId the message ID
+     * @param outbound {@code true} for a message being written, {@code false} for one being received
+     */
+    static void messageStarted(final int channelId, final int messageId, final boolean outbound) {
+    }
+
+    /**
+     * A message was finished or cancelled.
+     *
+     * @param channelId the channel ID
+     * @param messageId the message ID
+     * @param outbound {@code true} for a message being written, {@code false} for one being received
+     * @param size the number of bytes of message content
+     * @param durationNanos the time since the message was started
+     * @param cancelled {@code true} if the message was cancelled
+     */
+    static void messageEnded(final int channelId, final int messageId, final boolean outbound, final long size, final long durationNanos, final boolean cancelled) {
+    }
+
+    /**
+     * A writer waited for the peer to open the transmit window of a message.
+     *
+     * @param channelId the channel ID
+     * @param messageId the message ID
+     * @param durationNanos the time spent waiting
+     */
+    static void windowStalled(final int channelId, final int messageId, final long durationNanos) {
+    }
+
+    /**
+     * A frame was queued because the socket could not take it.
+     *
+     * @param connection the connection
+     * @param depth the number of frames in the queue, including this one
+     */
+    static void writeQueued(final RemoteConnection connection, final int depth) {
+    }
+}
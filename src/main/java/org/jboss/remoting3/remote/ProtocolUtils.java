@@ -140,4 +140,84 @@ final class ProtocolUtils {
         }
     }
 
+    /**
+     * Write an unsigned variable-length integer, seven bits per byte with the least significant group first; the MSB
+     * of each byte is set if more bytes follow.
+     *
+     * @param buffer the buffer to write to
+     * @param value the value, which is treated as unsigned
+     */
+    static void writeVarInt(final ByteBuffer buffer, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer.put((byte) (value & 0x7f | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Read an unsigned variable-length integer written by {@link #writeVarInt(ByteBuffer, int)}.
+     *
+     * @param buffer the buffer to read from
+     * @return the value
+     */
+    static int readVarInt(final ByteBuffer buffer) {
+        int value = 0;
+        int b;
+        int shift = 0;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0 && shift < 35);
+        return value;
+    }
+
+    /**
+     * Get the number of bytes that {@link #writeVarInt(ByteBuffer, int)} would write for a value.
+     *
+     * @param value the value, which is treated as unsigned
+     * @return the encoded length (1 to 5 bytes)
+     */
+    static int varIntLength(final int value) {
+        return value == 0 ? 1 : (38 - Integer.numberOfLeadingZeros(value)) / 7;
+    }
+
+    /**
+     * Write the header of a message frame, up to and including the message ID.  With compact headers,
+     * {@link Protocol#MESSAGE_DATA} is written as {@link Protocol#MESSAGE_DATA_COMPACT}, whose flags the caller ORs in
+     * afterwards; otherwise the flags byte follows the message ID.
+     *
+     * @param buffer the buffer to write to
+     * @param compactHeaders {@code true} to write a protocol version 2 header, {@code false} for version 1
+     * @param protoId the frame type
+     * @param channelId the channel ID, in the local perspective
+     * @param messageId the message ID
+     */
+    static void writeMessageHeader(final ByteBuffer buffer, final boolean compactHeaders, final byte protoId, final int channelId, final int messageId) {
+        if (compactHeaders) {
+            buffer.put(protoId == Protocol.MESSAGE_DATA ? Protocol.MESSAGE_DATA_COMPACT : protoId);
+            ChannelIdAllocator.writeCompactChannelId(buffer, channelId);
+            writeVarInt(buffer, messageId);
+        } else {
+            buffer.put(protoId);
+            buffer.putInt(channelId);
+            buffer.putShort((short) messageId);
+        }
+    }
+
+    /**
+     * Get the length of the header of a message data frame, including the flags.
+     *
+     * @param compactHeaders {@code true} for a protocol version 2 header, {@code false} for version 1
+     * @param channelId the channel ID, in the perspective of the side which writes the frame
+     * @param messageId the message ID
+     * @return the header length
+     */
+    static int messageDataHeaderLength(final boolean compactHeaders, final int channelId, final int messageId) {
+        if (! compactHeaders) {
+            return 8;
+        }
+        return 1 + ChannelIdAllocator.compactChannelIdLength(channelId) + varIntLength(messageId);
+    }
 }
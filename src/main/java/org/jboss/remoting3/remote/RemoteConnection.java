@@ -27,6 +27,7 @@ import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.Queue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import org.jboss.logging.Logger;
 import org.jboss.remoting3.RemotingOptions;
@@ -56,11 +57,15 @@ final class RemoteConnection {
     private final OptionMap optionMap;
     private final RemoteWriteListener writeListener = new RemoteWriteListener();
     private final Executor executor;
+    private final Executor authenticationExecutor;
     private final int heartbeatInterval;
     private volatile Result<ConnectionHandlerFactory> result;
     private volatile SaslWrapper saslWrapper;
     private volatile boolean closing;
     private final RemoteConnectionProvider remoteConnectionProvider;
+    private final RemoteMetrics metrics;
+    private final long startTime = System.nanoTime();
+    private final ProtocolEventLog eventLog;
 
     RemoteConnection(final Pool<ByteBuffer> messageBufferPool, final ConnectedStreamChannel underlyingChannel, final ConnectedMessageChannel channel, final OptionMap optionMap, final RemoteConnectionProvider remoteConnectionProvider) {
         this.messageBufferPool = messageBufferPool;
@@ -69,7 +74,10 @@ final class RemoteConnection {
         this.optionMap = optionMap;
         heartbeatInterval = optionMap.get(RemotingOptions.HEARTBEAT_INTERVAL, RemotingOptions.DEFAULT_HEARTBEAT_INTERVAL);
         this.executor = remoteConnectionProvider.getExecutor();
+        this.authenticationExecutor = remoteConnectionProvider.getAuthenticationExecutor();
         this.remoteConnectionProvider = remoteConnectionProvider;
+        metrics = new RemoteMetrics(remoteConnectionProvider.getMetrics());
+        eventLog = new ProtocolEventLog(optionMap.get(RemotingOptions.PROTOCOL_EVENT_LOG_SIZE, RemotingOptions.DEFAULT_PROTOCOL_EVENT_LOG_SIZE));
     }
 
     Pooled<ByteBuffer> allocate() {
@@ -90,6 +98,23 @@ final class RemoteConnection {
         return remoteConnectionProvider;
     }
 
+    RemoteMetrics getMetrics() {
+        return metrics;
+    }
+
+    ProtocolEventLog getEventLog() {
+        return eventLog;
+    }
+
+    /**
+     * Record that the connection handshake has reached the given phase.
+     *
+     * @param phase the name of the phase
+     */
+    void handshakePhase(final String phase) {
+        ProtocolEvents.handshakePhase(this, phase, System.nanoTime() - startTime);
+    }
+
     Result<ConnectionHandlerFactory> getResult() {
         return result;
     }
@@ -147,6 +172,23 @@ final class RemoteConnection {
         return executor;
     }
 
+    /**
+     * Run a step of the authentication exchange on the authentication executor.  If the executor cannot take any more
+     * work, the connection is failed instead.
+     *
+     * @param task the task to run
+     * @return {@code true} if the task was accepted, {@code false} if the connection was failed
+     */
+    boolean executeAuthenticationTask(final Runnable task) {
+        try {
+            authenticationExecutor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            handleException(new IOException("Authentication could not be started because too many are in progress", e));
+            return false;
+        }
+    }
+
     public SslChannel getSslChannel() {
         return underlyingChannel instanceof SslChannel ? (SslChannel) underlyingChannel : null;
     }
@@ -233,16 +275,17 @@ final class RemoteConnection {
                 try {
                     while ((pooled = queue.peek()) != null) {
                         final ByteBuffer buffer = pooled.getResource();
+                        final int size = buffer.remaining();
                         if (channel.send(buffer)) {
-                            RemoteLogger.conn.logf(FQCN, Logger.Level.TRACE, null, "Sent message %s (via queue)", buffer);
                             queue.poll().free();
+                            metrics.writeDequeued();
+                            metrics.frameSent(size);
                         } else {
                             // try again later
                             return;
                         }
                     }
                     if (channel.flush()) {
-                        RemoteLogger.conn.logf(FQCN, Logger.Level.TRACE, null, "Flushed channel");
                         if (closed) {
                             terminateHeartbeat();
                             // End of queue reached; shut down and try to flush the remainder
@@ -262,6 +305,7 @@ final class RemoteConnection {
                     channel.wakeupReads();
                     while ((pooled = queue.poll()) != null) {
                         pooled.free();
+                        metrics.writeDequeued();
                     }
                 }
                 // else try again later
@@ -290,6 +334,7 @@ final class RemoteConnection {
                     Pooled<ByteBuffer> unqueued;
                     while ((unqueued = queue.poll()) != null) {
                         unqueued.free();
+                        metrics.writeDequeued();
                     }
                 }
             }
@@ -305,6 +350,7 @@ final class RemoteConnection {
                     final ConnectedMessageChannel channel = getChannel();
                     boolean free = true;
                     try {
+                        eventLog.record(true, pooled.getResource());
                         final SaslWrapper wrapper = saslWrapper;
                         if (wrapper != null) {
                             final ByteBuffer buffer = pooled.getResource();
@@ -315,14 +361,16 @@ final class RemoteConnection {
                         }
                         if (queue.isEmpty()) {
                             final ByteBuffer buffer = pooled.getResource();
+                            final int size = buffer.remaining();
                             if (! channel.send(buffer)) {
-                                RemoteLogger.conn.logf(FQCN, Logger.Level.TRACE, null, "Can't directly send message %s, enqueued", buffer);
                                 queue.add(pooled);
+                                metrics.writeQueued();
+                                ProtocolEvents.writeQueued(RemoteConnection.this, queue.size());
                                 free = false;
                                 channel.resumeWrites();
                                 return;
                             }
-                            RemoteLogger.conn.logf(FQCN, Logger.Level.TRACE, null, "Sent message %s (direct)", buffer);
+                            metrics.frameSent(size);
                             if (close) {
                                 channel.shutdownWrites();
                                 RemoteLogger.conn.logf(FQCN, Logger.Level.TRACE, null, "Shut down writes on channel (direct)");
@@ -332,12 +380,13 @@ final class RemoteConnection {
                                 channel.resumeWrites();
                                 return;
                             }
-                            RemoteLogger.conn.logf(FQCN, Logger.Level.TRACE, null, "Flushed channel (direct)");
                             if (! close) {
                                 this.heartKey = channel.getWriteThread().executeAfter(heartbeatCommand, heartbeatInterval, TimeUnit.MILLISECONDS);
                             }
                         } else {
                             queue.add(pooled);
+                            metrics.writeQueued();
+                            ProtocolEvents.writeQueued(RemoteConnection.this, queue.size());
                             free = false;
                         }
                     } catch (IOException e) {
@@ -346,6 +395,7 @@ final class RemoteConnection {
                         Pooled<ByteBuffer> unqueued;
                         while ((unqueued = queue.poll()) != null) {
                             unqueued.free();
+                            metrics.writeDequeued();
                         }
                     } finally {
                         if (free) {
@@ -31,12 +31,14 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
-import java.util.Random;
 
 import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.zip.Deflater;
 import org.jboss.remoting3.Attachments;
 import org.jboss.remoting3.Channel;
 import org.jboss.remoting3.ChannelBusyException;
@@ -74,8 +76,14 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
     private final ConnectionHandlerContext connectionHandlerContext;
     private final RemoteConnection connection;
     private final int channelId;
-    private final IntIndexMap<OutboundMessage> outboundMessages = new IntIndexHashMap<OutboundMessage>(OutboundMessage.INDEXER, Equaller.IDENTITY, 512, 0.5f);
-    private final IntIndexMap<InboundMessage> inboundMessages = new IntIndexHashMap<InboundMessage>(InboundMessage.INDEXER, Equaller.IDENTITY, 512, 0.5f);
+    /**
+     * The outbound message table, created on first use.
+     */
+    private volatile IntIndexMap<OutboundMessage> outboundMessages;
+    /**
+     * The inbound message table, created on first use.
+     */
+    private volatile IntIndexMap<InboundMessage> inboundMessages;
     private final int outboundWindow;
     private final int inboundWindow;
     private final Attachments attachments = new Attachments();
@@ -84,20 +92,48 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
     private final int maxInboundMessages;
     private final long maxOutboundMessageSize;
     private final long maxInboundMessageSize;
-    private volatile int channelState = 0;
-
-    private static final AtomicIntegerFieldUpdater<RemoteConnectionChannel> channelStateUpdater = AtomicIntegerFieldUpdater.newUpdater(RemoteConnectionChannel.class, "channelState");
+    /**
+     * The smallest frame content to compress, or -1 if compression was not negotiated for this channel.
+     */
+    private final int compressionThreshold;
+    private final int compressionLevel;
+    private final boolean compactHeaders;
+    /**
+     * The counters of the service this channel was opened for.
+     */
+    private final RemoteMetrics serviceMetrics;
+    /**
+     * The mask of the outbound message ID space.
+     */
+    private final int messageIdMask;
+    private volatile long channelState = 0L;
+    @SuppressWarnings("unused")
+    private volatile int messageIdSequence;
+
+    private static final AtomicLongFieldUpdater<RemoteConnectionChannel> channelStateUpdater = AtomicLongFieldUpdater.newUpdater(RemoteConnectionChannel.class, "channelState");
+    private static final AtomicIntegerFieldUpdater<RemoteConnectionChannel> messageIdSequenceUpdater = AtomicIntegerFieldUpdater.newUpdater(RemoteConnectionChannel.class, "messageIdSequence");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<RemoteConnectionChannel, IntIndexMap> outboundMessagesUpdater = AtomicReferenceFieldUpdater.newUpdater(RemoteConnectionChannel.class, IntIndexMap.class, "outboundMessages");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<RemoteConnectionChannel, IntIndexMap> inboundMessagesUpdater = AtomicReferenceFieldUpdater.newUpdater(RemoteConnectionChannel.class, IntIndexMap.class, "inboundMessages");
+
+    /**
+     * The most concurrent messages that a message table is initially sized for; most channels only ever have one or two
+     * messages in flight, so the tables start small and grow on demand up to the negotiated limit.
+     */
+    private static final int MESSAGE_TABLE_INITIAL_MESSAGES = 4;
+    private static final float MESSAGE_TABLE_LOAD_FACTOR = 0.5f;
 
     private Receiver nextReceiver;
 
-    private static final int WRITE_CLOSED = (1 << 31);
-    private static final int READ_CLOSED = (1 << 30);
-    private static final int OUTBOUND_MESSAGES_MASK = (1 << 15) - 1;
-    private static final int ONE_OUTBOUND_MESSAGE = 1;
-    private static final int INBOUND_MESSAGES_MASK = ((1 << 30) - 1) & ~OUTBOUND_MESSAGES_MASK;
-    private static final int ONE_INBOUND_MESSAGE = (1 << 15);
+    private static final long WRITE_CLOSED = (1L << 63);
+    private static final long READ_CLOSED = (1L << 62);
+    private static final long OUTBOUND_MESSAGES_MASK = (1L << 31) - 1;
+    private static final long ONE_OUTBOUND_MESSAGE = 1L;
+    private static final long INBOUND_MESSAGES_MASK = ((1L << 62) - 1) & ~OUTBOUND_MESSAGES_MASK;
+    private static final long ONE_INBOUND_MESSAGE = (1L << 31);
 
-    RemoteConnectionChannel(final RemoteConnectionHandler connectionHandler, final RemoteConnection connection, final int channelId, final int outboundWindow, final int inboundWindow, final int maxOutboundMessages, final int maxInboundMessages, final long maxOutboundMessageSize, final long maxInboundMessageSize) {
+    RemoteConnectionChannel(final RemoteConnectionHandler connectionHandler, final RemoteConnection connection, final int channelId, final int outboundWindow, final int inboundWindow, final int maxOutboundMessages, final int maxInboundMessages, final long maxOutboundMessageSize, final long maxInboundMessageSize, final int compressionThreshold, final int compressionLevel, final RemoteMetrics serviceMetrics) {
         super(connectionHandler.getConnectionContext().getConnectionProviderContext().getExecutor(), true);
         this.maxOutboundMessageSize = maxOutboundMessageSize;
         this.maxInboundMessageSize = maxInboundMessageSize;
@@ -109,17 +145,23 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
         this.inboundWindow = inboundWindow;
         this.maxOutboundMessages = maxOutboundMessages;
         this.maxInboundMessages = maxInboundMessages;
+        this.compressionThreshold = compressionThreshold;
+        this.compressionLevel = Math.max(Deflater.DEFAULT_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, compressionLevel));
+        compactHeaders = connectionHandler.isCompactHeaders();
+        this.serviceMetrics = serviceMetrics;
+        // with compact headers, keep the ID space just big enough for the message limit so that IDs stay short on the wire
+        messageIdMask = compactHeaders ? Math.max(0x7f, (Integer.highestOneBit(maxOutboundMessages) << 1) - 1) : 0xffff;
     }
 
     void openOutboundMessage() throws IOException {
-        int oldState, newState;
+        long oldState, newState;
         do {
             oldState = channelState;
             if ((oldState & WRITE_CLOSED) != 0) {
                 throw new NotOpenException("Writes closed");
             }
-            final int outboundCount = oldState & OUTBOUND_MESSAGES_MASK;
-            if (outboundCount == maxOutboundMessages) {
+            final long outboundCount = (oldState & OUTBOUND_MESSAGES_MASK) >>> Long.numberOfTrailingZeros(ONE_OUTBOUND_MESSAGE);
+            if (outboundCount >= maxOutboundMessages) {
                 throw new ChannelBusyException("Too many open outbound writes");
             }
             newState = oldState + ONE_OUTBOUND_MESSAGE;
@@ -127,43 +169,43 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
         log.tracef("Opened outbound message on %s", this);
     }
 
-    private int incrementState(final int count) {
-        final int oldState = channelStateUpdater.getAndAdd(this, count);
+    private long incrementState(final long count) {
+        final long oldState = channelStateUpdater.getAndAdd(this, count);
         if (log.isTraceEnabled()) {
-            final int newState = oldState + count;
+            final long newState = oldState + count;
             log.tracef("CAS %s\n\told: RS=%s WS=%s IM=%d OM=%d\n\tnew: RS=%s WS=%s IM=%d OM=%d", this,
                     Boolean.valueOf((oldState & READ_CLOSED) != 0),
                     Boolean.valueOf((oldState & WRITE_CLOSED) != 0),
-                    Integer.valueOf((oldState & INBOUND_MESSAGES_MASK) >> Integer.numberOfTrailingZeros(ONE_INBOUND_MESSAGE)),
-                    Integer.valueOf((oldState & OUTBOUND_MESSAGES_MASK) >> Integer.numberOfTrailingZeros(ONE_OUTBOUND_MESSAGE)),
+                    Long.valueOf((oldState & INBOUND_MESSAGES_MASK) >>> Long.numberOfTrailingZeros(ONE_INBOUND_MESSAGE)),
+                    Long.valueOf((oldState & OUTBOUND_MESSAGES_MASK) >>> Long.numberOfTrailingZeros(ONE_OUTBOUND_MESSAGE)),
                     Boolean.valueOf((newState & READ_CLOSED) != 0),
                     Boolean.valueOf((newState & WRITE_CLOSED) != 0),
-                    Integer.valueOf((newState & INBOUND_MESSAGES_MASK) >> Integer.numberOfTrailingZeros(ONE_INBOUND_MESSAGE)),
-                    Integer.valueOf((newState & OUTBOUND_MESSAGES_MASK) >> Integer.numberOfTrailingZeros(ONE_OUTBOUND_MESSAGE))
+                    Long.valueOf((newState & INBOUND_MESSAGES_MASK) >>> Long.numberOfTrailingZeros(ONE_INBOUND_MESSAGE)),
+                    Long.valueOf((newState & OUTBOUND_MESSAGES_MASK) >>> Long.numberOfTrailingZeros(ONE_OUTBOUND_MESSAGE))
                     );
         }
         return oldState;
     }
 
-    private boolean casState(final int oldState, final int newState) {
+    private boolean casState(final long oldState, final long newState) {
         final boolean result = channelStateUpdater.compareAndSet(this, oldState, newState);
         if (result && log.isTraceEnabled()) {
             log.tracef("CAS %s\n\told: RS=%s WS=%s IM=%d OM=%d\n\tnew: RS=%s WS=%s IM=%d OM=%d", this,
                     Boolean.valueOf((oldState & READ_CLOSED) != 0),
                     Boolean.valueOf((oldState & WRITE_CLOSED) != 0),
-                    Integer.valueOf((oldState & INBOUND_MESSAGES_MASK) >> Integer.numberOfTrailingZeros(ONE_INBOUND_MESSAGE)),
-                    Integer.valueOf((oldState & OUTBOUND_MESSAGES_MASK) >> Integer.numberOfTrailingZeros(ONE_OUTBOUND_MESSAGE)),
+                    Long.valueOf((oldState & INBOUND_MESSAGES_MASK) >>> Long.numberOfTrailingZeros(ONE_INBOUND_MESSAGE)),
+                    Long.valueOf((oldState & OUTBOUND_MESSAGES_MASK) >>> Long.numberOfTrailingZeros(ONE_OUTBOUND_MESSAGE)),
                     Boolean.valueOf((newState & READ_CLOSED) != 0),
                     Boolean.valueOf((newState & WRITE_CLOSED) != 0),
-                    Integer.valueOf((newState & INBOUND_MESSAGES_MASK) >> Integer.numberOfTrailingZeros(ONE_INBOUND_MESSAGE)),
-                    Integer.valueOf((newState & OUTBOUND_MESSAGES_MASK) >> Integer.numberOfTrailingZeros(ONE_OUTBOUND_MESSAGE))
+                    Long.valueOf((newState & INBOUND_MESSAGES_MASK) >>> Long.numberOfTrailingZeros(ONE_INBOUND_MESSAGE)),
+                    Long.valueOf((newState & OUTBOUND_MESSAGES_MASK) >>> Long.numberOfTrailingZeros(ONE_OUTBOUND_MESSAGE))
                     );
         }
         return result;
     }
 
     void closeOutboundMessage() {
-        int oldState = incrementState(-ONE_OUTBOUND_MESSAGE);
+        long oldState = incrementState(-ONE_OUTBOUND_MESSAGE);
         if (oldState == (WRITE_CLOSED | READ_CLOSED)) {
             // no messages left and read & write closed
             log.tracef("Closed outbound message on %s (unregistering)", this);
@@ -174,15 +216,15 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
     }
 
     boolean openInboundMessage() {
-        int oldState, newState;
+        long oldState, newState;
         do {
             oldState = channelState;
             if ((oldState & READ_CLOSED) != 0) {
                 log.tracef("Refusing inbound message on %s (reads closed)", this);
                 return false;
             }
-            final int inboundCount = oldState & INBOUND_MESSAGES_MASK;
-            if (inboundCount == maxInboundMessages) {
+            final long inboundCount = (oldState & INBOUND_MESSAGES_MASK) >>> Long.numberOfTrailingZeros(ONE_INBOUND_MESSAGE);
+            if (inboundCount >= maxInboundMessages) {
                 log.tracef("Refusing inbound message on %s (too many concurrent reads)", this);
                 return false;
             }
@@ -193,7 +235,7 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
     }
 
     void closeInboundMessage() {
-        int oldState = incrementState(-ONE_INBOUND_MESSAGE);
+        long oldState = incrementState(-ONE_INBOUND_MESSAGE);
         if (oldState == (WRITE_CLOSED | READ_CLOSED)) {
             // no messages left and read & write closed
             log.tracef("Closed inbound message on %s (unregistering)", this);
@@ -204,7 +246,7 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
     }
 
     void closeReads() {
-        int oldState, newState;
+        long oldState, newState;
         do {
             oldState = channelState;
             if ((oldState & READ_CLOSED) != 0) {
@@ -223,7 +265,7 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
     }
 
     boolean closeWrites() {
-        int oldState, newState;
+        long oldState, newState;
         do {
             oldState = channelState;
             if ((oldState & WRITE_CLOSED) != 0) {
@@ -242,7 +284,7 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
     }
 
     boolean closeReadsAndWrites() {
-        int oldState, newState;
+        long oldState, newState;
         do {
             oldState = channelState;
             if ((oldState & (READ_CLOSED | WRITE_CLOSED)) == (READ_CLOSED | WRITE_CLOSED)) {
@@ -303,23 +345,24 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
     }
 
     public MessageOutputStream writeMessage() throws IOException {
-        int tries = 50;
-        IntIndexMap<OutboundMessage> outboundMessages = this.outboundMessages;
         openOutboundMessage();
         boolean ok = false;
         try {
-            final Random random = ProtocolUtils.randomHolder.get();
-            while (tries > 0) {
-                final int id = random.nextInt() & 0xfffe;
+            final IntIndexMap<OutboundMessage> outboundMessages = getOutboundMessages();
+            // IDs are issued sequentially from the ID space; we hold a slot against maxOutboundMessages, so at most
+            // that many IDs are live and one more candidate than that is always enough
+            for (long attempts = Math.min(maxOutboundMessages, messageIdMask) + 1L; attempts > 0; attempts --) {
+                final int id = messageIdSequenceUpdater.getAndIncrement(this) & messageIdMask;
                 if (! outboundMessages.containsKey(id)) {
-                    OutboundMessage message = new OutboundMessage((short) id, this, outboundWindow, maxOutboundMessageSize);
+                    OutboundMessage message = new OutboundMessage(id, this, outboundWindow, maxOutboundMessageSize);
                     OutboundMessage existing = outboundMessages.putIfAbsent(message);
                     if (existing == null) {
                         ok = true;
+                        recordMessageOpened();
+                        ProtocolEvents.messageStarted(channelId, id, true);
                         return message;
                     }
                 }
-                tries --;
             }
             throw log.channelBusy();
         } finally {
@@ -330,7 +373,8 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
     }
 
     void free(OutboundMessage outboundMessage) {
-        if (outboundMessages.remove(outboundMessage)) {
+        final IntIndexMap<OutboundMessage> outboundMessages = this.outboundMessages;
+        if (outboundMessages != null && outboundMessages.remove(outboundMessage)) {
             log.tracef("Removed %s", outboundMessage);
         } else {
             log.tracef("Got redundant free for %s", outboundMessage);
@@ -385,6 +429,7 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
                 try {
                     getExecutor().execute(new Runnable() {
                         public void run() {
+                            recordDispatch(message);
                             handler.handleMessage(RemoteConnectionChannel.this, message.messageInputStream);
                         }
                     });
@@ -408,6 +453,7 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
             .add(RemotingOptions.RECEIVE_WINDOW_SIZE)
             .add(RemotingOptions.MAX_INBOUND_MESSAGE_SIZE)
             .add(RemotingOptions.MAX_OUTBOUND_MESSAGE_SIZE)
+            .add(RemotingOptions.MESSAGE_COMPRESSION)
             .create();
 
     public boolean supportsOption(final Option<?> option) {
@@ -427,6 +473,8 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
             return option.cast(maxInboundMessageSize);
         } else if (option == RemotingOptions.MAX_OUTBOUND_MESSAGE_SIZE) {
             return option.cast(maxOutboundMessageSize);
+        } else if (option == RemotingOptions.MESSAGE_COMPRESSION) {
+            return option.cast(Boolean.valueOf(compressionThreshold != -1));
         } else {
             return null;
         }
@@ -437,11 +485,35 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
     }
 
     void handleMessageData(final Pooled<ByteBuffer> message) {
+        final ByteBuffer buffer = message.getResource();
+        final int id = buffer.getShort() & 0xffff;
+        handleMessageData(message, id, buffer.get() & 0xff);
+    }
+
+    void handleCompactMessageData(final Pooled<ByteBuffer> message, final int flags) {
+        handleMessageData(message, ProtocolUtils.readVarInt(message.getResource()), flags);
+    }
+
+    private void handleMessageData(final Pooled<ByteBuffer> message, final int id, int flags) {
         boolean ok1 = false;
         try {
             ByteBuffer buffer = message.getResource();
-            int id = buffer.getShort() & 0xffff;
-            int flags = buffer.get() & 0xff;
+            if ((flags & Protocol.MSG_FLAG_COMPRESSED) != 0) {
+                if (compressionThreshold == -1) {
+                    connection.handleException(new IOException("Received compressed message data on a channel without compression"));
+                    return;
+                }
+                final MessageCompressor compressor = MessageCompressor.get();
+                try {
+                    compressor.inflate(buffer, buffer.position());
+                } catch (IOException e) {
+                    connection.handleException(e);
+                    return;
+                } finally {
+                    compressor.release();
+                }
+                flags &= ~Protocol.MSG_FLAG_COMPRESSED;
+            }
             final InboundMessage inboundMessage;
             if ((flags & Protocol.MSG_FLAG_NEW) != 0) {
                 if (! openInboundMessage()) {
@@ -450,8 +522,10 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
                 }
                 boolean ok2 = false;
                 try {
-                    inboundMessage = new InboundMessage((short) id, this, inboundWindow, maxInboundMessageSize);
-                    final InboundMessage existing = inboundMessages.putIfAbsent(inboundMessage);
+                    inboundMessage = new InboundMessage(id, this, inboundWindow, maxInboundMessageSize);
+                    recordMessageOpened();
+                    ProtocolEvents.messageStarted(channelId, id, false);
+                    final InboundMessage existing = getInboundMessages().putIfAbsent(inboundMessage);
                     if (existing != null) {
                         existing.handleDuplicate();
                     }
@@ -462,6 +536,7 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
                             try {
                                 getExecutor().execute(new Runnable() {
                                     public void run() {
+                                        recordDispatch(inboundMessage);
                                         receiver.handleMessage(RemoteConnectionChannel.this, inboundMessage.messageInputStream);
                                     }
                                 });
@@ -476,16 +551,17 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
                         }
                     }
                 } finally {
-                    if (! ok2) freeInboundMessage((short) id);
+                    if (! ok2) freeInboundMessage(id);
                 }
             } else {
-                inboundMessage = inboundMessages.get(id);
+                final IntIndexMap<InboundMessage> inboundMessages = this.inboundMessages;
+                inboundMessage = inboundMessages == null ? null : inboundMessages.get(id);
                 if (inboundMessage == null) {
                     log.tracef("Ignoring message on channel %s for unknown message ID %04x", this, Integer.valueOf(id));
                     return;
                 }
             }
-            inboundMessage.handleIncoming(message);
+            inboundMessage.handleIncoming(message, flags);
             ok1 = true;
         } finally {
             if (! ok1) message.free();
@@ -493,13 +569,10 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
     }
 
     private void asyncCloseMessage(final int id) {
-        Pooled<ByteBuffer> pooled = connection.allocate();
+        Pooled<ByteBuffer> pooled = allocate(Protocol.MESSAGE_CLOSE, id);
         boolean ok = false;
         try {
             ByteBuffer byteBuffer = pooled.getResource();
-            byteBuffer.put(Protocol.MESSAGE_CLOSE);
-            byteBuffer.putInt(channelId);
-            byteBuffer.putShort((short) id);
             byteBuffer.flip();
             ok = true;
             connection.send(pooled);
@@ -510,8 +583,9 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
 
     void handleWindowOpen(final Pooled<ByteBuffer> pooled) {
         ByteBuffer buffer = pooled.getResource();
-        int id = buffer.getShort() & 0xffff;
-        final OutboundMessage outboundMessage = outboundMessages.get(id);
+        int id = readMessageId(buffer);
+        final IntIndexMap<OutboundMessage> outboundMessages = this.outboundMessages;
+        final OutboundMessage outboundMessage = outboundMessages == null ? null : outboundMessages.get(id);
         if (outboundMessage == null) {
             // ignore; probably harmless...?
             return;
@@ -521,8 +595,9 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
 
     void handleAsyncClose(final Pooled<ByteBuffer> pooled) {
         ByteBuffer buffer = pooled.getResource();
-        int id = buffer.getShort() & 0xffff;
-        final OutboundMessage outboundMessage = outboundMessages.get(id);
+        int id = readMessageId(buffer);
+        final IntIndexMap<OutboundMessage> outboundMessages = this.outboundMessages;
+        final OutboundMessage outboundMessage = outboundMessages == null ? null : outboundMessages.get(id);
         if (outboundMessage == null) {
             // ignore; probably harmless...?
             return;
@@ -550,8 +625,8 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
         final List<OutboundMessage> cancelMessages;
         final List<InboundMessage> terminateMessages;
         synchronized (connection.getLock()) {
-            exceptionMessages = new ArrayList<InboundMessage>(inboundMessages);
-            cancelMessages = new ArrayList<OutboundMessage>(outboundMessages);
+            exceptionMessages = snapshot(inboundMessages);
+            cancelMessages = snapshot(outboundMessages);
             terminateMessages = new ArrayList<InboundMessage>(inboundMessageQueue);
             inboundMessageQueue.clear();
         }
@@ -570,6 +645,47 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
         return connection;
     }
 
+    void recordOpened() {
+        connection.getMetrics().channelOpened();
+        serviceMetrics.channelOpened();
+        ProtocolEvents.channelOpened(connection, channelId);
+    }
+
+    void recordClosed() {
+        connection.getMetrics().channelClosed();
+        serviceMetrics.channelClosed();
+        ProtocolEvents.channelClosed(connection, channelId);
+    }
+
+    void recordMessageOpened() {
+        connection.getMetrics().messageOpened();
+        serviceMetrics.messageOpened();
+    }
+
+    void recordMessageCompleted() {
+        connection.getMetrics().messageCompleted();
+        serviceMetrics.messageCompleted();
+    }
+
+    void recordMessageCancelled() {
+        connection.getMetrics().messageCancelled();
+        serviceMetrics.messageCancelled();
+    }
+
+    void recordWindowStall(final long nanos) {
+        connection.getMetrics().windowStalled(nanos);
+        serviceMetrics.windowStalled(nanos);
+        connection.getRemoteConnectionProvider().getWindowWaitLatency().record(nanos);
+    }
+
+    void recordMessageSent(final long nanos) {
+        connection.getRemoteConnectionProvider().getMessageSendLatency().record(nanos);
+    }
+
+    void recordDispatch(final InboundMessage message) {
+        connection.getRemoteConnectionProvider().getDispatchLatency().record(System.nanoTime() - message.receiveTime);
+    }
+
     RemoteConnectionHandler getConnectionHandler() {
         return connectionHandler;
     }
@@ -578,32 +694,112 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
         return channelId;
     }
 
-    void freeInboundMessage(final short id) {
-        if (inboundMessages.removeKey(id & 0xffff) != null) {
+    void freeInboundMessage(final int id) {
+        final IntIndexMap<InboundMessage> inboundMessages = this.inboundMessages;
+        if (inboundMessages != null && inboundMessages.removeKey(id) != null) {
             closeInboundMessage();
         }
     }
 
-    Pooled<ByteBuffer> allocate(final byte protoId) {
+    @SuppressWarnings("unchecked")
+    private IntIndexMap<OutboundMessage> getOutboundMessages() {
+        IntIndexMap<OutboundMessage> outboundMessages = this.outboundMessages;
+        if (outboundMessages == null) {
+            final IntIndexMap<OutboundMessage> newMessages = new IntIndexHashMap<OutboundMessage>(OutboundMessage.INDEXER, Equaller.IDENTITY, messageTableCapacity(maxOutboundMessages), MESSAGE_TABLE_LOAD_FACTOR);
+            outboundMessages = outboundMessagesUpdater.compareAndSet(this, null, newMessages) ? newMessages : this.outboundMessages;
+        }
+        return outboundMessages;
+    }
+
+    @SuppressWarnings("unchecked")
+    private IntIndexMap<InboundMessage> getInboundMessages() {
+        IntIndexMap<InboundMessage> inboundMessages = this.inboundMessages;
+        if (inboundMessages == null) {
+            final IntIndexMap<InboundMessage> newMessages = new IntIndexHashMap<InboundMessage>(InboundMessage.INDEXER, Equaller.IDENTITY, messageTableCapacity(maxInboundMessages), MESSAGE_TABLE_LOAD_FACTOR);
+            inboundMessages = inboundMessagesUpdater.compareAndSet(this, null, newMessages) ? newMessages : this.inboundMessages;
+        }
+        return inboundMessages;
+    }
+
+    private static int messageTableCapacity(final int maxMessages) {
+        return (int) (Math.max(1, Math.min(maxMessages, MESSAGE_TABLE_INITIAL_MESSAGES)) / MESSAGE_TABLE_LOAD_FACTOR);
+    }
+
+    private static <T> List<T> snapshot(final IntIndexMap<T> messages) {
+        return messages == null ? new ArrayList<T>(0) : new ArrayList<T>(messages);
+    }
+
+    /**
+     * Compress the content of an outbound message data frame in place, if compression is in use on this channel and
+     * the content is big enough to be worth it.
+     *
+     * @param buffer the flipped frame, including its header
+     * @param headerLength the length of the frame header
+     * @param flagsIndex the offset of the message flags within the frame
+     */
+    void compressMessageData(final ByteBuffer buffer, final int headerLength, final int flagsIndex) {
+        final int length = buffer.remaining() - headerLength;
+        if (compressionThreshold == -1 || length == 0 || length < compressionThreshold) {
+            return;
+        }
+        final int start = buffer.position();
+        final MessageCompressor compressor = MessageCompressor.get();
+        try {
+            if (compressor.deflate(buffer, start + headerLength, compressionLevel)) {
+                buffer.put(start + flagsIndex, (byte) (buffer.get(start + flagsIndex) | Protocol.MSG_FLAG_COMPRESSED));
+            }
+        } finally {
+            compressor.release();
+        }
+    }
+
+    /**
+     * Allocate a buffer for a message frame and write the frame header, up to and including the message ID.  With
+     * compact headers, {@link Protocol#MESSAGE_DATA} is sent as {@link Protocol#MESSAGE_DATA_COMPACT}.
+     *
+     * @param protoId the frame type
+     * @param messageId the message ID
+     * @return the buffer
+     */
+    Pooled<ByteBuffer> allocate(final byte protoId, final int messageId) {
         final Pooled<ByteBuffer> pooled = connection.allocate();
-        final ByteBuffer buffer = pooled.getResource();
-        buffer.put(protoId);
-        buffer.putInt(channelId);
+        ProtocolUtils.writeMessageHeader(pooled.getResource(), compactHeaders, protoId, channelId, messageId);
         return pooled;
     }
 
+    /**
+     * Get the length of the header of a message data frame on this channel, including the flags.
+     *
+     * @param messageId the message ID
+     * @param inbound {@code true} for a frame sent by the peer, {@code false} for one written by {@link #allocate(byte, int)}
+     * @return the header length
+     */
+    int getMessageDataHeaderLength(final int messageId, final boolean inbound) {
+        // the peer writes the channel ID from its own perspective
+        return ProtocolUtils.messageDataHeaderLength(compactHeaders, inbound ? channelId ^ ChannelIdAllocator.LOCAL_FLAG : channelId, messageId);
+    }
+
+    boolean isCompactHeaders() {
+        return compactHeaders;
+    }
+
+    private int readMessageId(final ByteBuffer buffer) {
+        return compactHeaders ? ProtocolUtils.readVarInt(buffer) : buffer.getShort() & 0xffff;
+    }
+
     public String toString() {
-        return String.format("Channel ID %08x (%s) of %s", Integer.valueOf(channelId), (channelId & 0x80000000) == 0 ? "inbound" : "outbound", connection);
+        return String.format("Channel ID %08x (%s) of %s", Integer.valueOf(channelId), ChannelIdAllocator.isLocal(channelId) ? "outbound" : "inbound", connection);
     }
 
     void dumpState(final StringBuilder b) {
-        final int state = channelState;
-        final int inboundMessageCnt = (state & INBOUND_MESSAGES_MASK) >>> (Integer.numberOfTrailingZeros(ONE_INBOUND_MESSAGE));
-        final int outboundMessageCnt = (state & OUTBOUND_MESSAGES_MASK) >>> (Integer.numberOfTrailingZeros(ONE_OUTBOUND_MESSAGE));
-        b.append("        ").append(String.format("%s channel ID %08x summary:\n", (channelId & 0x80000000) == 0 ? "Inbound" : "Outbound", channelId));
+        final long state = channelState;
+        final long inboundMessageCnt = (state & INBOUND_MESSAGES_MASK) >>> (Long.numberOfTrailingZeros(ONE_INBOUND_MESSAGE));
+        final long outboundMessageCnt = (state & OUTBOUND_MESSAGES_MASK) >>> (Long.numberOfTrailingZeros(ONE_OUTBOUND_MESSAGE));
+        b.append("        ").append(String.format("%s channel ID %08x summary:\n", ChannelIdAllocator.isLocal(channelId) ? "Outbound" : "Inbound", channelId));
         b.append("        ").append("* Flags: ");
         if (Bits.allAreSet(state, READ_CLOSED)) b.append("read-closed ");
         if (Bits.allAreSet(state, WRITE_CLOSED)) b.append("write-closed ");
+        if (compressionThreshold != -1) b.append("compressed ");
         b.append('\n');
         b.append("        ").append("* ").append(inboundMessageQueue.size()).append(" pending inbound messages\n");
         b.append("        ").append("* ").append(inboundMessageCnt).append(" (max ").append(maxInboundMessages).append(") inbound messages\n");
@@ -613,11 +809,11 @@ final class RemoteConnectionChannel extends AbstractHandleableCloseable<Channel>
             inboundMessage.dumpState(b);
         }
         b.append("        ").append("* Inbound messages:\n");
-        for (InboundMessage inboundMessage : inboundMessages) {
+        for (InboundMessage inboundMessage : snapshot(inboundMessages)) {
             inboundMessage.dumpState(b);
         }
         b.append("        ").append("* Outbound messages:\n");
-        for (OutboundMessage outboundMessage : outboundMessages) {
+        for (OutboundMessage outboundMessage : snapshot(outboundMessages)) {
             outboundMessage.dumpState(b);
         }
     }
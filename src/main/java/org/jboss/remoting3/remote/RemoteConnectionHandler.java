@@ -28,8 +28,8 @@ import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Random;
-import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.IntPredicate;
 
 import javax.net.ssl.SSLSession;
 
@@ -69,6 +69,10 @@ final class RemoteConnectionHandler extends AbstractHandleableCloseable<Connecti
      * Pending channels.  All have a "1" MSB.  Replies are read with a "0" MSB.
      */
     private final IntIndexMap<PendingChannel> pendingChannels = new IntIndexHashMap<PendingChannel>(PendingChannel.INDEXER, Equaller.IDENTITY);
+    /**
+     * The allocator for local channel IDs.
+     */
+    private final ChannelIdAllocator channelIds = new ChannelIdAllocator();
 
     private final int maxInboundChannels;
     private final int maxOutboundChannels;
@@ -77,18 +81,18 @@ final class RemoteConnectionHandler extends AbstractHandleableCloseable<Connecti
 
     private final int behavior;
 
-    private volatile int channelState = 0;
+    private volatile long channelState = 0L;
 
-    private static final AtomicIntegerFieldUpdater<RemoteConnectionHandler> channelStateUpdater = AtomicIntegerFieldUpdater.newUpdater(RemoteConnectionHandler.class, "channelState");
+    private static final AtomicLongFieldUpdater<RemoteConnectionHandler> channelStateUpdater = AtomicLongFieldUpdater.newUpdater(RemoteConnectionHandler.class, "channelState");
 
     /** Sending close request, now shutting down the write side of all channels and refusing new channels. Once send, received = true and count == 0, shut down writes on the socket. */
-    private static final int SENT_CLOSE_REQ = (1 << 31);
+    private static final long SENT_CLOSE_REQ = (1L << 63);
     /** Received close request.  Send a close req if we haven't already done so. */
-    private static final int RECEIVED_CLOSE_REQ = (1 << 30);
-    private static final int OUTBOUND_CHANNELS_MASK = (1 << 15) - 1;
-    private static final int ONE_OUTBOUND_CHANNEL = 1;
-    private static final int INBOUND_CHANNELS_MASK = ((1 << 30) - 1) & ~OUTBOUND_CHANNELS_MASK;
-    private static final int ONE_INBOUND_CHANNEL = (1 << 15);
+    private static final long RECEIVED_CLOSE_REQ = (1L << 62);
+    private static final long OUTBOUND_CHANNELS_MASK = (1L << 31) - 1;
+    private static final long ONE_OUTBOUND_CHANNEL = 1L;
+    private static final long INBOUND_CHANNELS_MASK = ((1L << 62) - 1) & ~OUTBOUND_CHANNELS_MASK;
+    private static final long ONE_INBOUND_CHANNEL = (1L << 31);
 
     RemoteConnectionHandler(final ConnectionHandlerContext connectionContext, final RemoteConnection remoteConnection, final int maxInboundChannels, final int maxOutboundChannels, final String remoteEndpointName, final int behavior) {
         super(remoteConnection.getExecutor());
@@ -98,6 +102,7 @@ final class RemoteConnectionHandler extends AbstractHandleableCloseable<Connecti
         this.maxOutboundChannels = maxOutboundChannels;
         this.remoteEndpointName = remoteEndpointName;
         this.behavior = behavior;
+        remoteConnection.getEventLog().setCompactHeaders(isCompactHeaders());
     }
 
     /**
@@ -120,17 +125,18 @@ final class RemoteConnectionHandler extends AbstractHandleableCloseable<Connecti
      */
     void handleChannelClosed(RemoteConnectionChannel channel) {
         int channelId = channel.getChannelId();
-        channels.remove(channel);
-        boolean inbound = (channelId & 0x80000000) == 0;
-        if (inbound) {
-            handleInboundChannelClosed();
-        } else {
+        if (channels.remove(channel)) {
+            channel.recordClosed();
+        }
+        if (ChannelIdAllocator.isLocal(channelId)) {
             handleOutboundChannelClosed();
+        } else {
+            handleInboundChannelClosed();
         }
     }
 
     void handleInboundChannelClosed() {
-        int oldState;
+        long oldState;
         oldState = incrementState(-ONE_INBOUND_CHANNEL);
         if (oldState == (SENT_CLOSE_REQ | RECEIVED_CLOSE_REQ)) {
             log.tracef("Closed inbound channel on %s (shutting down)", this);
@@ -141,7 +147,7 @@ final class RemoteConnectionHandler extends AbstractHandleableCloseable<Connecti
     }
 
     void handleOutboundChannelClosed() {
-        int oldState;
+        long oldState;
         oldState = incrementState(-ONE_OUTBOUND_CHANNEL);
         if (oldState == (SENT_CLOSE_REQ | RECEIVED_CLOSE_REQ)) {
             log.tracef("Closed outbound channel on %s (shutting down)", this);
@@ -152,11 +158,11 @@ final class RemoteConnectionHandler extends AbstractHandleableCloseable<Connecti
     }
 
     boolean handleInboundChannelOpen() {
-        int oldState, newState;
+        long oldState, newState;
         do {
             oldState = channelState;
-            int oldCount = oldState & INBOUND_CHANNELS_MASK;
-            if (oldCount == maxInboundChannels) {
+            long oldCount = (oldState & INBOUND_CHANNELS_MASK) >>> Long.numberOfTrailingZeros(ONE_INBOUND_CHANNEL);
+            if (oldCount >= maxInboundChannels) {
                 log.tracef("Refused inbound channel request on %s because too many inbound channels are open", this);
                 return false;
             }
@@ -171,11 +177,11 @@ final class RemoteConnectionHandler extends AbstractHandleableCloseable<Connecti
     }
 
     void handleOutboundChannelOpen() throws IOException {
-        int oldState, newState;
+        long oldState, newState;
         do {
             oldState = channelState;
-            int oldCount = oldState & OUTBOUND_CHANNELS_MASK;
-            if (oldCount == maxOutboundChannels) {
+            long oldCount = (oldState & OUTBOUND_CHANNELS_MASK) >>> Long.numberOfTrailingZeros(ONE_OUTBOUND_CHANNEL);
+            if (oldCount >= maxOutboundChannels) {
                 log.tracef("Refused outbound channel open on %s because too many outbound channels are open", this);
                 throw new ProtocolException("Too many channels open");
             }
@@ -192,7 +198,7 @@ final class RemoteConnectionHandler extends AbstractHandleableCloseable<Connecti
      * The remote side requests a close of the whole channel.
      */
     void receiveCloseRequest() {
-        int oldState, newState;
+        long oldState, newState;
         do {
             oldState = channelState;
             if ((oldState & RECEIVED_CLOSE_REQ) != 0) {
@@ -213,7 +219,7 @@ final class RemoteConnectionHandler extends AbstractHandleableCloseable<Connecti
     }
 
     void sendCloseRequest() {
-        int oldState, newState;
+        long oldState, newState;
         do {
             oldState = channelState;
             if ((oldState & SENT_CLOSE_REQ) != 0) {
@@ -230,36 +236,36 @@ final class RemoteConnectionHandler extends AbstractHandleableCloseable<Connecti
         }
     }
 
-    private int incrementState(final int count) {
-        final int oldState = channelStateUpdater.getAndAdd(this, count);
+    private long incrementState(final long count) {
+        final long oldState = channelStateUpdater.getAndAdd(this, count);
         if (log.isTraceEnabled()) {
-            final int newState = oldState + count;
+            final long newState = oldState + count;
             log.tracef("CAS %s\n\told: RS=%s WS=%s IC=%d OC=%d\n\tnew: RS=%s WS=%s IC=%d OC=%d", this,
                     Boolean.valueOf((oldState & RECEIVED_CLOSE_REQ) != 0),
                     Boolean.valueOf((oldState & SENT_CLOSE_REQ) != 0),
-                    Integer.valueOf((oldState & INBOUND_CHANNELS_MASK) >> Integer.numberOfTrailingZeros(ONE_INBOUND_CHANNEL)),
-                    Integer.valueOf((oldState & OUTBOUND_CHANNELS_MASK) >> Integer.numberOfTrailingZeros(ONE_OUTBOUND_CHANNEL)),
+                    Long.valueOf((oldState & INBOUND_CHANNELS_MASK) >>> Long.numberOfTrailingZeros(ONE_INBOUND_CHANNEL)),
+                    Long.valueOf((oldState & OUTBOUND_CHANNELS_MASK) >>> Long.numberOfTrailingZeros(ONE_OUTBOUND_CHANNEL)),
                     Boolean.valueOf((newState & RECEIVED_CLOSE_REQ) != 0),
                     Boolean.valueOf((newState & SENT_CLOSE_REQ) != 0),
-                    Integer.valueOf((newState & INBOUND_CHANNELS_MASK) >> Integer.numberOfTrailingZeros(ONE_INBOUND_CHANNEL)),
-                    Integer.valueOf((newState & OUTBOUND_CHANNELS_MASK) >> Integer.numberOfTrailingZeros(ONE_OUTBOUND_CHANNEL))
+                    Long.valueOf((newState & INBOUND_CHANNELS_MASK) >>> Long.numberOfTrailingZeros(ONE_INBOUND_CHANNEL)),
+                    Long.valueOf((newState & OUTBOUND_CHANNELS_MASK) >>> Long.numberOfTrailingZeros(ONE_OUTBOUND_CHANNEL))
                     );
         }
         return oldState;
     }
 
-    private boolean casState(final int oldState, final int newState) {
+    private boolean casState(final long oldState, final long newState) {
         final boolean result = channelStateUpdater.compareAndSet(this, oldState, newState);
         if (result && log.isTraceEnabled()) {
             log.tracef("CAS %s\n\told: RS=%s WS=%s IC=%d OC=%d\n\tnew: RS=%s WS=%s IC=%d OC=%d", this,
                     Boolean.valueOf((oldState & RECEIVED_CLOSE_REQ) != 0),
                     Boolean.valueOf((oldState & SENT_CLOSE_REQ) != 0),
-                    Integer.valueOf((oldState & INBOUND_CHANNELS_MASK) >> Integer.numberOfTrailingZeros(ONE_INBOUND_CHANNEL)),
-                    Integer.valueOf((oldState & OUTBOUND_CHANNELS_MASK) >> Integer.numberOfTrailingZeros(ONE_OUTBOUND_CHANNEL)),
+                    Long.valueOf((oldState & INBOUND_CHANNELS_MASK) >>> Long.numberOfTrailingZeros(ONE_INBOUND_CHANNEL)),
+                    Long.valueOf((oldState & OUTBOUND_CHANNELS_MASK) >>> Long.numberOfTrailingZeros(ONE_OUTBOUND_CHANNEL)),
                     Boolean.valueOf((newState & RECEIVED_CLOSE_REQ) != 0),
                     Boolean.valueOf((newState & SENT_CLOSE_REQ) != 0),
-                    Integer.valueOf((newState & INBOUND_CHANNELS_MASK) >> Integer.numberOfTrailingZeros(ONE_INBOUND_CHANNEL)),
-                    Integer.valueOf((newState & OUTBOUND_CHANNELS_MASK) >> Integer.numberOfTrailingZeros(ONE_OUTBOUND_CHANNEL))
+                    Long.valueOf((newState & INBOUND_CHANNELS_MASK) >>> Long.numberOfTrailingZeros(ONE_INBOUND_CHANNEL)),
+                    Long.valueOf((newState & OUTBOUND_CHANNELS_MASK) >>> Long.numberOfTrailingZeros(ONE_OUTBOUND_CHANNEL))
                     );
         }
         return result;
@@ -308,13 +314,20 @@ final class RemoteConnectionHandler extends AbstractHandleableCloseable<Connecti
         // Request the maximum message size to defaults if none was specified.
         final long outboundMessageSizeOptionValue = connectionOptionMap.get(RemotingOptions.MAX_OUTBOUND_MESSAGE_SIZE, RemotingOptions.DEFAULT_MAX_OUTBOUND_MESSAGE_SIZE);
         final long inboundMessageSizeOptionValue = connectionOptionMap.get(RemotingOptions.MAX_INBOUND_MESSAGE_SIZE, RemotingOptions.DEFAULT_MAX_INBOUND_MESSAGE_SIZE);
+        final boolean compressionOptionValue = connectionOptionMap.get(RemotingOptions.MESSAGE_COMPRESSION, RemotingOptions.DEFAULT_MESSAGE_COMPRESSION);
+        final int compressionThresholdOptionValue = connectionOptionMap.get(RemotingOptions.MESSAGE_COMPRESSION_THRESHOLD, RemotingOptions.DEFAULT_MESSAGE_COMPRESSION_THRESHOLD);
+        final int compressionLevelOptionValue = connectionOptionMap.get(RemotingOptions.MESSAGE_COMPRESSION_LEVEL, RemotingOptions.DEFAULT_MESSAGE_COMPRESSION_LEVEL);
 
         final int outboundWindowSize = optionMap.get(RemotingOptions.TRANSMIT_WINDOW_SIZE, outboundWindowSizeOptionValue);
-        final int outboundMessageCount = optionMap.get(RemotingOptions.MAX_OUTBOUND_MESSAGES, outboundMessageCountOptionValue);
+        final int outboundMessageCount = Math.min(optionMap.get(RemotingOptions.MAX_OUTBOUND_MESSAGES, outboundMessageCountOptionValue), getMaxMessageCount());
         final int inboundWindowSize = optionMap.get(RemotingOptions.RECEIVE_WINDOW_SIZE, inboundWindowSizeOptionValue);
-        final int inboundMessageCount = optionMap.get(RemotingOptions.MAX_INBOUND_MESSAGES, inboundMessageCountOptionValue);
+        final int inboundMessageCount = Math.min(optionMap.get(RemotingOptions.MAX_INBOUND_MESSAGES, inboundMessageCountOptionValue), getMaxMessageCount());
         final long outboundMessageSize = optionMap.get(RemotingOptions.MAX_OUTBOUND_MESSAGE_SIZE, outboundMessageSizeOptionValue);
         final long inboundMessageSize = optionMap.get(RemotingOptions.MAX_INBOUND_MESSAGE_SIZE, inboundMessageSizeOptionValue);
+        // Only request compression if the peer is able to negotiate it.
+        final boolean compression = isMessageCompression() && optionMap.get(RemotingOptions.MESSAGE_COMPRESSION, compressionOptionValue);
+        final int compressionThreshold = compression ? Math.max(0, optionMap.get(RemotingOptions.MESSAGE_COMPRESSION_THRESHOLD, compressionThresholdOptionValue)) : -1;
+        final int compressionLevel = optionMap.get(RemotingOptions.MESSAGE_COMPRESSION_LEVEL, compressionLevelOptionValue);
 
         final IntIndexMap<PendingChannel> pendingChannels = this.pendingChannels;
         try {
@@ -325,59 +338,73 @@ final class RemoteConnectionHandler extends AbstractHandleableCloseable<Connecti
         }
         boolean ok = false;
         try {
-            final Random random = ProtocolUtils.randomHolder.get();
-            for (;;) {
-                id = random.nextInt() | 0x80000000;
-                if (! pendingChannels.containsKey(id)) {
-                    PendingChannel pendingChannel = new PendingChannel(id, outboundWindowSize, inboundWindowSize, outboundMessageCount, inboundMessageCount, outboundMessageSize, inboundMessageSize, result);
-                    if (pendingChannels.putIfAbsent(pendingChannel) == null) {
-                        if (log.isTraceEnabled()) {
-                            log.tracef("Outbound service request for channel %08x is configured as follows:\n" +
-                                    "  outbound window:  option %10d, req %10d\n" +
-                                    "  inbound window:   option %10d, req %10d\n" +
-                                    "  outbound msgs:    option %10d, req %10d\n" +
-                                    "  inbound msgs:     option %10d, req %10d\n" +
-                                    "  outbound msgsize: option %19d, req %19d\n" +
-                                    "  inbound msgsize:  option %19d, req %19d",
-                                Integer.valueOf(id),
-                                Integer.valueOf(outboundWindowSizeOptionValue), Integer.valueOf(outboundWindowSize),
-                                Integer.valueOf(inboundWindowSizeOptionValue), Integer.valueOf(inboundWindowSize),
-                                Integer.valueOf(outboundMessageCountOptionValue), Integer.valueOf(outboundMessageCount),
-                                Integer.valueOf(inboundMessageCountOptionValue), Integer.valueOf(inboundMessageCount),
-                                Long.valueOf(outboundMessageSizeOptionValue), Long.valueOf(outboundMessageSize),
-                                Long.valueOf(inboundMessageSizeOptionValue), Long.valueOf(inboundMessageSize)
-                            );
-                        }
-
-                        Pooled<ByteBuffer> pooled = remoteConnection.allocate();
-                        try {
-                            ByteBuffer buffer = pooled.getResource();
-                            buffer.put(Protocol.CHANNEL_OPEN_REQUEST);
-                            buffer.putInt(id);
-                            ProtocolUtils.writeBytes(buffer, Protocol.O_SERVICE_NAME, serviceTypeBytes);
-                            ProtocolUtils.writeInt(buffer, Protocol.O_MAX_INBOUND_MSG_WINDOW_SIZE, inboundWindowSize);
-                            ProtocolUtils.writeShort(buffer, Protocol.O_MAX_INBOUND_MSG_COUNT, inboundMessageCount);
-                            ProtocolUtils.writeInt(buffer, Protocol.O_MAX_OUTBOUND_MSG_WINDOW_SIZE, outboundWindowSize);
-                            ProtocolUtils.writeShort(buffer, Protocol.O_MAX_OUTBOUND_MSG_COUNT, outboundMessageCount);
-                            if (inboundMessageSize != Long.MAX_VALUE) {
-                                ProtocolUtils.writeLong(buffer, Protocol.O_MAX_INBOUND_MSG_SIZE, inboundMessageSize);
-                            }
-                            if (outboundMessageSize != Long.MAX_VALUE) {
-                                ProtocolUtils.writeLong(buffer, Protocol.O_MAX_OUTBOUND_MSG_SIZE, outboundMessageSize);
-                            }
-                            buffer.put((byte) 0);
-                            buffer.flip();
-                            remoteConnection.send(pooled);
-                            ok = true;
-                            log.tracef("Completed initiation of service open of type %s on %s", serviceType, this);
-                            // TODO: allow cancel
-                            return IoUtils.nullCancellable();
-                        } finally {
-                            if (! ok) pooled.free();
-                        }
+            final RemoteMetrics serviceMetrics = remoteConnection.getRemoteConnectionProvider().getServiceMetrics(serviceType);
+            final IntIndexMap<RemoteConnectionChannel> channels = this.channels;
+            final IntPredicate inUse = new IntPredicate() {
+                public boolean test(final int candidate) {
+                    return channels.containsKey(candidate) || pendingChannels.containsKey(candidate);
+                }
+            };
+            // we hold a slot against maxOutboundChannels, so at most that many local IDs are live
+            while ((id = channelIds.allocate(inUse, maxOutboundChannels)) != ChannelIdAllocator.NONE) {
+                PendingChannel pendingChannel = new PendingChannel(id, outboundWindowSize, inboundWindowSize, outboundMessageCount, inboundMessageCount, outboundMessageSize, inboundMessageSize, compressionThreshold, compressionLevel, serviceMetrics, result);
+                if (pendingChannels.putIfAbsent(pendingChannel) != null) {
+                    continue;
+                }
+                if (log.isTraceEnabled()) {
+                    log.tracef("Outbound service request for channel %08x is configured as follows:\n" +
+                            "  outbound window:  option %10d, req %10d\n" +
+                            "  inbound window:   option %10d, req %10d\n" +
+                            "  outbound msgs:    option %10d, req %10d\n" +
+                            "  inbound msgs:     option %10d, req %10d\n" +
+                            "  outbound msgsize: option %19d, req %19d\n" +
+                            "  inbound msgsize:  option %19d, req %19d",
+                        Integer.valueOf(id),
+                        Integer.valueOf(outboundWindowSizeOptionValue), Integer.valueOf(outboundWindowSize),
+                        Integer.valueOf(inboundWindowSizeOptionValue), Integer.valueOf(inboundWindowSize),
+                        Integer.valueOf(outboundMessageCountOptionValue), Integer.valueOf(outboundMessageCount),
+                        Integer.valueOf(inboundMessageCountOptionValue), Integer.valueOf(inboundMessageCount),
+                        Long.valueOf(outboundMessageSizeOptionValue), Long.valueOf(outboundMessageSize),
+                        Long.valueOf(inboundMessageSizeOptionValue), Long.valueOf(inboundMessageSize)
+                    );
+                }
+
+                Pooled<ByteBuffer> pooled = remoteConnection.allocate();
+                try {
+                    ByteBuffer buffer = pooled.getResource();
+                    buffer.put(Protocol.CHANNEL_OPEN_REQUEST);
+                    buffer.putInt(id);
+                    ProtocolUtils.writeBytes(buffer, Protocol.O_SERVICE_NAME, serviceTypeBytes);
+                    ProtocolUtils.writeInt(buffer, Protocol.O_MAX_INBOUND_MSG_WINDOW_SIZE, inboundWindowSize);
+                    writeMessageCount(buffer, Protocol.O_MAX_INBOUND_MSG_COUNT, inboundMessageCount);
+                    ProtocolUtils.writeInt(buffer, Protocol.O_MAX_OUTBOUND_MSG_WINDOW_SIZE, outboundWindowSize);
+                    writeMessageCount(buffer, Protocol.O_MAX_OUTBOUND_MSG_COUNT, outboundMessageCount);
+                    if (inboundMessageSize != Long.MAX_VALUE) {
+                        ProtocolUtils.writeLong(buffer, Protocol.O_MAX_INBOUND_MSG_SIZE, inboundMessageSize);
+                    }
+                    if (outboundMessageSize != Long.MAX_VALUE) {
+                        ProtocolUtils.writeLong(buffer, Protocol.O_MAX_OUTBOUND_MSG_SIZE, outboundMessageSize);
+                    }
+                    if (compression) {
+                        ProtocolUtils.writeEmpty(buffer, Protocol.O_COMPRESSION);
+                    }
+                    buffer.put((byte) 0);
+                    buffer.flip();
+                    remoteConnection.send(pooled);
+                    ok = true;
+                    log.tracef("Completed initiation of service open of type %s on %s", serviceType, this);
+                    // TODO: allow cancel
+                    return IoUtils.nullCancellable();
+                } finally {
+                    if (! ok) {
+                        pooled.free();
+                        pendingChannels.remove(pendingChannel);
                     }
                 }
             }
+            log.tracef("Refused outbound channel open on %s because no channel ID is available", this);
+            result.setException(new ProtocolException("No channel ID available"));
+            return IoUtils.nullCancellable();
         } finally {
             if (! ok) handleOutboundChannelClosed();
         }
@@ -416,12 +443,20 @@ final class RemoteConnectionHandler extends AbstractHandleableCloseable<Connecti
         }
     }
 
+    RemoteConnection getRemoteConnection() {
+        return remoteConnection;
+    }
+
     ConnectionHandlerContext getConnectionContext() {
         return connectionContext;
     }
 
     RemoteConnectionChannel addChannel(final RemoteConnectionChannel channel) {
-        return channels.putIfAbsent(channel);
+        final RemoteConnectionChannel existing = channels.putIfAbsent(channel);
+        if (existing == null) {
+            channel.recordOpened();
+        }
+        return existing;
     }
 
     RemoteConnectionChannel getChannel(final int id) {
@@ -434,6 +469,7 @@ final class RemoteConnectionHandler extends AbstractHandleableCloseable<Connecti
 
     void putChannel(final RemoteConnectionChannel channel) {
         channels.put(channel);
+        channel.recordOpened();
     }
 
     boolean isMessageClose() {
@@ -444,17 +480,56 @@ final class RemoteConnectionHandler extends AbstractHandleableCloseable<Connecti
         return Bits.allAreSet(behavior, Protocol.BH_FAULTY_MSG_SIZE);
     }
 
+    boolean isMessageCompression() {
+        return Bits.allAreSet(behavior, Protocol.BH_MESSAGE_COMPRESSION);
+    }
+
+    boolean isCompactHeaders() {
+        return Bits.allAreSet(behavior, Protocol.BH_COMPACT_HEADERS);
+    }
+
+    /**
+     * Get the largest per-channel message count which can be negotiated with the peer.
+     *
+     * @return the largest message count
+     */
+    int getMaxMessageCount() {
+        return isCompactHeaders() ? Integer.MAX_VALUE : Protocol.MAX_MSG_COUNT;
+    }
+
+    void writeMessageCount(final ByteBuffer buffer, final int type, final int count) {
+        if (isCompactHeaders()) {
+            ProtocolUtils.writeInt(buffer, type, count);
+        } else {
+            ProtocolUtils.writeShort(buffer, type, count);
+        }
+    }
+
+    int readMessageCount(final ByteBuffer buffer) {
+        return isCompactHeaders() ? ProtocolUtils.readInt(buffer) & Integer.MAX_VALUE : ProtocolUtils.readUnsignedShort(buffer);
+    }
+
+    /**
+     * Get the number of channels which are open or opening on this connection, in either direction.
+     *
+     * @return the channel count
+     */
+    int getChannelCount() {
+        final long state = channelState;
+        return (int) (state & OUTBOUND_CHANNELS_MASK) + (int) ((state & INBOUND_CHANNELS_MASK) >>> Long.numberOfTrailingZeros(ONE_INBOUND_CHANNEL));
+    }
+
     public String toString() {
         return String.format("Connection handler for %s", remoteConnection);
     }
 
     void dumpState(final StringBuilder b) {
         synchronized (remoteConnection.getLock()) {
-            final int state = this.channelState;
+            final long state = this.channelState;
             final boolean sentCloseReq = Bits.allAreSet(state, SENT_CLOSE_REQ);
             final boolean receivedCloseReq = Bits.allAreSet(state, RECEIVED_CLOSE_REQ);
-            final int inboundChannels = (state & INBOUND_CHANNELS_MASK) >>> Integer.numberOfTrailingZeros(ONE_INBOUND_CHANNEL);
-            final int outboundChannels = (state & OUTBOUND_CHANNELS_MASK) >>> Integer.numberOfTrailingZeros(ONE_OUTBOUND_CHANNEL);
+            final long inboundChannels = (state & INBOUND_CHANNELS_MASK) >>> Long.numberOfTrailingZeros(ONE_INBOUND_CHANNEL);
+            final long outboundChannels = (state & OUTBOUND_CHANNELS_MASK) >>> Long.numberOfTrailingZeros(ONE_OUTBOUND_CHANNEL);
             final ConnectedMessageChannel channel = remoteConnection.getChannel();
             final SocketAddress localAddress = channel.getLocalAddress();
             final SocketAddress peerAddress = channel.getPeerAddress();
@@ -463,6 +538,8 @@ final class RemoteConnectionHandler extends AbstractHandleableCloseable<Connecti
             b.append("    ").append("* Flags: ");
             if (Bits.allAreSet(behavior, Protocol.BH_MESSAGE_CLOSE)) b.append("supports-message-close ");
             if (Bits.allAreSet(behavior, Protocol.BH_FAULTY_MSG_SIZE)) b.append("remote-faulty-message-size ");
+            if (Bits.allAreSet(behavior, Protocol.BH_MESSAGE_COMPRESSION)) b.append("supports-message-compression ");
+            if (Bits.allAreSet(behavior, Protocol.BH_COMPACT_HEADERS)) b.append("compact-headers ");
             if (receivedCloseReq) b.append("received-close-req ");
             if (sentCloseReq) b.append("set-close-req ");
             b.append('\n');
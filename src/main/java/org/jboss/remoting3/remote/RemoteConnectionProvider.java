@@ -26,30 +26,48 @@ import static org.jboss.remoting3.remote.RemoteLogger.log;
 
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.URI;
+import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 
 import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
+import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
 import javax.security.sasl.SaslClientFactory;
 import javax.security.sasl.SaslServerFactory;
 
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.jboss.remoting3.CloseHandler;
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.OpenListener;
 import org.jboss.remoting3.RemotingOptions;
 import org.jboss.remoting3.spi.AbstractHandleableCloseable;
+import org.jboss.remoting3.spi.ConnectionHandler;
+import org.jboss.remoting3.spi.ConnectionHandlerContext;
 import org.jboss.remoting3.spi.ConnectionHandlerFactory;
 import org.jboss.remoting3.spi.ConnectionProvider;
 import org.jboss.remoting3.spi.ConnectionProviderContext;
 import org.jboss.remoting3.spi.NetworkServerProvider;
+import org.jboss.remoting3.spi.RegisteredService;
 import org.wildfly.common.Assert;
 import org.wildfly.security.auth.AuthenticationConfiguration;
 import org.wildfly.security.auth.AuthenticationContext;
@@ -72,6 +90,7 @@ import org.xnio.Pool;
 import org.xnio.Result;
 import org.xnio.StreamConnection;
 import org.xnio.Xnio;
+import org.xnio.XnioExecutor;
 import org.xnio.XnioWorker;
 import org.xnio.channels.AcceptingChannel;
 import org.xnio.channels.AssembledConnectedSslStreamChannel;
@@ -80,6 +99,8 @@ import org.xnio.channels.ConnectedSslStreamChannel;
 import org.xnio.channels.ConnectedStreamChannel;
 import org.xnio.channels.FramedMessageChannel;
 import org.xnio.ssl.JsseSslConnection;
+import org.xnio.ssl.JsseSslUtils;
+import org.xnio.ssl.JsseXnioSsl;
 import org.xnio.ssl.XnioSsl;
 
 /**
@@ -109,12 +130,29 @@ class RemoteConnectionProvider extends AbstractHandleableCloseable<ConnectionPro
     private final boolean sslEnabled;
     private final Collection<Cancellable> pendingInboundConnections = Collections.synchronizedSet(new HashSet<Cancellable>());
     private final Set<RemoteConnectionHandler> handlers = Collections.synchronizedSet(new HashSet<RemoteConnectionHandler>());
+    // client-side resumption tickets, keyed by destination and authentication context
+    private final ConcurrentMap<Map.Entry<URI, AuthenticationContext>, byte[]> resumptionTickets = new ConcurrentHashMap<Map.Entry<URI, AuthenticationContext>, byte[]>();
+    private final RemoteMetrics metrics = new RemoteMetrics(null);
+    private final ConcurrentMap<String, RemoteMetrics> serviceMetrics = new ConcurrentHashMap<String, RemoteMetrics>();
+    private final ConcurrentMap<RemoteConnectionHandler, ObjectName> connectionMetricsNames = new ConcurrentHashMap<RemoteConnectionHandler, ObjectName>();
+    private final LatencyHistogram windowWaitLatency = new LatencyHistogram();
+    private final LatencyHistogram messageSendLatency = new LatencyHistogram();
+    private final LatencyHistogram channelOpenLatency = new LatencyHistogram();
+    private final LatencyHistogram dispatchLatency = new LatencyHistogram();
+    private final ObjectName[] latencyObjectNames = new ObjectName[4];
     private final MBeanServer server;
     private final ObjectName objectName;
+    private final ObjectName metricsObjectName;
     private final int defaultBufferSize;
+    private final AddressResolver addressResolver;
 
     RemoteConnectionProvider(final OptionMap optionMap, final ConnectionProviderContext connectionProviderContext) throws IOException {
+        this(optionMap, connectionProviderContext, AddressResolver.DEFAULT);
+    }
+
+    RemoteConnectionProvider(final OptionMap optionMap, final ConnectionProviderContext connectionProviderContext, final AddressResolver addressResolver) throws IOException {
         super(connectionProviderContext.getExecutor());
+        this.addressResolver = addressResolver;
         xnio = connectionProviderContext.getXnio();
         sslEnabled = optionMap.get(Options.SSL_ENABLED, true);
         xnioWorker = connectionProviderContext.getXnioWorker();
@@ -122,6 +160,7 @@ class RemoteConnectionProvider extends AbstractHandleableCloseable<ConnectionPro
         defaultBufferSize = optionMap.get(RemotingOptions.RECEIVE_BUFFER_SIZE, RemotingOptions.DEFAULT_RECEIVE_BUFFER_SIZE);
         MBeanServer server = null;
         ObjectName objectName = null;
+        ObjectName metricsObjectName = null;
         try {
             server = ManagementFactory.getPlatformMBeanServer();
             objectName = new ObjectName("jboss.remoting.handler", "name", connectionProviderContext.getEndpoint().getName() + "-" + hashCode());
@@ -133,12 +172,37 @@ class RemoteConnectionProvider extends AbstractHandleableCloseable<ConnectionPro
                 public String dumpConnectionStateToString() {
                     return doGetConnectionState();
                 }
+
+                public void dumpProtocolEventLog() {
+                    final StringBuilder b = new StringBuilder();
+                    doGetProtocolEventLog(b);
+                    RemoteLogger.log.info(b);
+                }
+
+                public String dumpProtocolEventLogToString() {
+                    final StringBuilder b = new StringBuilder();
+                    doGetProtocolEventLog(b);
+                    return b.toString();
+                }
             }, objectName);
+            metricsObjectName = new ObjectName("jboss.remoting.metrics:type=endpoint,name=" + ObjectName.quote(connectionProviderContext.getEndpoint().getName() + "-" + hashCode()));
+            server.registerMBean(metrics, metricsObjectName);
+            registerLatencyMBean(server, 0, "window-wait", windowWaitLatency);
+            registerLatencyMBean(server, 1, "message-send", messageSendLatency);
+            registerLatencyMBean(server, 2, "channel-open", channelOpenLatency);
+            registerLatencyMBean(server, 3, "dispatch", dispatchLatency);
         } catch (Exception e) {
             // ignore
         }
         this.server = server;
         this.objectName = objectName;
+        this.metricsObjectName = metricsObjectName;
+    }
+
+    private void registerLatencyMBean(final MBeanServer server, final int index, final String type, final LatencyHistogram histogram) throws Exception {
+        final ObjectName objectName = new ObjectName("jboss.remoting.latency:type=" + type + ",name=" + ObjectName.quote(connectionProviderContext.getEndpoint().getName() + "-" + hashCode()));
+        server.registerMBean(histogram, objectName);
+        latencyObjectNames[index] = objectName;
     }
 
     private void doDumpConnectionState() {
@@ -156,6 +220,17 @@ class RemoteConnectionProvider extends AbstractHandleableCloseable<ConnectionPro
         }
     }
 
+    private void doGetProtocolEventLog(final StringBuilder b) {
+        b.append("Protocol event log for ").append(this).append(':').append('\n');
+        synchronized (handlers) {
+            for (RemoteConnectionHandler handler : handlers) {
+                final RemoteConnection connection = handler.getRemoteConnection();
+                b.append("    ").append("Connection ").append(connection.getChannel().getLocalAddress()).append(" <-> ").append(connection.getChannel().getPeerAddress()).append('\n');
+                connection.getEventLog().dump(b);
+            }
+        }
+    }
+
     private String doGetConnectionState() {
         final StringBuilder b = new StringBuilder();
         doGetConnectionState(b);
@@ -171,6 +246,17 @@ class RemoteConnectionProvider extends AbstractHandleableCloseable<ConnectionPro
         Assert.checkNotNullParam("result", result);
         Assert.checkNotNullParam("authenticationContext", authenticationContext);
         Assert.checkNotNullParam("saslClientFactory", saslClientFactory);
+        final int stripes = connectOptions.get(RemotingOptions.CONNECTION_STRIPES, RemotingOptions.DEFAULT_CONNECTION_STRIPES);
+        if (stripes > 1) {
+            final StripedConnect stripedConnect = new StripedConnect(destination, connectOptions, authenticationContext, saslClientFactory, stripes);
+            final IoFuture<ConnectionHandlerFactory> returnedFuture = stripedConnect.start();
+            returnedFuture.addNotifier(IoUtils.<ConnectionHandlerFactory>resultNotifier(), result);
+            return returnedFuture;
+        }
+        return connectOne(destination, connectOptions, result, authenticationContext, saslClientFactory);
+    }
+
+    private Cancellable connectOne(final URI destination, final OptionMap connectOptions, final Result<ConnectionHandlerFactory> result, final AuthenticationContext authenticationContext, final SaslClientFactory saslClientFactory) {
         log.tracef("Attempting to connect to \"%s\" with options %s", destination, connectOptions);
         // cancellable that will be returned by this method
         final FutureResult<ConnectionHandlerFactory> cancellableResult = new FutureResult<ConnectionHandlerFactory>();
@@ -219,11 +305,25 @@ class RemoteConnectionProvider extends AbstractHandleableCloseable<ConnectionPro
         final AuthenticationContextConfigurationClient configurationClient = ClientConnectionOpenListener.AUTH_CONFIGURATION_CLIENT;
         final AuthenticationConfiguration authenticationConfiguration = configurationClient.getAuthenticationConfiguration(destination, authenticationContext);
         final InetSocketAddress address = configurationClient.getDestinationInetSocketAddress(destination, authenticationConfiguration, 0);
-        final IoFuture<? extends ConnectedStreamChannel> future;
+        final SSLContext sslContext;
         if (useSsl) {
-            future = createSslConnection(address, connectOptions, authenticationContext, openListener);
+            try {
+                sslContext = configurationClient.getSSLContext(destination, authenticationContext);
+            } catch (GeneralSecurityException e) {
+                cancellableResult.setException(sslConfigFailure(e));
+                return returnedFuture;
+            }
+        } else {
+            sslContext = null;
+        }
+        final InetSocketAddress[] addresses = resolveAll(address);
+        final IoFuture<? extends ConnectedStreamChannel> future;
+        if (addresses.length > 1) {
+            future = new ConnectRace(addresses, connectOptions, sslContext, useSsl, openListener).start();
+        } else if (useSsl) {
+            future = createSslConnection(addresses[0], connectOptions, sslContext, openListener);
         } else {
-            future = createConnection(address, connectOptions, openListener);
+            future = createConnection(addresses[0], connectOptions, openListener);
         }
         pendingInboundConnections.add(returnedFuture);
         // if the connection fails, we need to propagate that
@@ -267,11 +367,15 @@ class RemoteConnectionProvider extends AbstractHandleableCloseable<ConnectionPro
         return future;
     }
 
-    protected IoFuture<ConnectedSslStreamChannel> createSslConnection(final InetSocketAddress destination, final OptionMap connectOptions, final AuthenticationContext authenticationContext, final ChannelListener<ConnectedStreamChannel> openListener) {
+    protected IoFuture<ConnectedSslStreamChannel> createSslConnection(final InetSocketAddress destination, final OptionMap connectOptions, final SSLContext sslContext, final ChannelListener<ConnectedStreamChannel> openListener) {
         final AbstractConvertingIoFuture<ConnectedSslStreamChannel, StreamConnection> future = new AbstractConvertingIoFuture<ConnectedSslStreamChannel, StreamConnection>(xnioWorker.openStreamConnection(destination, null, connectOptions)) {
             protected ConnectedSslStreamChannel convert(final StreamConnection streamConnection) throws IOException {
-                final AuthenticationContextConfigurationClient configurationClient = ClientConnectionOpenListener.AUTH_CONFIGURATION_CLIENT;
-                final SSLEngine engine = null /* TODO: configurationClient.createSslEngine(authenticationContext, uri) */;
+                // the engine is created with the peer host and port so that the context can resume a cached session
+                final SSLEngine engine = JsseSslUtils.createSSLEngine(sslContext, OptionMap.builder().addAll(connectOptions).set(Options.SSL_USE_CLIENT_MODE, true).getMap(), destination);
+                // verify that the server certificate was issued for the host we meant to reach
+                final SSLParameters sslParameters = engine.getSSLParameters();
+                sslParameters.setEndpointIdentificationAlgorithm("HTTPS");
+                engine.setSSLParameters(sslParameters);
                 final JsseSslConnection sslConnection = new JsseSslConnection(streamConnection, engine);
                 return new AssembledConnectedSslStreamChannel(sslConnection, sslConnection.getSourceChannel(), sslConnection.getSinkChannel());
             }
@@ -300,36 +404,163 @@ class RemoteConnectionProvider extends AbstractHandleableCloseable<ConnectionPro
             }
             closeComplete();
         } finally {
-            if (server != null && objectName != null) {
-                try {
-                    server.unregisterMBean(objectName);
-                } catch (Throwable ignored) {
+            if (server != null) {
+                unregisterMBean(objectName);
+                unregisterMBean(metricsObjectName);
+                for (ObjectName latencyObjectName : latencyObjectNames) {
+                    unregisterMBean(latencyObjectName);
                 }
+                for (String serviceType : serviceMetrics.keySet()) {
+                    unregisterMBean(serviceMetricsObjectName(serviceType));
+                }
+            }
+        }
+    }
+
+    private void unregisterMBean(final ObjectName objectName) {
+        if (objectName != null) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (Throwable ignored) {
             }
         }
     }
 
     void addConnectionHandler(final RemoteConnectionHandler connectionHandler) {
         handlers.add(connectionHandler);
+        final MBeanServer server = this.server;
+        if (server != null) {
+            final RemoteConnection remoteConnection = connectionHandler.getRemoteConnection();
+            try {
+                final ObjectName objectName = new ObjectName("jboss.remoting.metrics:type=connection,name=" + ObjectName.quote(String.format("%s-%s-%08x", connectionProviderContext.getEndpoint().getName(), remoteConnection.getChannel().getPeerAddress(), Integer.valueOf(remoteConnection.hashCode()))));
+                server.registerMBean(remoteConnection.getMetrics(), objectName);
+                connectionMetricsNames.put(connectionHandler, objectName);
+            } catch (Exception e) {
+                // ignore
+            }
+        }
     }
 
     void removeConnectionHandler(final RemoteConnectionHandler connectionHandler) {
         handlers.remove(connectionHandler);
+        final ObjectName objectName = connectionMetricsNames.remove(connectionHandler);
+        if (objectName != null) {
+            unregisterMBean(objectName);
+        }
+    }
+
+    RemoteMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the histogram of the time writers spend waiting for the peer to open a message's transmit window.  Only
+     * writes which had to wait are recorded.
+     *
+     * @return the histogram
+     */
+    LatencyHistogram getWindowWaitLatency() {
+        return windowWaitLatency;
+    }
+
+    /**
+     * Get the histogram of the time from the start of an outbound message to the sending of its final frame.
+     *
+     * @return the histogram
+     */
+    LatencyHistogram getMessageSendLatency() {
+        return messageSendLatency;
+    }
+
+    /**
+     * Get the histogram of the time from sending a channel open request to receiving its acknowledgement.
+     *
+     * @return the histogram
+     */
+    LatencyHistogram getChannelOpenLatency() {
+        return channelOpenLatency;
+    }
+
+    /**
+     * Get the histogram of the time from the arrival of the first frame of an inbound message to the start of the
+     * receiver which handles it.
+     *
+     * @return the histogram
+     */
+    LatencyHistogram getDispatchLatency() {
+        return dispatchLatency;
+    }
+
+    /**
+     * Get the counters of the given service, creating and registering them on first use.
+     *
+     * @param serviceType the service type
+     * @return the counters
+     */
+    RemoteMetrics getServiceMetrics(final String serviceType) {
+        RemoteMetrics metrics = serviceMetrics.get(serviceType);
+        if (metrics == null) {
+            final RemoteMetrics newMetrics = new RemoteMetrics(null);
+            metrics = serviceMetrics.putIfAbsent(serviceType, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+                final MBeanServer server = this.server;
+                if (server != null) try {
+                    server.registerMBean(newMetrics, serviceMetricsObjectName(serviceType));
+                } catch (Exception e) {
+                    // ignore
+                }
+            }
+        }
+        return metrics;
+    }
+
+    private ObjectName serviceMetricsObjectName(final String serviceType) {
+        try {
+            return new ObjectName("jboss.remoting.metrics:type=service,name=" + ObjectName.quote(connectionProviderContext.getEndpoint().getName() + "-" + hashCode() + "-" + serviceType));
+        } catch (MalformedObjectNameException e) {
+            return null;
+        }
+    }
+
+    void putResumptionTicket(final URI destination, final AuthenticationContext authenticationContext, final byte[] ticket) {
+        final long now = System.currentTimeMillis();
+        final Iterator<byte[]> iterator = resumptionTickets.values().iterator();
+        while (iterator.hasNext()) {
+            if (ResumptionTicketCache.getExpiry(iterator.next()) <= now) {
+                iterator.remove();
+            }
+        }
+        resumptionTickets.put(new SimpleImmutableEntry<URI, AuthenticationContext>(destination, authenticationContext), ticket);
+    }
+
+    byte[] takeResumptionTicket(final URI destination, final AuthenticationContext authenticationContext) {
+        final byte[] ticket = resumptionTickets.remove(new SimpleImmutableEntry<URI, AuthenticationContext>(destination, authenticationContext));
+        return ticket == null || ResumptionTicketCache.getExpiry(ticket) <= System.currentTimeMillis() ? null : ticket;
     }
 
     final class ProviderInterface implements NetworkServerProvider {
 
         public AcceptingChannel<? extends ConnectedStreamChannel> createServer(final SocketAddress bindAddress, final OptionMap optionMap, final SecurityDomain securityDomain) throws IOException {
+            return createServer(bindAddress, optionMap, securityDomain, null);
+        }
+
+        public AcceptingChannel<? extends ConnectedStreamChannel> createServer(final SocketAddress bindAddress, final OptionMap optionMap, final SecurityDomain securityDomain, final SSLContext sslContext) throws IOException {
             SaslServerFactory saslServerFactory = SaslFactories.getStandardSaslServerFactory(getClass().getClassLoader());
             saslServerFactory = new PrivilegedSaslServerFactory(saslServerFactory);
             // TODO: server name, protocol name
             final boolean sslCapable = sslEnabled;
             final AcceptListener acceptListener = new AcceptListener(optionMap, securityDomain, saslServerFactory);
             final AcceptingChannel<? extends ConnectedStreamChannel> result;
-            if (sslCapable && optionMap.get(Options.SSL_ENABLED, true)) {
-                // todo
-                result = xnioWorker.createStreamServer(bindAddress, acceptListener, optionMap);
-//                result = xnioSsl.createSslTcpServer(xnioWorker, (InetSocketAddress) bindAddress, acceptListener, optionMap);
+            // unlike outbound connections, a server only uses TLS when asked to
+            if (sslCapable && optionMap.get(Options.SSL_ENABLED, false)) {
+                final XnioSsl xnioSsl;
+                try {
+                    xnioSsl = new JsseXnioSsl(xnio, optionMap, sslContext == null ? SSLContext.getDefault() : sslContext);
+                } catch (GeneralSecurityException e) {
+                    throw sslConfigFailure(e);
+                }
+                result = xnioSsl.createSslTcpServer(xnioWorker, (InetSocketAddress) bindAddress, acceptListener, optionMap);
             } else {
                 result = xnioWorker.createStreamServer(bindAddress, acceptListener, optionMap);
             }
@@ -338,6 +569,8 @@ class RemoteConnectionProvider extends AbstractHandleableCloseable<ConnectionPro
                     IoUtils.safeClose(result);
                 }
             });
+            acceptListener.setBindAddress(String.valueOf(result.getLocalAddress()));
+            registerServerMBean(acceptListener, result);
             result.resumeAccepts();
             return result;
         }
@@ -347,22 +580,421 @@ class RemoteConnectionProvider extends AbstractHandleableCloseable<ConnectionPro
         return super.getExecutor();
     }
 
+    Executor getAuthenticationExecutor() {
+        return connectionProviderContext.getAuthenticationExecutor();
+    }
+
+    private void registerServerMBean(final RemoteServerMXBean serverMXBean, final AcceptingChannel<? extends ConnectedStreamChannel> channel) {
+        final MBeanServer server = this.server;
+        if (server == null) {
+            return;
+        }
+        final ObjectName objectName;
+        try {
+            objectName = new ObjectName("jboss.remoting.server", "name", ObjectName.quote(connectionProviderContext.getEndpoint().getName() + "-" + serverMXBean.getBindAddress()));
+            server.registerMBean(serverMXBean, objectName);
+        } catch (Exception e) {
+            // ignore
+            return;
+        }
+        channel.getCloseSetter().set(new ChannelListener<java.nio.channels.Channel>() {
+            public void handleEvent(final java.nio.channels.Channel channel) {
+                try {
+                    server.unregisterMBean(objectName);
+                } catch (Throwable ignored) {
+                }
+            }
+        });
+    }
+
+    /**
+     * Get all of the addresses which the host name of a destination resolves to, ordered as recommended by RFC 8305:
+     * alternating between address families, beginning with the family of the first address returned by the resolver.
+     * <p>
+     * This runs on the thread which asked for the connection, and blocks it for as long as the resolver takes.  With the
+     * default resolver that is normally brief, because the destination address was already resolved from the same name
+     * a moment before and the platform caches the answer; a literal address is never looked up at all.
+     *
+     * @param address the destination
+     * @return the addresses, which is just the destination itself if it cannot be resolved
+     */
+    private InetSocketAddress[] resolveAll(final InetSocketAddress address) {
+        final InetAddress[] resolved;
+        try {
+            resolved = addressResolver.resolve(address.getHostString());
+        } catch (UnknownHostException e) {
+            return new InetSocketAddress[] { address };
+        }
+        if (resolved.length == 0) {
+            return new InetSocketAddress[] { address };
+        }
+        final ArrayDeque<InetAddress> first = new ArrayDeque<InetAddress>(resolved.length);
+        final ArrayDeque<InetAddress> second = new ArrayDeque<InetAddress>(resolved.length);
+        final Class<? extends InetAddress> firstFamily = resolved[0].getClass();
+        for (InetAddress inetAddress : resolved) {
+            (inetAddress.getClass() == firstFamily ? first : second).add(inetAddress);
+        }
+        final InetSocketAddress[] addresses = new InetSocketAddress[resolved.length];
+        final String hostName = address.getHostString();
+        final int port = address.getPort();
+        int i = 0;
+        try {
+            while (i < addresses.length) {
+                // keep the host name, which is used for TLS and for HTTP upgrade
+                if (! first.isEmpty()) addresses[i ++] = new InetSocketAddress(InetAddress.getByAddress(hostName, first.poll().getAddress()), port);
+                if (! second.isEmpty()) addresses[i ++] = new InetSocketAddress(InetAddress.getByAddress(hostName, second.poll().getAddress()), port);
+            }
+        } catch (UnknownHostException e) {
+            // not possible for a valid address
+            throw new IllegalStateException(e);
+        }
+        return addresses;
+    }
+
     private static IOException sslConfigFailure(final GeneralSecurityException e) {
         return new IOException("Failed to configure SSL", e);
     }
 
-    private final class AcceptListener implements ChannelListener<AcceptingChannel<? extends ConnectedStreamChannel>> {
+    /**
+     * An outbound connection which is spread over several sockets.  The first stripe is connected and authenticated on
+     * its own, so that an unreachable peer or bad credentials fail the connection once rather than once per stripe;
+     * the remaining stripes are then connected in parallel, each running its own authentication exchange with the same
+     * credentials.  If any stripe fails, the whole connection fails, and the stripes which were already established
+     * are closed.
+     */
+    private final class StripedConnect implements Cancellable {
+        private final URI destination;
+        private final OptionMap connectOptions;
+        private final AuthenticationContext authenticationContext;
+        private final SaslClientFactory saslClientFactory;
+        private final FutureResult<ConnectionHandlerFactory> futureResult = new FutureResult<ConnectionHandlerFactory>();
+        // all protected by this
+        private final ConnectionHandlerFactory[] factories;
+        private final Cancellable[] attempts;
+        private int remaining;
+        private boolean failed;
+
+        StripedConnect(final URI destination, final OptionMap connectOptions, final AuthenticationContext authenticationContext, final SaslClientFactory saslClientFactory, final int stripes) {
+            this.destination = destination;
+            this.connectOptions = connectOptions;
+            this.authenticationContext = authenticationContext;
+            this.saslClientFactory = saslClientFactory;
+            factories = new ConnectionHandlerFactory[stripes];
+            attempts = new Cancellable[stripes];
+            remaining = stripes;
+        }
+
+        IoFuture<ConnectionHandlerFactory> start() {
+            futureResult.addCancelHandler(this);
+            connectStripe(0);
+            return futureResult.getIoFuture();
+        }
+
+        private void connectStripe(final int index) {
+            final FutureResult<ConnectionHandlerFactory> stripeResult = new FutureResult<ConnectionHandlerFactory>();
+            stripeResult.getIoFuture().addNotifier(new IoFuture.HandlingNotifier<ConnectionHandlerFactory, Void>() {
+                public void handleCancelled(final Void attachment) {
+                    stripeFailed(null);
+                }
+
+                public void handleFailed(final IOException exception, final Void attachment) {
+                    stripeFailed(exception);
+                }
+
+                public void handleDone(final ConnectionHandlerFactory data, final Void attachment) {
+                    stripeDone(index, data);
+                }
+            }, null);
+            final Cancellable attempt = connectOne(destination, connectOptions, stripeResult, authenticationContext, saslClientFactory);
+            synchronized (this) {
+                attempts[index] = attempt;
+            }
+        }
+
+        private void stripeDone(final int index, final ConnectionHandlerFactory factory) {
+            final boolean discard;
+            final boolean complete;
+            synchronized (this) {
+                discard = failed;
+                if (! discard) {
+                    factories[index] = factory;
+                }
+                complete = -- remaining == 0;
+            }
+            if (discard) {
+                discard(factory);
+            } else if (complete) {
+                futureResult.setResult(new ConnectionHandlerFactory() {
+                    public ConnectionHandler createInstance(final ConnectionHandlerContext connectionContext) {
+                        final RemoteConnectionHandler[] handlers = new RemoteConnectionHandler[factories.length];
+                        for (int i = 0; i < handlers.length; i ++) {
+                            handlers[i] = (RemoteConnectionHandler) factories[i].createInstance(connectionContext);
+                        }
+                        return new StripedConnectionHandler(getExecutor(), handlers);
+                    }
+                });
+            } else if (index == 0) {
+                for (int i = 1; i < factories.length; i ++) {
+                    connectStripe(i);
+                }
+            }
+        }
+
+        private void stripeFailed(final IOException exception) {
+            final ConnectionHandlerFactory[] established;
+            final Cancellable[] pending;
+            synchronized (this) {
+                if (failed) {
+                    return;
+                }
+                failed = true;
+                established = factories.clone();
+                pending = attempts.clone();
+            }
+            for (Cancellable attempt : pending) {
+                if (attempt != null) attempt.cancel();
+            }
+            for (ConnectionHandlerFactory factory : established) {
+                if (factory != null) discard(factory);
+            }
+            if (exception == null) {
+                futureResult.setCancelled();
+            } else {
+                futureResult.setException(exception);
+            }
+        }
+
+        /**
+         * Close an established stripe which will not become part of a connection.  It is attached to a context which
+         * accepts no services, so that the handler can be shut down in an orderly way.
+         */
+        private void discard(final ConnectionHandlerFactory factory) {
+            factory.createInstance(new ConnectionHandlerContext() {
+                public ConnectionProviderContext getConnectionProviderContext() {
+                    return connectionProviderContext;
+                }
+
+                public OpenListener getServiceOpenListener(final String serviceType) {
+                    return null;
+                }
+
+                public RegisteredService getRegisteredService(final String serviceType) {
+                    return null;
+                }
+
+                public void remoteClosed() {
+                }
+
+                public Connection getConnection() {
+                    return null;
+                }
+            }).closeAsync();
+        }
+
+        public Cancellable cancel() {
+            stripeFailed(null);
+            return this;
+        }
+    }
+
+    /**
+     * A connection to a destination whose host name resolves to several addresses, which tries the addresses in
+     * parallel in the manner of RFC 8305 ("Happy Eyeballs").  An attempt is started on the next address when the
+     * connection attempt delay elapses, or as soon as the previous attempt fails if that comes first.  The first attempt
+     * to produce a connected channel wins and the rest are cancelled; a channel which a loser still manages to produce
+     * is closed.  The connection fails only once every attempt has failed.
+     */
+    private final class ConnectRace implements Cancellable {
+        private final InetSocketAddress[] addresses;
+        private final OptionMap connectOptions;
+        private final SSLContext sslContext;
+        private final boolean useSsl;
+        private final ChannelListener<ConnectedStreamChannel> openListener;
+        private final long attemptDelay;
+        private final FutureResult<ConnectedStreamChannel> futureResult = new FutureResult<ConnectedStreamChannel>();
+        private final Runnable startNextTask = new Runnable() {
+            public void run() {
+                startNext();
+            }
+        };
+        // all protected by this
+        private final Cancellable[] attempts;
+        private int started;
+        private int failed;
+        private boolean done;
+        private IOException lastFailure;
+        private XnioExecutor.Key timerKey;
+
+        ConnectRace(final InetSocketAddress[] addresses, final OptionMap connectOptions, final SSLContext sslContext, final boolean useSsl, final ChannelListener<ConnectedStreamChannel> openListener) {
+            this.addresses = addresses;
+            this.connectOptions = connectOptions;
+            this.sslContext = sslContext;
+            this.useSsl = useSsl;
+            this.openListener = openListener;
+            attemptDelay = connectOptions.get(RemotingOptions.CONNECTION_ATTEMPT_DELAY, RemotingOptions.DEFAULT_CONNECTION_ATTEMPT_DELAY);
+            attempts = new Cancellable[addresses.length];
+            futureResult.addCancelHandler(this);
+        }
+
+        IoFuture<ConnectedStreamChannel> start() {
+            startNext();
+            return futureResult.getIoFuture();
+        }
+
+        void startNext() {
+            final int index;
+            synchronized (this) {
+                if (done || started == addresses.length) {
+                    return;
+                }
+                index = started ++;
+                if (timerKey != null) {
+                    timerKey.remove();
+                    timerKey = null;
+                }
+            }
+            final InetSocketAddress address = addresses[index];
+            log.tracef("Attempting connection to %s", address);
+            final ChannelListener<ConnectedStreamChannel> attemptListener = new ChannelListener<ConnectedStreamChannel>() {
+                public void handleEvent(final ConnectedStreamChannel channel) {
+                    attemptSucceeded(channel);
+                }
+            };
+            final IoFuture<? extends ConnectedStreamChannel> attempt = useSsl ? createSslConnection(address, connectOptions, sslContext, attemptListener) : createConnection(address, connectOptions, attemptListener);
+            final boolean cancel;
+            synchronized (this) {
+                attempts[index] = attempt;
+                cancel = done;
+                if (! done && started < addresses.length && timerKey == null) {
+                    timerKey = xnioWorker.getIoThread().executeAfter(startNextTask, attemptDelay, TimeUnit.MILLISECONDS);
+                }
+            }
+            if (cancel) {
+                attempt.cancel();
+                return;
+            }
+            attempt.addNotifier(new IoFuture.HandlingNotifier<ConnectedStreamChannel, InetSocketAddress>() {
+                public void handleFailed(final IOException exception, final InetSocketAddress attachment) {
+                    log.tracef(exception, "Connection attempt to %s failed", attachment);
+                    attemptFailed(exception);
+                }
+
+                public void handleCancelled(final InetSocketAddress attachment) {
+                    attemptFailed(null);
+                }
+            }, address);
+        }
+
+        void attemptSucceeded(final ConnectedStreamChannel channel) {
+            final Cancellable[] losers;
+            synchronized (this) {
+                if (done) {
+                    losers = null;
+                } else {
+                    done = true;
+                    losers = attempts.clone();
+                    if (timerKey != null) {
+                        timerKey.remove();
+                        timerKey = null;
+                    }
+                }
+            }
+            if (losers == null || ! futureResult.setResult(channel)) {
+                // lost the race
+                IoUtils.safeClose(channel);
+                return;
+            }
+            for (Cancellable loser : losers) {
+                // the winner is already done, so cancelling it has no effect
+                if (loser != null) loser.cancel();
+            }
+            openListener.handleEvent(channel);
+        }
+
+        void attemptFailed(final IOException exception) {
+            final boolean exhausted;
+            final IOException lastFailure;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                if (exception != null) {
+                    this.lastFailure = exception;
+                }
+                exhausted = ++ failed == addresses.length;
+                done = exhausted;
+                lastFailure = this.lastFailure;
+            }
+            if (! exhausted) {
+                // don't wait out the delay before trying the next address
+                startNext();
+            } else if (lastFailure != null) {
+                futureResult.setException(lastFailure);
+            } else {
+                futureResult.setCancelled();
+            }
+        }
+
+        public Cancellable cancel() {
+            final Cancellable[] attempts;
+            synchronized (this) {
+                if (done) {
+                    return this;
+                }
+                done = true;
+                attempts = this.attempts.clone();
+                if (timerKey != null) {
+                    timerKey.remove();
+                    timerKey = null;
+                }
+            }
+            for (Cancellable attempt : attempts) {
+                if (attempt != null) attempt.cancel();
+            }
+            futureResult.setCancelled();
+            return this;
+        }
+    }
+
+    /**
+     * The accept listener of a server.  The number of accepted connections which are in their handshake is capped;
+     * while the cap is reached, accepting is paused, so that further connections wait in the socket backlog rather than
+     * adding to the authentication work.  A connection leaves its handshake when it is accepted by the endpoint or when
+     * it is closed, whichever comes first; a connection which is still in its handshake when the handshake timeout
+     * expires is closed.
+     */
+    private final class AcceptListener implements ChannelListener<AcceptingChannel<? extends ConnectedStreamChannel>>, RemoteServerMXBean {
 
         private final OptionMap serverOptionMap;
         private final SecurityDomain securityDomain;
         private final SaslServerFactory saslServerFactory;
         private final Pool<ByteBuffer> messageBufferPool;
         private final Pool<ByteBuffer> framingBufferPool;
+        private final ResumptionTicketCache resumptionTickets;
+        private final int maxHandshakes;
+        private final int handshakeTimeout;
+        private volatile String bindAddress;
+        // all protected by this
+        private int handshakes;
+        private int peakHandshakes;
+        private long acceptedCount;
+        private long handshakeTimeoutCount;
+        private boolean paused;
+        private long pauseCount;
+        private long pauseStart;
+        private long pauseTime;
 
         AcceptListener(final OptionMap serverOptionMap, final SecurityDomain securityDomain, final SaslServerFactory saslServerFactory) {
             this.serverOptionMap = serverOptionMap;
             this.securityDomain = securityDomain;
             this.saslServerFactory = saslServerFactory;
+            if (serverOptionMap.get(RemotingOptions.SESSION_RESUMPTION, RemotingOptions.DEFAULT_SESSION_RESUMPTION)) {
+                resumptionTickets = new ResumptionTicketCache(serverOptionMap.get(RemotingOptions.SESSION_RESUMPTION_TICKET_LIFETIME, RemotingOptions.DEFAULT_SESSION_RESUMPTION_TICKET_LIFETIME));
+            } else {
+                resumptionTickets = null;
+            }
+            maxHandshakes = serverOptionMap.get(RemotingOptions.MAX_INBOUND_HANDSHAKES, RemotingOptions.DEFAULT_MAX_INBOUND_HANDSHAKES);
+            handshakeTimeout = serverOptionMap.get(RemotingOptions.INBOUND_HANDSHAKE_TIMEOUT, RemotingOptions.DEFAULT_INBOUND_HANDSHAKE_TIMEOUT);
             final int messageBufferSize = defaultBufferSize;
             Pool<ByteBuffer> pool = USE_POOLING ? new ByteBufferSlicePool(BufferAllocator.BYTE_BUFFER_ALLOCATOR, messageBufferSize, messageBufferSize * 2) : Buffers.allocatedBufferPool(BufferAllocator.BYTE_BUFFER_ALLOCATOR, messageBufferSize);
             messageBufferPool = LEAK_DEBUGGING ? new DebuggingBufferPool(pool) : pool;
@@ -372,16 +1004,37 @@ class RemoteConnectionProvider extends AbstractHandleableCloseable<ConnectionPro
         }
 
         public void handleEvent(final AcceptingChannel<? extends ConnectedStreamChannel> channel) {
+            synchronized (this) {
+                if (handshakes >= maxHandshakes) {
+                    // leave further connections in the backlog until a handshake finishes
+                    channel.suspendAccepts();
+                    if (! paused) {
+                        paused = true;
+                        pauseCount ++;
+                        pauseStart = System.nanoTime();
+                    }
+                    return;
+                }
+                handshakes ++;
+            }
             final ConnectedStreamChannel accepted;
             try {
                 accepted = channel.accept();
-                if (accepted == null) {
-                    return;
-                }
             } catch (IOException e) {
                 log.failedToAccept(e);
+                handshakeFinished(channel);
                 return;
             }
+            if (accepted == null) {
+                handshakeFinished(channel);
+                return;
+            }
+            synchronized (this) {
+                acceptedCount ++;
+                if (handshakes > peakHandshakes) {
+                    peakHandshakes = handshakes;
+                }
+            }
             try {
                 accepted.setOption(Options.TCP_NODELAY, Boolean.TRUE);
             } catch (IOException e) {
@@ -390,11 +1043,119 @@ class RemoteConnectionProvider extends AbstractHandleableCloseable<ConnectionPro
 
             final FramedMessageChannel messageChannel = new FramedMessageChannel(accepted, framingBufferPool.allocate(), framingBufferPool.allocate());
             final RemoteConnection connection = new RemoteConnection(messageBufferPool, accepted, messageChannel, serverOptionMap, RemoteConnectionProvider.this);
-            final ServerConnectionOpenListener openListener = new ServerConnectionOpenListener(connection, connectionProviderContext, securityDomain, saslServerFactory, serverOptionMap);
+            final HandshakeSlot handshakeSlot = new HandshakeSlot(channel, messageChannel);
+            // the close listener is replaced once the connection is accepted by the endpoint
+            messageChannel.getCloseSetter().set(handshakeSlot);
+            if (handshakeTimeout > 0) {
+                handshakeSlot.startTimeout(accepted.getIoThread());
+            }
+            final ServerConnectionOpenListener openListener = new ServerConnectionOpenListener(connection, connectionProviderContext, securityDomain, saslServerFactory, serverOptionMap, resumptionTickets, handshakeSlot);
             messageChannel.getWriteSetter().set(connection.getWriteListener());
             RemoteLogger.log.tracef("Accepted connection from %s to %s", accepted.getPeerAddress(), accepted.getLocalAddress());
             openListener.handleEvent(messageChannel);
         }
+
+        void handshakeFinished(final AcceptingChannel<? extends ConnectedStreamChannel> channel) {
+            synchronized (this) {
+                handshakes --;
+                if (! paused) {
+                    return;
+                }
+                paused = false;
+                pauseTime += System.nanoTime() - pauseStart;
+            }
+            channel.resumeAccepts();
+        }
+
+        void setBindAddress(final String bindAddress) {
+            this.bindAddress = bindAddress;
+        }
+
+        public String getBindAddress() {
+            return bindAddress;
+        }
+
+        public int getMaxHandshakes() {
+            return maxHandshakes;
+        }
+
+        public synchronized int getHandshakesInProgress() {
+            return handshakes;
+        }
+
+        public synchronized int getPeakHandshakesInProgress() {
+            return peakHandshakes;
+        }
+
+        public synchronized long getAcceptedCount() {
+            return acceptedCount;
+        }
+
+        public synchronized long getHandshakeTimeoutCount() {
+            return handshakeTimeoutCount;
+        }
+
+        public synchronized boolean isAcceptPaused() {
+            return paused;
+        }
+
+        public synchronized long getAcceptPauseCount() {
+            return pauseCount;
+        }
+
+        public synchronized long getAcceptPauseTime() {
+            final long pauseTime = paused ? this.pauseTime + System.nanoTime() - pauseStart : this.pauseTime;
+            return TimeUnit.NANOSECONDS.toMillis(pauseTime);
+        }
+
+        /**
+         * The handshake slot of one accepted connection, which is released exactly once: either when the connection is
+         * accepted by the endpoint, or when it is closed before that, or when its handshake times out, which closes it.
+         */
+        final class HandshakeSlot implements Runnable, ChannelListener<java.nio.channels.Channel> {
+            private final AcceptingChannel<? extends ConnectedStreamChannel> acceptingChannel;
+            private final java.nio.channels.Channel connectionChannel;
+            private final AtomicBoolean released = new AtomicBoolean();
+            private volatile XnioExecutor.Key timeoutKey;
+
+            HandshakeSlot(final AcceptingChannel<? extends ConnectedStreamChannel> acceptingChannel, final java.nio.channels.Channel connectionChannel) {
+                this.acceptingChannel = acceptingChannel;
+                this.connectionChannel = connectionChannel;
+            }
+
+            void startTimeout(final XnioExecutor executor) {
+                final XnioExecutor.Key key = executor.executeAfter(new Runnable() {
+                    public void run() {
+                        if (released.compareAndSet(false, true)) {
+                            log.debugf("Closing connection %s which did not finish its handshake within %d ms", connectionChannel, Integer.valueOf(handshakeTimeout));
+                            synchronized (AcceptListener.this) {
+                                handshakeTimeoutCount ++;
+                            }
+                            IoUtils.safeClose(connectionChannel);
+                            handshakeFinished(acceptingChannel);
+                        }
+                    }
+                }, handshakeTimeout, TimeUnit.MILLISECONDS);
+                timeoutKey = key;
+                if (released.get()) {
+                    key.remove();
+                }
+            }
+
+            public void run() {
+                if (released.compareAndSet(false, true)) {
+                    final XnioExecutor.Key key = timeoutKey;
+                    if (key != null) {
+                        key.remove();
+                    }
+                    handshakeFinished(acceptingChannel);
+                }
+            }
+
+            public void handleEvent(final java.nio.channels.Channel channel) {
+                run();
+            }
+        }
     }
 
     public String toString() {
@@ -35,15 +35,27 @@ import org.xnio.OptionMap;
  */
 public final class RemoteConnectionProviderFactory implements ConnectionProviderFactory {
 
+    private final AddressResolver addressResolver;
+
     /**
      * Construct a new instance.
      *
      */
     public RemoteConnectionProviderFactory() {
+        this(AddressResolver.DEFAULT);
+    }
+
+    /**
+     * Construct a new instance which resolves destination host names with the given resolver.
+     *
+     * @param addressResolver the address resolver
+     */
+    RemoteConnectionProviderFactory(final AddressResolver addressResolver) {
+        this.addressResolver = addressResolver;
     }
 
     /** {@inheritDoc} */
     public ConnectionProvider createInstance(final ConnectionProviderContext context, final OptionMap optionMap) throws IOException {
-        return new RemoteConnectionProvider(optionMap, context);
+        return new RemoteConnectionProvider(optionMap, context, addressResolver);
     }
 }
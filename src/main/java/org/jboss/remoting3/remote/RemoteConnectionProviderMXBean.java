@@ -29,4 +29,8 @@ public interface RemoteConnectionProviderMXBean {
     void dumpConnectionState();
 
     String dumpConnectionStateToString();
+
+    void dumpProtocolEventLog();
+
+    String dumpProtocolEventLogToString();
 }
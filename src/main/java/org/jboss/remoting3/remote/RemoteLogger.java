@@ -87,7 +87,7 @@ interface RemoteLogger extends BasicLogger {
 
     @LogMessage(level = FATAL)
     @Message(id = 210, value = "Internal Error: received a message with duplicate ID %d from %s")
-    void duplicateMessageId(short messageId, SocketAddress peerAddress);
+    void duplicateMessageId(int messageId, SocketAddress peerAddress);
 
     @Message(/* id = 210, */value = "Internal Error: received a message with a duplicate ID")
     IOException duplicateMessageIdException();
@@ -0,0 +1,161 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.remote;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Traffic counters for a connection provider, a connection or a service.  The counters are striped so that threads
+ * recording at the same time do not contend, which keeps them cheap enough to be always on.  A connection's counters
+ * pass every update on to those of its provider; service counters stand alone, and are updated alongside those of the
+ * connection that carries the channel.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class RemoteMetrics implements RemoteMetricsMXBean {
+
+    private final RemoteMetrics parent;
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder framesReceived = new LongAdder();
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder messagesOpened = new LongAdder();
+    private final LongAdder messagesCompleted = new LongAdder();
+    private final LongAdder messagesCancelled = new LongAdder();
+    private final LongAdder windowStallCount = new LongAdder();
+    private final LongAdder windowStallNanos = new LongAdder();
+    private final LongAdder writeQueueDepth = new LongAdder();
+    private final LongAdder openChannels = new LongAdder();
+    private final LongAdder refusedChannelOpens = new LongAdder();
+
+    RemoteMetrics(final RemoteMetrics parent) {
+        this.parent = parent;
+    }
+
+    void frameReceived(final int size) {
+        bytesReceived.add(size);
+        framesReceived.increment();
+        if (parent != null) parent.frameReceived(size);
+    }
+
+    void frameSent(final int size) {
+        bytesSent.add(size);
+        framesSent.increment();
+        if (parent != null) parent.frameSent(size);
+    }
+
+    void messageOpened() {
+        messagesOpened.increment();
+        if (parent != null) parent.messageOpened();
+    }
+
+    void messageCompleted() {
+        messagesCompleted.increment();
+        if (parent != null) parent.messageCompleted();
+    }
+
+    void messageCancelled() {
+        messagesCancelled.increment();
+        if (parent != null) parent.messageCancelled();
+    }
+
+    void windowStalled(final long nanos) {
+        windowStallCount.increment();
+        windowStallNanos.add(nanos);
+        if (parent != null) parent.windowStalled(nanos);
+    }
+
+    void writeQueued() {
+        writeQueueDepth.increment();
+        if (parent != null) parent.writeQueued();
+    }
+
+    void writeDequeued() {
+        writeQueueDepth.decrement();
+        if (parent != null) parent.writeDequeued();
+    }
+
+    void channelOpened() {
+        openChannels.increment();
+        if (parent != null) parent.channelOpened();
+    }
+
+    void channelClosed() {
+        openChannels.decrement();
+        if (parent != null) parent.channelClosed();
+    }
+
+    void channelOpenRefused() {
+        refusedChannelOpens.increment();
+        if (parent != null) parent.channelOpenRefused();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long getFramesReceived() {
+        return framesReceived.sum();
+    }
+
+    public long getFramesSent() {
+        return framesSent.sum();
+    }
+
+    public long getMessagesOpened() {
+        return messagesOpened.sum();
+    }
+
+    public long getMessagesCompleted() {
+        return messagesCompleted.sum();
+    }
+
+    public long getMessagesCancelled() {
+        return messagesCancelled.sum();
+    }
+
+    public long getWindowStallCount() {
+        return windowStallCount.sum();
+    }
+
+    public long getWindowStallTime() {
+        return TimeUnit.NANOSECONDS.toMillis(windowStallNanos.sum());
+    }
+
+    public long getWriteQueueDepth() {
+        return writeQueueDepth.sum();
+    }
+
+    public long getOpenChannels() {
+        return openChannels.sum();
+    }
+
+    public long getRefusedChannelOpens() {
+        return refusedChannelOpens.sum();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.remote;
+
+/**
+ * The management view of the traffic counters of a remote connection provider, of a single connection, or of all the
+ * channels of a single service.  The counters of a provider are the totals of its connections, including those which
+ * have since closed.  Frame and byte counters and the write queue depth belong to connections, so they are always zero
+ * for a service.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public interface RemoteMetricsMXBean {
+
+    /**
+     * Get the number of bytes received, including frame headers.
+     *
+     * @return the number of bytes
+     */
+    long getBytesReceived();
+
+    /**
+     * Get the number of bytes sent, including frame headers.
+     *
+     * @return the number of bytes
+     */
+    long getBytesSent();
+
+    /**
+     * Get the number of protocol frames received.
+     *
+     * @return the number of frames
+     */
+    long getFramesReceived();
+
+    /**
+     * Get the number of protocol frames sent.
+     *
+     * @return the number of frames
+     */
+    long getFramesSent();
+
+    /**
+     * Get the number of messages which were started, in either direction.
+     *
+     * @return the number of messages
+     */
+    long getMessagesOpened();
+
+    /**
+     * Get the number of messages which were completed normally, in either direction.
+     *
+     * @return the number of messages
+     */
+    long getMessagesCompleted();
+
+    /**
+     * Get the number of messages which were cancelled, in either direction.
+     *
+     * @return the number of messages
+     */
+    long getMessagesCancelled();
+
+    /**
+     * Get the number of times a writer had to wait for the peer to open the transmit window of a message.
+     *
+     * @return the number of stalls
+     */
+    long getWindowStallCount();
+
+    /**
+     * Get the total time writers spent waiting for the peer to open the transmit window of a message.
+     *
+     * @return the time in milliseconds
+     */
+    long getWindowStallTime();
+
+    /**
+     * Get the number of frames which are waiting to be written because the socket could not take them.
+     *
+     * @return the number of frames
+     */
+    long getWriteQueueDepth();
+
+    /**
+     * Get the number of channels which are currently open.
+     *
+     * @return the number of channels
+     */
+    long getOpenChannels();
+
+    /**
+     * Get the number of channel open requests from the peer which were refused.
+     *
+     * @return the number of refused requests
+     */
+    long getRefusedChannelOpens();
+}
@@ -87,6 +87,7 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                             return;
                         }
                     }
+                    connection.getMetrics().frameReceived(res);
                     buffer.flip();
                     if (saslWrapper != null) {
                         final ByteBuffer source = buffer.duplicate();
@@ -94,9 +95,11 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                         saslWrapper.unwrap(buffer, source);
                         buffer.flip();
                     }
+                    connection.getEventLog().record(false, buffer);
                     final byte protoId = buffer.get();
                     try {
-                        switch (protoId) {
+                        // compact message data carries its flags in the low bits of the type
+                        switch ((protoId & Protocol.MESSAGE_DATA_COMPACT_MASK) == Protocol.MESSAGE_DATA_COMPACT ? Protocol.MESSAGE_DATA_COMPACT : protoId) {
                             case Protocol.CONNECTION_ALIVE: {
                                 log.trace("Received connection alive");
                                 connection.sendAliveResponse();
@@ -116,13 +119,14 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                             }
                             case Protocol.CHANNEL_OPEN_REQUEST: {
                                 log.trace("Received channel open request");
-                                int channelId = buffer.getInt() ^ 0x80000000;
+                                int channelId = ChannelIdAllocator.readChannelId(buffer);
                                 int requestedInboundWindow = Integer.MAX_VALUE;
-                                int requestedInboundMessages = 0xffff;
+                                int requestedInboundMessages = handler.getMaxMessageCount();
                                 int requestedOutboundWindow = Integer.MAX_VALUE;
-                                int requestedOutboundMessages = 0xffff;
+                                int requestedOutboundMessages = handler.getMaxMessageCount();
                                 long requestedInboundMessageSize = Long.MAX_VALUE;
                                 long requestedOutboundMessageSize = Long.MAX_VALUE;
+                                boolean requestedCompression = false;
                                 // parse out request
                                 int b;
                                 String serviceType = null;
@@ -139,7 +143,7 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                                             break;
                                         }
                                         case Protocol.O_MAX_INBOUND_MSG_COUNT: {
-                                            requestedOutboundMessages = Math.min(requestedOutboundMessages, ProtocolUtils.readUnsignedShort(buffer));
+                                            requestedOutboundMessages = Math.min(requestedOutboundMessages, handler.readMessageCount(buffer));
                                             break;
                                         }
                                         case Protocol.O_MAX_OUTBOUND_MSG_WINDOW_SIZE: {
@@ -147,7 +151,7 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                                             break;
                                         }
                                         case Protocol.O_MAX_OUTBOUND_MSG_COUNT: {
-                                            requestedInboundMessages = Math.min(requestedInboundMessages, ProtocolUtils.readUnsignedShort(buffer));
+                                            requestedInboundMessages = Math.min(requestedInboundMessages, handler.readMessageCount(buffer));
                                             break;
                                         }
                                         case Protocol.O_MAX_INBOUND_MSG_SIZE: {
@@ -158,13 +162,18 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                                             requestedInboundMessageSize = Math.min(requestedInboundMessageSize, ProtocolUtils.readLong(buffer));
                                             break;
                                         }
+                                        case Protocol.O_COMPRESSION: {
+                                            requestedCompression = true;
+                                            Buffers.skip(buffer, buffer.get() & 0xff);
+                                            break;
+                                        }
                                         default: {
                                             Buffers.skip(buffer, buffer.get() & 0xff);
                                             break;
                                         }
                                     }
                                 }
-                                if ((channelId & 0x80000000) != 0) {
+                                if (ChannelIdAllocator.isLocal(channelId)) {
                                     // invalid channel ID, original should have had MSB=1 and thus the complement should be MSB=0
                                     refuseService(channelId, "Invalid channel ID");
                                     break;
@@ -196,6 +205,9 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                                 final int inboundMessages = Math.min(requestedInboundMessages, inboundMessagesOptionValue);
                                 final long outboundMessageSize = Math.min(requestedOutboundMessageSize, outboundMessageSizeOptionValue);
                                 final long inboundMessageSize = Math.min(requestedInboundMessageSize, inboundMessageSizeOptionValue);
+                                final boolean compression = requestedCompression && serviceOptionMap.get(RemotingOptions.MESSAGE_COMPRESSION, RemotingOptions.DEFAULT_MESSAGE_COMPRESSION);
+                                final int compressionThreshold = compression ? Math.max(0, serviceOptionMap.get(RemotingOptions.MESSAGE_COMPRESSION_THRESHOLD, RemotingOptions.DEFAULT_MESSAGE_COMPRESSION_THRESHOLD)) : -1;
+                                final int compressionLevel = serviceOptionMap.get(RemotingOptions.MESSAGE_COMPRESSION_LEVEL, RemotingOptions.DEFAULT_MESSAGE_COMPRESSION_LEVEL);
 
                                 if (log.isTraceEnabled()) {
                                     log.tracef(
@@ -217,15 +229,17 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                                 }
 
                                 final OpenListener openListener = registeredService.getOpenListener();
+                                final RemoteMetrics serviceMetrics = connection.getRemoteConnectionProvider().getServiceMetrics(serviceType);
                                 if (! handler.handleInboundChannelOpen()) {
                                     // refuse
+                                    serviceMetrics.channelOpenRefused();
                                     refuseService(channelId, "Channel refused");
                                     break;
                                 }
                                 boolean ok1 = false;
                                 try {
                                     // construct the channel
-                                    RemoteConnectionChannel connectionChannel = new RemoteConnectionChannel(handler, connection, channelId, outboundWindow, inboundWindow, outboundMessages, inboundMessages, outboundMessageSize, inboundMessageSize);
+                                    RemoteConnectionChannel connectionChannel = new RemoteConnectionChannel(handler, connection, channelId, outboundWindow, inboundWindow, outboundMessages, inboundMessages, outboundMessageSize, inboundMessageSize, compressionThreshold, compressionLevel, serviceMetrics);
                                     RemoteConnectionChannel existing = handler.addChannel(connectionChannel);
                                     if (existing != null) {
                                         log.tracef("Encountered open request for duplicate %s", existing);
@@ -248,15 +262,18 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                                         replyBuffer.put(Protocol.CHANNEL_OPEN_ACK);
                                         replyBuffer.putInt(channelId);
                                         ProtocolUtils.writeInt(replyBuffer, Protocol.O_MAX_INBOUND_MSG_WINDOW_SIZE, inboundWindow);
-                                        ProtocolUtils.writeShort(replyBuffer, Protocol.O_MAX_INBOUND_MSG_COUNT, inboundMessages);
+                                        handler.writeMessageCount(replyBuffer, Protocol.O_MAX_INBOUND_MSG_COUNT, inboundMessages);
                                         if (inboundMessageSize != Long.MAX_VALUE) {
                                             ProtocolUtils.writeLong(replyBuffer, Protocol.O_MAX_INBOUND_MSG_SIZE, inboundMessageSize);
                                         }
                                         ProtocolUtils.writeInt(replyBuffer, Protocol.O_MAX_OUTBOUND_MSG_WINDOW_SIZE, outboundWindow);
-                                        ProtocolUtils.writeShort(replyBuffer, Protocol.O_MAX_OUTBOUND_MSG_COUNT, outboundMessages);
+                                        handler.writeMessageCount(replyBuffer, Protocol.O_MAX_OUTBOUND_MSG_COUNT, outboundMessages);
                                         if (outboundMessageSize != Long.MAX_VALUE) {
                                             ProtocolUtils.writeLong(replyBuffer, Protocol.O_MAX_OUTBOUND_MSG_SIZE, outboundMessageSize);
                                         }
+                                        if (compression) {
+                                            ProtocolUtils.writeEmpty(replyBuffer, Protocol.O_COMPRESSION);
+                                        }
                                         replyBuffer.put((byte) 0);
                                         replyBuffer.flip();
                                         ok2 = true;
@@ -278,7 +295,11 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                             }
                             case Protocol.MESSAGE_DATA: {
                                 log.trace("Received message data");
-                                int channelId = buffer.getInt() ^ 0x80000000;
+                                if (handler.isCompactHeaders()) {
+                                    log.unknownProtocolId(protoId);
+                                    break;
+                                }
+                                int channelId = ChannelIdAllocator.readChannelId(buffer);
                                 RemoteConnectionChannel connectionChannel = handler.getChannel(channelId);
                                 if (connectionChannel == null) {
                                     // ignore the data
@@ -291,9 +312,28 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                                 buffer = pooled.getResource();
                                 break;
                             }
+                            case Protocol.MESSAGE_DATA_COMPACT: {
+                                log.trace("Received compact message data");
+                                if (! handler.isCompactHeaders()) {
+                                    log.unknownProtocolId(protoId);
+                                    break;
+                                }
+                                int channelId = ChannelIdAllocator.readCompactChannelId(buffer);
+                                RemoteConnectionChannel connectionChannel = handler.getChannel(channelId);
+                                if (connectionChannel == null) {
+                                    // ignore the data
+                                    log.tracef("Ignoring message data for expired channel");
+                                    break;
+                                }
+                                connectionChannel.handleCompactMessageData(pooled, protoId & ~Protocol.MESSAGE_DATA_COMPACT_MASK);
+                                // need a new buffer now
+                                pooled = connection.allocate();
+                                buffer = pooled.getResource();
+                                break;
+                            }
                             case Protocol.MESSAGE_WINDOW_OPEN: {
                                 log.trace("Received message window open");
-                                int channelId = buffer.getInt() ^ 0x80000000;
+                                int channelId = readMessageChannelId(buffer);
                                 RemoteConnectionChannel connectionChannel = handler.getChannel(channelId);
                                 if (connectionChannel == null) {
                                     // ignore
@@ -305,7 +345,7 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                             }
                             case Protocol.MESSAGE_CLOSE: {
                                 log.trace("Received message async close");
-                                int channelId = buffer.getInt() ^ 0x80000000;
+                                int channelId = readMessageChannelId(buffer);
                                 RemoteConnectionChannel connectionChannel = handler.getChannel(channelId);
                                 if (connectionChannel == null) {
                                     break;
@@ -315,7 +355,7 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                             }
                             case Protocol.CHANNEL_CLOSED: {
                                 log.trace("Received channel closed");
-                                int channelId = buffer.getInt() ^ 0x80000000;
+                                int channelId = ChannelIdAllocator.readChannelId(buffer);
                                 RemoteConnectionChannel connectionChannel = handler.getChannel(channelId);
                                 if (connectionChannel == null) {
                                     break;
@@ -325,7 +365,7 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                             }
                             case Protocol.CHANNEL_SHUTDOWN_WRITE: {
                                 log.trace("Received channel shutdown write");
-                                int channelId = buffer.getInt() ^ 0x80000000;
+                                int channelId = ChannelIdAllocator.readChannelId(buffer);
                                 RemoteConnectionChannel connectionChannel = handler.getChannel(channelId);
                                 if (connectionChannel == null) {
                                     break;
@@ -335,8 +375,8 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                             }
                             case Protocol.CHANNEL_OPEN_ACK: {
                                 log.trace("Received channel open ack");
-                                int channelId = buffer.getInt() ^ 0x80000000;
-                                if ((channelId & 0x80000000) == 0) {
+                                int channelId = ChannelIdAllocator.readChannelId(buffer);
+                                if (! ChannelIdAllocator.isLocal(channelId)) {
                                     // invalid
                                     break;
                                 }
@@ -345,6 +385,7 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                                     // invalid
                                     break;
                                 }
+                                connection.getRemoteConnectionProvider().getChannelOpenLatency().record(System.nanoTime() - pendingChannel.getStartTime());
                                 int requestedOutboundWindow = pendingChannel.getOutboundWindowSize();
                                 int requestedInboundWindow = pendingChannel.getInboundWindowSize();
                                 int requestedOutboundMessageCount = pendingChannel.getOutboundMessageCount();
@@ -358,6 +399,7 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                                 int inboundMessageCount = requestedInboundMessageCount;
                                 long outboundMessageSize = requestedOutboundMessageSize;
                                 long inboundMessageSize = requestedInboundMessageSize;
+                                boolean compression = false;
 
                                 OUT: for (;;) {
                                     switch (buffer.get() & 0xff) {
@@ -366,7 +408,7 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                                             break;
                                         }
                                         case Protocol.O_MAX_INBOUND_MSG_COUNT: {
-                                            outboundMessageCount = Math.min(outboundMessageCount, ProtocolUtils.readUnsignedShort(buffer));
+                                            outboundMessageCount = Math.min(outboundMessageCount, handler.readMessageCount(buffer));
                                             break;
                                         }
                                         case Protocol.O_MAX_OUTBOUND_MSG_WINDOW_SIZE: {
@@ -374,7 +416,7 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                                             break;
                                         }
                                         case Protocol.O_MAX_OUTBOUND_MSG_COUNT: {
-                                            inboundMessageCount = Math.min(inboundMessageCount, ProtocolUtils.readUnsignedShort(buffer));
+                                            inboundMessageCount = Math.min(inboundMessageCount, handler.readMessageCount(buffer));
                                             break;
                                         }
                                         case Protocol.O_MAX_INBOUND_MSG_SIZE: {
@@ -385,6 +427,12 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                                             inboundMessageSize = Math.min(inboundMessageSize, ProtocolUtils.readLong(buffer));
                                             break;
                                         }
+                                        case Protocol.O_COMPRESSION: {
+                                            // only valid if we asked for it
+                                            compression = pendingChannel.getCompressionThreshold() != -1;
+                                            Buffers.skip(buffer, buffer.get() & 0xff);
+                                            break;
+                                        }
                                         case Protocol.O_END: {
                                             break OUT;
                                         }
@@ -415,14 +463,14 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
                                     );
                                 }
 
-                                RemoteConnectionChannel newChannel = new RemoteConnectionChannel(handler, connection, channelId, outboundWindow, inboundWindow, outboundMessageCount, inboundMessageCount, outboundMessageSize, inboundMessageSize);
+                                RemoteConnectionChannel newChannel = new RemoteConnectionChannel(handler, connection, channelId, outboundWindow, inboundWindow, outboundMessageCount, inboundMessageCount, outboundMessageSize, inboundMessageSize, compression ? pendingChannel.getCompressionThreshold() : -1, pendingChannel.getCompressionLevel(), pendingChannel.getServiceMetrics());
                                 handler.putChannel(newChannel);
                                 pendingChannel.getResult().setResult(newChannel);
                                 break;
                             }
                             case Protocol.SERVICE_ERROR: {
                                 log.trace("Received service error");
-                                int channelId = buffer.getInt() ^ 0x80000000;
+                                int channelId = ChannelIdAllocator.readChannelId(buffer);
                                 PendingChannel pendingChannel = handler.removePendingChannel(channelId);
                                 if (pendingChannel == null) {
                                     // invalid
@@ -454,10 +502,15 @@ final class RemoteReadListener implements ChannelListener<ConnectedMessageChanne
         }
     }
 
+    private int readMessageChannelId(final ByteBuffer buffer) {
+        return handler.isCompactHeaders() ? ChannelIdAllocator.readCompactChannelId(buffer) : ChannelIdAllocator.readChannelId(buffer);
+    }
+
     private void refuseService(final int channelId, final String reason) {
         if (log.isTraceEnabled()) {
             log.tracef("Refusing service on channel %08x: %s", Integer.valueOf(channelId), reason);
         }
+        connection.getMetrics().channelOpenRefused();
         Pooled<ByteBuffer> pooledReply = connection.allocate();
         boolean ok = false;
         try {
@@ -0,0 +1,95 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.remote;
+
+/**
+ * The management view of a server created by a remote connection provider.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public interface RemoteServerMXBean {
+
+    /**
+     * Get the bind address of the server.
+     *
+     * @return the bind address
+     */
+    String getBindAddress();
+
+    /**
+     * Get the most connections which may be in their handshake at once.  Once this many are, further connections wait
+     * in the socket backlog until a handshake finishes.
+     *
+     * @return the handshake limit
+     */
+    int getMaxHandshakes();
+
+    /**
+     * Get the number of accepted connections which have not yet finished their handshake.
+     *
+     * @return the number of connections in their handshake
+     */
+    int getHandshakesInProgress();
+
+    /**
+     * Get the highest number of connections which were in their handshake at once.
+     *
+     * @return the peak number of connections in their handshake
+     */
+    int getPeakHandshakesInProgress();
+
+    /**
+     * Get the total number of connections which were accepted.
+     *
+     * @return the number of accepted connections
+     */
+    long getAcceptedCount();
+
+    /**
+     * Get the number of connections which were closed because they did not finish their handshake in time.
+     *
+     * @return the number of timed out handshakes
+     */
+    long getHandshakeTimeoutCount();
+
+    /**
+     * Determine whether accepting is currently paused because the handshake limit has been reached.
+     *
+     * @return {@code true} if accepting is paused, {@code false} otherwise
+     */
+    boolean isAcceptPaused();
+
+    /**
+     * Get the number of times accepting was paused because the handshake limit had been reached.
+     *
+     * @return the number of pauses
+     */
+    long getAcceptPauseCount();
+
+    /**
+     * Get the total time for which accepting was paused, including any current pause.
+     *
+     * @return the time in milliseconds
+     */
+    long getAcceptPauseTime();
+}
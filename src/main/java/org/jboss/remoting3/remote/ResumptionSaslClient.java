@@ -0,0 +1,86 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.remote;
+
+import javax.security.sasl.SaslClient;
+import javax.security.sasl.SaslException;
+
+import org.xnio.sasl.SaslUtils;
+
+/**
+ * A SASL client which presents a session resumption ticket as its initial response.  The server answers a valid
+ * ticket with an empty authentication complete message, and anything else with a rejection.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class ResumptionSaslClient implements SaslClient {
+    private final byte[] ticket;
+    private boolean sent;
+    private boolean complete;
+
+    ResumptionSaslClient(final byte[] ticket) {
+        this.ticket = ticket;
+    }
+
+    public String getMechanismName() {
+        return Protocol.RESUMPTION_MECH;
+    }
+
+    public boolean hasInitialResponse() {
+        return true;
+    }
+
+    public byte[] evaluateChallenge(final byte[] challenge) throws SaslException {
+        if (! sent) {
+            sent = true;
+            return ticket;
+        }
+        if (complete || challenge.length != 0) {
+            throw new SaslException("Unexpected resumption challenge");
+        }
+        complete = true;
+        return SaslUtils.EMPTY_BYTES;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public byte[] unwrap(final byte[] incoming, final int offset, final int len) {
+        throw new IllegalStateException("No security layer was negotiated");
+    }
+
+    public byte[] wrap(final byte[] outgoing, final int offset, final int len) {
+        throw new IllegalStateException("No security layer was negotiated");
+    }
+
+    public Object getNegotiatedProperty(final String propName) {
+        if (! complete) {
+            throw new IllegalStateException("Resumption is not complete");
+        }
+        return null;
+    }
+
+    public void dispose() {
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.remote;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.security.sasl.SaslException;
+import javax.security.sasl.SaslServer;
+
+import org.wildfly.security.auth.provider.RealmUnavailableException;
+import org.wildfly.security.auth.provider.SecurityDomain;
+import org.wildfly.security.auth.provider.ServerAuthenticationContext;
+import org.xnio.sasl.SaslUtils;
+
+/**
+ * The session resumption tickets issued by one server.
+ * <p>
+ * A ticket consists of a random ticket ID, the wall-clock expiry time and an HMAC over both, keyed with a secret which
+ * is generated when the cache is created and never leaves it.  The signature lets forged or corrupted tickets be
+ * rejected without touching the cache, but it is the cache which makes a ticket valid: a ticket is only honored if
+ * its ID is still present, and it is removed when it is redeemed, when it expires, or when the cache is full and it is
+ * the oldest entry.  A ticket can therefore be used at most once, and a restarted server honors no old tickets.
+ * <p>
+ * Each ticket remembers when its holder last authenticated in full.  A connection which resumes is issued a fresh
+ * ticket carrying the same authentication time, and every ticket expires one lifetime after that time, so a chain of
+ * resumptions can never outlive the authentication which started it.  Redeeming a ticket also looks the identity up
+ * again, so that an identity which has since been removed or may no longer log in cannot resume.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class ResumptionTicketCache {
+
+    /**
+     * The most tickets which are kept at one time.
+     */
+    static final int MAX_TICKETS = 8192;
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int ID_LENGTH = 16;
+    private static final int SIGNED_LENGTH = ID_LENGTH + 8;
+    private static final int TICKET_LENGTH = SIGNED_LENGTH + 32;
+
+    private final long lifetime;
+    private final SecureRandom random = new SecureRandom();
+    private final SecretKeySpec key;
+    // insertion order is nearly expiry order; a ticket issued on resumption keeps the expiry of the ticket it replaces,
+    // so purging is best effort and expiry is checked again on redemption
+    private final LinkedHashMap<ByteBuffer, Ticket> tickets = new LinkedHashMap<ByteBuffer, Ticket>() {
+        protected boolean removeEldestEntry(final Map.Entry<ByteBuffer, Ticket> eldest) {
+            return size() > MAX_TICKETS;
+        }
+    };
+
+    ResumptionTicketCache(final long lifetime) {
+        this.lifetime = lifetime;
+        final byte[] keyBytes = new byte[32];
+        random.nextBytes(keyBytes);
+        key = new SecretKeySpec(keyBytes, MAC_ALGORITHM);
+    }
+
+    /**
+     * Issue a new ticket.
+     *
+     * @param authorizationId the authorization ID of the authenticated peer
+     * @param authTime the time, as milliseconds since the epoch, at which the peer last authenticated in full
+     * @return the ticket body
+     */
+    byte[] issue(final String authorizationId, final long authTime) {
+        final byte[] ticket = new byte[TICKET_LENGTH];
+        final byte[] id = new byte[ID_LENGTH];
+        random.nextBytes(id);
+        final long now = System.currentTimeMillis();
+        final long expiry = authTime + lifetime;
+        final ByteBuffer buffer = ByteBuffer.wrap(ticket);
+        buffer.put(id);
+        buffer.putLong(expiry);
+        buffer.put(sign(ticket));
+        synchronized (tickets) {
+            purge(now);
+            tickets.put(ByteBuffer.wrap(id), new Ticket(authorizationId, authTime, expiry));
+        }
+        return ticket;
+    }
+
+    /**
+     * Redeem a ticket, removing it from the cache.
+     *
+     * @param ticket the ticket body
+     * @return the cache entry of the ticket, or {@code null} if the ticket is not valid
+     */
+    Ticket redeem(final byte[] ticket) {
+        if (ticket.length != TICKET_LENGTH || ! MessageDigest.isEqual(sign(ticket), Arrays.copyOfRange(ticket, SIGNED_LENGTH, TICKET_LENGTH))) {
+            return null;
+        }
+        final long now = System.currentTimeMillis();
+        if (getExpiry(ticket) <= now) {
+            return null;
+        }
+        final Ticket entry;
+        synchronized (tickets) {
+            entry = tickets.remove(ByteBuffer.wrap(ticket, 0, ID_LENGTH));
+        }
+        return entry == null || entry.expiry <= now ? null : entry;
+    }
+
+    /**
+     * Create a SASL server which authenticates a peer by redeeming the ticket given as its initial response.
+     *
+     * @param securityDomain the security domain in which the identity of the ticket holder is looked up
+     * @return the SASL server
+     */
+    SaslServer createSaslServer(final SecurityDomain securityDomain) {
+        return new ResumptionSaslServer(securityDomain);
+    }
+
+    /**
+     * Get the time at which the peer authenticated by a SASL server last authenticated in full.
+     *
+     * @param saslServer the completed SASL server
+     * @return the time at which the peer authenticated, as milliseconds since the epoch
+     */
+    static long getAuthTime(final SaslServer saslServer) {
+        return saslServer instanceof ResumptionSaslServer ? ((ResumptionSaslServer) saslServer).ticket.authTime : System.currentTimeMillis();
+    }
+
+    /**
+     * Get the expiry time of a ticket, as milliseconds since the epoch.  The client uses this to avoid presenting
+     * tickets which are certain to be rejected.
+     *
+     * @param ticket the ticket body
+     * @return the expiry time, or 0 if the ticket is malformed
+     */
+    static long getExpiry(final byte[] ticket) {
+        return ticket.length == TICKET_LENGTH ? ByteBuffer.wrap(ticket, ID_LENGTH, 8).getLong() : 0L;
+    }
+
+    private void purge(final long now) {
+        final Iterator<Ticket> iterator = tickets.values().iterator();
+        while (iterator.hasNext() && iterator.next().expiry <= now) {
+            iterator.remove();
+        }
+    }
+
+    private byte[] sign(final byte[] ticket) {
+        try {
+            final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            mac.update(ticket, 0, SIGNED_LENGTH);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            // every Java platform is required to support HmacSHA256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static final class Ticket {
+        final String authorizationId;
+        final long authTime;
+        final long expiry;
+
+        Ticket(final String authorizationId, final long authTime, final long expiry) {
+            this.authorizationId = authorizationId;
+            this.authTime = authTime;
+            this.expiry = expiry;
+        }
+    }
+
+    final class ResumptionSaslServer implements SaslServer {
+        private final SecurityDomain securityDomain;
+        private Ticket ticket;
+
+        ResumptionSaslServer(final SecurityDomain securityDomain) {
+            this.securityDomain = securityDomain;
+        }
+
+        public String getMechanismName() {
+            return Protocol.RESUMPTION_MECH;
+        }
+
+        public byte[] evaluateResponse(final byte[] response) throws SaslException {
+            if (ticket != null) {
+                throw new SaslException("Resumption is already complete");
+            }
+            final Ticket ticket = redeem(response);
+            if (ticket == null) {
+                throw new SaslException("Invalid or expired resumption ticket");
+            }
+            final ServerAuthenticationContext context = securityDomain.createNewAuthenticationContext();
+            try {
+                context.setAuthenticationName(ticket.authorizationId);
+                if (! context.exists() || ! context.authorize()) {
+                    throw new SaslException("The identity of the resumption ticket may no longer log in");
+                }
+            } catch (RealmUnavailableException | IllegalArgumentException | IllegalStateException e) {
+                throw new SaslException("The identity of the resumption ticket could not be verified", e);
+            }
+            this.ticket = ticket;
+            return SaslUtils.EMPTY_BYTES;
+        }
+
+        public boolean isComplete() {
+            return ticket != null;
+        }
+
+        public String getAuthorizationID() {
+            if (ticket == null) {
+                throw new IllegalStateException("Resumption is not complete");
+            }
+            return ticket.authorizationId;
+        }
+
+        public byte[] unwrap(final byte[] incoming, final int offset, final int len) {
+            throw new IllegalStateException("No security layer was negotiated");
+        }
+
+        public byte[] wrap(final byte[] outgoing, final int offset, final int len) {
+            throw new IllegalStateException("No security layer was negotiated");
+        }
+
+        public Object getNegotiatedProperty(final String propName) {
+            if (ticket == null) {
+                throw new IllegalStateException("Resumption is not complete");
+            }
+            return null;
+        }
+
+        public void dispose() {
+        }
+    }
+}
@@ -56,6 +56,7 @@ import org.xnio.ChannelListener;
 import org.xnio.OptionMap;
 import org.xnio.Options;
 import org.xnio.Pooled;
+import org.xnio.Sequence;
 import org.xnio.channels.Channels;
 import org.xnio.channels.ConnectedMessageChannel;
 import org.xnio.channels.SslChannel;
@@ -72,20 +73,26 @@ final class ServerConnectionOpenListener  implements ChannelListener<ConnectedMe
     private final SecurityDomain securityDomain;
     private final SaslServerFactory saslServerFactory;
     private final OptionMap optionMap;
+    private final ResumptionTicketCache resumptionTickets;
+    private final Runnable handshakeComplete;
     private final AtomicInteger retryCount = new AtomicInteger(8);
     private final String serverName;
+    private final int maxVersion;
 
-    ServerConnectionOpenListener(final RemoteConnection connection, final ConnectionProviderContext connectionProviderContext, final SecurityDomain securityDomain, final SaslServerFactory saslServerFactory, final OptionMap optionMap) {
+    ServerConnectionOpenListener(final RemoteConnection connection, final ConnectionProviderContext connectionProviderContext, final SecurityDomain securityDomain, final SaslServerFactory saslServerFactory, final OptionMap optionMap, final ResumptionTicketCache resumptionTickets, final Runnable handshakeComplete) {
         this.connection = connection;
         this.connectionProviderContext = connectionProviderContext;
         this.securityDomain = securityDomain;
         this.saslServerFactory = saslServerFactory;
         this.optionMap = optionMap;
+        this.resumptionTickets = resumptionTickets;
+        this.handshakeComplete = handshakeComplete;
         if (optionMap.contains(RemotingOptions.SERVER_NAME)) {
             serverName = optionMap.get(RemotingOptions.SERVER_NAME);
         } else {
             serverName = connection.getChannel().getLocalAddress(InetSocketAddress.class).getHostName();
         }
+        maxVersion = Math.max(1, min(Protocol.VERSION, optionMap.get(RemotingOptions.MAX_PROTOCOL_VERSION, Protocol.VERSION)));
     }
 
 
@@ -122,6 +129,7 @@ final class ServerConnectionOpenListener  implements ChannelListener<ConnectedMe
 
     final class Initial implements ChannelListener<ConnectedMessageChannel> {
         private boolean starttls;
+        private boolean resumption;
         private Map<String, SaslServerFactory> allowedMechanisms;
         private int version;
         private int channelsIn = 40;
@@ -131,13 +139,15 @@ final class ServerConnectionOpenListener  implements ChannelListener<ConnectedMe
 
         Initial() {
             // Calculate our capabilities
-            version = Protocol.VERSION;
+            version = maxVersion;
         }
 
         void initialiseCapabilities() {
             final SslChannel sslChannel = connection.getSslChannel();
             final boolean channelSecure = Channels.getOption(connection.getChannel(), Options.SECURE, false);
             starttls = ! (sslChannel == null || channelSecure);
+            // a resumption ticket is a bearer credential, so it is only ever sent or accepted under TLS
+            resumption = resumptionTickets != null && sslChannel != null && channelSecure;
             final Map<String, SaslServerFactory> foundMechanisms = new LinkedHashMap<String, SaslServerFactory>();
             boolean enableExternal = false;
             try {
@@ -158,11 +168,15 @@ final class ServerConnectionOpenListener  implements ChannelListener<ConnectedMe
                 server.trace("No EXTERNAL mechanism due to unverified SSL peer");
             }
             final SaslServerFactory saslServerFactory = ServerConnectionOpenListener.this.saslServerFactory;
+            final Sequence<String> allowedMechs = optionMap.get(Options.SASL_MECHANISMS);
+            final Sequence<String> disallowedMechs = optionMap.get(Options.SASL_DISALLOWED_MECHANISMS);
             for (String mechName : securityDomain.getSaslServerMechanismNames(saslServerFactory)) {
                 if (foundMechanisms.containsKey(mechName)) {
                     server.tracef("Excluding repeated occurrence of mechanism %s", mechName);
                 } else if (! enableExternal && mechName.equals("EXTERNAL")) {
                     server.trace("Excluding EXTERNAL due to prior config");
+                } else if ((allowedMechs != null && ! allowedMechs.contains(mechName)) || (disallowedMechs != null && disallowedMechs.contains(mechName))) {
+                    server.tracef("Excluding mechanism %s due to server options", mechName);
                 } else {
                     server.tracef("Added mechanism %s", mechName);
                     foundMechanisms.put(mechName, saslServerFactory);
@@ -197,6 +211,7 @@ final class ServerConnectionOpenListener  implements ChannelListener<ConnectedMe
                     }
                 }
                 receiveBuffer.flip();
+                connection.getEventLog().record(false, receiveBuffer);
                 final byte msgType = receiveBuffer.get();
                 switch (msgType) {
                     case Protocol.CONNECTION_CLOSE: {
@@ -215,12 +230,14 @@ final class ServerConnectionOpenListener  implements ChannelListener<ConnectedMe
                     }
                     case Protocol.CAPABILITIES: {
                         server.trace("Server received capabilities request");
+                        connection.handshakePhase("capabilities");
                         handleClientCapabilities(receiveBuffer);
                         sendCapabilities();
                         return;
                     }
                     case Protocol.STARTTLS: {
                         server.tracef("Server received STARTTLS request");
+                        connection.handshakePhase("starttls");
                         final Pooled<ByteBuffer> pooled = connection.allocate();
                         boolean ok = false;
                         try {
@@ -244,6 +261,7 @@ final class ServerConnectionOpenListener  implements ChannelListener<ConnectedMe
                     }
                     case Protocol.AUTH_REQUEST: {
                         server.tracef("Server received authentication request");
+                        connection.handshakePhase("authentication");
                         if (retryCount.decrementAndGet() < 1) {
                             // no more tries left
                             connection.handleException(new SaslException("Too many authentication failures; connection terminated"), false);
@@ -256,38 +274,42 @@ final class ServerConnectionOpenListener  implements ChannelListener<ConnectedMe
                         } else {
                             mechName = ProtocolUtils.readString(receiveBuffer);
                         }
-                        final SaslServerFactory saslServerFactory = allowedMechanisms.get(mechName);
-                        if (saslServerFactory == null) {
-                            // reject
-                            authLog.rejectedInvalidMechanism(mechName);
-                            final Pooled<ByteBuffer> pooled = connection.allocate();
-                            boolean ok = false;
+                        final SaslServer saslServer;
+                        if ((behavior & Protocol.BH_RESUMPTION) != 0 && Protocol.RESUMPTION_MECH.equals(mechName)) {
+                            server.trace("Server received resumption ticket");
+                            saslServer = resumptionTickets.createSaslServer(securityDomain);
+                        } else {
+                            final SaslServerFactory saslServerFactory = allowedMechanisms.get(mechName);
+                            if (saslServerFactory == null) {
+                                // reject
+                                authLog.rejectedInvalidMechanism(mechName);
+                                final Pooled<ByteBuffer> pooled = connection.allocate();
+                                boolean ok = false;
+                                try {
+                                    final ByteBuffer sendBuffer = pooled.getResource();
+                                    sendBuffer.put(Protocol.AUTH_REJECTED);
+                                    sendBuffer.flip();
+                                    connection.send(pooled);
+                                    ok = true;
+                                    return;
+                                } finally {
+                                    if (! ok) pooled.free();
+                                }
+                            }
+                            final String protocol = optionMap.contains(RemotingOptions.SASL_PROTOCOL) ? optionMap.get(RemotingOptions.SASL_PROTOCOL) : RemotingOptions.DEFAULT_SASL_PROTOCOL;
                             try {
-                                final ByteBuffer sendBuffer = pooled.getResource();
-                                sendBuffer.put(Protocol.AUTH_REJECTED);
-                                sendBuffer.flip();
-                                connection.send(pooled);
-                                ok = true;
+                                saslServer = securityDomain.createNewAuthenticationContext().createSaslServer(saslServerFactory, serverName, mechName, protocol);
+                            } catch (SaslException e) {
+                                // bail out
+                                return;
+                            }
+                            if (saslServer == null) {
+                                // bail out
                                 return;
-                            } finally {
-                                if (! ok) pooled.free();
                             }
-                        }
-                        final String protocol = optionMap.contains(RemotingOptions.SASL_PROTOCOL) ? optionMap.get(RemotingOptions.SASL_PROTOCOL) : RemotingOptions.DEFAULT_SASL_PROTOCOL;
-                        final SaslServer saslServer;
-                        try {
-                            saslServer = securityDomain.createNewAuthenticationContext().createSaslServer(saslServerFactory, serverName, mechName, protocol);
-                        } catch (SaslException e) {
-                            // bail out
-                            return;
-                        }
-                        if (saslServer == null) {
-                            // bail out
-                            return;
                         }
                         connection.getChannel().suspendReads();
-                        connection.getExecutor().execute(new AuthStepRunnable(true, saslServer, pooledBuffer, remoteEndpointName, behavior, channelsIn, channelsOut));
-                        free = false;
+                        free = ! connection.executeAuthenticationTask(new AuthStepRunnable(true, saslServer, pooledBuffer, remoteEndpointName, behavior, channelsIn, channelsOut));
                         return;
                     }
                     default: {
@@ -305,6 +327,8 @@ final class ServerConnectionOpenListener  implements ChannelListener<ConnectedMe
         }
 
         void handleClientCapabilities(final ByteBuffer receiveBuffer) {
+            // a client which does not send its version speaks version 1
+            version = 1;
             boolean useDefaultChannels = true;
             int channelsIn = 40;
             int channelsOut = 40;
@@ -316,7 +340,7 @@ final class ServerConnectionOpenListener  implements ChannelListener<ConnectedMe
                     case Protocol.CAP_VERSION: {
                         final byte version = data.get();
                         server.tracef("Server received capability: version %d", Integer.valueOf(version & 0xff));
-                        this.version = min(Protocol.VERSION, version & 0xff);
+                        this.version = min(maxVersion, version & 0xff);
                         break;
                     }
                     case Protocol.CAP_ENDPOINT_NAME: {
@@ -332,6 +356,16 @@ final class ServerConnectionOpenListener  implements ChannelListener<ConnectedMe
                         server.tracef("Server received capability: message close protocol supported");
                         break;
                     }
+                    case Protocol.CAP_MESSAGE_COMPRESSION: {
+                        behavior |= Protocol.BH_MESSAGE_COMPRESSION;
+                        server.tracef("Server received capability: message compression supported");
+                        break;
+                    }
+                    case Protocol.CAP_RESUMPTION: {
+                        behavior |= Protocol.BH_RESUMPTION;
+                        server.tracef("Server received capability: session resumption supported");
+                        break;
+                    }
                     case Protocol.CAP_VERSION_STRING: {
                         // remote side must be >= 3.2.16.GA
                         behavior &= ~Protocol.BH_FAULTY_MSG_SIZE;
@@ -364,6 +398,11 @@ final class ServerConnectionOpenListener  implements ChannelListener<ConnectedMe
                 this.channelsIn = channelsIn;
                 this.channelsOut = channelsOut;
             }
+            if (version >= 2) {
+                behavior |= Protocol.BH_COMPACT_HEADERS;
+            } else {
+                behavior &= ~Protocol.BH_COMPACT_HEADERS;
+            }
         }
 
 
@@ -390,6 +429,12 @@ final class ServerConnectionOpenListener  implements ChannelListener<ConnectedMe
                     ProtocolUtils.writeString(sendBuffer, Protocol.CAP_SASL_MECH, mechName);
                 }
                 ProtocolUtils.writeEmpty(sendBuffer, Protocol.CAP_MESSAGE_CLOSE);
+                ProtocolUtils.writeEmpty(sendBuffer, Protocol.CAP_MESSAGE_COMPRESSION);
+                if (resumption) {
+                    ProtocolUtils.writeEmpty(sendBuffer, Protocol.CAP_RESUMPTION);
+                } else {
+                    behavior &= ~Protocol.BH_RESUMPTION;
+                }
                 ProtocolUtils.writeString(sendBuffer, Protocol.CAP_VERSION_STRING, Version.getVersionString());
                 ProtocolUtils.writeInt(sendBuffer, Protocol.CAP_CHANNELS_IN, optionMap.get(RemotingOptions.MAX_INBOUND_CHANNELS, RemotingOptions.DEFAULT_MAX_INBOUND_CHANNELS));
                 ProtocolUtils.writeInt(sendBuffer, Protocol.CAP_CHANNELS_OUT, optionMap.get(RemotingOptions.MAX_OUTBOUND_CHANNELS, RemotingOptions.DEFAULT_MAX_OUTBOUND_CHANNELS));
@@ -437,16 +482,19 @@ final class ServerConnectionOpenListener  implements ChannelListener<ConnectedMe
                         sendBuffer.put(Protocol.AUTH_COMPLETE);
                         if (SaslUtils.evaluateResponse(saslServer, sendBuffer, buffer.getResource())) {
                             server.tracef("Server sending authentication complete");
+                            sendResumptionTicket();
                             connectionProviderContext.accept(new ConnectionHandlerFactory() {
                                 public ConnectionHandler createInstance(final ConnectionHandlerContext connectionContext) {
                                     final Object qop = saslServer.getNegotiatedProperty(Sasl.QOP);
                                     if (!isInitial && ("auth-int".equals(qop) || "auth-conf".equals(qop))) {
                                         connection.setSaslWrapper(SaslWrapper.create(saslServer));
                                     }
+                                    handshakeComplete.run();
                                     final RemoteConnectionHandler connectionHandler = new RemoteConnectionHandler(
                                         connectionContext, connection, maxInboundChannels, maxOutboundChannels, remoteEndpointName, behavior);
                                     connection.getRemoteConnectionProvider().addConnectionHandler(connectionHandler);
                                     connection.setReadListener(new RemoteReadListener(connectionHandler, connection), false);
+                                    connection.handshakePhase("complete");
                                     return connectionHandler;
                                 }
                             });
@@ -483,6 +531,31 @@ final class ServerConnectionOpenListener  implements ChannelListener<ConnectedMe
                 buffer.free();
             }
         }
+
+        private void sendResumptionTicket() {
+            if (resumptionTickets == null || (behavior & Protocol.BH_RESUMPTION) == 0) {
+                return;
+            }
+            final Object qop = saslServer.getNegotiatedProperty(Sasl.QOP);
+            final String authorizationId = saslServer.getAuthorizationID();
+            if ("auth-int".equals(qop) || "auth-conf".equals(qop) || authorizationId == null) {
+                // a security layer cannot be resumed, and an anonymous peer gains nothing from resuming
+                return;
+            }
+            server.tracef("Server sending resumption ticket");
+            final Pooled<ByteBuffer> pooled = connection.allocate();
+            boolean ok = false;
+            try {
+                final ByteBuffer sendBuffer = pooled.getResource();
+                sendBuffer.put(Protocol.RESUMPTION_TICKET);
+                sendBuffer.put(resumptionTickets.issue(authorizationId, ResumptionTicketCache.getAuthTime(saslServer)));
+                sendBuffer.flip();
+                connection.send(pooled);
+                ok = true;
+            } finally {
+                if (! ok) pooled.free();
+            }
+        }
     }
 
     final class Authentication implements ChannelListener<ConnectedMessageChannel> {
@@ -527,6 +600,7 @@ final class ServerConnectionOpenListener  implements ChannelListener<ConnectedMe
                 }
                 server.tracef("Received %s", buffer);
                 buffer.flip();
+                connection.getEventLog().record(false, buffer);
                 final byte msgType = buffer.get();
                 switch (msgType) {
                     case Protocol.CONNECTION_CLOSE: {
@@ -538,8 +612,7 @@ final class ServerConnectionOpenListener  implements ChannelListener<ConnectedMe
                     case Protocol.AUTH_RESPONSE: {
                         server.tracef("Server received authentication response");
                         connection.getChannel().suspendReads();
-                        connection.getExecutor().execute(new AuthStepRunnable(false, saslServer, pooledBuffer, remoteEndpointName, behavior, maxInboundChannels, maxOutboundChannels));
-                        free = false;
+                        free = ! connection.executeAuthenticationTask(new AuthStepRunnable(false, saslServer, pooledBuffer, remoteEndpointName, behavior, maxInboundChannels, maxOutboundChannels));
                         return;
                     }
                     case Protocol.CAPABILITIES: {
@@ -0,0 +1,125 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.remote;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import javax.net.ssl.SSLSession;
+
+import org.jboss.remoting3.Channel;
+import org.jboss.remoting3.CloseHandler;
+import org.jboss.remoting3.spi.AbstractHandleableCloseable;
+import org.jboss.remoting3.spi.ConnectionHandler;
+import org.xnio.Cancellable;
+import org.xnio.OptionMap;
+import org.xnio.Result;
+
+/**
+ * A connection handler which spreads one logical connection over several remote connections ("stripes"), each with
+ * its own socket and I/O thread.  Each channel is opened on, and thereafter bound to, a single stripe, so all of the
+ * frames of any one message travel in order over one socket; only separate channels proceed in parallel.  Channels
+ * which are opened by the peer arrive on whichever stripe the peer chose and are bound to it in the same way.
+ * <p>
+ * Only this side knows that the stripes belong together.  Each stripe is an ordinary remote connection which has been
+ * authenticated on its own, and the peer treats it as a separate connection.
+ * <p>
+ * The stripes share the fate of the logical connection: if any stripe is closed, by either side, all of them are.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class StripedConnectionHandler extends AbstractHandleableCloseable<ConnectionHandler> implements ConnectionHandler {
+
+    private final RemoteConnectionHandler[] stripes;
+
+    @SuppressWarnings("unused")
+    private volatile int nextStripe;
+    @SuppressWarnings("unused")
+    private volatile int openStripes;
+
+    private static final AtomicIntegerFieldUpdater<StripedConnectionHandler> nextStripeUpdater = AtomicIntegerFieldUpdater.newUpdater(StripedConnectionHandler.class, "nextStripe");
+    private static final AtomicIntegerFieldUpdater<StripedConnectionHandler> openStripesUpdater = AtomicIntegerFieldUpdater.newUpdater(StripedConnectionHandler.class, "openStripes");
+
+    StripedConnectionHandler(final Executor executor, final RemoteConnectionHandler[] stripes) {
+        super(executor);
+        this.stripes = stripes;
+        openStripes = stripes.length;
+        final CloseHandler<ConnectionHandler> stripeCloseHandler = new CloseHandler<ConnectionHandler>() {
+            public void handleClose(final ConnectionHandler closed, final IOException exception) {
+                closeAsync();
+                if (openStripesUpdater.decrementAndGet(StripedConnectionHandler.this) == 0) {
+                    closeComplete();
+                }
+            }
+        };
+        for (RemoteConnectionHandler stripe : stripes) {
+            stripe.addCloseHandler(stripeCloseHandler);
+        }
+    }
+
+    public Cancellable open(final String serviceType, final Result<Channel> result, final OptionMap optionMap) {
+        return selectStripe().open(serviceType, result, optionMap);
+    }
+
+    /**
+     * Select the stripe with the fewest channels.  The search starts at a rotating position, so that ties (and in
+     * particular a burst of channel opens on an idle connection) are spread evenly.
+     *
+     * @return the selected stripe
+     */
+    private RemoteConnectionHandler selectStripe() {
+        final RemoteConnectionHandler[] stripes = this.stripes;
+        final int length = stripes.length;
+        final int start = (nextStripeUpdater.getAndIncrement(this) & Integer.MAX_VALUE) % length;
+        RemoteConnectionHandler best = stripes[start];
+        int bestCount = best.getChannelCount();
+        for (int i = 1; i < length && bestCount > 0; i ++) {
+            final RemoteConnectionHandler stripe = stripes[(start + i) % length];
+            final int count = stripe.getChannelCount();
+            if (count < bestCount) {
+                best = stripe;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    public SSLSession getSslSession() {
+        return stripes[0].getSslSession();
+    }
+
+    public String getRemoteEndpointName() {
+        return stripes[0].getRemoteEndpointName();
+    }
+
+    protected void closeAction() throws IOException {
+        for (RemoteConnectionHandler stripe : stripes) {
+            stripe.closeAsync();
+        }
+    }
+
+    public String toString() {
+        return String.format("Striped connection handler for %s (%d stripes)", stripes[0], Integer.valueOf(stripes.length));
+    }
+}
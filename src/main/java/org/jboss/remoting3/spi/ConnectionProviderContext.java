@@ -61,6 +61,17 @@ public interface ConnectionProviderContext {
      */
     Executor getExecutor();
 
+    /**
+     * Get an executor usable for running authentication work, such as the evaluation of SASL challenges and responses.
+     * This executor is kept apart from the one returned by {@link #getExecutor()} so that a burst of authentication
+     * cannot starve the connections which are already established; it may reject tasks when it is overloaded.
+     *
+     * @return the authentication executor
+     */
+    default Executor getAuthenticationExecutor() {
+        return getExecutor();
+    }
+
     /**
      * Get the XNIO worker to use for network operations.
      *
@@ -24,6 +24,7 @@ package org.jboss.remoting3.spi;
 
 import java.io.IOException;
 import java.net.SocketAddress;
+import javax.net.ssl.SSLContext;
 import org.wildfly.security.auth.provider.SecurityDomain;
 import org.xnio.OptionMap;
 import org.xnio.channels.AcceptingChannel;
@@ -36,6 +37,10 @@ public interface NetworkServerProvider {
 
     /**
      * Create a network server.
+     * <p>
+     * The server only offers the SASL mechanisms of the security domain which are permitted by the
+     * {@link org.xnio.Options#SASL_MECHANISMS} and {@link org.xnio.Options#SASL_DISALLOWED_MECHANISMS} server options,
+     * if they are given.  Servers created without either option offer every mechanism, as before.
      *
      * @param bindAddress the address to bind to
      * @param optionMap the server options
@@ -44,4 +49,22 @@ public interface NetworkServerProvider {
      * @throws IOException if the server could not be created
      */
     AcceptingChannel<? extends ConnectedStreamChannel> createServer(SocketAddress bindAddress, OptionMap optionMap, SecurityDomain securityDomain) throws IOException;
+
+    /**
+     * Create a network server which uses the given SSL context if TLS is enabled by the server options.  Providers
+     * which cannot accept an SSL context only support a {@code null} one, which selects the default context.
+     *
+     * @param bindAddress the address to bind to
+     * @param optionMap the server options
+     * @param securityDomain the security domain to use for authentication
+     * @param sslContext the SSL context to use for TLS, or {@code null} to use the platform default context
+     * @return the server channel
+     * @throws IOException if the server could not be created
+     */
+    default AcceptingChannel<? extends ConnectedStreamChannel> createServer(SocketAddress bindAddress, OptionMap optionMap, SecurityDomain securityDomain, SSLContext sslContext) throws IOException {
+        if (sslContext != null) {
+            throw new UnsupportedOperationException("This provider does not support a custom SSL context");
+        }
+        return createServer(bindAddress, optionMap, securityDomain);
+    }
 }
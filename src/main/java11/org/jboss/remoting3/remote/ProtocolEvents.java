@@ -0,0 +1,238 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.remote;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder events for protocol activity.
+ * <p>
+ * This is the Java 11 version of this class.  Each method checks whether its event type is enabled before creating
+ * the event, so a disabled event costs a single field read.  The events are disabled by default; enable the
+ * {@code org.jboss.remoting.*} events in a recording configuration to collect them.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class ProtocolEvents {
+
+    private static final EventType HANDSHAKE_PHASE = EventType.getEventType(HandshakePhaseEvent.class);
+    private static final EventType CHANNEL_OPEN = EventType.getEventType(ChannelOpenEvent.class);
+    private static final EventType CHANNEL_CLOSE = EventType.getEventType(ChannelCloseEvent.class);
+    private static final EventType MESSAGE_START = EventType.getEventType(MessageStartEvent.class);
+    private static final EventType MESSAGE_END = EventType.getEventType(MessageEndEvent.class);
+    private static final EventType WINDOW_STALL = EventType.getEventType(WindowStallEvent.class);
+    private static final EventType WRITE_QUEUED = EventType.getEventType(WriteQueuedEvent.class);
+
+    private ProtocolEvents() {
+    }
+
+    static void handshakePhase(final RemoteConnection connection, final String phase, final long elapsedNanos) {
+        if (HANDSHAKE_PHASE.isEnabled()) {
+            final HandshakePhaseEvent event = new HandshakePhaseEvent();
+            event.connection = connection.toString();
+            event.phase = phase;
+            event.elapsed = elapsedNanos;
+            event.commit();
+        }
+    }
+
+    static void channelOpened(final RemoteConnection connection, final int channelId) {
+        if (CHANNEL_OPEN.isEnabled()) {
+            final ChannelOpenEvent event = new ChannelOpenEvent();
+            event.connection = connection.toString();
+            event.channelId = channelId;
+            event.outbound = ChannelIdAllocator.isLocal(channelId);
+            event.commit();
+        }
+    }
+
+    static void channelClosed(final RemoteConnection connection, final int channelId) {
+        if (CHANNEL_CLOSE.isEnabled()) {
+            final ChannelCloseEvent event = new ChannelCloseEvent();
+            event.connection = connection.toString();
+            event.channelId = channelId;
+            event.outbound = ChannelIdAllocator.isLocal(channelId);
+            event.commit();
+        }
+    }
+
+    static void messageStarted(final int channelId, final int messageId, final boolean outbound) {
+        if (MESSAGE_START.isEnabled()) {
+            final MessageStartEvent event = new MessageStartEvent();
+            event.channelId = channelId;
+            event.messageId = messageId;
+            event.outbound = outbound;
+            event.commit();
+        }
+    }
+
+    static void messageEnded(final int channelId, final int messageId, final boolean outbound, final long size, final long durationNanos, final boolean cancelled) {
+        if (MESSAGE_END.isEnabled()) {
+            final MessageEndEvent event = new MessageEndEvent();
+            event.channelId = channelId;
+            event.messageId = messageId;
+            event.outbound = outbound;
+            event.size = size;
+            event.elapsed = durationNanos;
+            event.cancelled = cancelled;
+            event.commit();
+        }
+    }
+
+    static void windowStalled(final int channelId, final int messageId, final long durationNanos) {
+        if (WINDOW_STALL.isEnabled()) {
+            final WindowStallEvent event = new WindowStallEvent();
+            event.channelId = channelId;
+            event.messageId = messageId;
+            event.waited = durationNanos;
+            event.commit();
+        }
+    }
+
+    static void writeQueued(final RemoteConnection connection, final int depth) {
+        if (WRITE_QUEUED.isEnabled()) {
+            final WriteQueuedEvent event = new WriteQueuedEvent();
+            event.connection = connection.toString();
+            event.depth = depth;
+            event.commit();
+        }
+    }
+
+    @Name("org.jboss.remoting.HandshakePhase")
+    @Label("Handshake Phase")
+    @Description("A connection handshake reached a new phase")
+    @Category({ "JBoss Remoting", "Connection" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class HandshakePhaseEvent extends Event {
+        @Label("Connection")
+        String connection;
+        @Label("Phase")
+        String phase;
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    @Name("org.jboss.remoting.ChannelOpen")
+    @Label("Channel Open")
+    @Category({ "JBoss Remoting", "Channel" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ChannelOpenEvent extends Event {
+        @Label("Connection")
+        String connection;
+        @Label("Channel ID")
+        int channelId;
+        @Label("Outbound")
+        boolean outbound;
+    }
+
+    @Name("org.jboss.remoting.ChannelClose")
+    @Label("Channel Close")
+    @Category({ "JBoss Remoting", "Channel" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ChannelCloseEvent extends Event {
+        @Label("Connection")
+        String connection;
+        @Label("Channel ID")
+        int channelId;
+        @Label("Outbound")
+        boolean outbound;
+    }
+
+    @Name("org.jboss.remoting.MessageStart")
+    @Label("Message Start")
+    @Category({ "JBoss Remoting", "Message" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class MessageStartEvent extends Event {
+        @Label("Channel ID")
+        int channelId;
+        @Label("Message ID")
+        int messageId;
+        @Label("Outbound")
+        boolean outbound;
+    }
+
+    @Name("org.jboss.remoting.MessageEnd")
+    @Label("Message End")
+    @Category({ "JBoss Remoting", "Message" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class MessageEndEvent extends Event {
+        @Label("Channel ID")
+        int channelId;
+        @Label("Message ID")
+        int messageId;
+        @Label("Outbound")
+        boolean outbound;
+        @Label("Size")
+        @DataAmount
+        long size;
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+        @Label("Cancelled")
+        boolean cancelled;
+    }
+
+    @Name("org.jboss.remoting.WindowStall")
+    @Label("Window Stall")
+    @Description("A writer waited for the peer to open the transmit window of a message")
+    @Category({ "JBoss Remoting", "Message" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class WindowStallEvent extends Event {
+        @Label("Channel ID")
+        int channelId;
+        @Label("Message ID")
+        int messageId;
+        @Label("Waited")
+        @Timespan(Timespan.NANOSECONDS)
+        long waited;
+    }
+
+    @Name("org.jboss.remoting.WriteQueued")
+    @Label("Write Queued")
+    @Description("A frame was queued because the socket could not take it")
+    @Category({ "JBoss Remoting", "Connection" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class WriteQueuedEvent extends Event {
+        @Label("Connection")
+        String connection;
+        @Label("Queue Depth")
+        int depth;
+    }
+}
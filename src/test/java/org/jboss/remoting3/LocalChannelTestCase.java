@@ -0,0 +1,415 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.remoting3;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.security.PrivilegedAction;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jboss.logging.Logger;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import org.wildfly.security.WildFlyElytronProvider;
+import org.wildfly.security.auth.AuthenticationConfiguration;
+import org.wildfly.security.auth.AuthenticationContext;
+import org.wildfly.security.auth.MatchRule;
+import org.xnio.FutureResult;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+
+/**
+ * Tests for the windowed, chunked message streams of {@link LocalChannel}.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class LocalChannelTestCase {
+
+    private static final int WINDOW = 2 * LocalChannel.CHUNK_SIZE;
+    private static final int MAX_MESSAGES = 8;
+    private static final long TIMEOUT = 10L;
+
+    private static String providerName;
+    private static Endpoint endpoint;
+
+    private Registration serviceRegistration;
+    private Connection connection;
+    private Channel sendChannel;
+    private LocalChannel recvChannel;
+    private final BlockingQueue<MessageInputStream> messages = new LinkedBlockingQueue<MessageInputStream>();
+
+    @BeforeClass
+    public static void doBeforeClass() throws IOException {
+        final WildFlyElytronProvider provider = new WildFlyElytronProvider();
+        Security.addProvider(provider);
+        providerName = provider.getName();
+        endpoint = Endpoint.builder().setEndpointName("local-channel-test").build();
+    }
+
+    @AfterClass
+    public static void doAfterClass() {
+        IoUtils.safeClose(endpoint);
+        Security.removeProvider(providerName);
+    }
+
+    @Rule
+    public TestName name = new TestName();
+
+    @Before
+    public void doBefore() throws Exception {
+        Logger.getLogger("TEST").infof("Running test %s", name.getMethodName());
+        final FutureResult<Channel> passer = new FutureResult<Channel>();
+        serviceRegistration = endpoint.registerService("org.jboss.test", new OpenListener() {
+            public void channelOpened(final Channel channel) {
+                passer.setResult(channel);
+            }
+
+            public void registrationTerminated() {
+            }
+        }, OptionMap.EMPTY);
+        connection = AuthenticationContext.empty().with(MatchRule.ALL, AuthenticationConfiguration.EMPTY.useName("bob").usePassword("pass").allowSaslMechanisms("SCRAM-SHA-256")).run(new PrivilegedAction<Connection>() {
+            public Connection run() {
+                try {
+                    return endpoint.connect(new URI("local://localhost"), OptionMap.EMPTY).get();
+                } catch (IOException | URISyntaxException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        sendChannel = connection.openChannel("org.jboss.test", OptionMap.create(RemotingOptions.TRANSMIT_WINDOW_SIZE, WINDOW, RemotingOptions.MAX_OUTBOUND_MESSAGES, MAX_MESSAGES)).get();
+        recvChannel = (LocalChannel) passer.getIoFuture().get();
+        recvChannel.receiveMessage(new Channel.Receiver() {
+            public void handleError(final Channel channel, final IOException error) {
+                error.printStackTrace();
+            }
+
+            public void handleEnd(final Channel channel) {
+            }
+
+            public void handleMessage(final Channel channel, final MessageInputStream message) {
+                messages.add(message);
+                channel.receiveMessage(this);
+            }
+        });
+    }
+
+    @After
+    public void doAfter() {
+        IoUtils.safeClose(sendChannel);
+        IoUtils.safeClose(recvChannel);
+        IoUtils.safeClose(connection);
+        serviceRegistration.close();
+        Logger.getLogger("TEST").infof("Finished test %s", name.getMethodName());
+    }
+
+    private MessageInputStream receive() throws InterruptedException {
+        final MessageInputStream message = messages.poll(TIMEOUT, TimeUnit.SECONDS);
+        assertNotNull("No message received", message);
+        return message;
+    }
+
+    private static byte[] content(final int length, final long seed) {
+        final byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Write and close a message from a new thread, counting down the latch once the content has been written.
+     */
+    private static void write(final MessageOutputStream out, final byte[] data, final CountDownLatch written, final AtomicReference<IOException> exRef) {
+        new Thread(new Runnable() {
+            public void run() {
+                try {
+                    out.write(data);
+                    written.countDown();
+                    out.close();
+                } catch (IOException e) {
+                    exRef.set(e);
+                    written.countDown();
+                } finally {
+                    IoUtils.safeClose(out);
+                }
+            }
+        }).start();
+    }
+
+    private static byte[] readFully(final MessageInputStream message) throws IOException {
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1000];
+        int r;
+        while ((r = message.read(buffer)) != -1) {
+            assertTrue("More buffered than the window", message.available() <= WINDOW);
+            received.write(buffer, 0, r);
+        }
+        message.close();
+        return received.toByteArray();
+    }
+
+    private static void awaitFullWindow(final MessageInputStream message) throws IOException, InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while (message.available() < WINDOW) {
+            assertTrue("Window was not filled", System.nanoTime() < deadline);
+            Thread.sleep(10L);
+        }
+    }
+
+    private static void assertNoException(final AtomicReference<IOException> exRef) throws IOException {
+        final IOException exception = exRef.get();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    @Test
+    public void testWriterReleasedByRead() throws Exception {
+        final byte[] data = content(3 * LocalChannel.CHUNK_SIZE, 1L);
+        final CountDownLatch written = new CountDownLatch(1);
+        final AtomicReference<IOException> exRef = new AtomicReference<IOException>();
+        write(sendChannel.writeMessage(), data, written, exRef);
+        final MessageInputStream message = receive();
+        // two chunks fill the window, the third has to wait for the reader
+        assertFalse("Writer was not blocked by the window", written.await(200L, TimeUnit.MILLISECONDS));
+        final byte[] first = new byte[LocalChannel.CHUNK_SIZE];
+        int c = 0;
+        while (c < first.length) {
+            c += message.read(first, c, first.length - c);
+        }
+        assertTrue("Writer was not released by the read", written.await(TIMEOUT, TimeUnit.SECONDS));
+        final byte[] rest = readFully(message);
+        assertNoException(exRef);
+        final byte[] received = new byte[data.length];
+        System.arraycopy(first, 0, received, 0, first.length);
+        System.arraycopy(rest, 0, received, first.length, rest.length);
+        assertEquals(data.length, first.length + rest.length);
+        assertArrayEquals(data, received);
+    }
+
+    @Test
+    public void testWriterReleasedByReaderClose() throws Exception {
+        final byte[] data = content(3 * LocalChannel.CHUNK_SIZE, 2L);
+        final CountDownLatch written = new CountDownLatch(1);
+        final AtomicReference<IOException> exRef = new AtomicReference<IOException>();
+        write(sendChannel.writeMessage(), data, written, exRef);
+        final MessageInputStream message = receive();
+        assertFalse("Writer was not blocked by the window", written.await(200L, TimeUnit.MILLISECONDS));
+        message.close();
+        assertTrue("Writer was not released by the close", written.await(TIMEOUT, TimeUnit.SECONDS));
+        assertNoException(exRef);
+        try {
+            message.read();
+            fail("Read after close");
+        } catch (NotOpenException e) {
+            // ok
+        }
+        try {
+            message.available();
+            fail("Available after close");
+        } catch (NotOpenException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void testWriterReleasedByCancel() throws Exception {
+        final byte[] data = content(3 * LocalChannel.CHUNK_SIZE, 3L);
+        final CountDownLatch written = new CountDownLatch(1);
+        final AtomicReference<IOException> exRef = new AtomicReference<IOException>();
+        final MessageOutputStream out = sendChannel.writeMessage();
+        write(out, data, written, exRef);
+        final MessageInputStream message = receive();
+        assertFalse("Writer was not blocked by the window", written.await(200L, TimeUnit.MILLISECONDS));
+        out.cancel();
+        assertTrue("Writer was not released by the cancel", written.await(TIMEOUT, TimeUnit.SECONDS));
+        try {
+            message.read();
+            fail("Read of a cancelled message");
+        } catch (MessageCancelledException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void testReaderSeesCancel() throws Exception {
+        final MessageOutputStream out = sendChannel.writeMessage();
+        out.write(42);
+        out.flush();
+        final MessageInputStream message = receive();
+        assertEquals(42, message.read());
+        final AtomicReference<IOException> exRef = new AtomicReference<IOException>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        new Thread(new Runnable() {
+            public void run() {
+                try {
+                    // blocks until the writer sends more or gives up
+                    message.read();
+                } catch (IOException e) {
+                    exRef.set(e);
+                } finally {
+                    latch.countDown();
+                }
+            }
+        }).start();
+        assertFalse("Reader was not waiting", latch.await(200L, TimeUnit.MILLISECONDS));
+        out.cancel();
+        assertTrue("Reader was not woken by the cancel", latch.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue("Expected a cancellation, got " + exRef.get(), exRef.get() instanceof MessageCancelledException);
+        try {
+            message.close();
+            fail("Close of a cancelled message");
+        } catch (MessageCancelledException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void testEmptyMessageOpenUntilRead() throws Exception {
+        for (int i = 0; i < MAX_MESSAGES; i ++) {
+            sendChannel.writeMessage().close();
+        }
+        try {
+            sendChannel.writeMessage();
+            fail("Empty messages were finished before they were read");
+        } catch (ChannelBusyException e) {
+            // ok
+        }
+        final MessageInputStream message = receive();
+        assertEquals(-1, message.read());
+        // the reader has seen the end, so the message no longer counts
+        final MessageOutputStream out = sendChannel.writeMessage();
+        out.close();
+        message.close();
+    }
+
+    @Test
+    public void testMessageLargerThanWindow() throws Exception {
+        final byte[] data = content(10 * WINDOW + 123, 4L);
+        final CountDownLatch written = new CountDownLatch(1);
+        final AtomicReference<IOException> exRef = new AtomicReference<IOException>();
+        write(sendChannel.writeMessage(), data, written, exRef);
+        final byte[] received = readFully(receive());
+        assertTrue(written.await(TIMEOUT, TimeUnit.SECONDS));
+        assertNoException(exRef);
+        assertArrayEquals(data, received);
+    }
+
+    @Test
+    public void testChunkPoolReuse() throws Exception {
+        final int count = 4;
+        final List<byte[]> data = new ArrayList<byte[]>();
+        final List<MessageOutputStream> outs = new ArrayList<MessageOutputStream>();
+        for (int i = 0; i < count; i ++) {
+            data.add(content(4 * LocalChannel.CHUNK_SIZE + i, i));
+            outs.add(sendChannel.writeMessage());
+        }
+        final CountDownLatch written = new CountDownLatch(count);
+        final CountDownLatch read = new CountDownLatch(count);
+        final AtomicReference<IOException> exRef = new AtomicReference<IOException>();
+        final byte[][] received = new byte[count][];
+        for (int i = 0; i < count; i ++) {
+            write(outs.get(i), data.get(i), written, exRef);
+        }
+        // messages arrive in the order they were started
+        final List<MessageInputStream> ins = new ArrayList<MessageInputStream>();
+        for (int i = 0; i < count; i ++) {
+            ins.add(receive());
+        }
+        // let every message fill its window before reading, so that more chunks are in use than the pool keeps
+        for (MessageInputStream message : ins) {
+            awaitFullWindow(message);
+        }
+        for (int i = 0; i < count; i ++) {
+            final MessageInputStream message = ins.get(i);
+            final int idx = i;
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        received[idx] = readFully(message);
+                    } catch (IOException e) {
+                        exRef.set(e);
+                    } finally {
+                        read.countDown();
+                    }
+                }
+            }).start();
+        }
+        assertTrue(written.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue(read.await(TIMEOUT, TimeUnit.SECONDS));
+        assertNoException(exRef);
+        for (int i = 0; i < count; i ++) {
+            assertArrayEquals("Content of message " + i, data.get(i), received[i]);
+        }
+
+        // more chunks were in use at once than the pool keeps, so it is full now
+        final Set<ByteBuffer> pooled = Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+        synchronized (recvChannel.chunkPool) {
+            assertEquals(LocalChannel.CHUNK_POOL_SIZE, recvChannel.chunkPool.size());
+            pooled.addAll(recvChannel.chunkPool);
+        }
+
+        // a single message never holds more chunks than the pool, so it is written entirely from pooled chunks
+        final byte[] next = content(3 * WINDOW, 5L);
+        final CountDownLatch nextWritten = new CountDownLatch(1);
+        write(sendChannel.writeMessage(), next, nextWritten, exRef);
+        assertArrayEquals(next, readFully(receive()));
+        assertTrue(nextWritten.await(TIMEOUT, TimeUnit.SECONDS));
+        assertNoException(exRef);
+        synchronized (recvChannel.chunkPool) {
+            assertEquals(LocalChannel.CHUNK_POOL_SIZE, recvChannel.chunkPool.size());
+            for (ByteBuffer chunk : recvChannel.chunkPool) {
+                assertTrue("Chunk was not taken from the pool", pooled.contains(chunk));
+                assertEquals(0, chunk.position());
+                assertEquals(chunk.capacity(), chunk.limit());
+            }
+        }
+        assertNull(messages.poll());
+    }
+}
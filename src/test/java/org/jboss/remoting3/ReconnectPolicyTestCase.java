@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.remoting3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for the backoff schedule of {@link ReconnectPolicy}.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class ReconnectPolicyTestCase {
+
+    private static final int SAMPLES = 1000;
+
+    private static void assertDelayBetween(final ReconnectPolicy policy, final int attempt, final long min, final long max) {
+        for (int i = 0; i < SAMPLES; i ++) {
+            final long delay = policy.getDelay(attempt);
+            assertTrue("Delay " + delay + " of attempt " + attempt + " not in [" + min + ", " + max + "]", min <= delay && delay <= max);
+        }
+    }
+
+    @Test
+    public void testExponentialBackoff() {
+        final ReconnectPolicy policy = new ReconnectPolicy(10L, 200L);
+        // each delay is the backoff, shortened by up to half
+        assertDelayBetween(policy, 0, 5L, 10L);
+        assertDelayBetween(policy, 1, 10L, 20L);
+        assertDelayBetween(policy, 2, 20L, 40L);
+        assertDelayBetween(policy, 3, 40L, 80L);
+        assertDelayBetween(policy, 4, 80L, 160L);
+        // capped at the maximum
+        assertDelayBetween(policy, 5, 100L, 200L);
+        assertDelayBetween(policy, 6, 100L, 200L);
+    }
+
+    @Test
+    public void testNoOverflow() {
+        final ReconnectPolicy policy = new ReconnectPolicy(1000L, 60000L);
+        assertDelayBetween(policy, 100, 30000L, 60000L);
+        assertDelayBetween(policy, Integer.MAX_VALUE, 30000L, 60000L);
+        final ReconnectPolicy unbounded = new ReconnectPolicy(1L, Long.MAX_VALUE);
+        assertDelayBetween(unbounded, 62, 1L << 61, 1L << 62);
+        assertDelayBetween(unbounded, 63, Long.MAX_VALUE - (Long.MAX_VALUE >> 1), Long.MAX_VALUE);
+        assertDelayBetween(unbounded, Integer.MAX_VALUE, Long.MAX_VALUE - (Long.MAX_VALUE >> 1), Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testZeroInitialDelay() {
+        final ReconnectPolicy policy = new ReconnectPolicy(0L, 100L);
+        // the first attempt is immediate, but retries never are
+        assertDelayBetween(policy, 0, 0L, 0L);
+        assertDelayBetween(policy, 1, 1L, 2L);
+        assertDelayBetween(policy, 2, 2L, 4L);
+    }
+
+    @Test
+    public void testMaximumBelowInitial() {
+        final ReconnectPolicy policy = new ReconnectPolicy(500L, 100L);
+        assertEquals(500L, policy.getMaximumDelay());
+        assertDelayBetween(policy, 0, 250L, 500L);
+        assertDelayBetween(policy, 10, 250L, 500L);
+    }
+
+    @Test
+    public void testDelaysAreSpread() {
+        final ReconnectPolicy policy = new ReconnectPolicy(1000L, 1000L);
+        long min = Long.MAX_VALUE, max = 0L;
+        for (int i = 0; i < SAMPLES; i ++) {
+            final long delay = policy.getDelay(0);
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+        }
+        // the jitter keeps a crowd of clients from retrying in lock step
+        assertTrue("Delays not spread: " + min + " to " + max, max - min >= 250L);
+    }
+}
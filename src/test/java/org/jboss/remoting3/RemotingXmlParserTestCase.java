@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.remoting3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wildfly.client.config.ClientConfiguration;
+import org.wildfly.client.config.ConfigXMLParseException;
+
+/**
+ * Tests for reading the connection elements of the client configuration file.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class RemotingXmlParserTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private EndpointBuilder parse(final String connection) throws IOException, ConfigXMLParseException {
+        final File file = folder.newFile("wildfly-config.xml");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<configuration>\n");
+            writer.write("    <endpoint xmlns=\"urn:jboss-remoting:5.0\">\n");
+            writer.write("        " + connection + "\n");
+            writer.write("    </endpoint>\n");
+            writer.write("</configuration>\n");
+        }
+        final EndpointBuilder builder = new EndpointBuilder();
+        RemotingXmlParser.parseConfiguration(ClientConfiguration.getInstance(file.toURI()), builder);
+        return builder;
+    }
+
+    private static ConnectionBuilder onlyConnection(final EndpointBuilder builder) {
+        final List<ConnectionBuilder> connectionBuilders = builder.getConnectionBuilders();
+        assertEquals(1, connectionBuilders.size());
+        return connectionBuilders.get(0);
+    }
+
+    @Test
+    public void testReconnectDelays() throws Exception {
+        final ConnectionBuilder connection = onlyConnection(parse("<connection uri=\"remote://localhost:30123\" immediate=\"true\" reconnect-initial-delay=\"250\" reconnect-maximum-delay=\"5000\"/>"));
+        assertEquals(new URI("remote://localhost:30123"), connection.getUri());
+        assertTrue(connection.isImmediate());
+        assertEquals(250L, connection.getReconnectInitialDelay());
+        assertEquals(5000L, connection.getReconnectMaximumDelay());
+    }
+
+    @Test
+    public void testDefaultReconnectDelays() throws Exception {
+        final ConnectionBuilder connection = onlyConnection(parse("<connection uri=\"remote://localhost:30123\" immediate=\"true\"/>"));
+        assertEquals(ConnectionBuilder.DEFAULT_RECONNECT_INITIAL_DELAY, connection.getReconnectInitialDelay());
+        assertEquals(ConnectionBuilder.DEFAULT_RECONNECT_MAXIMUM_DELAY, connection.getReconnectMaximumDelay());
+    }
+
+    @Test
+    public void testNegativeReconnectDelay() throws Exception {
+        try {
+            parse("<connection uri=\"remote://localhost:30123\" reconnect-maximum-delay=\"-1\"/>");
+            fail("Negative delay accepted");
+        } catch (ConfigXMLParseException e) {
+            // ok
+        }
+    }
+}
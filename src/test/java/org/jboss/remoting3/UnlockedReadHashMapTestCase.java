@@ -0,0 +1,161 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.remoting3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link UnlockedReadHashMap}.  The map has a separate Java 11 version, so these tests run both against the
+ * class directory and, in the {@code java11} build profile, against the multi-release JAR.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class UnlockedReadHashMapTestCase {
+
+    private static final int COUNT = 1000;
+
+    private static UnlockedReadHashMap<String, Integer> createMap() {
+        // start small so that the tests run through several resizes
+        return new UnlockedReadHashMap<String, Integer>(2, 0.6f);
+    }
+
+    private static String key(final int i) {
+        return "key-" + i;
+    }
+
+    @Test(timeout = 60000L)
+    public void testPutAndGetAcrossResize() {
+        final UnlockedReadHashMap<String, Integer> map = createMap();
+        for (int i = 0; i < COUNT; i ++) {
+            assertNull(map.put(key(i), Integer.valueOf(i)));
+        }
+        assertEquals(COUNT, map.size());
+        for (int i = 0; i < COUNT; i ++) {
+            assertEquals(Integer.valueOf(i), map.get(key(i)));
+            assertTrue(map.containsKey(key(i)));
+        }
+        assertFalse(map.containsKey(key(COUNT)));
+        final Map<String, Integer> copy = new HashMap<String, Integer>();
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            assertNull(copy.put(entry.getKey(), entry.getValue()));
+        }
+        assertEquals(COUNT, copy.size());
+    }
+
+    @Test(timeout = 60000L)
+    public void testConditionalOperations() {
+        final UnlockedReadHashMap<String, Integer> map = createMap();
+        for (int i = 0; i < COUNT; i ++) {
+            assertNull(map.putIfAbsent(key(i), Integer.valueOf(i)));
+            assertEquals(Integer.valueOf(i), map.putIfAbsent(key(i), Integer.valueOf(-i)));
+        }
+        for (int i = 0; i < COUNT; i ++) {
+            if (i % 2 == 0) {
+                assertEquals(Integer.valueOf(i), map.replace(key(i), Integer.valueOf(i + COUNT)));
+            } else {
+                assertFalse(map.replace(key(i), Integer.valueOf(-1), Integer.valueOf(i + COUNT)));
+                assertTrue(map.replace(key(i), Integer.valueOf(i), Integer.valueOf(i + COUNT)));
+            }
+            assertEquals(Integer.valueOf(i + COUNT), map.get(key(i)));
+        }
+        assertNull(map.replace(key(COUNT), Integer.valueOf(0)));
+        assertFalse(map.containsKey(key(COUNT)));
+        assertEquals(COUNT, map.size());
+    }
+
+    @Test(timeout = 60000L)
+    public void testRemove() {
+        final UnlockedReadHashMap<String, Integer> map = createMap();
+        for (int i = 0; i < COUNT; i ++) {
+            map.put(key(i), Integer.valueOf(i));
+        }
+        for (int i = 0; i < COUNT; i ++) {
+            if (i % 2 == 0) {
+                assertEquals(Integer.valueOf(i), map.remove(key(i)));
+                assertNull(map.remove(key(i)));
+            } else {
+                assertFalse(map.remove(key(i), Integer.valueOf(-1)));
+                assertTrue(map.remove(key(i), Integer.valueOf(i)));
+            }
+            assertNull(map.get(key(i)));
+            assertEquals(COUNT - i - 1, map.size());
+        }
+        map.put(key(0), Integer.valueOf(0));
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(key(0)));
+    }
+
+    @Test(timeout = 60000L)
+    public void testGetDuringConcurrentWrites() throws Exception {
+        final UnlockedReadHashMap<String, Integer> map = createMap();
+        final int threadCount = 4;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> problem = new AtomicReference<Throwable>();
+        final Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t ++) {
+            final int base = t * COUNT;
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < COUNT; i ++) {
+                            map.put(key(base + i), Integer.valueOf(base + i));
+                            // every key this thread has put so far must stay visible through the writes of the others
+                            for (int j = Math.max(0, i - 16); j <= i; j ++) {
+                                if (map.get(key(base + j)) == null) {
+                                    throw new AssertionError("Lost key " + key(base + j));
+                                }
+                            }
+                        }
+                    } catch (Throwable e) {
+                        problem.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (problem.get() != null) {
+            throw new AssertionError(problem.get());
+        }
+        assertEquals(threadCount * COUNT, map.size());
+        for (int i = 0; i < threadCount * COUNT; i ++) {
+            assertEquals(Integer.valueOf(i), map.get(key(i)));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.remoting3.remote;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ChannelIdAllocator}.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class ChannelIdAllocatorTestCase {
+
+    private static IntPredicate inSet(final Set<Integer> ids) {
+        return new IntPredicate() {
+            public boolean test(final int value) {
+                return ids.contains(Integer.valueOf(value));
+            }
+        };
+    }
+
+    @Test
+    public void testSequential() {
+        final ChannelIdAllocator allocator = new ChannelIdAllocator();
+        for (int i = 0; i < 100; i ++) {
+            final int id = allocator.next();
+            assertEquals(ChannelIdAllocator.LOCAL_FLAG | i, id);
+            assertTrue(ChannelIdAllocator.isLocal(id));
+        }
+    }
+
+    @Test
+    public void testWraparound() {
+        final ChannelIdAllocator allocator = new ChannelIdAllocator(ChannelIdAllocator.SEQUENCE_MASK - 1);
+        assertEquals(ChannelIdAllocator.LOCAL_FLAG | ChannelIdAllocator.SEQUENCE_MASK - 1, allocator.next());
+        assertEquals(ChannelIdAllocator.LOCAL_FLAG | ChannelIdAllocator.SEQUENCE_MASK, allocator.next());
+        // the counter runs into the MSB, which is set on every ID anyway
+        assertEquals(ChannelIdAllocator.LOCAL_FLAG, allocator.next());
+        assertEquals(ChannelIdAllocator.LOCAL_FLAG | 1, allocator.next());
+    }
+
+    @Test
+    public void testLiveIdsSkippedAfterWrap() {
+        final Set<Integer> live = new HashSet<Integer>();
+        live.add(Integer.valueOf(ChannelIdAllocator.LOCAL_FLAG));
+        live.add(Integer.valueOf(ChannelIdAllocator.LOCAL_FLAG | 1));
+        final ChannelIdAllocator allocator = new ChannelIdAllocator(ChannelIdAllocator.SEQUENCE_MASK);
+        assertEquals(ChannelIdAllocator.LOCAL_FLAG | ChannelIdAllocator.SEQUENCE_MASK, allocator.allocate(inSet(live), 2));
+        assertEquals(ChannelIdAllocator.LOCAL_FLAG | 2, allocator.allocate(inSet(live), 2));
+    }
+
+    @Test
+    public void testReuseAfterFree() {
+        final Set<Integer> live = new HashSet<Integer>();
+        live.add(Integer.valueOf(ChannelIdAllocator.LOCAL_FLAG));
+        live.add(Integer.valueOf(ChannelIdAllocator.LOCAL_FLAG | 1));
+        final ChannelIdAllocator allocator = new ChannelIdAllocator(ChannelIdAllocator.SEQUENCE_MASK);
+        assertEquals(ChannelIdAllocator.LOCAL_FLAG | ChannelIdAllocator.SEQUENCE_MASK, allocator.allocate(inSet(live), 2));
+        // once a channel is closed, its ID is handed out again when the counter comes round to it
+        live.remove(Integer.valueOf(ChannelIdAllocator.LOCAL_FLAG));
+        assertEquals(ChannelIdAllocator.LOCAL_FLAG, allocator.allocate(inSet(live), 2));
+    }
+
+    @Test
+    public void testExhaustion() {
+        final ChannelIdAllocator allocator = new ChannelIdAllocator();
+        final IntPredicate all = new IntPredicate() {
+            public boolean test(final int value) {
+                return true;
+            }
+        };
+        assertEquals(ChannelIdAllocator.NONE, allocator.allocate(all, 3));
+        // the search gives up after limit + 1 candidates
+        assertEquals(ChannelIdAllocator.LOCAL_FLAG | 4, allocator.next());
+        assertFalse(ChannelIdAllocator.isLocal(ChannelIdAllocator.NONE));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.remoting3.remote;
+
+import static org.junit.Assert.assertEquals;
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.Endpoint;
+import org.jboss.remoting3.Registration;
+import org.jboss.remoting3.RemotingOptions;
+import org.jboss.remoting3.spi.NetworkServerProvider;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wildfly.security.WildFlyElytronProvider;
+import org.wildfly.security.auth.AuthenticationConfiguration;
+import org.wildfly.security.auth.AuthenticationContext;
+import org.wildfly.security.auth.MatchRule;
+import org.wildfly.security.auth.principal.NamePrincipal;
+import org.wildfly.security.auth.provider.SecurityDomain;
+import org.wildfly.security.auth.provider.SimpleMapBackedSecurityRealm;
+import org.wildfly.security.password.PasswordFactory;
+import org.wildfly.security.password.spec.ClearPasswordSpec;
+import org.xnio.IoFuture;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.channels.AcceptingChannel;
+import org.xnio.channels.ConnectedStreamChannel;
+
+/**
+ * Tests for connections to a host name which resolves to several addresses.  The name is resolved by a test resolver
+ * to a dead address followed by the address the server listens on, so the connection can only be established by
+ * moving on from the first attempt.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class ConnectRaceTestCase {
+
+    private static final int PORT = 30123;
+    // a reserved name, so the platform name service never knows it
+    private static final String HOST_NAME = "race.invalid";
+    // a documentation address (RFC 5737), to which connection attempts go unanswered
+    private static final byte[] UNROUTABLE = { (byte) 192, 0, 2, 1 };
+    // a loopback address nothing listens on, to which connection attempts are refused at once
+    private static final byte[] REFUSING = { 127, 0, 0, 2 };
+    private static final byte[] LIVE = { 127, 0, 0, 1 };
+
+    private static volatile byte[] deadAddress;
+    private static Endpoint endpoint;
+    private static Registration registration;
+    private static AcceptingChannel<? extends ConnectedStreamChannel> server;
+    private static String providerName;
+
+    @BeforeClass
+    public static void create() throws Exception {
+        final WildFlyElytronProvider provider = new WildFlyElytronProvider();
+        Security.addProvider(provider);
+        providerName = provider.getName();
+        endpoint = Endpoint.builder().setEndpointName("test").build();
+        final AddressResolver resolver = new AddressResolver() {
+            public InetAddress[] resolve(final String hostName) throws UnknownHostException {
+                if (! HOST_NAME.equals(hostName)) {
+                    return AddressResolver.DEFAULT.resolve(hostName);
+                }
+                return new InetAddress[] { InetAddress.getByAddress(deadAddress), InetAddress.getByAddress(LIVE) };
+            }
+        };
+        registration = endpoint.addConnectionProvider("remote", new RemoteConnectionProviderFactory(resolver), OptionMap.create(Options.SSL_ENABLED, Boolean.FALSE));
+        final NetworkServerProvider networkServerProvider = endpoint.getConnectionProviderInterface("remote", NetworkServerProvider.class);
+        final SecurityDomain.Builder domainBuilder = SecurityDomain.builder();
+        final SimpleMapBackedSecurityRealm mainRealm = new SimpleMapBackedSecurityRealm();
+        domainBuilder.addRealm("mainRealm", mainRealm);
+        domainBuilder.setDefaultRealmName("mainRealm");
+        final PasswordFactory passwordFactory = PasswordFactory.getInstance("clear");
+        mainRealm.setPasswordMap(Collections.singletonMap(new NamePrincipal("bob"), passwordFactory.generatePassword(new ClearPasswordSpec("pass".toCharArray()))));
+        server = networkServerProvider.createServer(new InetSocketAddress(InetAddress.getByAddress(LIVE), PORT), OptionMap.EMPTY, domainBuilder.build());
+    }
+
+    @AfterClass
+    public static void destroy() throws IOException {
+        safeClose(server);
+        safeClose(endpoint);
+        safeClose(registration);
+        Security.removeProvider(providerName);
+    }
+
+    private static void connectAndClose(final OptionMap connectOptions) throws Exception {
+        final AuthenticationContext authenticationContext = AuthenticationContext.empty().with(MatchRule.ALL, AuthenticationConfiguration.EMPTY.useName("bob").usePassword("pass").allowSaslMechanisms("SCRAM-SHA-256"));
+        final IoFuture<Connection> futureConnection = endpoint.connect(new URI("remote://" + HOST_NAME + ":" + PORT), connectOptions, authenticationContext);
+        assertEquals(IoFuture.Status.DONE, futureConnection.await(10L, TimeUnit.SECONDS));
+        final Connection connection = futureConnection.get();
+        try {
+            assertEquals("test", connection.getRemoteEndpointName());
+        } finally {
+            safeClose(connection);
+        }
+    }
+
+    @Test
+    public void testUnansweredAttemptOvertaken() throws Exception {
+        deadAddress = UNROUTABLE;
+        // the first attempt hangs until the TCP connect timeout, far longer than the test waits
+        connectAndClose(OptionMap.create(RemotingOptions.CONNECTION_ATTEMPT_DELAY, Integer.valueOf(250)));
+    }
+
+    @Test
+    public void testFailedAttemptStartsNextImmediately() throws Exception {
+        deadAddress = REFUSING;
+        // a delay this long means that the connection can only complete in time if a failed attempt does not wait it out
+        connectAndClose(OptionMap.create(RemotingOptions.CONNECTION_ATTEMPT_DELAY, Integer.valueOf(60000)));
+    }
+}
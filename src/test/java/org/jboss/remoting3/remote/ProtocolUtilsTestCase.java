@@ -0,0 +1,164 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.remoting3.remote;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Tests for the varint and message frame header encodings of {@link ProtocolUtils}.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class ProtocolUtilsTestCase {
+
+    private static byte[] bytes(final int... values) {
+        final byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i ++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    private static byte[] writeVarInt(final int value) {
+        final ByteBuffer buffer = ByteBuffer.allocate(16);
+        ProtocolUtils.writeVarInt(buffer, value);
+        buffer.flip();
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void assertVarInt(final int value, final byte[] expected) {
+        final byte[] encoded = writeVarInt(value);
+        assertArrayEquals(expected, encoded);
+        assertEquals(expected.length, ProtocolUtils.varIntLength(value));
+        final ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        assertEquals(value, ProtocolUtils.readVarInt(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testVarIntBoundaries() {
+        assertVarInt(0, bytes(0x00));
+        assertVarInt(1, bytes(0x01));
+        assertVarInt(127, bytes(0x7f));
+        assertVarInt(128, bytes(0x80, 0x01));
+        assertVarInt((1 << 14) - 1, bytes(0xff, 0x7f));
+        assertVarInt(1 << 14, bytes(0x80, 0x80, 0x01));
+        assertVarInt((1 << 21) - 1, bytes(0xff, 0xff, 0x7f));
+        assertVarInt(1 << 21, bytes(0x80, 0x80, 0x80, 0x01));
+        assertVarInt(1 << 28, bytes(0x80, 0x80, 0x80, 0x80, 0x01));
+        assertVarInt(Integer.MAX_VALUE, bytes(0xff, 0xff, 0xff, 0xff, 0x07));
+        // values are unsigned
+        assertVarInt(Integer.MIN_VALUE, bytes(0x80, 0x80, 0x80, 0x80, 0x08));
+        assertVarInt(-1, bytes(0xff, 0xff, 0xff, 0xff, 0x0f));
+    }
+
+    @Test
+    public void testVarIntSequence() {
+        final ByteBuffer buffer = ByteBuffer.allocate(32);
+        ProtocolUtils.writeVarInt(buffer, 300);
+        ProtocolUtils.writeVarInt(buffer, 0);
+        ProtocolUtils.writeVarInt(buffer, Integer.MAX_VALUE);
+        buffer.flip();
+        assertEquals(300, ProtocolUtils.readVarInt(buffer));
+        assertEquals(0, ProtocolUtils.readVarInt(buffer));
+        assertEquals(Integer.MAX_VALUE, ProtocolUtils.readVarInt(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testCompactChannelId() {
+        final ByteBuffer buffer = ByteBuffer.allocate(16);
+        // the first local channel ID fits in a single byte, and is seen by the peer as a remote one
+        ChannelIdAllocator.writeCompactChannelId(buffer, ChannelIdAllocator.LOCAL_FLAG);
+        assertEquals(1, buffer.position());
+        assertEquals(1, ChannelIdAllocator.compactChannelIdLength(ChannelIdAllocator.LOCAL_FLAG));
+        ChannelIdAllocator.writeCompactChannelId(buffer, 63);
+        assertEquals(2, buffer.position());
+        ChannelIdAllocator.writeCompactChannelId(buffer, ChannelIdAllocator.LOCAL_FLAG | ChannelIdAllocator.SEQUENCE_MASK);
+        assertEquals(7, buffer.position());
+        buffer.flip();
+        assertEquals(0, ChannelIdAllocator.readCompactChannelId(buffer));
+        assertEquals(ChannelIdAllocator.LOCAL_FLAG | 63, ChannelIdAllocator.readCompactChannelId(buffer));
+        assertEquals(ChannelIdAllocator.SEQUENCE_MASK, ChannelIdAllocator.readCompactChannelId(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testCompactMessageDataFrame() {
+        final int channelId = ChannelIdAllocator.LOCAL_FLAG | 3;
+        final int messageId = 200;
+        final ByteBuffer buffer = ByteBuffer.allocate(64);
+        ProtocolUtils.writeMessageHeader(buffer, true, Protocol.MESSAGE_DATA, channelId, messageId);
+        buffer.put(0, (byte) (buffer.get(0) | Protocol.MSG_FLAG_NEW | Protocol.MSG_FLAG_EOF));
+        // type and flags, one byte of channel ID, two bytes of message ID
+        assertEquals(4, buffer.position());
+        assertEquals(4, ProtocolUtils.messageDataHeaderLength(true, channelId, messageId));
+        buffer.put((byte) 42);
+        buffer.flip();
+        // read it the way the peer does
+        final int protoId = buffer.get() & 0xff;
+        assertEquals(Protocol.MESSAGE_DATA_COMPACT, protoId & Protocol.MESSAGE_DATA_COMPACT_MASK);
+        assertEquals(Protocol.MSG_FLAG_NEW | Protocol.MSG_FLAG_EOF, protoId & ~Protocol.MESSAGE_DATA_COMPACT_MASK);
+        assertEquals(3, ChannelIdAllocator.readCompactChannelId(buffer));
+        assertEquals(messageId, ProtocolUtils.readVarInt(buffer));
+        assertEquals(42, buffer.get());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testCompactWindowOpenFrame() {
+        final ByteBuffer buffer = ByteBuffer.allocate(64);
+        ProtocolUtils.writeMessageHeader(buffer, true, Protocol.MESSAGE_WINDOW_OPEN, 5, 1 << 14);
+        assertEquals(1 + 1 + 3, buffer.position());
+        buffer.flip();
+        assertEquals(Protocol.MESSAGE_WINDOW_OPEN, buffer.get());
+        assertEquals(ChannelIdAllocator.LOCAL_FLAG | 5, ChannelIdAllocator.readCompactChannelId(buffer));
+        assertEquals(1 << 14, ProtocolUtils.readVarInt(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testFixedMessageDataFrame() {
+        final int channelId = ChannelIdAllocator.LOCAL_FLAG | 3;
+        final ByteBuffer buffer = ByteBuffer.allocate(64);
+        ProtocolUtils.writeMessageHeader(buffer, false, Protocol.MESSAGE_DATA, channelId, 0xfffe);
+        buffer.put((byte) (Protocol.MSG_FLAG_NEW | Protocol.MSG_FLAG_EOF));
+        assertEquals(8, buffer.position());
+        assertEquals(8, ProtocolUtils.messageDataHeaderLength(false, channelId, 0xfffe));
+        buffer.flip();
+        assertEquals(Protocol.MESSAGE_DATA, buffer.get());
+        assertEquals(3, ChannelIdAllocator.readChannelId(buffer));
+        assertEquals(0xfffe, buffer.getShort() & 0xffff);
+        assertEquals(Protocol.MSG_FLAG_NEW | Protocol.MSG_FLAG_EOF, buffer.get());
+        assertFalse(buffer.hasRemaining());
+    }
+}
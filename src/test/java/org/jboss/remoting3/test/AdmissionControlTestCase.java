@@ -0,0 +1,149 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.RemotingOptions;
+import org.jboss.remoting3.remote.RemoteServerMXBean;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xnio.IoFuture;
+import org.xnio.OptionMap;
+
+/**
+ * Tests for the server's cap on connections in their handshake.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class AdmissionControlTestCase {
+
+    private static final int HANDSHAKE_TIMEOUT = 2000;
+
+    private static TestServer server;
+
+    @BeforeClass
+    public static void create() throws Exception {
+        server = new TestServer("127.0.0.1", OptionMap.create(RemotingOptions.MAX_INBOUND_HANDSHAKES, 1, RemotingOptions.INBOUND_HANDSHAKE_TIMEOUT, HANDSHAKE_TIMEOUT));
+    }
+
+    @AfterClass
+    public static void destroy() throws IOException {
+        safeClose(server);
+    }
+
+    private static RemoteServerMXBean getServerMXBean() throws Exception {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final Set<ObjectName> names = mBeanServer.queryNames(new ObjectName("jboss.remoting.server:*"), null);
+        assertEquals(1, names.size());
+        return JMX.newMXBeanProxy(mBeanServer, names.iterator().next(), RemoteServerMXBean.class);
+    }
+
+    private static void awaitHandshakeInProgress(final RemoteServerMXBean serverMXBean) throws InterruptedException {
+        for (int i = 0; i < 100 && serverMXBean.getHandshakesInProgress() == 0; i ++) {
+            Thread.sleep(50L);
+        }
+    }
+
+    private static void assertClosedByServer(final Socket socket) throws IOException {
+        // the greeting may still be waiting to be read
+        final InputStream inputStream = socket.getInputStream();
+        while (inputStream.read() != -1) {
+        }
+    }
+
+    @Test
+    public void testHandshakeLimit() throws Exception {
+        final RemoteServerMXBean serverMXBean = getServerMXBean();
+        assertEquals(1, serverMXBean.getMaxHandshakes());
+        // a client which never answers the greeting holds the only handshake slot
+        final Socket stalled = new Socket("127.0.0.1", TestServer.PORT);
+        final IoFuture<Connection> futureConnection;
+        try {
+            // make sure that the stalled client is the one which got the slot
+            awaitHandshakeInProgress(serverMXBean);
+            futureConnection = server.connect(OptionMap.EMPTY);
+            assertEquals(IoFuture.Status.WAITING, futureConnection.await(1L, TimeUnit.SECONDS));
+            assertEquals(1, serverMXBean.getHandshakesInProgress());
+            assertTrue(serverMXBean.isAcceptPaused());
+        } finally {
+            stalled.close();
+        }
+        assertEquals(IoFuture.Status.DONE, futureConnection.await(10L, TimeUnit.SECONDS));
+        final Connection connection = futureConnection.get();
+        try {
+            assertEquals("test", connection.getRemoteEndpointName());
+            assertTrue(serverMXBean.getAcceptPauseCount() >= 1);
+            assertTrue(serverMXBean.getAcceptedCount() >= 2);
+        } finally {
+            safeClose(connection);
+        }
+    }
+
+    @Test
+    public void testStalledHandshakesTimeOut() throws Exception {
+        final RemoteServerMXBean serverMXBean = getServerMXBean();
+        final long timeouts = serverMXBean.getHandshakeTimeoutCount();
+        // clients which connect and then go silent take the only handshake slot and the backlog ahead of a real client
+        final Socket[] stalled = new Socket[2];
+        try {
+            for (int i = 0; i < stalled.length; i ++) {
+                stalled[i] = new Socket("127.0.0.1", TestServer.PORT);
+                stalled[i].setSoTimeout(4 * HANDSHAKE_TIMEOUT);
+            }
+            awaitHandshakeInProgress(serverMXBean);
+            final IoFuture<Connection> futureConnection = server.connect(OptionMap.EMPTY);
+            // each stalled client is closed when its handshake times out, which lets the next connection in
+            assertEquals(IoFuture.Status.DONE, futureConnection.await(6L * HANDSHAKE_TIMEOUT, TimeUnit.MILLISECONDS));
+            final Connection connection = futureConnection.get();
+            try {
+                assertEquals("test", connection.getRemoteEndpointName());
+            } finally {
+                safeClose(connection);
+            }
+            for (Socket socket : stalled) {
+                assertClosedByServer(socket);
+            }
+            assertTrue(serverMXBean.getHandshakeTimeoutCount() >= timeouts + stalled.length);
+        } finally {
+            for (Socket socket : stalled) {
+                if (socket != null) socket.close();
+            }
+        }
+    }
+}
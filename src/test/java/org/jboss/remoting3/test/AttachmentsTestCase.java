@@ -0,0 +1,104 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.jboss.remoting3.Attachments;
+import org.junit.Test;
+
+/**
+ * Tests for {@link Attachments}, across the growth from an empty store to a hash table and back.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class AttachmentsTestCase {
+
+    private static final int KEY_COUNT = 20;
+
+    @SuppressWarnings("unchecked")
+    private static Attachments.Key<String>[] keys() {
+        final Attachments.Key<String>[] keys = new Attachments.Key[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i ++) {
+            keys[i] = new Attachments.Key<String>(String.class);
+        }
+        return keys;
+    }
+
+    @Test
+    public void testEmpty() {
+        final Attachments attachments = new Attachments();
+        final Attachments.Key<String> key = new Attachments.Key<String>(String.class);
+        assertNull(attachments.getAttachment(key));
+        assertNull(attachments.removeAttachment(key));
+        assertFalse(attachments.removeAttachment(key, "value"));
+        assertFalse(attachments.replaceAttachment(key, "value", "other"));
+    }
+
+    @Test
+    public void testAttachAndRemove() {
+        final Attachments attachments = new Attachments();
+        final Attachments.Key<String>[] keys = keys();
+        for (int i = 0; i < KEY_COUNT; i ++) {
+            assertNull(attachments.attach(keys[i], "value" + i));
+            for (int j = 0; j <= i; j ++) {
+                assertEquals("value" + j, attachments.getAttachment(keys[j]));
+            }
+        }
+        for (int i = 0; i < KEY_COUNT; i ++) {
+            assertEquals("value" + i, attachments.removeAttachment(keys[i]));
+            assertNull(attachments.getAttachment(keys[i]));
+            for (int j = i + 1; j < KEY_COUNT; j ++) {
+                assertEquals("value" + j, attachments.getAttachment(keys[j]));
+            }
+        }
+        assertNull(attachments.attach(keys[0], "again"));
+        assertEquals("again", attachments.getAttachment(keys[0]));
+    }
+
+    @Test
+    public void testConditionalOperations() {
+        final Attachments.Key<String>[] keys = keys();
+        // once with a few keys (inline) and once with many (table)
+        for (int count : new int[] { 2, KEY_COUNT }) {
+            final Attachments attachments = new Attachments();
+            for (int i = 0; i < count; i ++) {
+                attachments.attach(keys[i], "value" + i);
+            }
+            final Attachments.Key<String> key = keys[1];
+            assertEquals("value1", attachments.attachIfAbsent(key, "other"));
+            assertEquals("value1", attachments.getAttachment(key));
+            assertFalse(attachments.replaceAttachment(key, "wrong", "other"));
+            assertTrue(attachments.replaceAttachment(key, "value1", "other"));
+            assertEquals("other", attachments.getAttachment(key));
+            assertEquals("other", attachments.attach(key, "value1"));
+            assertFalse(attachments.removeAttachment(key, "wrong"));
+            assertTrue(attachments.removeAttachment(key, "value1"));
+            assertNull(attachments.attachIfAbsent(key, "value1"));
+            assertEquals("value0", attachments.getAttachment(keys[0]));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.remoting3.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.jboss.remoting3.AuthenticationExecutorMXBean;
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.Endpoint;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xnio.OptionMap;
+
+/**
+ * Tests for the endpoint's dedicated authentication executor.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class AuthenticationExecutorTestCase {
+
+    private static TestServer server;
+
+    @BeforeClass
+    public static void create() throws Exception {
+        server = new TestServer(Endpoint.builder().setEndpointName("test").setAuthenticationThreads(1).setAuthenticationQueueLimit(4), "::1", OptionMap.EMPTY);
+    }
+
+    @AfterClass
+    public static void destroy() throws IOException {
+        safeClose(server);
+    }
+
+    private static AuthenticationExecutorMXBean getExecutorMXBean() throws Exception {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final Set<ObjectName> names = mBeanServer.queryNames(new ObjectName("jboss.remoting.authentication:name=" + ObjectName.quote("test-" + server.getEndpoint().hashCode())), null);
+        assertEquals(1, names.size());
+        return JMX.newMXBeanProxy(mBeanServer, names.iterator().next(), AuthenticationExecutorMXBean.class);
+    }
+
+    @Test
+    public void testAuthenticationRunsOnExecutor() throws Exception {
+        final AuthenticationExecutorMXBean executorMXBean = getExecutorMXBean();
+        assertEquals(1, executorMXBean.getMaximumThreadCount());
+        assertEquals(4, executorMXBean.getQueueLimit());
+        final long before = executorMXBean.getCompletedTaskCount();
+        final Connection connection = server.connect(OptionMap.EMPTY).get();
+        try {
+            assertEquals("test", connection.getRemoteEndpointName());
+            // the last client step completes the connection from within its task, so give it a moment to be counted
+            for (int i = 0; i < 100 && executorMXBean.getCompletedTaskCount() == before; i ++) {
+                Thread.sleep(50L);
+            }
+            assertTrue(executorMXBean.getCompletedTaskCount() > before);
+            assertEquals(0L, executorMXBean.getRejectedTaskCount());
+        } finally {
+            safeClose(connection);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidThreadCount() {
+        Endpoint.builder().setAuthenticationThreads(0);
+    }
+}
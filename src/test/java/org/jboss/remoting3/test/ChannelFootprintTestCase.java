@@ -0,0 +1,172 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.PrivilegedAction;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.jboss.logging.Logger;
+import org.jboss.remoting3.Channel;
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.Endpoint;
+import org.jboss.remoting3.OpenListener;
+import org.jboss.remoting3.Registration;
+import org.jboss.remoting3.RemotingOptions;
+import org.jboss.remoting3.remote.RemoteConnectionProviderFactory;
+import org.jboss.remoting3.spi.NetworkServerProvider;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wildfly.security.WildFlyElytronProvider;
+import org.wildfly.security.auth.AuthenticationConfiguration;
+import org.wildfly.security.auth.AuthenticationContext;
+import org.wildfly.security.auth.MatchRule;
+import org.wildfly.security.auth.principal.NamePrincipal;
+import org.wildfly.security.auth.provider.SecurityDomain;
+import org.wildfly.security.auth.provider.SimpleMapBackedSecurityRealm;
+import org.wildfly.security.password.PasswordFactory;
+import org.wildfly.security.password.spec.ClearPasswordSpec;
+import org.xnio.IoFuture;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.channels.AcceptingChannel;
+import org.xnio.channels.ConnectedStreamChannel;
+
+/**
+ * Measures the heap retained by idle remote channels, to catch regressions in the per-channel footprint.  Each
+ * channel is counted once for its client side and once for its server side, since both live in this VM.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class ChannelFootprintTestCase {
+
+    private static final int CHANNEL_COUNT = 400;
+
+    /**
+     * The most heap that one idle channel (both ends) may retain.
+     */
+    private static final long MAX_BYTES_PER_CHANNEL = 8 * 1024;
+
+    private static Endpoint endpoint;
+    private static Registration registration;
+    private static AcceptingChannel<? extends ConnectedStreamChannel> streamServer;
+    private static String providerName;
+
+    @BeforeClass
+    public static void create() throws Exception {
+        final WildFlyElytronProvider provider = new WildFlyElytronProvider();
+        Security.addProvider(provider);
+        providerName = provider.getName();
+        endpoint = Endpoint.builder().setEndpointName("test").build();
+        registration = endpoint.addConnectionProvider("remote", new RemoteConnectionProviderFactory(), OptionMap.create(Options.SSL_ENABLED, Boolean.FALSE));
+        final NetworkServerProvider networkServerProvider = endpoint.getConnectionProviderInterface("remote", NetworkServerProvider.class);
+        final SecurityDomain.Builder domainBuilder = SecurityDomain.builder();
+        final SimpleMapBackedSecurityRealm mainRealm = new SimpleMapBackedSecurityRealm();
+        domainBuilder.addRealm("mainRealm", mainRealm);
+        domainBuilder.setDefaultRealmName("mainRealm");
+        final PasswordFactory passwordFactory = PasswordFactory.getInstance("clear");
+        mainRealm.setPasswordMap(Collections.singletonMap(new NamePrincipal("bob"), passwordFactory.generatePassword(new ClearPasswordSpec("pass".toCharArray()))));
+        streamServer = networkServerProvider.createServer(new InetSocketAddress("::1", 30123), OptionMap.create(RemotingOptions.MAX_INBOUND_CHANNELS, CHANNEL_COUNT + 1), domainBuilder.build());
+    }
+
+    @AfterClass
+    public static void destroy() throws IOException {
+        safeClose(streamServer);
+        safeClose(endpoint);
+        safeClose(registration);
+        Security.removeProvider(providerName);
+    }
+
+    @Test
+    public void testIdleChannelFootprint() throws Exception {
+        final List<Channel> serverChannels = new CopyOnWriteArrayList<Channel>();
+        final Registration serviceRegistration = endpoint.registerService("org.jboss.test.footprint", new OpenListener() {
+            public void channelOpened(final Channel channel) {
+                serverChannels.add(channel);
+            }
+
+            public void registrationTerminated() {
+            }
+        }, OptionMap.EMPTY);
+        final IoFuture<Connection> futureConnection = AuthenticationContext.empty().with(MatchRule.ALL, AuthenticationConfiguration.EMPTY.useName("bob").usePassword("pass").allowSaslMechanisms("SCRAM-SHA-256")).run(new PrivilegedAction<IoFuture<Connection>>() {
+            public IoFuture<Connection> run() {
+                try {
+                    return endpoint.connect(new URI("remote://[::1]:30123"), OptionMap.create(RemotingOptions.MAX_OUTBOUND_CHANNELS, CHANNEL_COUNT + 1));
+                } catch (IOException | URISyntaxException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        final Connection connection = futureConnection.get();
+        final List<Channel> clientChannels = new ArrayList<Channel>(CHANNEL_COUNT);
+        try {
+            // warm up with one channel so that class loading and one-time allocations are not counted
+            clientChannels.add(connection.openChannel("org.jboss.test.footprint", OptionMap.EMPTY).get());
+            final long before = usedHeap();
+            for (int i = 1; i < CHANNEL_COUNT; i ++) {
+                clientChannels.add(connection.openChannel("org.jboss.test.footprint", OptionMap.EMPTY).get());
+            }
+            final long after = usedHeap();
+            assertEquals(CHANNEL_COUNT, clientChannels.size());
+            final long perChannel = (after - before) / (CHANNEL_COUNT - 1);
+            Logger.getLogger("TEST").infof("Idle channel footprint is approximately %d bytes (client and server side)", Long.valueOf(perChannel));
+            assertTrue("Idle channel retains " + perChannel + " bytes, which exceeds " + MAX_BYTES_PER_CHANNEL, perChannel <= MAX_BYTES_PER_CHANNEL);
+        } finally {
+            for (Channel channel : clientChannels) {
+                safeClose(channel);
+            }
+            for (Channel channel : serverChannels) {
+                safeClose(channel);
+            }
+            safeClose(connection);
+            serviceRegistration.close();
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        // take the lowest of a few readings, since the collector may not reclaim everything on the first pass
+        for (int i = 0; i < 5; i ++) {
+            System.gc();
+            System.runFinalization();
+            Thread.sleep(50L);
+            used = Math.min(used, memoryMXBean.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.test;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.PrivilegedAction;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.remoting3.Channel;
+import org.jboss.remoting3.CloseHandler;
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.Endpoint;
+import org.jboss.remoting3.NotOpenException;
+import org.jboss.remoting3.OpenListener;
+import org.jboss.remoting3.Registration;
+import org.jboss.remoting3.RemotingOptions;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wildfly.security.auth.AuthenticationContext;
+import org.xnio.IoFuture;
+import org.xnio.OptionMap;
+
+/**
+ * Tests for the connection pool behind {@link Endpoint#getConnection(URI, OptionMap)}.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class ConnectionPoolTestCase {
+
+    private static TestServer server;
+    private static Registration serviceRegistration;
+    private static AuthenticationContext authenticationContext;
+
+    @BeforeClass
+    public static void create() throws Exception {
+        server = new TestServer("localhost", OptionMap.EMPTY);
+        serviceRegistration = server.getEndpoint().registerService("org.jboss.test.pool", new OpenListener() {
+            public void channelOpened(final Channel channel) {
+            }
+
+            public void registrationTerminated() {
+            }
+        }, OptionMap.EMPTY);
+        authenticationContext = TestServer.createAuthenticationContext();
+    }
+
+    @AfterClass
+    public static void destroy() throws IOException {
+        safeClose(serviceRegistration);
+        safeClose(server);
+    }
+
+    private static Connection getConnection(final OptionMap connectOptions) throws IOException {
+        return authenticationContext.run(new PrivilegedAction<IoFuture<Connection>>() {
+            public IoFuture<Connection> run() {
+                try {
+                    return server.getEndpoint().getConnection(server.getUri("remote"), connectOptions);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }).get();
+    }
+
+    /**
+     * Get the shared connection behind a lease, which is the connection of the channels opened through it.
+     */
+    private static Connection shared(final Connection lease) throws IOException {
+        final Channel channel = lease.openChannel("org.jboss.test.pool", OptionMap.EMPTY).get();
+        try {
+            return channel.getConnection();
+        } finally {
+            safeClose(channel);
+        }
+    }
+
+    @Test
+    public void testConnectionIsShared() throws Exception {
+        final Connection first = getConnection(OptionMap.EMPTY);
+        final Connection second = getConnection(OptionMap.EMPTY);
+        assertNotSame(first, second);
+        assertSame(shared(first), shared(second));
+    }
+
+    @Test
+    public void testCloseReleasesOnlyTheLease() throws Exception {
+        final Connection first = getConnection(OptionMap.EMPTY);
+        final Connection second = getConnection(OptionMap.EMPTY);
+        final Connection connection = shared(first);
+        first.close();
+        try {
+            first.openChannel("org.jboss.test.pool", OptionMap.EMPTY).get();
+            fail("Expected NotOpenException");
+        } catch (NotOpenException expected) {
+        }
+        assertSame(connection, shared(second));
+        assertSame(connection, shared(getConnection(OptionMap.EMPTY)));
+    }
+
+    @Test
+    public void testLeaseClosesWithConnection() throws Exception {
+        final OptionMap options = OptionMap.create(RemotingOptions.MAX_OUTBOUND_CHANNELS, 11);
+        final Connection lease = getConnection(options);
+        final CountDownLatch closed = new CountDownLatch(1);
+        lease.addCloseHandler(new CloseHandler<Connection>() {
+            public void handleClose(final Connection closedConnection, final IOException exception) {
+                closed.countDown();
+            }
+        });
+        shared(lease).close();
+        assertTrue(closed.await(10L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testOptionsArePartOfKey() throws Exception {
+        final Connection plain = shared(getConnection(OptionMap.EMPTY));
+        final Connection other = shared(getConnection(OptionMap.create(RemotingOptions.MAX_OUTBOUND_CHANNELS, 7)));
+        assertNotSame(plain, other);
+        assertSame(other, shared(getConnection(OptionMap.create(RemotingOptions.MAX_OUTBOUND_CHANNELS, 7))));
+    }
+
+    @Test
+    public void testChannelsSpreadOverPool() throws Exception {
+        final OptionMap options = OptionMap.create(RemotingOptions.CONNECTION_POOL_SIZE, 2);
+        final Channel channel = getConnection(options).openChannel("org.jboss.test.pool", OptionMap.EMPTY).get();
+        try {
+            // the first connection is busy, so the pool grows
+            final Channel otherChannel = getConnection(options).openChannel("org.jboss.test.pool", OptionMap.EMPTY).get();
+            try {
+                assertNotSame(channel.getConnection(), otherChannel.getConnection());
+                // both are busy and the pool is full, so one of them is shared
+                final Connection third = shared(getConnection(options));
+                assertTrue(third == channel.getConnection() || third == otherChannel.getConnection());
+            } finally {
+                safeClose(otherChannel);
+            }
+        } finally {
+            safeClose(channel);
+        }
+    }
+
+    @Test
+    public void testPoolUsableAfterIdleClose() throws Exception {
+        final OptionMap options = OptionMap.builder()
+                .set(RemotingOptions.CONNECTION_POOL_IDLE_TIMEOUT, 200)
+                .set(RemotingOptions.MAX_OUTBOUND_CHANNELS, 9)
+                .getMap();
+        final Connection first = shared(getConnection(options));
+        final CountDownLatch closed = new CountDownLatch(1);
+        first.addCloseHandler(new CloseHandler<Connection>() {
+            public void handleClose(final Connection closedConnection, final IOException exception) {
+                closed.countDown();
+            }
+        });
+        // the idle connection is closed, which empties the pool and evicts it from the endpoint
+        assertTrue(closed.await(10L, TimeUnit.SECONDS));
+        final Channel channel = getConnection(options).openChannel("org.jboss.test.pool", OptionMap.EMPTY).get();
+        try {
+            assertNotSame(first, channel.getConnection());
+            assertSame(channel.getConnection(), shared(getConnection(options)));
+        } finally {
+            safeClose(channel);
+        }
+    }
+}
@@ -38,6 +38,7 @@ import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.jboss.logging.Logger;
 import org.jboss.remoting3.Channel;
+import org.jboss.remoting3.ChannelBusyException;
 import org.jboss.remoting3.Connection;
 import org.jboss.remoting3.Endpoint;
 import org.jboss.remoting3.MessageInputStream;
@@ -318,5 +319,61 @@ public class ConnectionTestCase {
         }
     }
 
+    @Test
+    public void testLocalChannelOptions() throws Exception {
+        serverEndpoint.registerService("test", new OpenListener() {
+            @Override
+            public void channelOpened(Channel channel) {
+                //
+            }
+
+            @Override
+            public void registrationTerminated() {
+                //
+            }
+        }, OptionMap.create(RemotingOptions.RECEIVE_WINDOW_SIZE, MAX_SERVER_RECEIVE, RemotingOptions.TRANSMIT_WINDOW_SIZE, MAX_SERVER_TRANSMIT, RemotingOptions.MAX_INBOUND_MESSAGES, 10));
+
+        final Connection connection = AuthenticationContext.empty().with(MatchRule.ALL, AuthenticationConfiguration.EMPTY.useName("bob").usePassword("pass").allowSaslMechanisms("SCRAM-SHA-256")).run(new PrivilegedAction<Connection>() {
+            public Connection run() {
+                try {
+                    return serverEndpoint.connect(new URI("local://localhost"), OptionMap.EMPTY).get();
+                } catch (IOException | URISyntaxException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        try {
+            Channel channel = connection.openChannel("test", OptionMap.create(RemotingOptions.RECEIVE_WINDOW_SIZE, 0x8000, RemotingOptions.TRANSMIT_WINDOW_SIZE, 0x12000)).get();
+            try {
+                Assert.assertTrue(channel.supportsOption(RemotingOptions.MAX_OUTBOUND_MESSAGES));
+                Assert.assertEquals("transmit", 0x12000, (int) channel.getOption(RemotingOptions.TRANSMIT_WINDOW_SIZE));
+                Assert.assertEquals("receive", 0x8000, (int) channel.getOption(RemotingOptions.RECEIVE_WINDOW_SIZE));
+                Assert.assertEquals("outbound messages", 10, (int) channel.getOption(RemotingOptions.MAX_OUTBOUND_MESSAGES));
+                Assert.assertEquals("inbound messages", RemotingOptions.INCOMING_CHANNEL_DEFAULT_MAX_OUTBOUND_MESSAGES, (int) channel.getOption(RemotingOptions.MAX_INBOUND_MESSAGES));
+            } finally {
+                channel.close();
+            }
+            channel = connection.openChannel("test", OptionMap.create(RemotingOptions.RECEIVE_WINDOW_SIZE, 0x24000, RemotingOptions.TRANSMIT_WINDOW_SIZE, 0x24000)).get();
+            try {
+                Assert.assertEquals("transmit", MAX_SERVER_RECEIVE, (int) channel.getOption(RemotingOptions.TRANSMIT_WINDOW_SIZE));
+                Assert.assertEquals("receive", MAX_SERVER_TRANSMIT, (int) channel.getOption(RemotingOptions.RECEIVE_WINDOW_SIZE));
+                // nobody reads on the other side, so the messages stay open
+                for (int i = 0; i < 10; i ++) {
+                    channel.writeMessage().close();
+                }
+                try {
+                    channel.writeMessage();
+                    fail();
+                } catch (ChannelBusyException e) {
+                    // ok
+                }
+            } finally {
+                channel.close();
+            }
+        } finally {
+            IoUtils.safeClose(connection);
+        }
+    }
+
 
 }
@@ -0,0 +1,177 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.remoting3.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jboss.remoting3._private.Equaller;
+import org.jboss.remoting3._private.IntIndexHashMap;
+import org.jboss.remoting3._private.IntIndexer;
+import org.junit.Test;
+
+/**
+ * Tests for {@link IntIndexHashMap}, in particular of the paths which are only taken once the table has resized.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class IntIndexHashMapTestCase {
+
+    private static final IntIndexer<Item> INDEXER = new IntIndexer<Item>() {
+        public int getKey(final Item argument) {
+            return argument.key;
+        }
+    };
+
+    private static final int COUNT = 1000;
+
+    static final class Item {
+        final int key;
+
+        Item(final int key) {
+            this.key = key;
+        }
+
+        public String toString() {
+            return "item " + key;
+        }
+    }
+
+    private static IntIndexHashMap<Item> createMap() {
+        return new IntIndexHashMap<Item>(INDEXER, Equaller.IDENTITY, 2, 0.6f);
+    }
+
+    // keys which share their low bits land in the same row of every table smaller than 1 << 16
+    private static int collidingKey(final int i) {
+        return i << 16;
+    }
+
+    @Test(timeout = 60000L)
+    public void testResizeWithCollidingKeys() {
+        final IntIndexHashMap<Item> map = createMap();
+        final Item[] items = new Item[COUNT];
+        for (int i = 0; i < COUNT; i ++) {
+            items[i] = new Item(i % 2 == 0 ? collidingKey(i) : i);
+            assertNull(map.putIfAbsent(items[i]));
+        }
+        assertEquals(COUNT, map.size());
+        for (int i = 0; i < COUNT; i ++) {
+            assertSame(items[i], map.get(items[i].key));
+            assertTrue(map.containsKey(items[i].key));
+        }
+        assertFalse(map.containsKey(collidingKey(COUNT)));
+    }
+
+    @Test(timeout = 60000L)
+    public void testReplaceAfterResize() {
+        final IntIndexHashMap<Item> map = createMap();
+        final Item[] items = new Item[COUNT];
+        for (int i = 0; i < COUNT; i ++) {
+            items[i] = new Item(collidingKey(i) | lowBits(i));
+            map.put(items[i]);
+        }
+        for (int i = 0; i < COUNT; i ++) {
+            final Item replacement = new Item(items[i].key);
+            if (i % 2 == 0) {
+                assertSame(items[i], map.replace(replacement));
+            } else {
+                assertTrue(map.replace(items[i], replacement));
+                assertFalse(map.replace(items[i], new Item(items[i].key)));
+            }
+            assertSame(replacement, map.get(items[i].key));
+            items[i] = replacement;
+        }
+        assertEquals(COUNT, map.size());
+    }
+
+    @Test(timeout = 60000L)
+    public void testRemoveAfterResize() {
+        final IntIndexHashMap<Item> map = createMap();
+        final Item[] items = new Item[COUNT];
+        for (int i = 0; i < COUNT; i ++) {
+            items[i] = new Item(collidingKey(i) | lowBits(i));
+            map.put(items[i]);
+        }
+        for (int i = 0; i < COUNT; i ++) {
+            if (i % 2 == 0) {
+                assertSame(items[i], map.removeKey(items[i].key));
+            } else {
+                assertTrue(map.remove(items[i]));
+                assertFalse(map.remove(items[i]));
+            }
+            assertNull(map.get(items[i].key));
+            assertEquals(COUNT - i - 1, map.size());
+        }
+    }
+
+    @Test(timeout = 60000L)
+    public void testGetDuringConcurrentResize() throws Exception {
+        final IntIndexHashMap<Item> map = createMap();
+        final int threadCount = 4;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> problem = new AtomicReference<Throwable>();
+        final Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t ++) {
+            final int base = t * COUNT;
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < COUNT; i ++) {
+                            map.put(new Item(collidingKey(base + i) | lowBits(base + i)));
+                            // every key this thread has put so far must stay visible through the resizes of the others
+                            for (int j = Math.max(0, i - 16); j <= i; j ++) {
+                                final int key = collidingKey(base + j) | lowBits(base + j);
+                                if (map.get(key) == null) {
+                                    throw new AssertionError("Lost key " + key);
+                                }
+                            }
+                        }
+                    } catch (Throwable e) {
+                        problem.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (problem.get() != null) {
+            throw new AssertionError(problem.get());
+        }
+        assertEquals(threadCount * COUNT, map.size());
+    }
+
+    private static int lowBits(final int i) {
+        return i & 0xff;
+    }
+}
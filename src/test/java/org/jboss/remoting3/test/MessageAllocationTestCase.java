@@ -0,0 +1,200 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.remoting3.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.logging.Logger;
+import org.jboss.remoting3.Channel;
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.MessageInputStream;
+import org.jboss.remoting3.MessageOutputStream;
+import org.jboss.remoting3.OpenListener;
+import org.jboss.remoting3.Registration;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xnio.OptionMap;
+
+/**
+ * Checks the heap allocated per message on the send and receive paths against a budget, so that a change which adds
+ * garbage to the message path fails the build.  Allocation is summed over every thread of the VM, since a message
+ * passes through the sending thread, the I/O threads and the executor.
+ * <p>
+ * A budget may be overridden with the {@code remoting.allocation.budget.<scenario>} system property, in bytes per
+ * message.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class MessageAllocationTestCase {
+
+    private static final String SERVICE_NAME = "org.jboss.test.allocation";
+    private static final int WARMUP_MESSAGES = 2000;
+    private static final int MESSAGES = 5000;
+
+    private static TestServer server;
+    private static Registration serviceRegistration;
+    private static com.sun.management.ThreadMXBean threadMXBean;
+    private static final Semaphore received = new Semaphore(0);
+
+    @BeforeClass
+    public static void create() throws Exception {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        // buffer leak debugging records a stack trace for every buffer
+        Assume.assumeTrue(! Boolean.getBoolean("jboss.remoting.debug-buffer-leaks"));
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        server = new TestServer("::1", OptionMap.EMPTY);
+        serviceRegistration = server.getEndpoint().registerService(SERVICE_NAME, new OpenListener() {
+            public void channelOpened(final Channel channel) {
+                channel.receiveMessage(new Channel.Receiver() {
+                    private final byte[] buffer = new byte[8192];
+
+                    public void handleError(final Channel channel, final IOException error) {
+                    }
+
+                    public void handleEnd(final Channel channel) {
+                    }
+
+                    public void handleMessage(final Channel channel, final MessageInputStream message) {
+                        channel.receiveMessage(this);
+                        try {
+                            while (message.read(buffer) != -1);
+                        } catch (IOException ignored) {
+                        } finally {
+                            safeClose(message);
+                            received.release();
+                        }
+                    }
+                });
+            }
+
+            public void registrationTerminated() {
+            }
+        }, OptionMap.EMPTY);
+    }
+
+    @AfterClass
+    public static void destroy() throws IOException {
+        safeClose(serviceRegistration);
+        safeClose(server);
+    }
+
+    @Test
+    public void testRemoteSmallMessage() throws Exception {
+        checkBudget("remote", 64, 4096L);
+    }
+
+    @Test
+    public void testRemoteLargeMessage() throws Exception {
+        checkBudget("remote", 65536, 16384L);
+    }
+
+    @Test
+    public void testLocalSmallMessage() throws Exception {
+        checkBudget("local", 64, 4096L);
+    }
+
+    @Test
+    public void testLocalLargeMessage() throws Exception {
+        checkBudget("local", 65536, 16384L);
+    }
+
+    private void checkBudget(final String scheme, final int size, final long defaultBudget) throws Exception {
+        final String scenario = scheme + "-" + size;
+        final long budget = Long.getLong("remoting.allocation.budget." + scenario, defaultBudget).longValue();
+        final Connection connection = server.getEndpoint().connect(server.getUri(scheme), OptionMap.EMPTY, TestServer.createAuthenticationContext()).get();
+        try {
+            final Channel channel = connection.openChannel(SERVICE_NAME, OptionMap.EMPTY).get();
+            try {
+                final byte[] payload = new byte[size];
+                // warm up so that class loading, compilation and buffer pool growth are not counted
+                sendMessages(channel, payload, WARMUP_MESSAGES);
+                final Map<Long, Long> before = allocatedBytes();
+                sendMessages(channel, payload, MESSAGES);
+                final long perMessage = allocatedBytesSince(before) / MESSAGES;
+                Logger.getLogger("TEST").infof("Message path allocates approximately %d bytes per message (%s, budget %d)", Long.valueOf(perMessage), scenario, Long.valueOf(budget));
+                assertTrue("Message path allocates " + perMessage + " bytes per message (" + scenario + "), which exceeds the budget of " + budget, perMessage <= budget);
+            } finally {
+                safeClose(channel);
+            }
+        } finally {
+            safeClose(connection);
+        }
+    }
+
+    private static void sendMessages(final Channel channel, final byte[] payload, final int count) throws IOException, InterruptedException {
+        for (int i = 0; i < count; i ++) {
+            final MessageOutputStream stream = channel.writeMessage();
+            try {
+                stream.write(payload);
+                stream.close();
+            } finally {
+                safeClose(stream);
+            }
+            assertTrue("Message was not received", received.tryAcquire(10L, TimeUnit.SECONDS));
+        }
+    }
+
+    private static Map<Long, Long> allocatedBytes() {
+        final long[] ids = threadMXBean.getAllThreadIds();
+        final long[] bytes = threadMXBean.getThreadAllocatedBytes(ids);
+        final Map<Long, Long> allocated = new HashMap<Long, Long>(ids.length);
+        for (int i = 0; i < ids.length; i ++) {
+            // threads which died in the meantime report -1
+            if (bytes[i] >= 0L) {
+                allocated.put(Long.valueOf(ids[i]), Long.valueOf(bytes[i]));
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * Get the bytes allocated since an earlier sample.  Each thread is compared with its own earlier value; a thread
+     * which started during the measurement counts from zero, so that work handed to a new thread is not missed.  Only
+     * threads which exited during the measurement are left out, since their allocations can no longer be read.
+     *
+     * @param before the earlier sample
+     * @return the bytes allocated by the threads of the later sample
+     */
+    private static long allocatedBytesSince(final Map<Long, Long> before) {
+        long total = 0L;
+        for (Map.Entry<Long, Long> entry : allocatedBytes().entrySet()) {
+            final Long previous = before.get(entry.getKey());
+            total += entry.getValue().longValue() - (previous == null ? 0L : previous.longValue());
+        }
+        return total;
+    }
+}
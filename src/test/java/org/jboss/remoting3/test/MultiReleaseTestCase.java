@@ -0,0 +1,75 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.remoting3.test;
+
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that the Java 11 versions of the classes in {@code META-INF/versions/11} are the ones which get loaded.  A
+ * class directory is never multi-release, so this is only meaningful when the tests run against the packaged JAR on
+ * Java 11 or later, as the {@code java11} build profile does; otherwise the test is skipped.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class MultiReleaseTestCase {
+
+    private static final String MULTI_RELEASE_PROPERTY = "org.jboss.remoting3.test.multiRelease";
+
+    @BeforeClass
+    public static void checkMultiRelease() {
+        Assume.assumeTrue("Not running against the multi-release JAR", Boolean.getBoolean(MULTI_RELEASE_PROPERTY));
+    }
+
+    private static void assertJava11Version(final String className, final String fieldTypeName) throws ClassNotFoundException {
+        // initializing the class also proves that the Java 11 version links
+        final Class<?> clazz = Class.forName(className, true, MultiReleaseTestCase.class.getClassLoader());
+        for (Field field : clazz.getDeclaredFields()) {
+            if (field.getType().getName().equals(fieldTypeName)) {
+                return;
+            }
+        }
+        fail(className + " was loaded from " + clazz.getProtectionDomain().getCodeSource() + " without its Java 11 version");
+    }
+
+    @Test
+    public void testIntIndexHashMap() throws Exception {
+        assertJava11Version("org.jboss.remoting3._private.IntIndexHashMap", "java.lang.invoke.VarHandle");
+    }
+
+    @Test
+    public void testUnlockedReadHashMap() throws Exception {
+        assertJava11Version("org.jboss.remoting3.UnlockedReadHashMap", "java.lang.invoke.VarHandle");
+    }
+
+    @Test
+    public void testProtocolEvents() throws Exception {
+        assertJava11Version("org.jboss.remoting3.remote.ProtocolEvents", "jdk.jfr.EventType");
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.jboss.remoting3.Channel;
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.OpenListener;
+import org.jboss.remoting3.Registration;
+import org.jboss.remoting3.RemotingOptions;
+import org.jboss.remoting3.remote.RemoteConnectionProviderMXBean;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wildfly.security.auth.AuthenticationConfiguration;
+import org.wildfly.security.auth.AuthenticationContext;
+import org.wildfly.security.auth.MatchRule;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+
+/**
+ * Tests for connections which are opened with a pipelined handshake.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class PipelinedHandshakeTestCase {
+
+    private static TestServer server;
+    private static Registration serviceRegistration;
+
+    @BeforeClass
+    public static void create() throws Exception {
+        // the server refuses one mechanism which the client is able to pipeline
+        server = new TestServer("localhost", OptionMap.builder().setSequence(Options.SASL_DISALLOWED_MECHANISMS, "SCRAM-SHA-1").getMap());
+        serviceRegistration = server.getEndpoint().registerService("org.jboss.test.pipelined", new OpenListener() {
+            public void channelOpened(final Channel channel) {
+            }
+
+            public void registrationTerminated() {
+            }
+        }, OptionMap.EMPTY);
+    }
+
+    @AfterClass
+    public static void destroy() throws IOException {
+        safeClose(serviceRegistration);
+        safeClose(server);
+    }
+
+    private static Connection connect(final OptionMap connectOptions) throws IOException {
+        return server.connect(connectOptions).get();
+    }
+
+    private static void checkConnection(final Connection connection) throws IOException {
+        try {
+            assertEquals("test", connection.getRemoteEndpointName());
+            final Channel channel = connection.openChannel("org.jboss.test.pipelined", OptionMap.EMPTY).get();
+            assertNotNull(channel);
+            safeClose(channel);
+        } finally {
+            safeClose(connection);
+        }
+    }
+
+    /**
+     * Get the protocol event log of the one open client connection to the server.
+     */
+    private static String getClientEventLog() throws Exception {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final String peer = ":" + server.getUri("remote").getPort();
+        String clientLog = null;
+        for (ObjectName name : mBeanServer.queryNames(new ObjectName("jboss.remoting.handler:*"), null)) {
+            if (! name.getKeyProperty("name").startsWith(server.getEndpoint().getName() + "-")) {
+                continue;
+            }
+            final String dump = JMX.newMXBeanProxy(mBeanServer, name, RemoteConnectionProviderMXBean.class).dumpProtocolEventLogToString();
+            // both ends live in this endpoint; the client end is the one whose peer is the server
+            for (String section : dump.split("\n    Connection ")) {
+                final int eol = section.indexOf('\n');
+                if (eol != -1 && section.substring(0, eol).endsWith(peer)) {
+                    assertTrue(dump, clientLog == null);
+                    clientLog = section;
+                }
+            }
+        }
+        assertNotNull("No client connection in the protocol event log", clientLog);
+        return clientLog;
+    }
+
+    private static void assertSentBeforeReceived(final String eventLog, final String sentFrame, final String receivedFrame) {
+        final int sent = eventLog.indexOf("out " + sentFrame);
+        final int received = eventLog.indexOf("in  " + receivedFrame);
+        assertTrue(eventLog, sent != -1 && received != -1);
+        assertTrue(sentFrame + " was sent after " + receivedFrame + " was received:\n" + eventLog, sent < received);
+    }
+
+    @Test
+    public void testPipelinedCapabilities() throws Exception {
+        // STARTTLS is allowed, so only the capabilities request goes out early
+        final Connection connection = connect(OptionMap.create(RemotingOptions.HANDSHAKE_PIPELINING, Boolean.TRUE));
+        try {
+            assertSentBeforeReceived(getClientEventLog(), "CAPABILITIES", "GREETING");
+        } finally {
+            checkConnection(connection);
+        }
+    }
+
+    @Test
+    public void testPipelinedAuthentication() throws Exception {
+        final Connection connection = connect(OptionMap.builder()
+            .set(RemotingOptions.HANDSHAKE_PIPELINING, true)
+            .set(Options.SSL_STARTTLS, false)
+            .setSequence(Options.SASL_MECHANISMS, "SCRAM-SHA-256")
+            .getMap());
+        try {
+            // the authentication request must not wait for the server's capabilities
+            assertSentBeforeReceived(getClientEventLog(), "AUTH_REQUEST", "CAPABILITIES");
+        } finally {
+            checkConnection(connection);
+        }
+    }
+
+    @Test
+    public void testRejectedPipelinedMechanism() throws Exception {
+        // SCRAM-SHA-1 is pipelined and rejected, and the client falls back to a regular exchange which picks SCRAM-SHA-256
+        final AuthenticationContext authenticationContext = AuthenticationContext.empty().with(MatchRule.ALL, AuthenticationConfiguration.EMPTY
+            .useName(TestServer.USER)
+            .usePassword(TestServer.PASSWORD)
+            .allowSaslMechanisms("SCRAM-SHA-1", "SCRAM-SHA-256"));
+        checkConnection(server.getEndpoint().connect(server.getUri("remote"), OptionMap.builder()
+            .set(RemotingOptions.HANDSHAKE_PIPELINING, true)
+            .set(Options.SSL_STARTTLS, false)
+            .setSequence(Options.SASL_MECHANISMS, "SCRAM-SHA-1", "SCRAM-SHA-256")
+            .getMap(), authenticationContext).get());
+    }
+}
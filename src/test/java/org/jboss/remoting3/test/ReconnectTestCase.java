@@ -0,0 +1,106 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.jboss.remoting3.Endpoint;
+import org.jboss.remoting3.EndpointBuilder;
+import org.jboss.remoting3.remote.RemoteConnectionProviderFactory;
+import org.junit.Test;
+
+/**
+ * Tests the reconnect schedule of configured immediate connections, as seen through their management interface.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class ReconnectTestCase {
+
+    private static final int ATTEMPTS = 4;
+
+    @Test
+    public void testReconnectToRefusingDestination() throws Exception {
+        // a peer which accepts each connection and hangs up at once, so that every attempt fails and is counted
+        final ServerSocket serverSocket = new ServerSocket(30199, 50, InetAddress.getByName("localhost"));
+        final CountDownLatch attempts = new CountDownLatch(ATTEMPTS);
+        final Thread acceptor = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    for (;;) {
+                        final Socket socket = serverSocket.accept();
+                        attempts.countDown();
+                        safeClose(socket);
+                    }
+                } catch (IOException ignored) {
+                    // closed
+                }
+            }
+        }, "reconnect-test-acceptor");
+        acceptor.start();
+        Endpoint endpoint = null;
+        try {
+            final EndpointBuilder builder = Endpoint.builder().setEndpointName("reconnect-test");
+            builder.addProvider("remote").setClassName(RemoteConnectionProviderFactory.class.getName());
+            builder.addConnection(new URI("remote://localhost:30199")).setImmediate(true).setReconnectInitialDelay(10L).setReconnectMaximumDelay(200L);
+            endpoint = builder.build();
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final Set<ObjectName> names = server.queryNames(new ObjectName("jboss.remoting.connection:*"), null);
+            ObjectName objectName = null;
+            for (ObjectName name : names) {
+                if (ObjectName.unquote(name.getKeyProperty("name")).startsWith("reconnect-test-")) {
+                    objectName = name;
+                }
+            }
+            assertNotNull("No management interface for the configured connection", objectName);
+            assertEquals("remote://localhost:30199", server.getAttribute(objectName, "Uri"));
+            // the slot keeps retrying on its own; with a 200ms cap, a handful of attempts takes well under a second
+            assertTrue("Too few reconnect attempts", attempts.await(10L, TimeUnit.SECONDS));
+            assertFalse(((Boolean) server.getAttribute(objectName, "Connected")).booleanValue());
+            // each attempt but the one in progress has failed and scheduled the next
+            assertTrue(((Integer) server.getAttribute(objectName, "ReconnectAttempts")).intValue() >= ATTEMPTS - 1);
+            assertNotNull(server.getAttribute(objectName, "LastFailure"));
+            assertTrue(((Long) server.getAttribute(objectName, "NextReconnectDelay")).longValue() <= 200L);
+        } finally {
+            safeClose(endpoint);
+            safeClose(serverSocket);
+            acceptor.join();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.PrivilegedAction;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.remoting3.Channel;
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.Endpoint;
+import org.jboss.remoting3.MessageInputStream;
+import org.jboss.remoting3.MessageOutputStream;
+import org.jboss.remoting3.OpenListener;
+import org.jboss.remoting3.Registration;
+import org.jboss.remoting3.RemotingOptions;
+import org.jboss.remoting3.remote.RemoteConnectionProviderFactory;
+import org.jboss.remoting3.spi.NetworkServerProvider;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wildfly.security.auth.AuthenticationConfiguration;
+import org.wildfly.security.auth.AuthenticationContext;
+import org.wildfly.security.auth.MatchRule;
+import org.wildfly.security.auth.principal.NamePrincipal;
+import org.wildfly.security.auth.provider.SecurityDomain;
+import org.wildfly.security.auth.provider.SimpleMapBackedSecurityRealm;
+import org.wildfly.security.password.PasswordFactory;
+import org.wildfly.security.password.spec.ClearPasswordSpec;
+import org.xnio.FutureResult;
+import org.xnio.IoFuture;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.channels.AcceptingChannel;
+import org.xnio.channels.ConnectedStreamChannel;
+
+/**
+ * Test for remote channel communication with message compression negotiated on the channel.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class RemoteCompressedChannelTest extends ChannelTestBase {
+    private static final OptionMap COMPRESSION_OPTIONS = OptionMap.builder()
+            .set(RemotingOptions.MESSAGE_COMPRESSION, true)
+            .set(RemotingOptions.MESSAGE_COMPRESSION_THRESHOLD, 0)
+            .getMap();
+
+    protected static Endpoint endpoint;
+    private static AcceptingChannel<? extends ConnectedStreamChannel> streamServer;
+    private static Registration registration;
+    private Connection connection;
+    private Registration serviceRegistration;
+
+    @BeforeClass
+    public static void create() throws Exception {
+        endpoint = Endpoint.builder().setEndpointName("test").build();
+        registration = endpoint.addConnectionProvider("remote", new RemoteConnectionProviderFactory(), OptionMap.create(Options.SSL_ENABLED, Boolean.FALSE));
+        NetworkServerProvider networkServerProvider = endpoint.getConnectionProviderInterface("remote", NetworkServerProvider.class);
+        final SecurityDomain.Builder domainBuilder = SecurityDomain.builder();
+        final SimpleMapBackedSecurityRealm mainRealm = new SimpleMapBackedSecurityRealm();
+        domainBuilder.addRealm("mainRealm", mainRealm);
+        domainBuilder.setDefaultRealmName("mainRealm");
+        final PasswordFactory passwordFactory = PasswordFactory.getInstance("clear");
+        mainRealm.setPasswordMap(Collections.singletonMap(new NamePrincipal("bob"), passwordFactory.generatePassword(new ClearPasswordSpec("pass".toCharArray()))));
+        streamServer = networkServerProvider.createServer(new InetSocketAddress("localhost", 30123), OptionMap.EMPTY, domainBuilder.build());
+    }
+
+    @Before
+    public void testStart() throws IOException, URISyntaxException, InterruptedException {
+        final FutureResult<Channel> passer = new FutureResult<Channel>();
+        serviceRegistration = endpoint.registerService("org.jboss.test", new OpenListener() {
+            public void channelOpened(final Channel channel) {
+                passer.setResult(channel);
+            }
+
+            public void registrationTerminated() {
+            }
+        }, COMPRESSION_OPTIONS);
+        IoFuture<Connection> futureConnection = AuthenticationContext.empty().with(MatchRule.ALL, AuthenticationConfiguration.EMPTY.useName("bob").usePassword("pass").allowSaslMechanisms("SCRAM-SHA-256")).run(new PrivilegedAction<IoFuture<Connection>>() {
+            public IoFuture<Connection> run() {
+                try {
+                    return endpoint.connect(new URI("remote://localhost:30123"), OptionMap.EMPTY);
+                } catch (IOException | URISyntaxException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        connection = futureConnection.get();
+        IoFuture<Channel> futureChannel = connection.openChannel("org.jboss.test", COMPRESSION_OPTIONS);
+        sendChannel = futureChannel.get();
+        recvChannel = passer.getIoFuture().get();
+        assertNotNull(recvChannel);
+    }
+
+    @After
+    public void testFinish() {
+        safeClose(sendChannel);
+        safeClose(recvChannel);
+        safeClose(connection);
+        serviceRegistration.close();
+    }
+
+    @AfterClass
+    public static void destroy() throws IOException, InterruptedException {
+        safeClose(streamServer);
+        safeClose(endpoint);
+        safeClose(registration);
+    }
+
+    @Test
+    public void testCompressionNegotiated() {
+        assertEquals(Boolean.TRUE, sendChannel.getOption(RemotingOptions.MESSAGE_COMPRESSION));
+        assertEquals(Boolean.TRUE, recvChannel.getOption(RemotingOptions.MESSAGE_COMPRESSION));
+    }
+
+    @Test
+    public void testCompressibleContent() throws Exception {
+        final StringBuilder b = new StringBuilder();
+        for (int i = 0; b.length() < 200000; i ++) {
+            b.append("Line ").append(i).append(" of some highly compressible message content\n");
+        }
+        final byte[] data = b.toString().getBytes(StandardCharsets.UTF_8);
+        final FutureResult<byte[]> passer = new FutureResult<byte[]>();
+        recvChannel.receiveMessage(new Channel.Receiver() {
+            public void handleError(final Channel channel, final IOException error) {
+                passer.setException(error);
+            }
+
+            public void handleEnd(final Channel channel) {
+                passer.setCancelled();
+            }
+
+            public void handleMessage(final Channel channel, final MessageInputStream message) {
+                final ByteArrayOutputStream os = new ByteArrayOutputStream();
+                try {
+                    final byte[] buf = new byte[512];
+                    int res;
+                    while ((res = message.read(buf)) != -1) {
+                        os.write(buf, 0, res);
+                    }
+                    passer.setResult(os.toByteArray());
+                } catch (IOException e) {
+                    passer.setException(e);
+                } finally {
+                    safeClose(message);
+                }
+            }
+        });
+        final MessageOutputStream messageOutputStream = sendChannel.writeMessage();
+        try {
+            messageOutputStream.write(data);
+        } finally {
+            messageOutputStream.close();
+        }
+        final IoFuture<byte[]> future = passer.getIoFuture();
+        assertEquals(IoFuture.Status.DONE, future.await(10L, TimeUnit.SECONDS));
+        assertArrayEquals(data, future.get());
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.remoting3.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.jboss.remoting3.Channel;
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.Endpoint;
+import org.jboss.remoting3.MessageInputStream;
+import org.jboss.remoting3.MessageOutputStream;
+import org.jboss.remoting3.OpenListener;
+import org.jboss.remoting3.Registration;
+import org.jboss.remoting3.remote.LatencyHistogramMXBean;
+import org.jboss.remoting3.remote.RemoteConnectionProviderMXBean;
+import org.jboss.remoting3.remote.RemoteMetricsMXBean;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xnio.OptionMap;
+
+/**
+ * Tests for the traffic counters, latency histograms and protocol event log exposed through JMX.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class RemoteMetricsTestCase {
+
+    private static final String SERVICE_NAME = "org.jboss.test.metrics";
+
+    private static TestServer server;
+
+    @BeforeClass
+    public static void create() throws Exception {
+        server = new TestServer(Endpoint.builder().setEndpointName("metrics-test"), "::1", OptionMap.EMPTY);
+    }
+
+    @AfterClass
+    public static void destroy() throws IOException {
+        safeClose(server);
+    }
+
+    private static RemoteMetricsMXBean getMetricsMXBean(final String type) throws Exception {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final Set<ObjectName> names = mBeanServer.queryNames(new ObjectName("jboss.remoting.metrics:type=" + type + ",*"), null);
+        for (ObjectName name : names) {
+            final String unquoted = ObjectName.unquote(name.getKeyProperty("name"));
+            if (unquoted.startsWith("metrics-test-") && (! type.equals("service") || unquoted.endsWith("-" + SERVICE_NAME))) {
+                return JMX.newMXBeanProxy(mBeanServer, name, RemoteMetricsMXBean.class);
+            }
+        }
+        fail("No " + type + " metrics registered");
+        return null;
+    }
+
+    private static LatencyHistogramMXBean getLatencyMXBean(final String type) throws Exception {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final Set<ObjectName> names = mBeanServer.queryNames(new ObjectName("jboss.remoting.latency:type=" + type + ",*"), null);
+        for (ObjectName name : names) {
+            if (ObjectName.unquote(name.getKeyProperty("name")).startsWith("metrics-test-")) {
+                return JMX.newMXBeanProxy(mBeanServer, name, LatencyHistogramMXBean.class);
+            }
+        }
+        fail("No " + type + " histogram registered");
+        return null;
+    }
+
+    private static RemoteConnectionProviderMXBean getProviderMXBean() throws Exception {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final Set<ObjectName> names = mBeanServer.queryNames(new ObjectName("jboss.remoting.handler:*"), null);
+        for (ObjectName name : names) {
+            if (name.getKeyProperty("name").startsWith("metrics-test-")) {
+                return JMX.newMXBeanProxy(mBeanServer, name, RemoteConnectionProviderMXBean.class);
+            }
+        }
+        fail("No connection provider MBean registered");
+        return null;
+    }
+
+    private static Registration registerService(final CountDownLatch received) throws Exception {
+        return server.getEndpoint().registerService(SERVICE_NAME, new OpenListener() {
+            public void channelOpened(final Channel channel) {
+                channel.receiveMessage(new Channel.Receiver() {
+                    public void handleError(final Channel channel, final IOException error) {
+                    }
+
+                    public void handleEnd(final Channel channel) {
+                    }
+
+                    public void handleMessage(final Channel channel, final MessageInputStream message) {
+                        try {
+                            while (message.read() != -1);
+                            received.countDown();
+                        } catch (IOException ignored) {
+                        } finally {
+                            safeClose(message);
+                        }
+                    }
+                });
+            }
+
+            public void registrationTerminated() {
+            }
+        }, OptionMap.EMPTY);
+    }
+
+    @Test
+    public void testMessageCounters() throws Exception {
+        final CountDownLatch received = new CountDownLatch(1);
+        final Registration serviceRegistration = registerService(received);
+        final RemoteMetricsMXBean endpointMetrics = getMetricsMXBean("endpoint");
+        // let the channels of any earlier test finish closing
+        for (int i = 0; i < 100 && endpointMetrics.getOpenChannels() != 0L; i ++) {
+            Thread.sleep(50L);
+        }
+        final long refused = endpointMetrics.getRefusedChannelOpens();
+        final Connection connection = server.connect(OptionMap.EMPTY).get();
+        try {
+            final Channel channel = connection.openChannel(SERVICE_NAME, OptionMap.EMPTY).get();
+            try {
+                final MessageOutputStream stream = channel.writeMessage();
+                try {
+                    stream.write(new byte[1000]);
+                    stream.close();
+                } finally {
+                    safeClose(stream);
+                }
+                assertTrue(received.await(10L, TimeUnit.SECONDS));
+                final RemoteMetricsMXBean serviceMetrics = getMetricsMXBean("service");
+                // both ends of the connection live in this endpoint
+                assertEquals(2L, endpointMetrics.getOpenChannels());
+                assertEquals(2L, serviceMetrics.getOpenChannels());
+                assertTrue(serviceMetrics.getMessagesCompleted() >= 2L);
+                assertEquals(serviceMetrics.getMessagesOpened(), serviceMetrics.getMessagesCompleted());
+                assertEquals(0L, serviceMetrics.getMessagesCancelled());
+                assertTrue(endpointMetrics.getBytesSent() > 1000L);
+                assertTrue(endpointMetrics.getBytesReceived() > 1000L);
+                assertEquals(0L, endpointMetrics.getWriteQueueDepth());
+                final RemoteMetricsMXBean connectionMetrics = getMetricsMXBean("connection");
+                assertTrue(connectionMetrics.getFramesSent() > 0L);
+                try {
+                    connection.openChannel("org.jboss.test.unknown", OptionMap.EMPTY).get();
+                    fail("Expected the channel open to be refused");
+                } catch (IOException expected) {
+                }
+                assertEquals(refused + 1L, endpointMetrics.getRefusedChannelOpens());
+            } finally {
+                safeClose(channel);
+            }
+        } finally {
+            safeClose(connection);
+            serviceRegistration.close();
+        }
+    }
+
+    @Test
+    public void testLatencyHistograms() throws Exception {
+        final LatencyHistogramMXBean channelOpen = getLatencyMXBean("channel-open");
+        final LatencyHistogramMXBean messageSend = getLatencyMXBean("message-send");
+        final LatencyHistogramMXBean dispatch = getLatencyMXBean("dispatch");
+        channelOpen.reset();
+        messageSend.reset();
+        dispatch.reset();
+        final CountDownLatch received = new CountDownLatch(1);
+        final Registration serviceRegistration = registerService(received);
+        final Connection connection = server.connect(OptionMap.EMPTY).get();
+        try {
+            final Channel channel = connection.openChannel(SERVICE_NAME, OptionMap.EMPTY).get();
+            try {
+                final MessageOutputStream stream = channel.writeMessage();
+                try {
+                    stream.write(new byte[1000]);
+                    stream.close();
+                } finally {
+                    safeClose(stream);
+                }
+                assertTrue(received.await(10L, TimeUnit.SECONDS));
+                assertEquals(1L, channelOpen.getCount());
+                assertEquals(1L, messageSend.getCount());
+                assertEquals(1L, dispatch.getCount());
+                assertTrue(channelOpen.getPercentile50() <= channelOpen.getMax());
+                assertTrue(channelOpen.getIntervalStartTime() <= System.currentTimeMillis());
+                channelOpen.reset();
+                assertEquals(0L, channelOpen.getCount());
+                assertEquals(0L, channelOpen.getPercentile99());
+            } finally {
+                safeClose(channel);
+            }
+        } finally {
+            safeClose(connection);
+            serviceRegistration.close();
+        }
+    }
+
+    @Test
+    public void testProtocolEventLog() throws Exception {
+        final CountDownLatch received = new CountDownLatch(1);
+        final Registration serviceRegistration = registerService(received);
+        final Connection connection = server.connect(OptionMap.EMPTY).get();
+        try {
+            final Channel channel = connection.openChannel(SERVICE_NAME, OptionMap.EMPTY).get();
+            try {
+                final MessageOutputStream stream = channel.writeMessage();
+                try {
+                    stream.write(new byte[1000]);
+                    stream.close();
+                } finally {
+                    safeClose(stream);
+                }
+                assertTrue(received.await(10L, TimeUnit.SECONDS));
+                final String dump = getProviderMXBean().dumpProtocolEventLogToString();
+                // both ends of the connection live in this endpoint, so each frame shows up once in each direction
+                assertTrue(dump, dump.contains("out CHANNEL_OPEN_REQUEST"));
+                assertTrue(dump, dump.contains("in  CHANNEL_OPEN_REQUEST"));
+                assertTrue(dump, dump.contains("out MESSAGE_DATA"));
+                assertTrue(dump, dump.contains("in  MESSAGE_DATA"));
+            } finally {
+                safeClose(channel);
+            }
+        } finally {
+            safeClose(connection);
+            serviceRegistration.close();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.remoting3.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.IOException;
+
+import org.jboss.remoting3.Channel;
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.OpenListener;
+import org.jboss.remoting3.Registration;
+import org.jboss.remoting3.RemotingOptions;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xnio.FutureResult;
+import org.xnio.IoFuture;
+import org.xnio.OptionMap;
+
+/**
+ * Test for remote channel communication between a current client and a server which is limited to protocol version 1,
+ * so that the connection falls back to the fixed-size message frame headers.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class RemoteProtocolV1ChannelTest extends ChannelTestBase {
+    private static final OptionMap LARGE_MESSAGE_COUNT_OPTIONS = OptionMap.builder()
+            .set(RemotingOptions.MAX_INBOUND_MESSAGES, 100000)
+            .set(RemotingOptions.MAX_OUTBOUND_MESSAGES, 100000)
+            .getMap();
+
+    private static TestServer server;
+    private Connection connection;
+    private Registration serviceRegistration;
+
+    @BeforeClass
+    public static void create() throws Exception {
+        server = new TestServer("localhost", OptionMap.create(RemotingOptions.MAX_PROTOCOL_VERSION, 1));
+    }
+
+    @Before
+    public void testStart() throws IOException, InterruptedException {
+        final FutureResult<Channel> passer = new FutureResult<Channel>();
+        serviceRegistration = server.getEndpoint().registerService("org.jboss.test", new OpenListener() {
+            public void channelOpened(final Channel channel) {
+                passer.setResult(channel);
+            }
+
+            public void registrationTerminated() {
+            }
+        }, LARGE_MESSAGE_COUNT_OPTIONS);
+        connection = server.connect(OptionMap.EMPTY).get();
+        IoFuture<Channel> futureChannel = connection.openChannel("org.jboss.test", LARGE_MESSAGE_COUNT_OPTIONS);
+        sendChannel = futureChannel.get();
+        recvChannel = passer.getIoFuture().get();
+        assertNotNull(recvChannel);
+    }
+
+    @After
+    public void testFinish() {
+        safeClose(sendChannel);
+        safeClose(recvChannel);
+        safeClose(connection);
+        serviceRegistration.close();
+    }
+
+    @AfterClass
+    public static void destroy() {
+        safeClose(server);
+    }
+
+    @Test
+    public void testMessageCountLimitedByVersion() {
+        // version 1 frames carry 16-bit message IDs, so a larger message count cannot be negotiated
+        assertEquals(Integer.valueOf(0xffff), sendChannel.getOption(RemotingOptions.MAX_OUTBOUND_MESSAGES));
+        assertEquals(Integer.valueOf(0xffff), sendChannel.getOption(RemotingOptions.MAX_INBOUND_MESSAGES));
+        assertEquals(Integer.valueOf(0xffff), recvChannel.getOption(RemotingOptions.MAX_OUTBOUND_MESSAGES));
+        assertEquals(Integer.valueOf(0xffff), recvChannel.getOption(RemotingOptions.MAX_INBOUND_MESSAGES));
+    }
+}
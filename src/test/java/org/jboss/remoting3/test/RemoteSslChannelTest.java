@@ -28,10 +28,8 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
+import java.security.GeneralSecurityException;
 import java.security.PrivilegedAction;
-import java.security.spec.InvalidKeySpecException;
 import java.util.Collections;
 
 import org.jboss.remoting3.Channel;
@@ -78,8 +76,7 @@ public final class RemoteSslChannelTest extends ChannelTestBase {
     private Registration serviceRegistration;
 
     @BeforeClass
-    public static void create() throws IOException, NoSuchProviderException, NoSuchAlgorithmException, InvalidKeySpecException {
-        SslHelper.setKeyStoreAndTrustStore();
+    public static void create() throws IOException, GeneralSecurityException {
         endpoint = Endpoint.builder().setEndpointName("test").build();
         registration = endpoint.addConnectionProvider("remote", new RemoteConnectionProviderFactory(), OptionMap.EMPTY);
         NetworkServerProvider networkServerProvider = endpoint.getConnectionProviderInterface("remote", NetworkServerProvider.class);
@@ -90,7 +87,7 @@ public final class RemoteSslChannelTest extends ChannelTestBase {
         final PasswordFactory passwordFactory = PasswordFactory.getInstance("clear");
         mainRealm.setPasswordMap(Collections.singletonMap(new NamePrincipal("bob"), passwordFactory.generatePassword(new ClearPasswordSpec("pass".toCharArray()))));
         streamServer = networkServerProvider.createServer(new InetSocketAddress("localhost", 30123),
-                OptionMap.create(Options.SSL_ENABLED, Boolean.TRUE, Options.SASL_MECHANISMS, Sequence.of("CRAM-MD5")), domainBuilder.build());
+                OptionMap.create(Options.SSL_ENABLED, Boolean.TRUE, Options.SASL_MECHANISMS, Sequence.of("CRAM-MD5")), domainBuilder.build(), SslHelper.getSslContext());
     }
 
     @Before
@@ -104,7 +101,7 @@ public final class RemoteSslChannelTest extends ChannelTestBase {
             public void registrationTerminated() {
             }
         }, OptionMap.EMPTY);
-        IoFuture<Connection> futureConnection = AuthenticationContext.empty().with(MatchRule.ALL, AuthenticationConfiguration.EMPTY.useName("bob").usePassword("pass")).run(new PrivilegedAction<IoFuture<Connection>>() {
+        IoFuture<Connection> futureConnection = SslHelper.withSslContext(AuthenticationContext.empty().with(MatchRule.ALL, AuthenticationConfiguration.EMPTY.useName("bob").usePassword("pass"))).run(new PrivilegedAction<IoFuture<Connection>>() {
             public IoFuture<Connection> run() {
                 try {
                     return endpoint.connect(new URI("remote://localhost:30123"), OptionMap.create(Options.SSL_ENABLED, Boolean.TRUE));
@@ -0,0 +1,220 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.remoting3.Channel;
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.MessageInputStream;
+import org.jboss.remoting3.MessageOutputStream;
+import org.jboss.remoting3.OpenListener;
+import org.jboss.remoting3.Registration;
+import org.jboss.remoting3.RemotingOptions;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xnio.FutureResult;
+import org.xnio.IoFuture;
+import org.xnio.OptionMap;
+
+/**
+ * Test for remote channel communication over a connection which is striped across several sockets.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class RemoteStripedChannelTest extends ChannelTestBase {
+    private static final int STRIPES = 4;
+
+    private static TestServer server;
+    // the server sees each stripe as a connection of its own
+    private final Map<Connection, Integer> serverChannelCounts = new HashMap<Connection, Integer>();
+    private Connection connection;
+    private Registration serviceRegistration;
+    private Registration echoRegistration;
+
+    @BeforeClass
+    public static void create() throws Exception {
+        server = new TestServer("localhost", OptionMap.EMPTY);
+    }
+
+    @Before
+    public void testStart() throws IOException, InterruptedException {
+        final FutureResult<Channel> passer = new FutureResult<Channel>();
+        serviceRegistration = server.getEndpoint().registerService("org.jboss.test", new OpenListener() {
+            public void channelOpened(final Channel channel) {
+                countServerChannel(channel);
+                passer.setResult(channel);
+            }
+
+            public void registrationTerminated() {
+            }
+        }, OptionMap.EMPTY);
+        echoRegistration = server.getEndpoint().registerService("org.jboss.test.echo", new OpenListener() {
+            public void channelOpened(final Channel channel) {
+                countServerChannel(channel);
+                channel.receiveMessage(new Channel.Receiver() {
+                    public void handleError(final Channel channel, final IOException error) {
+                        safeClose(channel);
+                    }
+
+                    public void handleEnd(final Channel channel) {
+                        safeClose(channel);
+                    }
+
+                    public void handleMessage(final Channel channel, final MessageInputStream message) {
+                        try {
+                            final byte[] bytes = readString(message).getBytes(StandardCharsets.UTF_8);
+                            final MessageOutputStream os = channel.writeMessage();
+                            try {
+                                os.write(bytes);
+                            } finally {
+                                os.close();
+                            }
+                            channel.receiveMessage(this);
+                        } catch (IOException e) {
+                            safeClose(channel);
+                        }
+                    }
+                });
+            }
+
+            public void registrationTerminated() {
+            }
+        }, OptionMap.EMPTY);
+        connection = server.connect(OptionMap.create(RemotingOptions.CONNECTION_STRIPES, STRIPES)).get();
+        IoFuture<Channel> futureChannel = connection.openChannel("org.jboss.test", OptionMap.EMPTY);
+        sendChannel = futureChannel.get();
+        recvChannel = passer.getIoFuture().get();
+        assertNotNull(recvChannel);
+    }
+
+    @After
+    public void testFinish() {
+        safeClose(sendChannel);
+        safeClose(recvChannel);
+        safeClose(connection);
+        serviceRegistration.close();
+        echoRegistration.close();
+    }
+
+    @AfterClass
+    public static void destroy() {
+        safeClose(server);
+    }
+
+    private void countServerChannel(final Channel channel) {
+        synchronized (serverChannelCounts) {
+            final Integer count = serverChannelCounts.get(channel.getConnection());
+            serverChannelCounts.put(channel.getConnection(), Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+        }
+    }
+
+    @Test
+    public void testChannelsAcrossStripes() throws Exception {
+        final int count = STRIPES * 2;
+        final List<Channel> channels = new ArrayList<Channel>();
+        try {
+            for (int i = 0; i < count; i ++) {
+                channels.add(connection.openChannel("org.jboss.test.echo", OptionMap.EMPTY).get());
+            }
+            final List<IoFuture<String>> replies = new ArrayList<IoFuture<String>>();
+            for (int i = 0; i < count; i ++) {
+                final Channel channel = channels.get(i);
+                final FutureResult<String> passer = new FutureResult<String>();
+                channel.receiveMessage(new Channel.Receiver() {
+                    public void handleError(final Channel channel, final IOException error) {
+                        passer.setException(error);
+                    }
+
+                    public void handleEnd(final Channel channel) {
+                        passer.setCancelled();
+                    }
+
+                    public void handleMessage(final Channel channel, final MessageInputStream message) {
+                        try {
+                            passer.setResult(readString(message));
+                        } catch (IOException e) {
+                            passer.setException(e);
+                        }
+                    }
+                });
+                replies.add(passer.getIoFuture());
+                final MessageOutputStream messageOutputStream = channel.writeMessage();
+                try {
+                    messageOutputStream.write(("Message " + i).getBytes(StandardCharsets.UTF_8));
+                } finally {
+                    messageOutputStream.close();
+                }
+            }
+            for (int i = 0; i < count; i ++) {
+                final IoFuture<String> reply = replies.get(i);
+                assertEquals(IoFuture.Status.DONE, reply.await(10L, TimeUnit.SECONDS));
+                assertEquals("Message " + i, reply.get());
+            }
+            // every echo channel was opened before it replied, so the counts are complete; each new channel goes to
+            // the least loaded stripe, so they must be spread evenly over all of them
+            synchronized (serverChannelCounts) {
+                assertEquals(STRIPES, serverChannelCounts.size());
+                int min = Integer.MAX_VALUE, max = 0;
+                for (Integer stripeCount : serverChannelCounts.values()) {
+                    min = Math.min(min, stripeCount.intValue());
+                    max = Math.max(max, stripeCount.intValue());
+                }
+                assertTrue("Uneven spread of channels over stripes: " + serverChannelCounts.values(), max - min <= 1);
+            }
+        } finally {
+            for (Channel channel : channels) {
+                safeClose(channel);
+            }
+        }
+    }
+
+    private static String readString(final MessageInputStream message) throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try {
+            final byte[] buf = new byte[512];
+            int res;
+            while ((res = message.read(buf)) != -1) {
+                os.write(buf, 0, res);
+            }
+        } finally {
+            safeClose(message);
+        }
+        return new String(os.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.IOException;
+
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.RemotingOptions;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wildfly.security.auth.AuthenticationContext;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+
+/**
+ * Tests for connections which resume an earlier authentication using a session resumption ticket.  Resumption is only
+ * offered under TLS.  The password of the user is changed after the first connection, so later connections can only
+ * succeed by resuming.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class SessionResumptionTestCase {
+
+    private static final int TICKET_LIFETIME = 2000;
+    private static final OptionMap RESUMPTION_OPTIONS = OptionMap.create(Options.SSL_ENABLED, Boolean.TRUE, RemotingOptions.SESSION_RESUMPTION, Boolean.TRUE);
+
+    private static TestServer server;
+
+    @BeforeClass
+    public static void create() throws Exception {
+        server = new TestServer("localhost", OptionMap.builder().addAll(RESUMPTION_OPTIONS).set(RemotingOptions.SESSION_RESUMPTION_TICKET_LIFETIME, TICKET_LIFETIME).getMap());
+    }
+
+    @AfterClass
+    public static void destroy() throws IOException {
+        safeClose(server);
+    }
+
+    @Before
+    public void addUser() {
+        server.addUser();
+    }
+
+    private static void connectAndClose(final OptionMap connectOptions, final AuthenticationContext authenticationContext) throws IOException {
+        final Connection connection = server.getEndpoint().connect(server.getUri("remote"), connectOptions, authenticationContext).get();
+        try {
+            assertEquals("test", connection.getRemoteEndpointName());
+        } finally {
+            safeClose(connection);
+        }
+    }
+
+    private static void connectAndFail(final OptionMap connectOptions, final AuthenticationContext authenticationContext) {
+        try {
+            connectAndClose(connectOptions, authenticationContext);
+            fail("Expected authentication to fail");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testResumption() throws Exception {
+        final AuthenticationContext authenticationContext = TestServer.createAuthenticationContext();
+        connectAndClose(RESUMPTION_OPTIONS, authenticationContext);
+        server.setPassword("changed");
+        // each resumed connection is issued a fresh ticket, so resumption can be chained
+        connectAndClose(RESUMPTION_OPTIONS, authenticationContext);
+        connectAndClose(RESUMPTION_OPTIONS, authenticationContext);
+        server.removeUser();
+        // the identity is looked up again when a ticket is redeemed
+        connectAndFail(RESUMPTION_OPTIONS, authenticationContext);
+    }
+
+    @Test
+    public void testResumptionLimitedByAuthentication() throws Exception {
+        final AuthenticationContext authenticationContext = TestServer.createAuthenticationContext();
+        connectAndClose(RESUMPTION_OPTIONS, authenticationContext);
+        server.setPassword("changed");
+        Thread.sleep(TICKET_LIFETIME * 3 / 5);
+        connectAndClose(RESUMPTION_OPTIONS, authenticationContext);
+        Thread.sleep(TICKET_LIFETIME * 3 / 5);
+        // the fresh ticket is still bound to the first authentication, which is now older than the ticket lifetime
+        connectAndFail(RESUMPTION_OPTIONS, authenticationContext);
+    }
+
+    @Test
+    public void testNoResumptionWhenDisabled() throws Exception {
+        final OptionMap connectOptions = OptionMap.create(Options.SSL_ENABLED, Boolean.TRUE);
+        final AuthenticationContext authenticationContext = TestServer.createAuthenticationContext();
+        connectAndClose(connectOptions, authenticationContext);
+        server.setPassword("changed");
+        connectAndFail(connectOptions, authenticationContext);
+    }
+
+    @Test
+    public void testTicketNotShared() throws Exception {
+        connectAndClose(RESUMPTION_OPTIONS, TestServer.createAuthenticationContext());
+        server.setPassword("changed");
+        // tickets are kept per authentication context
+        connectAndFail(RESUMPTION_OPTIONS, TestServer.createAuthenticationContext());
+    }
+}
@@ -21,33 +21,69 @@
  */
 package org.jboss.remoting3.test;
 
-import java.net.URL;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.wildfly.security.SecurityFactory;
+import org.wildfly.security.auth.AuthenticationContext;
+import org.wildfly.security.auth.MatchRule;
 
 /**
- * 
+ * The SSL context of the tests, which both presents and trusts the certificate in the test key store.  The certificate
+ * is issued for {@code localhost}.  The context is given to servers and clients directly, so the tests neither depend
+ * on nor change the {@code javax.net.ssl} system properties.
+ *
  * @author <a href="mailto:flavia.rainone@jboss.com">Flavia Rainone</a>
  */
 public class SslHelper {
-    private static final String KEY_STORE_PROPERTY = "javax.net.ssl.keyStore";
-    private static final String KEY_STORE_PASSWORD_PROPERTY = "javax.net.ssl.keyStorePassword";
-    private static final String TRUST_STORE_PROPERTY = "javax.net.ssl.trustStore";
-    private static final String TRUST_STORE_PASSWORD_PROPERTY = "javax.net.ssl.trustStorePassword";
     private static final String DEFAULT_KEY_STORE = "keystore.jks";
     private static final String DEFAULT_KEY_STORE_PASSWORD = "jboss-remoting-test";
 
-    public static void setKeyStoreAndTrustStore() {
-        final URL storePath = RemoteSslChannelTest.class.getClassLoader().getResource(DEFAULT_KEY_STORE);
-        if (System.getProperty(KEY_STORE_PROPERTY) == null) {
-            System.setProperty(KEY_STORE_PROPERTY, storePath.getFile());
-        }
-        if (System.getProperty(KEY_STORE_PASSWORD_PROPERTY) == null) {
-            System.setProperty(KEY_STORE_PASSWORD_PROPERTY, DEFAULT_KEY_STORE_PASSWORD);
-        }
-        if (System.getProperty(TRUST_STORE_PROPERTY) == null) {
-            System.setProperty(TRUST_STORE_PROPERTY, storePath.getFile());
-        }
-        if (System.getProperty(TRUST_STORE_PASSWORD_PROPERTY) == null) {
-            System.setProperty(TRUST_STORE_PASSWORD_PROPERTY, DEFAULT_KEY_STORE_PASSWORD);
+    private static SSLContext sslContext;
+
+    /**
+     * Get the SSL context.  The same context is returned every time, so that TLS sessions can be resumed.
+     *
+     * @return the SSL context
+     * @throws GeneralSecurityException if the context could not be created
+     */
+    public static synchronized SSLContext getSslContext() throws GeneralSecurityException {
+        if (sslContext == null) {
+            final char[] password = DEFAULT_KEY_STORE_PASSWORD.toCharArray();
+            final KeyStore keyStore = KeyStore.getInstance("JKS");
+            try (InputStream stream = SslHelper.class.getClassLoader().getResourceAsStream(DEFAULT_KEY_STORE)) {
+                keyStore.load(stream, password);
+            } catch (IOException e) {
+                throw new GeneralSecurityException(e);
+            }
+            final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagerFactory.init(keyStore, password);
+            final TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagerFactory.init(keyStore);
+            final SSLContext context = SSLContext.getInstance("TLS");
+            context.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), null);
+            sslContext = context;
         }
+        return sslContext;
+    }
+
+    /**
+     * Add the SSL context to an authentication context, for every destination.
+     *
+     * @param authenticationContext the authentication context
+     * @return the authentication context which uses the SSL context
+     */
+    public static AuthenticationContext withSslContext(final AuthenticationContext authenticationContext) {
+        return authenticationContext.withSsl(MatchRule.ALL, new SecurityFactory<SSLContext>() {
+            public SSLContext create() throws GeneralSecurityException {
+                return getSslContext();
+            }
+        });
     }
 }
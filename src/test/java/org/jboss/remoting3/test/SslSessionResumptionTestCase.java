@@ -0,0 +1,81 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.remoting3.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.IOException;
+
+import javax.net.ssl.SSLSession;
+
+import org.jboss.remoting3.Connection;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wildfly.security.auth.AuthenticationContext;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.Sequence;
+
+/**
+ * Tests that a TLS connection to a destination which was connected to before resumes the earlier TLS session.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class SslSessionResumptionTestCase {
+
+    private static TestServer server;
+
+    @BeforeClass
+    public static void create() throws Exception {
+        server = new TestServer("localhost", OptionMap.create(Options.SSL_ENABLED, Boolean.TRUE));
+    }
+
+    @AfterClass
+    public static void destroy() throws IOException {
+        safeClose(server);
+    }
+
+    private static byte[] connectAndGetSessionId(final AuthenticationContext authenticationContext) throws Exception {
+        // TLS 1.2 reports a resumed session under its original ID
+        final OptionMap connectOptions = OptionMap.create(Options.SSL_ENABLED, Boolean.TRUE, Options.SSL_ENABLED_PROTOCOLS, Sequence.of("TLSv1.2"));
+        final Connection connection = server.getEndpoint().connect(server.getUri("remote"), connectOptions, authenticationContext).get();
+        try {
+            final SSLSession sslSession = connection.getSslSession();
+            assertNotNull("SSLSession Available", sslSession);
+            return sslSession.getId();
+        } finally {
+            safeClose(connection);
+        }
+    }
+
+    @Test
+    public void testSessionResumed() throws Exception {
+        final AuthenticationContext authenticationContext = TestServer.createAuthenticationContext();
+        final byte[] first = connectAndGetSessionId(authenticationContext);
+        final byte[] second = connectAndGetSessionId(authenticationContext);
+        assertArrayEquals(first, second);
+    }
+}
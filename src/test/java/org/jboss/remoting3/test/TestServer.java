@@ -0,0 +1,209 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.remoting3.test;
+
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.GeneralSecurityException;
+import java.security.Security;
+import java.util.Collections;
+
+import javax.net.ssl.SSLContext;
+
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.Endpoint;
+import org.jboss.remoting3.EndpointBuilder;
+import org.jboss.remoting3.Registration;
+import org.jboss.remoting3.remote.RemoteConnectionProviderFactory;
+import org.jboss.remoting3.spi.NetworkServerProvider;
+import org.wildfly.security.WildFlyElytronProvider;
+import org.wildfly.security.auth.AuthenticationConfiguration;
+import org.wildfly.security.auth.AuthenticationContext;
+import org.wildfly.security.auth.MatchRule;
+import org.wildfly.security.auth.principal.NamePrincipal;
+import org.wildfly.security.auth.provider.SecurityDomain;
+import org.wildfly.security.auth.provider.SimpleMapBackedSecurityRealm;
+import org.wildfly.security.password.PasswordFactory;
+import org.wildfly.security.password.spec.ClearPasswordSpec;
+import org.xnio.IoFuture;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.channels.AcceptingChannel;
+import org.xnio.channels.ConnectedStreamChannel;
+
+/**
+ * An endpoint with a {@code remote} connection provider and a server on the test port, which authenticates the test
+ * user against a simple realm.  The provider and the server only use TLS if {@link Options#SSL_ENABLED} is set in the
+ * server options, and then use the context of {@link SslHelper}.  The Elytron provider is installed for the lifetime
+ * of the server.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class TestServer implements Closeable {
+
+    static final int PORT = 30123;
+    static final String USER = "bob";
+    static final String PASSWORD = "pass";
+
+    private final String providerName;
+    private final String host;
+    private final Endpoint endpoint;
+    private final Registration registration;
+    private final SimpleMapBackedSecurityRealm realm;
+    private final AcceptingChannel<? extends ConnectedStreamChannel> server;
+
+    /**
+     * Construct and start a new instance.
+     *
+     * @param endpointBuilder the builder of the endpoint to run the server on
+     * @param host the address to bind the server to
+     * @param serverOptions the server options
+     * @throws IOException if the server could not be started
+     */
+    TestServer(final EndpointBuilder endpointBuilder, final String host, final OptionMap serverOptions) throws IOException {
+        final WildFlyElytronProvider provider = new WildFlyElytronProvider();
+        Security.addProvider(provider);
+        providerName = provider.getName();
+        this.host = host;
+        Endpoint endpoint = null;
+        Registration registration = null;
+        boolean ok = false;
+        try {
+            final boolean sslEnabled = serverOptions.get(Options.SSL_ENABLED, false);
+            final SSLContext sslContext;
+            try {
+                sslContext = sslEnabled ? SslHelper.getSslContext() : null;
+            } catch (GeneralSecurityException e) {
+                throw new IOException(e);
+            }
+            endpoint = endpointBuilder.build();
+            registration = endpoint.addConnectionProvider("remote", new RemoteConnectionProviderFactory(), OptionMap.create(Options.SSL_ENABLED, Boolean.valueOf(sslEnabled)));
+            final NetworkServerProvider networkServerProvider = endpoint.getConnectionProviderInterface("remote", NetworkServerProvider.class);
+            final SecurityDomain.Builder domainBuilder = SecurityDomain.builder();
+            realm = new SimpleMapBackedSecurityRealm();
+            domainBuilder.addRealm("mainRealm", realm);
+            domainBuilder.setDefaultRealmName("mainRealm");
+            addUser();
+            server = networkServerProvider.createServer(new InetSocketAddress(host, PORT), serverOptions, domainBuilder.build(), sslContext);
+            this.endpoint = endpoint;
+            this.registration = registration;
+            ok = true;
+        } finally {
+            if (! ok) {
+                safeClose(registration);
+                safeClose(endpoint);
+                Security.removeProvider(providerName);
+            }
+        }
+    }
+
+    /**
+     * Construct and start a new instance on an endpoint named {@code test}.
+     *
+     * @param host the address to bind the server to
+     * @param serverOptions the server options
+     * @throws IOException if the server could not be started
+     */
+    TestServer(final String host, final OptionMap serverOptions) throws IOException {
+        this(Endpoint.builder().setEndpointName("test"), host, serverOptions);
+    }
+
+    /**
+     * Get an authentication context which authenticates as the test user and trusts the test server certificate.  Each
+     * call returns a new context.
+     *
+     * @return the authentication context
+     */
+    static AuthenticationContext createAuthenticationContext() {
+        return SslHelper.withSslContext(AuthenticationContext.empty().with(MatchRule.ALL, AuthenticationConfiguration.EMPTY.useName(USER).usePassword(PASSWORD).allowSaslMechanisms("SCRAM-SHA-256")));
+    }
+
+    Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Get the URI of this server.
+     *
+     * @param scheme the URI scheme
+     * @return the URI
+     */
+    URI getUri(final String scheme) {
+        try {
+            return new URI(scheme, null, host, PORT, null, null, null);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Connect to this server as the test user.
+     *
+     * @param connectOptions the connect options
+     * @return the future connection
+     */
+    IoFuture<Connection> connect(final OptionMap connectOptions) {
+        return endpoint.connect(getUri("remote"), connectOptions, createAuthenticationContext());
+    }
+
+    /**
+     * Add the test user to the realm, or reset its password.
+     */
+    void addUser() {
+        setPassword(PASSWORD);
+    }
+
+    /**
+     * Add the test user to the realm with the given password, or change its password.
+     *
+     * @param password the password
+     */
+    void setPassword(final String password) {
+        try {
+            final PasswordFactory passwordFactory = PasswordFactory.getInstance("clear");
+            realm.setPasswordMap(Collections.singletonMap(new NamePrincipal(USER), passwordFactory.generatePassword(new ClearPasswordSpec(password.toCharArray()))));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Remove the test user from the realm.
+     */
+    void removeUser() {
+        realm.setPasswordMap(Collections.emptyMap());
+    }
+
+    public void close() {
+        safeClose(server);
+        safeClose(endpoint);
+        safeClose(registration);
+        Security.removeProvider(providerName);
+    }
+}
@@ -148,7 +148,6 @@ public class TimeOutConnectionTestCase {
     @Test
     @Ignore
     public void testSslEnabled() throws Exception {
-        SslHelper.setKeyStoreAndTrustStore();
         doTest(OptionMap.create(Options.SSL_ENABLED, Boolean.TRUE));
     }
 